@@ -0,0 +1,39 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.ExampleApplication;
+import java.util.stream.Stream;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Starts the application for the benchmarks in this package: the integration profile, so that jobs
+ * are stored in an in-memory H2 database, on a random port, and with logging turned down so that
+ * writing the log to the console is not what gets measured.
+ */
+final class JobBenchmarks {
+  // passed as command line arguments, so that they win over application-integration.properties
+  private static final String[] ARGS = {
+    "--server.port=0",
+    "--logging.level.root=WARN",
+    "--logging.level.sql=WARN",
+    "--logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN",
+    // never reject a launch, however far the executor falls behind
+    "--app.jobs.queue.maxQueued=100000000"
+  };
+
+  private JobBenchmarks() {}
+
+  /**
+   * Start the application.
+   *
+   * @param properties extra properties, as "name=value"
+   * @return the running application, to be closed by the benchmark's tear down
+   */
+  static ConfigurableApplicationContext start(String... properties) {
+    return new SpringApplicationBuilder(ExampleApplication.class)
+        .profiles("integration")
+        .run(
+            Stream.concat(Stream.of(ARGS), Stream.of(properties).map(p -> "--" + p))
+                .toArray(String[]::new));
+  }
+}
@@ -0,0 +1,79 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * How long a caller waits to launch a job, i.e. until it has the queued job back; not how long the
+ * job takes to run. The jobs do nothing, so the executor keeps up with the launches.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class JobLaunchBenchmark {
+  private static final JobContextConsumer NOTHING = ctx -> {};
+
+  private ConfigurableApplicationContext context;
+  private JobService jobService;
+  private JobsRepository jobsRepository;
+  private String nodeId;
+
+  private Job saved;
+
+  @Setup
+  public void start() {
+    context = JobBenchmarks.start();
+    jobService = context.getBean(JobService.class);
+    jobsRepository = context.getBean(JobsRepository.class);
+    nodeId = context.getBean(JobQueueWorker.class).getNodeId();
+  }
+
+  @TearDown
+  public void stop() {
+    context.close();
+  }
+
+  /** An in-JVM job: saved as queued, then handed to the queue worker. */
+  @Benchmark
+  public Job runAsJob() {
+    return jobService.runAsJob(NOTHING);
+  }
+
+  /** A durable job: its type and parameters are saved too, so that any node can claim it. */
+  @Benchmark
+  public Job launch() {
+    return jobService.launch("TestJob", Map.of("sleepMs", "0"));
+  }
+
+  @Setup(Level.Invocation)
+  public void saveJob() {
+    saved =
+        jobsRepository.save(
+            Job.builder().jobType("Benchmark").nodeId(nodeId).status("queued").build());
+  }
+
+  /** Only the hand-off of an already saved job to the queue worker. */
+  @Benchmark
+  public Job runJobAsync() {
+    jobService.runJobAsync(saved, NOTHING);
+    return saved;
+  }
+}
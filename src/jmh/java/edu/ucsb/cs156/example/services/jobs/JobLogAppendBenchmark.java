@@ -0,0 +1,89 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * The cost of JobContext.log for a job whose log already has existingLines lines, including the
+ * flushes to job_log_lines and the indexing of its words that the appends lead to. The log keeps
+ * growing during the run, by as many lines as are appended.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class JobLogAppendBenchmark {
+  private static final int INSERT_BATCH_SIZE = 1000;
+
+  @Param({"0", "10000", "100000"})
+  public int existingLines;
+
+  private ConfigurableApplicationContext context;
+  private JobLogWriter jobLogWriter;
+  private JobLogBuffer buffer;
+  private JobContext jobContext;
+  private final AtomicLong rows = new AtomicLong();
+
+  @Setup
+  public void start() {
+    context = JobBenchmarks.start();
+    jobLogWriter = context.getBean(JobLogWriter.class);
+    Job job =
+        context
+            .getBean(JobsRepository.class)
+            .save(Job.builder().jobType("Benchmark").status("running").build());
+    context
+        .getBean(JdbcTemplate.class)
+        .batchUpdate(
+            "INSERT INTO job_log_lines (job_id, seq, logged_at, message)"
+                + " VALUES (?, ?, CURRENT_TIMESTAMP, ?)",
+            LongStream.range(0, existingLines).boxed().toList(),
+            INSERT_BATCH_SIZE,
+            (ps, seq) -> {
+              ps.setLong(1, job.getId());
+              ps.setLong(2, seq);
+              ps.setString(3, "Imported row " + seq);
+            });
+    buffer = jobLogWriter.open(job);
+    jobContext = new JobContext(buffer, job);
+    jobContext.continueLogAfter(existingLines - 1);
+  }
+
+  @TearDown
+  public void stop() {
+    jobLogWriter.close(buffer);
+    context.close();
+  }
+
+  @Benchmark
+  public void log() {
+    jobContext.log("Imported row " + rows.getAndIncrement());
+  }
+
+  /** Appends from the subtasks of a fanOut, which share their job's buffer. */
+  @Benchmark
+  @Threads(4)
+  public void logFromFourThreads() {
+    jobContext.log("Imported row " + rows.getAndIncrement());
+  }
+}
@@ -0,0 +1,73 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.entities.Job;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Jobs run per second from launch to end: each invocation launches {@link #JOBS} jobs that each log
+ * linesPerJob lines, and waits, through JobCompletions, until they have all ended.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class JobThroughputBenchmark {
+  static final int JOBS = 100;
+
+  private static final long TIMEOUT_MS = 60_000;
+
+  @Param({"0", "100"})
+  public int linesPerJob;
+
+  private ConfigurableApplicationContext context;
+  private JobService jobService;
+  private JobCompletions jobCompletions;
+
+  @Setup
+  public void start() {
+    context = JobBenchmarks.start();
+    jobService = context.getBean(JobService.class);
+    jobCompletions = context.getBean(JobCompletions.class);
+  }
+
+  @TearDown
+  public void stop() {
+    context.close();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(JOBS)
+  public void launchAndAwait() throws InterruptedException {
+    CountDownLatch ended = new CountDownLatch(JOBS);
+    for (int i = 0; i < JOBS; i++) {
+      Job job =
+          jobService.runAsJob(
+              ctx -> {
+                for (int line = 0; line < linesPerJob; line++) {
+                  ctx.log("Imported row " + line);
+                }
+              });
+      jobCompletions.await(job.getId(), TIMEOUT_MS).setResultHandler(result -> ended.countDown());
+    }
+    if (!ended.await(TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+      throw new IllegalStateException(ended.getCount() + " jobs did not end in time");
+    }
+  }
+}
@@ -10,14 +10,12 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Profile;
 import org.springframework.context.support.PropertySourcesPlaceholderConfigurer;
 import org.springframework.core.io.ClassPathResource;
-import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
 /** The ExampleApplication class is the main entry point for the application. */
 @SpringBootApplication
 @Slf4j
-@EnableAsync // for @Async annotation for JobsService
-@EnableScheduling // for @Scheduled annotation for JobsService
+@EnableScheduling // for @Scheduled methods in the job services
 public class ExampleApplication {
 
   @Autowired WiremockService wiremockService;
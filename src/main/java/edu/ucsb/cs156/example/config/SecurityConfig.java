@@ -3,22 +3,18 @@ package edu.ucsb.cs156.example.config;
 import static org.springframework.security.web.util.matcher.AntPathRequestMatcher.antMatcher;
 
 import edu.ucsb.cs156.example.entities.User;
-import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.UserLogins;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Set;
 import java.util.function.Supplier;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.access.hierarchicalroles.RoleHierarchy;
@@ -53,10 +49,7 @@ import org.springframework.web.filter.OncePerRequestFilter;
 @Slf4j
 public class SecurityConfig {
 
-  @Value("${app.admin.emails}")
-  private final List<String> adminEmails = new ArrayList<>();
-
-  @Autowired UserRepository userRepository;
+  @Autowired UserLogins userLogins;
 
   /**
    * The `filterChain` method in this Java code configures various security settings for an HTTP
@@ -79,7 +72,14 @@ public class SecurityConfig {
                 csrf.csrfTokenRepository(CookieCsrfTokenRepository.withHttpOnlyFalse())
                     .csrfTokenRequestHandler(new SpaCsrfTokenRequestHandler()))
         .addFilterAfter(new CsrfCookieFilter(), BasicAuthenticationFilter.class)
-        .authorizeHttpRequests(auth -> auth.anyRequest().permitAll())
+        .authorizeHttpRequests(
+            auth ->
+                auth
+                    // job metrics (queue depth, counts by job type, ...) are for admins only
+                    .requestMatchers(antMatcher("/actuator/metrics/**"))
+                    .hasRole("ADMIN")
+                    .anyRequest()
+                    .permitAll())
         .logout(
             logout ->
                 logout
@@ -112,8 +112,10 @@ public class SecurityConfig {
 
               mappedAuthorities.add(new SimpleGrantedAuthority("ROLE_USER"));
 
-              String email = (String) userAttributes.get("email");
-              if (getAdmin(email)) {
+              // stores the user on their first login, and reads whether they are an admin
+              User user = userLogins.login(userAttributes);
+              String email = user.getEmail();
+              if (user.getAdmin()) {
                 mappedAuthorities.add(new SimpleGrantedAuthority("ROLE_ADMIN"));
               }
 
@@ -127,21 +129,6 @@ public class SecurityConfig {
     };
   }
 
-  /**
-   * This method checks if the given email belongs to an admin user either from a predefined list or
-   * by querying the user repository.
-   *
-   * @param email email address of the user
-   * @return whether the user with the given email is an admin
-   */
-  public boolean getAdmin(String email) {
-    if (adminEmails.contains(email)) {
-      return true;
-    }
-    Optional<User> u = userRepository.findByEmail(email);
-    return u.isPresent() && u.get().getAdmin();
-  }
-
   @Bean
   static RoleHierarchy roleHierarchy() {
     return RoleHierarchyImpl.withDefaultRolePrefix().role("ADMIN").implies("USER").build();
@@ -4,48 +4,169 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import edu.ucsb.cs156.example.entities.Job;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
-import edu.ucsb.cs156.example.jobs.TestJob;
+import edu.ucsb.cs156.example.models.JobExecutorStats;
+import edu.ucsb.cs156.example.models.JobLogFlushStats;
+import edu.ucsb.cs156.example.models.JobLogSearchResult;
+import edu.ucsb.cs156.example.models.JobPipelineRequest;
+import edu.ucsb.cs156.example.models.JobPipelineStatus;
+import edu.ucsb.cs156.example.models.JobProgress;
+import edu.ucsb.cs156.example.models.JobRetentionStats;
+import edu.ucsb.cs156.example.models.JobSummary;
+import edu.ucsb.cs156.example.models.JobSummaryPage;
+import edu.ucsb.cs156.example.models.JobUserQueueStats;
+import edu.ucsb.cs156.example.repositories.JobDependencyRepository;
+import edu.ucsb.cs156.example.repositories.JobLogLineRepository;
+import edu.ucsb.cs156.example.repositories.JobLogTermRepository;
+import edu.ucsb.cs156.example.repositories.JobPipelineRepository;
 import edu.ucsb.cs156.example.repositories.JobsRepository;
+import edu.ucsb.cs156.example.services.imports.BulkImporter;
+import edu.ucsb.cs156.example.services.imports.ImportFormat;
+import edu.ucsb.cs156.example.services.imports.ImportTable;
+import edu.ucsb.cs156.example.services.jobs.JobCompletions;
+import edu.ucsb.cs156.example.services.jobs.JobExecutor;
+import edu.ucsb.cs156.example.services.jobs.JobFairShare;
+import edu.ucsb.cs156.example.services.jobs.JobLogCompressor;
+import edu.ucsb.cs156.example.services.jobs.JobLogSearch;
+import edu.ucsb.cs156.example.services.jobs.JobLogStreams;
+import edu.ucsb.cs156.example.services.jobs.JobLogWriter;
+import edu.ucsb.cs156.example.services.jobs.JobOptions;
+import edu.ucsb.cs156.example.services.jobs.JobPipelines;
+import edu.ucsb.cs156.example.services.jobs.JobRetention;
+import edu.ucsb.cs156.example.services.jobs.JobRetentionSweeper;
 import edu.ucsb.cs156.example.services.jobs.JobService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.data.domain.Limit;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @Tag(name = "Jobs")
 @RequestMapping("/api/jobs")
 @RestController
 @Slf4j
 public class JobsController extends ApiController {
+  private static final int MAX_PAGE_SIZE = 500;
+  private static final int MAX_SEARCH_MATCHES = 1000;
+
   @Autowired private JobsRepository jobsRepository;
 
+  @Autowired private JobLogLineRepository jobLogLineRepository;
+
+  @Autowired private JobDependencyRepository jobDependencyRepository;
+
+  @Autowired private JobLogTermRepository jobLogTermRepository;
+
+  @Autowired private JobPipelineRepository jobPipelineRepository;
+
   @Autowired private JobService jobService;
 
+  @Autowired private JobLogWriter jobLogWriter;
+
+  @Autowired private JobLogStreams jobLogStreams;
+
+  @Autowired private JobLogSearch jobLogSearch;
+
+  @Autowired private JobCompletions jobCompletions;
+
+  @Autowired private JobExecutor jobExecutor;
+
+  @Autowired private JobRetention jobRetention;
+
+  @Autowired private JobRetentionSweeper jobRetentionSweeper;
+
+  @Autowired private JobFairShare jobFairShare;
+
+  @Autowired private JobPipelines jobPipelines;
+
+  @Autowired private BulkImporter bulkImporter;
+
   @Autowired ObjectMapper mapper;
 
-  @Operation(summary = "List all jobs")
+  @Operation(summary = "List all jobs, without their logs")
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @GetMapping("/all")
-  public Iterable<Job> allJobs() {
-    Iterable<Job> jobs = jobsRepository.findAll();
-    return jobs;
+  public Iterable<JobSummary> allJobs() {
+    return jobsRepository.findAllSummaries();
+  }
+
+  @Operation(
+      summary = "List jobs a page at a time, newest first, without their logs",
+      description =
+          "To get the next page, pass the nextBeforeId of this page as beforeId. Fetch the log of"
+              + " a job with /api/jobs/logs/{id}.")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping("/page")
+  public JobSummaryPage pageOfJobs(
+      @Parameter(name = "beforeId", description = "optional; only jobs with a smaller id")
+          @RequestParam(required = false)
+          Long beforeId,
+      @Parameter(name = "status", description = "optional; e.g. running")
+          @RequestParam(required = false)
+          String status,
+      @Parameter(name = "createdById", description = "optional; id of the user")
+          @RequestParam(required = false)
+          Long createdById,
+      @Parameter(name = "createdAfter", description = "optional; ISO date-time, inclusive")
+          @RequestParam(required = false)
+          @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+          ZonedDateTime createdAfter,
+      @Parameter(name = "createdBefore", description = "optional; ISO date-time, exclusive")
+          @RequestParam(required = false)
+          @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+          ZonedDateTime createdBefore,
+      @Parameter(name = "size", description = "page size, at most " + MAX_PAGE_SIZE)
+          @RequestParam(defaultValue = "50")
+          int size) {
+    int limit = Math.clamp(size, 1, MAX_PAGE_SIZE);
+    List<JobSummary> jobs =
+        jobsRepository.findSummaryPage(
+            beforeId != null ? beforeId : Long.MAX_VALUE,
+            status,
+            createdById,
+            createdAfter,
+            createdBefore,
+            Limit.of(limit));
+    Long nextBeforeId = jobs.size() == limit ? jobs.get(jobs.size() - 1).getId() : null;
+    return JobSummaryPage.builder().jobs(jobs).nextBeforeId(nextBeforeId).build();
   }
 
   @Operation(summary = "Delete all job records")
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @DeleteMapping("/all")
   public Map<String, String> deleteAllJobs() {
-    jobsRepository.deleteAll();
+    jobLogLineRepository.deleteAllInBatch();
+    jobLogTermRepository.deleteAllInBatch();
+    jobDependencyRepository.deleteAllInBatch();
+    jobsRepository.deleteAllInBatch();
+    jobPipelineRepository.deleteAllInBatch();
     return Map.of("message", "All jobs deleted");
   }
 
@@ -62,26 +183,186 @@ public class JobsController extends ApiController {
     return job;
   }
 
-  @Operation(summary = "Delete specific job record")
+  @Operation(
+      summary = "Get the progress of a job",
+      description =
+          "Returns the job's status and the progress it last reported, without reading its log")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping("/progress")
+  public JobProgress getJobProgress(
+      @Parameter(name = "id", description = "ID of the job") @RequestParam Long id) {
+    return jobService.getProgress(id);
+  }
+
+  @Operation(
+      summary = "Wait for a job to end",
+      description =
+          "Answers with the job's status and progress as soon as the job ends, or once timeoutMs"
+              + " has passed (at most app.jobs.wait.maxTimeoutMs) with the job still going. Use"
+              + " this instead of polling GET /api/jobs, which loads the job with its log.")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping("/wait")
+  public DeferredResult<JobProgress> waitForJob(
+      @Parameter(name = "id", description = "ID of the job") @RequestParam Long id,
+      @Parameter(name = "timeoutMs", description = "optional; how long to wait, default 30000")
+          @RequestParam(defaultValue = "30000")
+          long timeoutMs) {
+    return jobCompletions.await(id, timeoutMs);
+  }
+
+  @Operation(
+      summary = "Delete specific job record",
+      description =
+          "Only a finished job can be deleted, and only once the jobs that depend on it have"
+              + " finished")
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @DeleteMapping("")
   public Map<String, String> deleteAllJobs(@Parameter(name = "id") @RequestParam Long id) {
-    if (!jobsRepository.existsById(id)) {
+    if (!jobRetention.deleteJob(id)) {
       return Map.of("message", String.format("Job with id %d not found", id));
     }
-    jobsRepository.deleteById(id);
     return Map.of("message", String.format("Job with id %d deleted", id));
   }
 
+  @Operation(summary = "Cancel a queued or running job")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PostMapping("/cancel")
+  public Map<String, String> cancelJob(@Parameter(name = "id") @RequestParam Long id) {
+    return Map.of("message", jobService.cancel(id));
+  }
+
   @Operation(summary = "Launch Test Job (click fail if you want to test exception handling)")
   @PreAuthorize("hasRole('ROLE_ADMIN')")
   @PostMapping("/launch/testjob")
   public Job launchTestJob(
       @Parameter(name = "fail") @RequestParam Boolean fail,
-      @Parameter(name = "sleepMs") @RequestParam Integer sleepMs) {
+      @Parameter(name = "sleepMs") @RequestParam Integer sleepMs,
+      @Parameter(name = "timeoutMs", description = "optional; cancel the job after this long")
+          @RequestParam(required = false)
+          Long timeoutMs,
+      @Parameter(name = "priority", description = "optional; higher is claimed first")
+          @RequestParam(defaultValue = "0")
+          int priority,
+      @Parameter(
+              name = "idempotent",
+              description = "optional; re-queue the job rather than abandon it if its node dies")
+          @RequestParam(defaultValue = "false")
+          boolean idempotent,
+      @Parameter(
+              name = "coalesce",
+              description =
+                  "optional; return the test job with the same params that has not ended yet, if"
+                      + " there is one")
+          @RequestParam(defaultValue = "false")
+          boolean coalesce,
+      @Parameter(
+              name = "Idempotency-Key",
+              description = "optional; launching again with the same key returns the same job")
+          @RequestHeader(value = "Idempotency-Key", required = false)
+          String idempotencyKey) {
+
+    return jobService.launch(
+        "TestJob",
+        Map.of("fail", fail.toString(), "sleepMs", sleepMs.toString()),
+        JobOptions.builder()
+            .timeoutMs(timeoutMs)
+            .priority(priority)
+            .idempotent(idempotent)
+            .coalesce(coalesce)
+            .idempotencyKey(idempotencyKey)
+            .build());
+  }
+
+  @Operation(
+      summary = "Launch a job that bulk imports a CSV or NDJSON file",
+      description =
+          "Rows are validated and inserted in batches; progress and rejected rows are reported in"
+              + " the job log. Fields are named as in the entity's JSON; a CSV file's first line"
+              + " names them.")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PostMapping(value = "/launch/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+  public Job launchImport(
+      @Parameter(name = "table", description = "e.g. ucsbdates or ucsbdiningcommonsmenuitem")
+          @RequestParam
+          String table,
+      @Parameter(name = "format", description = "CSV or NDJSON") @RequestParam(defaultValue = "CSV")
+          ImportFormat format,
+      @Parameter(name = "file") @RequestParam MultipartFile file,
+      @Parameter(
+              name = "Idempotency-Key",
+              description = "optional; launching again with the same key returns the same job")
+          @RequestHeader(value = "Idempotency-Key", required = false)
+          String idempotencyKey)
+      throws IOException {
+    try (InputStream upload = file.getInputStream()) {
+      return bulkImporter.launch(
+          ImportTable.byName(table),
+          format,
+          upload,
+          JobOptions.builder().idempotencyKey(idempotencyKey).build());
+    }
+  }
+
+  @Operation(
+      summary = "Launch a pipeline of durable jobs",
+      description =
+          "Each stage names a job type, its params and the stages it depends on. Stages start as"
+              + " soon as everything they depend on has completed, in parallel where possible.")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PostMapping("/pipelines")
+  public JobPipelineStatus launchPipeline(@RequestBody JobPipelineRequest request) {
+    return jobPipelines.launch(request);
+  }
+
+  @Operation(summary = "Get a pipeline and the status of each of its stages")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping("/pipelines")
+  public JobPipelineStatus getPipeline(
+      @Parameter(name = "id", description = "ID of the pipeline") @RequestParam Long id) {
+    return jobPipelines.getStatus(id);
+  }
 
-    TestJob testJob = TestJob.builder().fail(fail).sleepMs(sleepMs).build();
-    return jobService.runAsJob(testJob);
+  @Operation(summary = "Cancel every stage of a pipeline that has not ended")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PostMapping("/pipelines/cancel")
+  public Map<String, String> cancelPipeline(@Parameter(name = "id") @RequestParam Long id) {
+    return Map.of("message", jobPipelines.cancel(id));
+  }
+
+  @Operation(
+      summary = "Search job logs for lines containing a term or matching a regex",
+      description =
+          "Jobs are found through an index of the words in their logs, so a term is matched as"
+              + " whole words; only the logs of jobs containing all of its words are read. A regex"
+              + " alone cannot use the index and searches only the newest jobs. Matches are"
+              + " returned newest job first.")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping("/logs/search")
+  public JobLogSearchResult searchJobLogs(
+      @Parameter(name = "term", description = "optional; text the line contains, ignoring case")
+          @RequestParam(required = false)
+          String term,
+      @Parameter(name = "regex", description = "optional; Java regular expression the line matches")
+          @RequestParam(required = false)
+          String regex,
+      @Parameter(name = "status", description = "optional; e.g. error")
+          @RequestParam(required = false)
+          String status,
+      @Parameter(name = "createdAfter", description = "optional; ISO date-time, inclusive")
+          @RequestParam(required = false)
+          @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+          ZonedDateTime createdAfter,
+      @Parameter(name = "createdBefore", description = "optional; ISO date-time, exclusive")
+          @RequestParam(required = false)
+          @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+          ZonedDateTime createdBefore,
+      @Parameter(
+              name = "limit",
+              description = "most lines to return, at most " + MAX_SEARCH_MATCHES)
+          @RequestParam(defaultValue = "100")
+          int limit) {
+    return jobLogSearch.search(
+        term, regex, status, createdAfter, createdBefore, Math.clamp(limit, 1, MAX_SEARCH_MATCHES));
   }
 
   @Operation(summary = "Get long job logs")
@@ -91,4 +372,98 @@ public class JobsController extends ApiController {
 
     return jobService.getJobLogs(id);
   }
+
+  @Operation(
+      summary = "Download a job's log as a text file",
+      description =
+          "Once a job has ended its log is stored gzipped; clients that accept gzip are then sent"
+              + " the log text gzipped, with Content-Encoding: gzip, and others are sent it as it"
+              + " is.")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping("/logs/{id}/download")
+  public ResponseEntity<Resource> downloadJobLogs(
+      @Parameter(name = "id", description = "Job ID") @PathVariable Long id,
+      @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+    ResponseEntity.BodyBuilder response =
+        ResponseEntity.ok()
+            .contentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8))
+            .header(
+                HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment()
+                    .filename("job-%d.log".formatted(id))
+                    .build()
+                    .toString())
+            .varyBy(HttpHeaders.ACCEPT_ENCODING);
+    Optional<byte[]> logGz = jobService.getCompressedJobLog(id);
+    if (logGz.isEmpty()) {
+      return response.body(
+          new ByteArrayResource(jobService.getJobLogs(id).getBytes(StandardCharsets.UTF_8)));
+    }
+    String text = JobLogCompressor.text(logGz.get());
+    if (acceptsGzip(acceptEncoding)) {
+      return response
+          .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+          .body(new ByteArrayResource(JobLogCompressor.gzipText(text)));
+    }
+    return response.body(new ByteArrayResource(text.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  static boolean acceptsGzip(String acceptEncoding) {
+    if (acceptEncoding == null) {
+      return false;
+    }
+    for (String coding : acceptEncoding.split(",")) {
+      String[] parts = coding.trim().split("\\s*;\\s*");
+      if (parts[0].equalsIgnoreCase("gzip") || parts[0].equals("*")) {
+        return parts.length < 2 || !parts[1].matches("q=0(\\.0*)?");
+      }
+    }
+    return false;
+  }
+
+  @Operation(
+      summary = "Stream job log lines as server-sent events",
+      description =
+          "Sends each log line as a 'log' event whose id is the line's seq, then an 'end' event"
+              + " with the job's final status. Reconnecting clients resume after Last-Event-ID.")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping(value = "/logs/{id}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public SseEmitter streamJobLogs(
+      @Parameter(name = "id", description = "Job ID") @PathVariable Long id,
+      @Parameter(name = "after", description = "optional; seq of the last line already seen")
+          @RequestParam(required = false)
+          Long after,
+      @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+
+    long afterSeq = lastEventId != null ? lastEventId : after != null ? after : -1L;
+    return jobLogStreams.subscribe(id, afterSeq);
+  }
+
+  @Operation(summary = "Get statistics about how job log buffers have been flushed")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping("/stats/logflush")
+  public JobLogFlushStats getLogFlushStats() {
+    return jobLogWriter.getStats();
+  }
+
+  @Operation(summary = "Get the configuration and current load of the job executor")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping("/stats/executor")
+  public JobExecutorStats getExecutorStats() {
+    return jobExecutor.getStats();
+  }
+
+  @Operation(summary = "Get the job history retention settings and what has been removed")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping("/stats/retention")
+  public JobRetentionStats getRetentionStats() {
+    return jobRetentionSweeper.getStats();
+  }
+
+  @Operation(summary = "Get each user's queued and running jobs and share of the executor")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping("/stats/users")
+  public List<JobUserQueueStats> getUserQueueStats() {
+    return jobFairShare.getUserStats();
+  }
 }
@@ -0,0 +1,174 @@
+package edu.ucsb.cs156.example.controllers;
+
+import edu.ucsb.cs156.example.entities.RecurringJob;
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.JobSummary;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import edu.ucsb.cs156.example.repositories.RecurringJobRepository;
+import edu.ucsb.cs156.example.services.CurrentUserService;
+import edu.ucsb.cs156.example.services.jobs.RecurringJobs;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/** This is a REST controller for recurring jobs, durable jobs launched on a cron schedule */
+@Tag(name = "Recurring Jobs")
+@RequestMapping("/api/recurringjobs")
+@RestController
+public class RecurringJobsController extends ApiController {
+  private static final int MAX_HISTORY_SIZE = 500;
+
+  @Autowired RecurringJobRepository recurringJobRepository;
+
+  @Autowired JobsRepository jobsRepository;
+
+  @Autowired RecurringJobs recurringJobs;
+
+  @Autowired CurrentUserService currentUserService;
+
+  /**
+   * This method returns a list of all recurring jobs.
+   *
+   * @return a list of all recurring jobs
+   */
+  @Operation(summary = "List all recurring jobs")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping("/all")
+  public Iterable<RecurringJob> allRecurringJobs() {
+    return recurringJobRepository.findAll();
+  }
+
+  /**
+   * This method returns a single recurring job.
+   *
+   * @param id id of the recurring job to get
+   * @return a single recurring job
+   */
+  @Operation(summary = "Get a single recurring job")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping("")
+  public RecurringJob getById(@Parameter(name = "id") @RequestParam Long id) {
+    return recurringJobRepository
+        .findById(id)
+        .orElseThrow(() -> new EntityNotFoundException(RecurringJob.class, id));
+  }
+
+  /**
+   * This method creates a new recurring job. Its runs are launched on behalf of the current user.
+   *
+   * @param name name of the recurring job
+   * @param cron when to run it, e.g. "0 0 2 * * *" for 2am every day
+   * @param jobType type of durable job to launch
+   * @param params parameters for the job, as a JSON object of strings
+   * @param enabled whether to run it
+   * @param timeoutMs timeout for each run, in milliseconds
+   * @param priority priority of each run
+   * @return the saved recurring job, with its next run time
+   */
+  @Operation(summary = "Create a new recurring job")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PostMapping("/post")
+  public RecurringJob postRecurringJob(
+      @Parameter(name = "name") @RequestParam String name,
+      @Parameter(name = "cron", description = "e.g. 0 0 2 * * * for 2am every day") @RequestParam
+          String cron,
+      @Parameter(name = "jobType") @RequestParam String jobType,
+      @Parameter(name = "params", description = "JSON object, e.g. {\"sleepMs\":\"100\"}")
+          @RequestParam(required = false)
+          String params,
+      @Parameter(name = "enabled") @RequestParam(defaultValue = "true") boolean enabled,
+      @Parameter(name = "timeoutMs") @RequestParam(required = false) Long timeoutMs,
+      @Parameter(name = "priority") @RequestParam(defaultValue = "0") int priority) {
+    RecurringJob recurringJob =
+        RecurringJob.builder()
+            .name(name)
+            .cron(cron)
+            .jobType(jobType)
+            .params(params)
+            .enabled(enabled)
+            .timeoutMs(timeoutMs)
+            .priority(priority)
+            .createdBy(currentUserService.getUser())
+            .build();
+    return recurringJobs.save(recurringJob);
+  }
+
+  /**
+   * Deletes a recurring job. Runs it already launched are kept.
+   *
+   * @param id id of the recurring job to delete
+   * @return a message indicating that the recurring job was deleted
+   */
+  @Operation(summary = "Delete a recurring job")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @DeleteMapping("")
+  public Object deleteRecurringJob(@Parameter(name = "id") @RequestParam Long id) {
+    RecurringJob recurringJob =
+        recurringJobRepository
+            .findById(id)
+            .orElseThrow(() -> new EntityNotFoundException(RecurringJob.class, id));
+
+    recurringJobRepository.delete(recurringJob);
+    return genericMessage("RecurringJob with id %s deleted".formatted(id));
+  }
+
+  /**
+   * Update a single recurring job. Its next run is rescheduled from the new cron expression.
+   *
+   * @param id id of the recurring job to update
+   * @param incoming the new recurring job contents
+   * @return the updated recurring job
+   */
+  @Operation(summary = "Update a single recurring job")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @PutMapping("")
+  public RecurringJob updateRecurringJob(
+      @Parameter(name = "id") @RequestParam Long id, @RequestBody RecurringJob incoming) {
+    RecurringJob recurringJob =
+        recurringJobRepository
+            .findById(id)
+            .orElseThrow(() -> new EntityNotFoundException(RecurringJob.class, id));
+
+    recurringJob.setName(incoming.getName());
+    recurringJob.setCron(incoming.getCron());
+    recurringJob.setJobType(incoming.getJobType());
+    recurringJob.setParams(incoming.getParams());
+    recurringJob.setEnabled(incoming.getEnabled());
+    recurringJob.setTimeoutMs(incoming.getTimeoutMs());
+    recurringJob.setPriority(incoming.getPriority());
+
+    return recurringJobs.save(recurringJob);
+  }
+
+  /**
+   * This method returns the runs of a recurring job, newest first, without their logs.
+   *
+   * @param id id of the recurring job
+   * @param size the most runs to return, at most 500
+   * @return summaries of the runs
+   */
+  @Operation(summary = "List the runs of a recurring job")
+  @PreAuthorize("hasRole('ROLE_ADMIN')")
+  @GetMapping("/history")
+  public List<JobSummary> getHistory(
+      @Parameter(name = "id") @RequestParam Long id,
+      @Parameter(name = "size") @RequestParam(defaultValue = "20") int size) {
+    if (!recurringJobRepository.existsById(id)) {
+      throw new EntityNotFoundException(RecurringJob.class, id);
+    }
+    int limit = Math.max(1, Math.min(size, MAX_HISTORY_SIZE));
+    return jobsRepository.findRunsOfRecurringJob(id, Limit.of(limit));
+  }
+}
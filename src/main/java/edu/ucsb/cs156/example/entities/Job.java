@@ -10,6 +10,8 @@ import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Transient;
+import jakarta.persistence.Version;
 import java.time.ZonedDateTime;
 import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
@@ -31,6 +33,11 @@ public class Job {
   @GeneratedValue(strategy = GenerationType.IDENTITY)
   private long id;
 
+  // Bumped by every save and by every JobsRepository query that changes the status, so saving a job
+  // whose status was changed elsewhere since it was loaded, e.g. by JobRecovery, fails instead of
+  // overwriting that change.
+  @Version private long version;
+
   @JsonIgnore
   @ManyToOne(fetch = FetchType.LAZY)
   @JoinColumn(name = "created_by_id")
@@ -39,12 +46,98 @@ public class Job {
   @CreatedDate private ZonedDateTime createdAt;
   @LastModifiedDate private ZonedDateTime updatedAt;
 
+  private String jobType;
+
+  // queued, claimed, running, complete, error, cancelled, timed_out, rejected (queue was full), or
+  // abandoned (its node stopped sending heartbeats); pipeline stages are waiting until their
+  // dependencies complete, or skipped if one does not
   private String status;
 
+  // higher is claimed first; see JobFairShare
+  private int priority;
+
+  // null or 0 means the job may run for as long as it likes
+  private Long timeoutMs;
+
+  // Only ever set by JobsRepository.requestCancel, so that saving a Job that was loaded before the
+  // request cannot clear it.
+  @Column(insertable = false, updatable = false)
+  private boolean cancelRequested;
+
+  // JSON parameters for durable jobs, which any node can rebuild with the JobFactory for jobType;
+  // null for jobs that only exist in memory on the node that launched them
+  @Column(columnDefinition = "TEXT")
+  private String params;
+
+  // set for the stages of a JobPipeline
+  private Long pipelineId;
+  private String pipelineStage;
+
+  // set for runs of a RecurringJob
+  private Long recurringJobId;
+
+  // Progress reported through JobContext.progress; only ever written by
+  // JobsRepository.updateProgress, so saving the job's status cannot clear it. See
+  // JobProgressTracker.
+  @Column(insertable = false, updatable = false)
+  private Long progressDone;
+
+  @Column(insertable = false, updatable = false)
+  private Long progressTotal;
+
+  // items per second between the last two progress updates
+  @Column(insertable = false, updatable = false)
+  private Double progressRate;
+
+  @Column(insertable = false, updatable = false)
+  private ZonedDateTime progressUpdatedAt;
+
+  // the node that claimed the job, or for in-memory jobs the only node that can run it
+  private String nodeId;
+
+  // Refreshed by the claiming node while the job is claimed or running; only ever written by
+  // JobsRepository queries, so saving a job that was loaded earlier cannot move it back. See
+  // JobRecovery.
+  @Column(insertable = false, updatable = false)
+  private ZonedDateTime heartbeatAt;
+
+  // durable jobs that are safe to run again from the start are re-queued, rather than abandoned,
+  // if the node running them stops sending heartbeats
+  private boolean idempotent;
+
+  // how many times the job has been re-queued by JobRecovery
+  @Column(insertable = false, updatable = false)
+  private int requeues;
+
+  // Chosen by the client that launched the job, so that launching again with the same key, e.g. on
+  // a retry or double-click, returns this job instead of starting another. Unique; see
+  // JobOptions.idempotencyKey.
+  private String idempotencyKey;
+
+  // hash of the job type and params of a durable job launched with JobOptions.coalesce
+  @JsonIgnore private String coalesceKey;
+
+  // set on the job returned by a launch that found it already launched, instead of a new job
+  @Transient private boolean duplicate;
+
+  // Log output for new jobs is stored as rows in job_log_lines; this column is only read as a
+  // fallback for jobs that were run before that table existed.
   // 1048576 is 2^20, which is the max size of a mediumtext in MySQL
   @Column(
       columnDefinition = "TEXT",
       length = 1048576) // needed for long strings, i.e. log entries longer than 255
   // characters
   private String log;
+
+  // Once the job has ended, its log lines are gzipped into this column and deleted from
+  // job_log_lines; only ever written by JobsRepository.storeCompressedLog. See JobLogCompressor.
+  @JsonIgnore
+  @Column(insertable = false, updatable = false)
+  private byte[] logGz;
+
+  // whether every word of the job's log is in job_log_terms; only ever written by
+  // JobsRepository.markLogIndexed. See JobLogSearch.
+  @JsonIgnore
+  @Column(insertable = false, updatable = false)
+  private boolean logIndexed;
 }
@@ -0,0 +1,37 @@
+package edu.ucsb.cs156.example.entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import java.time.ZonedDateTime;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * This is a JPA entity that represents a single line of output written by a job.
+ *
+ * <p>Lines are only ever inserted, never updated, so logging a line costs one small insert no
+ * matter how long the log already is. The full log is reassembled by reading the lines for a job
+ * ordered by seq.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity(name = "job_log_lines")
+public class JobLogLine {
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private long id;
+
+  private long jobId;
+  private long seq;
+  private ZonedDateTime loggedAt;
+
+  @Column(columnDefinition = "TEXT")
+  private String message;
+}
@@ -0,0 +1,61 @@
+package edu.ucsb.cs156.example.entities;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import java.time.ZonedDateTime;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * This is a JPA entity that represents a durable job launched on a cron schedule. Each run is a row
+ * in the jobs table whose recurringJobId is this job's id.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+@Entity(name = "recurring_jobs")
+public class RecurringJob {
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private long id;
+
+  private String name;
+
+  // Spring cron syntax with seconds, e.g. "0 0 2 * * *" for 2am every day, in the server's zone
+  private String cron;
+
+  // a JobFactory must be registered for it
+  private String jobType;
+
+  // JSON parameters passed to the factory
+  @Column(columnDefinition = "TEXT")
+  private String params;
+
+  private boolean enabled;
+  private Long timeoutMs;
+  private int priority;
+
+  // runs are launched on behalf of the user who created the recurring job
+  @JsonIgnore
+  @ManyToOne(fetch = FetchType.LAZY)
+  @JoinColumn(name = "created_by_id")
+  private User createdBy;
+
+  // null while disabled
+  private ZonedDateTime nextRunAt;
+
+  private ZonedDateTime lastRunAt;
+  private Long lastJobId;
+  private String lastNodeId;
+}
@@ -1,6 +1,8 @@
 package edu.ucsb.cs156.example.entities;
 
+import edu.ucsb.cs156.example.services.UserChangeListener;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
@@ -16,6 +18,7 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @Builder
 @Entity(name = "users")
+@EntityListeners(UserChangeListener.class)
 public class User {
   @Id
   @GeneratedValue(strategy = GenerationType.IDENTITY)
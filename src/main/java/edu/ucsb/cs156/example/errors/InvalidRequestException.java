@@ -0,0 +1,27 @@
+package edu.ucsb.cs156.example.errors;
+
+/**
+ * This is an error class for a custom IllegalArgumentException in Java that is used to indicate
+ * that a request is invalid, e.g. a job pipeline with a cycle or a bad cron expression. Controllers
+ * report it as a bad request.
+ */
+public class InvalidRequestException extends IllegalArgumentException {
+  /**
+   * Constructor for the exception
+   *
+   * @param message what is wrong with the request
+   */
+  public InvalidRequestException(String message) {
+    super(message);
+  }
+
+  /**
+   * Constructor for the exception
+   *
+   * @param message what is wrong with the request
+   * @param cause the exception that showed the request to be invalid
+   */
+  public InvalidRequestException(String message, Throwable cause) {
+    super(message, cause);
+  }
+}
@@ -0,0 +1,29 @@
+package edu.ucsb.cs156.example.jobs;
+
+import edu.ucsb.cs156.example.services.imports.BulkImporter;
+import edu.ucsb.cs156.example.services.imports.ImportFormat;
+import edu.ucsb.cs156.example.services.imports.ImportTable;
+import edu.ucsb.cs156.example.services.jobs.JobContext;
+import edu.ucsb.cs156.example.services.jobs.JobContextConsumer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import lombok.Builder;
+
+/** Imports an uploaded file, which is deleted once the job ends. */
+@Builder
+public class ImportJob implements JobContextConsumer {
+
+  private BulkImporter importer;
+  private ImportTable table;
+  private ImportFormat format;
+  private Path file;
+
+  @Override
+  public void accept(JobContext ctx) throws Exception {
+    try {
+      importer.importFile(ctx, table, format, file);
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+}
@@ -13,10 +13,12 @@ public class TestJob implements JobContextConsumer {
   @Override
   public void accept(JobContext ctx) throws Exception {
     ctx.log("Hello World! from test job!");
-    Thread.sleep(sleepMs);
+    ctx.progress(1, 2);
+    ctx.sleep(sleepMs);
     if (fail) {
       throw new Exception("Fail!");
     }
     ctx.log("Goodbye from test job!");
+    ctx.progress(2, 2);
   }
 }
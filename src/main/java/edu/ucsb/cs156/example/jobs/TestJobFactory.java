@@ -0,0 +1,24 @@
+package edu.ucsb.cs156.example.jobs;
+
+import edu.ucsb.cs156.example.services.jobs.JobContextConsumer;
+import edu.ucsb.cs156.example.services.jobs.JobFactory;
+import java.util.Map;
+import org.springframework.stereotype.Component;
+
+/** Rebuilds a {@link TestJob} from its stored parameters (fail, sleepMs). */
+@Component
+public class TestJobFactory implements JobFactory {
+
+  @Override
+  public String getJobType() {
+    return "TestJob";
+  }
+
+  @Override
+  public JobContextConsumer create(Map<String, String> params) {
+    return TestJob.builder()
+        .fail(Boolean.parseBoolean(params.get("fail")))
+        .sleepMs(Integer.parseInt(params.getOrDefault("sleepMs", "0")))
+        .build();
+  }
+}
@@ -0,0 +1,25 @@
+package edu.ucsb.cs156.example.models;
+
+import java.util.Map;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** This is a model class that reports the configuration and current load of the job executor. */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class JobExecutorStats {
+  private boolean virtualThreads;
+  private int poolSize;
+  private int queueCapacity;
+  private Map<String, Integer> typeLimits;
+  private int running;
+  private int queued;
+  private long rejected; // submissions turned away since startup because the queue was full
+  private Map<String, Integer> runningByType;
+  private Map<String, Integer> queuedByType;
+}
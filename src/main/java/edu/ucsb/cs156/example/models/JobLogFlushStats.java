@@ -0,0 +1,32 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * This is a model class that reports how job log buffers have been flushed since startup.
+ *
+ * <p>It is used to tune app.jobs.log.flushMaxLines and app.jobs.log.flushIntervalMs.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class JobLogFlushStats {
+  private boolean buffered;
+  private int flushMaxLines;
+  private long flushIntervalMs;
+  private int openBuffers; // jobs currently running with a log buffer
+  private long flushCount;
+  private long sizeFlushes;
+  private long intervalFlushes;
+  private long statusFlushes;
+  private long endFlushes;
+  private long linesFlushed;
+  private double totalFlushMillis;
+  private double maxFlushMillis;
+  private double averageFlushMillis;
+}
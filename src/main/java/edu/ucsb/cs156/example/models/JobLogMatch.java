@@ -0,0 +1,22 @@
+package edu.ucsb.cs156.example.models;
+
+import java.time.ZonedDateTime;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** This is a model class for one line of a job's log that matched a log search. */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class JobLogMatch {
+  private long jobId;
+  private String jobType;
+  private String status;
+  private long seq;
+  private ZonedDateTime loggedAt; // null once the job's log has been compressed
+  private String message;
+}
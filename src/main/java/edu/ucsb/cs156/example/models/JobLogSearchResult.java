@@ -0,0 +1,21 @@
+package edu.ucsb.cs156.example.models;
+
+import java.util.List;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** This is a model class for the lines found by a log search, newest job first. */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class JobLogSearchResult {
+  private List<JobLogMatch> matches;
+  // how many jobs' logs were read to find the matches
+  private int jobsSearched;
+  // true if the search stopped at its limit of matches or of jobs, so older matches were not read
+  private boolean truncated;
+}
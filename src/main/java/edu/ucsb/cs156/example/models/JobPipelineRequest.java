@@ -0,0 +1,20 @@
+package edu.ucsb.cs156.example.models;
+
+import java.util.List;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** This is a model class for the body of a request to launch a job pipeline. */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class JobPipelineRequest {
+  private String name;
+  private Long timeoutMs; // per stage; null means app.jobs.defaultTimeoutMs
+  private int priority; // of every stage
+  private List<JobPipelineStage> stages;
+}
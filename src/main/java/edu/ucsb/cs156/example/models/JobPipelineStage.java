@@ -0,0 +1,26 @@
+package edu.ucsb.cs156.example.models;
+
+import java.util.List;
+import java.util.Map;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * This is a model class for one stage of a job pipeline. When launching a pipeline only name,
+ * jobType, params and dependsOn are given; jobId and status are filled in when it is reported.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class JobPipelineStage {
+  private String name; // unique within the pipeline
+  private String jobType; // a JobFactory must be registered for it
+  private Map<String, String> params;
+  private List<String> dependsOn; // names of stages that must complete before this one starts
+  private Long jobId;
+  private String status;
+}
@@ -0,0 +1,23 @@
+package edu.ucsb.cs156.example.models;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** This is a model class that reports a job pipeline and the status of each of its stages. */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class JobPipelineStatus {
+  private long id;
+  private String name;
+  private ZonedDateTime createdAt;
+  // queued, running, complete, error, cancelled or rejected; see JobPipelines.pipelineStatus
+  private String status;
+  private List<JobPipelineStage> stages;
+}
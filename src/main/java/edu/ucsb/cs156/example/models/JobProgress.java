@@ -0,0 +1,25 @@
+package edu.ucsb.cs156.example.models;
+
+import java.time.ZonedDateTime;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * This is a model class that reports how far along a job is, as last recorded by the job through
+ * JobContext.progress. It is read from a few numeric columns of the job, never from its log.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class JobProgress {
+  private long id;
+  private String status;
+  private Long done; // null until the job first reports progress
+  private Long total; // null if the job does not know how much work there is
+  private Double itemsPerSecond; // rate between the last two recorded updates
+  private ZonedDateTime updatedAt;
+}
@@ -0,0 +1,29 @@
+package edu.ucsb.cs156.example.models;
+
+import java.time.ZonedDateTime;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** This is a model class that reports what the job history retention sweep has removed. */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class JobRetentionStats {
+  private int retentionDays; // 0 means job history is kept forever
+  private boolean archive;
+  private int batchSize;
+  private int maxBatchesPerRun;
+  private ZonedDateTime lastRunAt;
+  private long lastRunJobs;
+  private long lastRunLogLines;
+  private long lastRunMillis;
+  private long totalJobs; // since startup
+  private long totalLogLines;
+  private long totalBatches;
+  private double lastBatchMillis;
+  private double maxBatchMillis;
+}
@@ -0,0 +1,21 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** This is a model class that reports one user's share of the job queue. */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class JobUserQueueStats {
+  private Long createdById; // null for jobs not launched by a user
+  private String email;
+  private int weight;
+  private long queued;
+  private long running; // claimed or running, on any node
+  private double share; // running / weight; the user with the lowest share is served next
+}
@@ -0,0 +1,52 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.JobDependency;
+import java.util.Collection;
+import java.util.List;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/** The JobDependencyRepository is a repository for JobDependency entities. */
+@Repository
+public interface JobDependencyRepository extends CrudRepository<JobDependency, Long> {
+  /**
+   * This method returns the dependencies of the given jobs.
+   *
+   * @param jobIds ids of the dependent jobs
+   * @return the dependencies
+   */
+  List<JobDependency> findAllByJobIdIn(Collection<Long> jobIds);
+
+  /**
+   * This method returns the jobs that depend on a job and have not finished.
+   *
+   * @param dependsOnJobId id of the job depended on
+   * @param statuses the statuses of finished jobs
+   * @return ids of the dependent jobs
+   */
+  @Query(
+      "select d.jobId from job_dependencies d, jobs j"
+          + " where d.dependsOnJobId = :dependsOnJobId and j.id = d.jobId"
+          + " and j.status not in :statuses order by d.jobId")
+  List<Long> findUnfinishedDependentIds(long dependsOnJobId, Collection<String> statuses);
+
+  /**
+   * This method deletes every dependency to or from the given jobs, without loading them.
+   *
+   * @param jobIds ids of the jobs
+   * @return the number of dependencies deleted
+   */
+  @Modifying
+  @Transactional
+  @Query("delete from job_dependencies d where d.jobId in :jobIds or d.dependsOnJobId in :jobIds")
+  int deleteAllByJobIdIn(Collection<Long> jobIds);
+
+  /** This method deletes every dependency with a single statement, without loading them. */
+  @Modifying
+  @Transactional
+  @Query("delete from job_dependencies")
+  void deleteAllInBatch();
+}
@@ -0,0 +1,82 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.JobLogLine;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/** The JobLogLineRepository is a repository for JobLogLine entities. */
+@Repository
+public interface JobLogLineRepository extends CrudRepository<JobLogLine, Long> {
+  /**
+   * This method returns all of the log lines for a job, in the order they were written.
+   *
+   * @param jobId id of the job
+   * @return the log lines for the job ordered by seq
+   */
+  List<JobLogLine> findAllByJobIdOrderBySeqAsc(long jobId);
+
+  /**
+   * This method returns the log lines for a job written after a given line, in order.
+   *
+   * @param jobId id of the job
+   * @param seq seq of the last line already seen
+   * @return the later log lines for the job ordered by seq
+   */
+  List<JobLogLine> findAllByJobIdAndSeqGreaterThanOrderBySeqAsc(long jobId, long seq);
+
+  /**
+   * This method returns the seq of the last line logged by a job.
+   *
+   * @param jobId id of the job
+   * @return the highest seq, or empty if the job has not logged anything
+   */
+  @Query("select max(l.seq) from job_log_lines l where l.jobId = :jobId")
+  Optional<Long> findMaxSeqByJobId(long jobId);
+
+  /**
+   * This method deletes all of the log lines for a job with a single statement.
+   *
+   * @param jobId id of the job
+   */
+  @Modifying
+  @Transactional
+  @Query("delete from job_log_lines l where l.jobId = :jobId")
+  void deleteAllByJobId(long jobId);
+
+  /**
+   * This method copies the log lines of jobs into the job_log_lines_archive table.
+   *
+   * @param jobIds ids of the jobs
+   * @return the number of lines copied
+   */
+  @Modifying
+  @Query(
+      value =
+          "INSERT INTO job_log_lines_archive (id, job_id, seq, logged_at, message)"
+              + " SELECT id, job_id, seq, logged_at, message FROM job_log_lines"
+              + " WHERE job_id IN (:jobIds)",
+      nativeQuery = true)
+  int archiveAllByJobIdIn(Collection<Long> jobIds);
+
+  /**
+   * This method deletes the log lines of jobs with a single statement.
+   *
+   * @param jobIds ids of the jobs
+   * @return the number of lines deleted
+   */
+  @Modifying
+  @Query("delete from job_log_lines l where l.jobId in :jobIds")
+  int deleteAllByJobIdIn(Collection<Long> jobIds);
+
+  /** This method deletes every log line with a single statement, without loading them. */
+  @Modifying
+  @Transactional
+  @Query("delete from job_log_lines")
+  void deleteAllInBatch();
+}
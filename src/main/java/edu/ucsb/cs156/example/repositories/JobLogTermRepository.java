@@ -0,0 +1,33 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.JobLogTerm;
+import java.util.Collection;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * The JobLogTermRepository is a repository for JobLogTerm entities. Terms are added in batches by
+ * JobLogSearch, which inserts only the terms a job does not have yet.
+ */
+@Repository
+public interface JobLogTermRepository extends CrudRepository<JobLogTerm, Long> {
+  /**
+   * This method deletes the terms of jobs with a single statement.
+   *
+   * @param jobIds ids of the jobs
+   * @return the number of terms deleted
+   */
+  @Modifying
+  @Transactional
+  @Query("delete from job_log_terms t where t.jobId in :jobIds")
+  int deleteAllByJobIdIn(Collection<Long> jobIds);
+
+  /** This method deletes every term with a single statement, without loading them. */
+  @Modifying
+  @Transactional
+  @Query("delete from job_log_terms")
+  void deleteAllInBatch();
+}
@@ -0,0 +1,32 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.JobPipeline;
+import java.util.Collection;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/** The JobPipelineRepository is a repository for JobPipeline entities. */
+@Repository
+public interface JobPipelineRepository extends CrudRepository<JobPipeline, Long> {
+  /**
+   * This method deletes pipelines that no longer have any jobs, with a single statement, without
+   * loading them.
+   *
+   * @param ids ids of the pipelines to consider
+   * @return the number of pipelines deleted
+   */
+  @Modifying
+  @Query(
+      "delete from job_pipelines p where p.id in :ids"
+          + " and not exists (select j.id from jobs j where j.pipelineId = p.id)")
+  int deleteAllWithoutJobsByIdIn(Collection<Long> ids);
+
+  /** This method deletes every pipeline with a single statement, without loading them. */
+  @Modifying
+  @Transactional
+  @Query("delete from job_pipelines")
+  void deleteAllInBatch();
+}
@@ -1,8 +1,568 @@
 package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.models.JobProgress;
+import edu.ucsb.cs156.example.models.JobSummary;
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 @Repository
-public interface JobsRepository extends CrudRepository<Job, Long> {}
+public interface JobsRepository extends CrudRepository<Job, Long> {
+  /** The next job a user would run: their queued job with the highest priority, oldest first. */
+  interface QueueHead {
+    Long getId();
+
+    Long getCreatedById();
+
+    String getEmail();
+
+    Integer getPriority();
+  }
+
+  /** The number of a user's jobs in one status. */
+  interface UserJobCount {
+    Long getCreatedById();
+
+    String getEmail();
+
+    String getStatus();
+
+    Long getJobs();
+  }
+
+  /**
+   * This method returns the id of the oldest queued job that the given node may claim, locking the
+   * row and skipping rows already locked by other nodes. Must be called inside a transaction.
+   *
+   * @param nodeId id of the claiming node; jobs pinned to a different node are skipped
+   * @param excludedTypes job types to skip; must not be empty
+   * @return the id of the job, or empty if none is available
+   */
+  @Query(
+      value =
+          "SELECT id FROM jobs WHERE status = 'queued'"
+              + " AND (node_id IS NULL OR node_id = :nodeId)"
+              + " AND job_type NOT IN (:excludedTypes)"
+              + " ORDER BY priority DESC, id LIMIT 1 FOR UPDATE SKIP LOCKED",
+      nativeQuery = true)
+  Optional<Long> findNextClaimableId(String nodeId, Collection<String> excludedTypes);
+
+  /**
+   * This method claims a queued job for a node, recording the claim as the job's first heartbeat.
+   *
+   * @param id id of the job
+   * @param nodeId id of the claiming node
+   * @param now the current time
+   * @return 1 if the job was claimed, 0 if it was no longer queued
+   */
+  @Modifying(clearAutomatically = true)
+  @Query(
+      "update jobs j set j.status = 'claimed', j.nodeId = :nodeId, j.heartbeatAt = :now,"
+          + " j.version = j.version + 1 where j.id = :id and j.status = 'queued'")
+  int claim(long id, String nodeId, ZonedDateTime now);
+
+  /**
+   * This method records that a node is still alive and working on the jobs it has claimed.
+   *
+   * @param nodeId id of the node
+   * @param now the current time
+   * @return the number of jobs whose heartbeat was refreshed
+   */
+  @Modifying
+  @Transactional
+  @Query(
+      "update jobs j set j.heartbeatAt = :now"
+          + " where j.nodeId = :nodeId and j.status in ('claimed', 'running')")
+  int heartbeat(String nodeId, ZonedDateTime now);
+
+  /**
+   * This method returns the ids of claimed or running jobs whose node has not sent a heartbeat
+   * since the cutoff. Jobs claimed before heartbeats were recorded fall back to updated_at.
+   *
+   * @param staleBefore jobs whose last heartbeat is older than this are stale
+   * @param limit the most ids to return
+   * @return the ids, lowest first
+   */
+  @Query(
+      "select j.id from jobs j where j.status in ('claimed', 'running')"
+          + " and coalesce(j.heartbeatAt, j.updatedAt) < :staleBefore order by j.id")
+  List<Long> findStaleIds(ZonedDateTime staleBefore, Limit limit);
+
+  /**
+   * This method puts a stale job back on the queue, if it is durable and was either never started
+   * or is idempotent and has not been re-queued too often already. The conditions are checked in
+   * the update itself, so a job that has just sent a heartbeat is left alone.
+   *
+   * @param id id of the job
+   * @param staleBefore the job is only stale if its last heartbeat is older than this
+   * @param maxRequeues how many times a running job may be re-queued
+   * @return 1 if the job was re-queued, otherwise 0
+   */
+  @Modifying
+  @Transactional
+  @Query(
+      "update jobs j set j.status = 'queued', j.nodeId = null, j.heartbeatAt = null,"
+          + " j.requeues = j.requeues + 1, j.version = j.version + 1"
+          + " where j.id = :id and j.params is not null"
+          + " and (j.status = 'claimed'"
+          + " or (j.status = 'running' and j.idempotent = true and j.requeues < :maxRequeues))"
+          + " and coalesce(j.heartbeatAt, j.updatedAt) < :staleBefore")
+  int requeueStale(long id, ZonedDateTime staleBefore, int maxRequeues);
+
+  /**
+   * This method marks a stale job as abandoned.
+   *
+   * @param id id of the job
+   * @param staleBefore the job is only stale if its last heartbeat is older than this
+   * @return 1 if the job was abandoned, otherwise 0
+   */
+  @Modifying
+  @Transactional
+  @Query(
+      "update jobs j set j.status = 'abandoned', j.version = j.version + 1"
+          + " where j.id = :id and j.status in ('claimed', 'running')"
+          + " and coalesce(j.heartbeatAt, j.updatedAt) < :staleBefore")
+  int abandonStale(long id, ZonedDateTime staleBefore);
+
+  /**
+   * This method returns the jobs owned by a node that are in one of the given states.
+   *
+   * @param nodeId id of the node
+   * @param statuses the states to match
+   * @return the matching jobs
+   */
+  List<Job> findAllByNodeIdAndStatusIn(String nodeId, Collection<String> statuses);
+
+  /**
+   * This method returns the job launched with an idempotency key.
+   *
+   * @param idempotencyKey the key
+   * @return the job, or empty if no job has the key
+   */
+  Optional<Job> findByIdempotencyKey(String idempotencyKey);
+
+  /**
+   * This method returns the oldest job with a coalesce key that is in one of the given states.
+   *
+   * @param coalesceKey the key
+   * @param statuses the states to match
+   * @return the job, or empty if there is none
+   */
+  Optional<Job> findFirstByCoalesceKeyAndStatusInOrderByIdAsc(
+      String coalesceKey, Collection<String> statuses);
+
+  /**
+   * This method counts the jobs in a given state.
+   *
+   * @param status the state, e.g. "queued"
+   * @return the number of jobs in that state
+   */
+  long countByStatus(String status);
+
+  /**
+   * This method cancels a job that has not been claimed yet.
+   *
+   * @param id id of the job
+   * @return 1 if the job was cancelled, 0 if it was not queued or waiting
+   */
+  @Modifying
+  @Transactional
+  @Query(
+      "update jobs j set j.status = 'cancelled', j.version = j.version + 1"
+          + " where j.id = :id and j.status in ('queued', 'waiting')")
+  int cancelQueued(long id);
+
+  /**
+   * This method flags a claimed or running job for cancellation. The node running it notices the
+   * flag the next time it checks.
+   *
+   * @param id id of the job
+   * @return 1 if the job was flagged, 0 if it was not claimed or running
+   */
+  @Modifying
+  @Transactional
+  @Query(
+      "update jobs j set j.cancelRequested = true"
+          + " where j.id = :id and j.status in ('claimed', 'running')")
+  int requestCancel(long id);
+
+  /**
+   * This method returns which of the given jobs have been flagged for cancellation.
+   *
+   * @param ids ids of jobs running on this node
+   * @return the ids that have been flagged
+   */
+  @Query("select j.id from jobs j where j.id in :ids and j.cancelRequested = true")
+  List<Long> findCancelRequestedIds(Collection<Long> ids);
+
+  /**
+   * This method returns just the status of a job, without loading the rest of the row.
+   *
+   * @param id id of the job
+   * @return the status, or empty if there is no such job
+   */
+  @Query("select j.status from jobs j where j.id = :id")
+  Optional<String> findStatusById(long id);
+
+  /**
+   * This method returns the progress of a job, without loading its log or params.
+   *
+   * @param id id of the job
+   * @return the progress, or empty if there is no such job
+   */
+  @Query(
+      "select new edu.ucsb.cs156.example.models.JobProgress(j.id, j.status, j.progressDone,"
+          + " j.progressTotal, j.progressRate, j.progressUpdatedAt) from jobs j where j.id = :id")
+  Optional<JobProgress> findProgressById(long id);
+
+  /**
+   * This method returns the progress of those of the given jobs that are in one of the given
+   * states, without loading their logs or params.
+   *
+   * @param ids ids of the jobs
+   * @param statuses the states to match
+   * @return the progress of the matching jobs
+   */
+  @Query(
+      "select new edu.ucsb.cs156.example.models.JobProgress(j.id, j.status, j.progressDone,"
+          + " j.progressTotal, j.progressRate, j.progressUpdatedAt) from jobs j"
+          + " where j.id in :ids and j.status in :statuses")
+  List<JobProgress> findProgressByIdInAndStatusIn(
+      Collection<Long> ids, Collection<String> statuses);
+
+  /**
+   * This method records the progress of a running job.
+   *
+   * @param id id of the job
+   * @param done the items done so far
+   * @param total the items to do in all, or null if not known
+   * @param rate the items done per second since the previous update, or null if not known
+   * @param updatedAt when the progress was reported
+   * @return 1 if the job exists, otherwise 0
+   */
+  @Modifying
+  @Transactional
+  @Query(
+      "update jobs j set j.progressDone = :done, j.progressTotal = :total,"
+          + " j.progressRate = :rate, j.progressUpdatedAt = :updatedAt where j.id = :id")
+  int updateProgress(long id, long done, Long total, Double rate, ZonedDateTime updatedAt);
+
+  /**
+   * This method returns the compressed log of a job, without loading the rest of the row.
+   *
+   * @param id id of the job
+   * @return the gzipped log, or empty if there is no such job or its log has not been compressed
+   */
+  @Query("select j.logGz from jobs j where j.id = :id")
+  Optional<byte[]> findCompressedLogById(long id);
+
+  /**
+   * This method stores the compressed log of a job that has ended.
+   *
+   * @param id id of the job
+   * @param logGz the gzipped log
+   * @return 1 if the job exists, otherwise 0
+   */
+  @Modifying
+  @Transactional
+  @Query("update jobs j set j.logGz = :logGz where j.id = :id")
+  int storeCompressedLog(long id, byte[] logGz);
+
+  /**
+   * This method returns the ids of jobs that have ended but still have rows in job_log_lines.
+   *
+   * @param statuses the statuses of jobs that have ended
+   * @param limit the most ids to return
+   * @return the ids
+   */
+  @Query(
+      "select distinct j.id from jobs j, job_log_lines l"
+          + " where l.jobId = j.id and j.status in :statuses")
+  List<Long> findEndedIdsWithLogLines(Collection<String> statuses, Limit limit);
+
+  /**
+   * This method returns the log of a job that was run before logs were stored in job_log_lines,
+   * without loading the rest of the row.
+   *
+   * @param id id of the job
+   * @return the log, or empty if there is no such job or it has no log in this column
+   */
+  @Query("select j.log from jobs j where j.id = :id")
+  Optional<String> findLegacyLogById(long id);
+
+  /**
+   * This method records that every word of a job's log is in job_log_terms.
+   *
+   * @param id id of the job
+   * @return 1 if the job exists, otherwise 0
+   */
+  @Modifying
+  @Transactional
+  @Query("update jobs j set j.logIndexed = true where j.id = :id")
+  int markLogIndexed(long id);
+
+  /**
+   * This method returns the ids of jobs that have ended but whose logs have not been indexed, such
+   * as jobs whose node went away or jobs from before logs were indexed.
+   *
+   * @param statuses the statuses of jobs that have ended
+   * @param limit the most ids to return
+   * @return the ids
+   */
+  @Query("select j.id from jobs j where j.logIndexed = false and j.status in :statuses")
+  List<Long> findUnindexedEndedIds(Collection<String> statuses, Limit limit);
+
+  /**
+   * This method returns summaries of the jobs whose logs contain every one of the given terms,
+   * newest first, using only job_log_terms and never the logs themselves. Any filter that is null
+   * is not applied.
+   *
+   * @param terms the terms, which must be distinct
+   * @param termCount the number of terms
+   * @param status only jobs with this status
+   * @param createdAfter only jobs created at or after this time
+   * @param createdBefore only jobs created before this time
+   * @param limit the most jobs to return
+   * @return summaries of the matching jobs ordered by id, descending
+   */
+  @Query(
+      "select new edu.ucsb.cs156.example.models.JobSummary(j.id, u.id, j.createdAt, j.updatedAt,"
+          + " j.jobType, j.status, j.timeoutMs, j.nodeId)"
+          + " from jobs j left join j.createdBy u"
+          + " where j.id in (select t.jobId from job_log_terms t where t.term in :terms"
+          + " group by t.jobId having count(t) = :termCount)"
+          + " and (:status is null or j.status = :status)"
+          + " and (:createdAfter is null or j.createdAt >= :createdAfter)"
+          + " and (:createdBefore is null or j.createdAt < :createdBefore)"
+          + " order by j.id desc")
+  List<JobSummary> findSummariesWithLogTerms(
+      Collection<String> terms,
+      long termCount,
+      String status,
+      ZonedDateTime createdAfter,
+      ZonedDateTime createdBefore,
+      Limit limit);
+
+  /**
+   * This method returns a summary of every job, without the log or params columns.
+   *
+   * @return summaries of all jobs ordered by id
+   */
+  @Query(
+      "select new edu.ucsb.cs156.example.models.JobSummary(j.id, u.id, j.createdAt, j.updatedAt,"
+          + " j.jobType, j.status, j.timeoutMs, j.nodeId)"
+          + " from jobs j left join j.createdBy u order by j.id")
+  List<JobSummary> findAllSummaries();
+
+  /**
+   * This method returns one page of job summaries, newest first, without the log or params columns.
+   * Pages are found by id rather than by offset, so each page costs the same however far back it
+   * is. Any filter that is null is not applied.
+   *
+   * @param beforeId only jobs with an id less than this; use Long.MAX_VALUE for the first page
+   * @param status only jobs with this status
+   * @param createdById only jobs created by the user with this id
+   * @param createdAfter only jobs created at or after this time
+   * @param createdBefore only jobs created before this time
+   * @param limit the page size
+   * @return summaries of the matching jobs ordered by id, descending
+   */
+  @Query(
+      "select new edu.ucsb.cs156.example.models.JobSummary(j.id, u.id, j.createdAt, j.updatedAt,"
+          + " j.jobType, j.status, j.timeoutMs, j.nodeId)"
+          + " from jobs j left join j.createdBy u"
+          + " where j.id < :beforeId"
+          + " and (:status is null or j.status = :status)"
+          + " and (:createdById is null or u.id = :createdById)"
+          + " and (:createdAfter is null or j.createdAt >= :createdAfter)"
+          + " and (:createdBefore is null or j.createdAt < :createdBefore)"
+          + " order by j.id desc")
+  List<JobSummary> findSummaryPage(
+      long beforeId,
+      String status,
+      Long createdById,
+      ZonedDateTime createdAfter,
+      ZonedDateTime createdBefore,
+      Limit limit);
+
+  /**
+   * This method returns the runs of a recurring job, without their logs.
+   *
+   * @param recurringJobId id of the recurring job
+   * @param limit the most runs to return
+   * @return summaries of the runs, newest first
+   */
+  @Query(
+      "select new edu.ucsb.cs156.example.models.JobSummary(j.id, u.id, j.createdAt, j.updatedAt,"
+          + " j.jobType, j.status, j.timeoutMs, j.nodeId)"
+          + " from jobs j left join j.createdBy u"
+          + " where j.recurringJobId = :recurringJobId order by j.id desc")
+  List<JobSummary> findRunsOfRecurringJob(long recurringJobId, Limit limit);
+
+  /**
+   * This method locks and returns the ids of the oldest finished jobs that have not been updated
+   * since the cutoff. Jobs with no updated_at (run before it was recorded) count as old. Rows
+   * locked by another node's sweep are skipped.
+   *
+   * @param statuses the statuses of finished jobs
+   * @param cutoff only jobs last updated before this time
+   * @param limit the most ids to return
+   * @return the ids, lowest first
+   */
+  @Query(
+      value =
+          "SELECT id FROM jobs WHERE status IN (:statuses)"
+              + " AND (updated_at IS NULL OR updated_at < :cutoff)"
+              + " ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED",
+      nativeQuery = true)
+  List<Long> findExpiredIds(Collection<String> statuses, ZonedDateTime cutoff, int limit);
+
+  /**
+   * This method returns the pipelines that jobs are stages of.
+   *
+   * @param ids ids of the jobs
+   * @return ids of their pipelines, each once
+   */
+  @Query("select distinct j.pipelineId from jobs j where j.id in :ids and j.pipelineId is not null")
+  List<Long> findPipelineIdsByIdIn(Collection<Long> ids);
+
+  /**
+   * This method copies jobs into the jobs_archive table.
+   *
+   * @param ids ids of the jobs
+   * @return the number of jobs copied
+   */
+  @Modifying
+  @Query(
+      value =
+          "INSERT INTO jobs_archive (id, created_by_id, created_at, updated_at, job_type, status,"
+              + " timeout_ms, params, node_id, log, log_gz, archived_at)"
+              + " SELECT id, created_by_id, created_at, updated_at, job_type, status, timeout_ms,"
+              + " params, node_id, log, log_gz, CURRENT_TIMESTAMP FROM jobs WHERE id IN (:ids)",
+      nativeQuery = true)
+  int archiveAllByIdIn(Collection<Long> ids);
+
+  /**
+   * This method deletes jobs with a single statement, without loading them.
+   *
+   * @param ids ids of the jobs
+   * @return the number of jobs deleted
+   */
+  @Modifying
+  @Query("delete from jobs j where j.id in :ids")
+  int deleteAllByIdIn(Collection<Long> ids);
+
+  /**
+   * This method deletes a job if it has finished, without loading it.
+   *
+   * @param id id of the job
+   * @param statuses the statuses of finished jobs
+   * @return 1 if the job was deleted, 0 if it does not exist or has not finished
+   */
+  @Modifying
+  @Query("delete from jobs j where j.id = :id and j.status in :statuses")
+  int deleteFinishedById(long id, Collection<String> statuses);
+
+  /** This method deletes every job with a single statement, without loading them. */
+  @Modifying
+  @Transactional
+  @Query("delete from jobs")
+  void deleteAllInBatch();
+
+  /**
+   * This method returns, for each user with queued jobs that a node may run, the job of theirs that
+   * would run next. Jobs created by no user are grouped together.
+   *
+   * @param nodeId id of the claiming node; jobs pinned to other nodes are skipped
+   * @param excludedTypes job types the node has no capacity for; must not be empty
+   * @return one queued job per user
+   */
+  @Query(
+      value =
+          "SELECT h.id AS id, h.created_by_id AS createdById, u.email AS email,"
+              + " h.priority AS priority FROM ("
+              + "SELECT id, created_by_id, priority, ROW_NUMBER() OVER"
+              + " (PARTITION BY created_by_id ORDER BY priority DESC, id) AS rn"
+              + " FROM jobs WHERE status = 'queued'"
+              + " AND (node_id IS NULL OR node_id = :nodeId)"
+              + " AND job_type NOT IN (:excludedTypes)) h"
+              + " LEFT JOIN users u ON u.id = h.created_by_id WHERE h.rn = 1",
+      nativeQuery = true)
+  List<QueueHead> findQueueHeads(String nodeId, Collection<String> excludedTypes);
+
+  /**
+   * This method counts the queued, claimed and running jobs of each user.
+   *
+   * @return one row per user and status
+   */
+  @Query(
+      value =
+          "SELECT j.created_by_id AS createdById, u.email AS email, j.status AS status,"
+              + " COUNT(*) AS jobs FROM jobs j LEFT JOIN users u ON u.id = j.created_by_id"
+              + " WHERE j.status IN ('queued', 'claimed', 'running')"
+              + " GROUP BY j.created_by_id, u.email, j.status",
+      nativeQuery = true)
+  List<UserJobCount> countActiveJobsByUser();
+
+  /**
+   * This method returns the stages of a pipeline.
+   *
+   * @param pipelineId id of the pipeline
+   * @return the stages, in the order they were created
+   */
+  List<Job> findAllByPipelineIdOrderByIdAsc(long pipelineId);
+
+  /**
+   * This method returns the pipelines that have stages waiting on their dependencies.
+   *
+   * @return ids of the pipelines
+   */
+  @Query("select distinct j.pipelineId from jobs j where j.status = 'waiting'")
+  List<Long> findWaitingPipelineIds();
+
+  /**
+   * This method queues the waiting stages of a pipeline whose dependencies have all completed.
+   *
+   * @param pipelineId id of the pipeline
+   * @return the number of stages queued
+   */
+  @Modifying
+  @Transactional
+  @Query(
+      value =
+          "UPDATE jobs SET status = 'queued', version = version + 1"
+              + " WHERE pipeline_id = :pipelineId AND status = 'waiting'"
+              + " AND NOT EXISTS (SELECT 1 FROM job_dependencies d"
+              + " JOIN jobs p ON p.id = d.depends_on_job_id"
+              + " WHERE d.job_id = jobs.id AND p.status <> 'complete')",
+      nativeQuery = true)
+  int queueReadyStages(long pipelineId);
+
+  /**
+   * This method skips the waiting stages of a pipeline that have a dependency which failed, was
+   * cancelled or was itself skipped. Call it until it returns 0 to skip everything downstream.
+   *
+   * @param pipelineId id of the pipeline
+   * @return the number of stages skipped
+   */
+  @Modifying
+  @Transactional
+  @Query(
+      value =
+          "UPDATE jobs SET status = 'skipped', version = version + 1"
+              + " WHERE pipeline_id = :pipelineId AND status = 'waiting'"
+              + " AND EXISTS (SELECT 1 FROM job_dependencies d"
+              + " JOIN jobs p ON p.id = d.depends_on_job_id WHERE d.job_id = jobs.id"
+              + " AND p.status IN ('error', 'cancelled', 'timed_out', 'rejected', 'skipped',"
+              + " 'abandoned'))",
+      nativeQuery = true)
+  int skipBlockedStages(long pipelineId);
+}
@@ -0,0 +1,52 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.RecurringJob;
+import java.time.ZonedDateTime;
+import java.util.List;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/** The RecurringJobRepository is a repository for RecurringJob entities. */
+@Repository
+public interface RecurringJobRepository extends CrudRepository<RecurringJob, Long> {
+  /**
+   * This method returns the enabled recurring jobs that are due to run.
+   *
+   * @param now the current time
+   * @return the due jobs, the longest overdue first
+   */
+  List<RecurringJob> findAllByEnabledTrueAndNextRunAtLessThanEqualOrderByNextRunAtAsc(
+      ZonedDateTime now);
+
+  /**
+   * This method takes one run of a recurring job by moving its next run time on, provided no other
+   * node has already done so. The row stays locked until the caller's transaction ends, so the run
+   * is either launched by this node or not taken at all.
+   *
+   * @param id id of the recurring job
+   * @param due the run being taken, i.e. the next run time this node read
+   * @param next the run after it
+   * @param nodeId id of the node taking the run
+   * @return 1 if this node took the run, 0 if another node already had
+   */
+  @Modifying
+  @Transactional
+  @Query(
+      "update recurring_jobs r set r.nextRunAt = :next, r.lastRunAt = :due,"
+          + " r.lastNodeId = :nodeId where r.id = :id and r.enabled = true and r.nextRunAt = :due")
+  int takeRun(long id, ZonedDateTime due, ZonedDateTime next, String nodeId);
+
+  /**
+   * This method records the job launched for the latest run of a recurring job.
+   *
+   * @param id id of the recurring job
+   * @param jobId id of the job
+   */
+  @Modifying
+  @Transactional
+  @Query("update recurring_jobs r set r.lastJobId = :jobId where r.id = :id")
+  void recordLastJob(long id, long jobId);
+}
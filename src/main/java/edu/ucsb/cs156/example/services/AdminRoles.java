@@ -0,0 +1,33 @@
+package edu.ucsb.cs156.example.services;
+
+import java.util.List;
+import java.util.Set;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * This service holds the emails configured as admins in app.admin.emails, in a hash set.
+ *
+ * <p>Whether a user is an admin is decided when they log in: {@link UserLogins} grants admin to the
+ * configured emails, and the user it returns carries the admin flag as stored, so no other lookup
+ * is needed.
+ */
+@Service
+public class AdminRoles {
+  private Set<String> adminEmails = Set.of();
+
+  @Value("${app.admin.emails}")
+  void setAdminEmails(List<String> adminEmails) {
+    this.adminEmails = Set.copyOf(adminEmails);
+  }
+
+  /**
+   * Whether an email is one of app.admin.emails.
+   *
+   * @param email email address of the user
+   * @return true if the email is configured as an admin
+   */
+  public boolean isConfiguredAdmin(String email) {
+    return adminEmails.contains(email);
+  }
+}
@@ -3,10 +3,10 @@ package edu.ucsb.cs156.example.services;
 import edu.ucsb.cs156.example.entities.User;
 import edu.ucsb.cs156.example.models.CurrentUser;
 import edu.ucsb.cs156.example.repositories.UserRepository;
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -18,22 +18,37 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
 import org.springframework.security.oauth2.core.user.OAuth2User;
 import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
 /**
  * This is a service that provides information about the current user.
  *
  * <p>This is the version of the service used in production.
+ *
+ * <p>The user is resolved at most once per request, and kept for app.users.cacheTtlMs across
+ * requests, keyed by the OAuth sub (or the email, if there is no sub), so that most requests do not
+ * query the users table at all. The cache holds its own copy of each user and hands out copies of
+ * it, so a caller that changes the user it was given does not change what later requests see. A
+ * user is evicted by {@link UserChangeListener} whenever it is saved through the UserRepository.
  */
 @Slf4j
 @Service("currentUser")
 @Primary
 public class CurrentUserServiceImpl extends CurrentUserService {
+  // request attribute holding the user already resolved for the current request
+  private static final String REQUEST_USER = CurrentUserServiceImpl.class.getName() + ".user";
+
   @Autowired private UserRepository userRepository;
 
   @Autowired GrantedAuthoritiesService grantedAuthoritiesService;
 
-  @Value("${app.admin.emails}")
-  private final List<String> adminEmails = new ArrayList<String>();
+  @Value("${app.users.cacheTtlMs:60000}")
+  private long cacheTtlMs;
+
+  private record CachedUser(User user, long expiresAtNanos) {}
+
+  private final Map<String, CachedUser> cachedUsers = new ConcurrentHashMap<>();
 
   /**
    * This method returns the current user as a User object.
@@ -50,56 +65,66 @@ public class CurrentUserServiceImpl extends CurrentUserService {
    * This method obtains the current user that is logged in with OAuth2, if any. The parameters are
    * automatically injected by Spring.
    *
-   * <p>This method also has a side effect of storing the user in the database if they are not
-   * already there.
+   * <p>The user is read from the database, where they were stored when they logged in; see {@link
+   * UserLogins}. A user read less than app.users.cacheTtlMs ago is returned from the cache instead.
    *
    * @param securityContext the security context (provided by Spring)
    * @param authentication the authentication token (provided by Spring)
-   * @return the User object representing the current user
+   * @return the User object representing the current user, or null if they are no longer stored
    */
   public User getOAuth2AuthenticatedUser(
       SecurityContext securityContext, Authentication authentication) {
     OAuth2User oAuthUser = ((OAuth2AuthenticationToken) authentication).getPrincipal();
-    String email = oAuthUser.getAttribute("email");
     String googleSub = oAuthUser.getAttribute("sub");
-    String pictureUrl = oAuthUser.getAttribute("picture");
-    String fullName = oAuthUser.getAttribute("name");
-    String givenName = oAuthUser.getAttribute("given_name");
-    String familyName = oAuthUser.getAttribute("family_name");
-    boolean emailVerified = oAuthUser.getAttribute("email_verified");
-    String locale = oAuthUser.getAttribute("locale");
-    String hostedDomain = oAuthUser.getAttribute("hd");
-
-    java.util.Map<java.lang.String, java.lang.Object> attrs = oAuthUser.getAttributes();
-    log.info("attrs={}", attrs);
+    String key = googleSub != null ? googleSub : oAuthUser.getAttribute("email");
 
-    Optional<User> ou = userRepository.findByEmail(email);
-    if (ou.isPresent()) {
-      User u = ou.get();
-      if (adminEmails.contains(email) && !u.getAdmin()) {
-        u.setAdmin(true);
-        userRepository.save(u);
+    CachedUser cached = cachedUsers.get(key);
+    if (cached != null) {
+      if (cached.expiresAtNanos() - System.nanoTime() > 0) {
+        return copy(cached.user());
       }
-      return u;
+      cachedUsers.remove(key, cached);
+    }
+    log.info("attrs={}", oAuthUser.getAttributes());
+    String email = oAuthUser.getAttribute("email");
+    Optional<User> stored = userRepository.findByEmail(email);
+    if (stored.isEmpty()) {
+      log.warn("User {} is logged in but no longer stored", email);
+      return null;
+    }
+    User u = stored.get();
+    if (cacheTtlMs > 0) {
+      cachedUsers.put(key, new CachedUser(copy(u), System.nanoTime() + cacheTtlMs * 1_000_000L));
     }
-
-    User u =
-        User.builder()
-            .googleSub(googleSub)
-            .email(email)
-            .pictureUrl(pictureUrl)
-            .fullName(fullName)
-            .givenName(givenName)
-            .familyName(familyName)
-            .emailVerified(emailVerified)
-            .locale(locale)
-            .hostedDomain(hostedDomain)
-            .admin(adminEmails.contains(email))
-            .build();
-    userRepository.save(u);
     return u;
   }
 
+  private static User copy(User user) {
+    return User.builder()
+        .id(user.getId())
+        .email(user.getEmail())
+        .googleSub(user.getGoogleSub())
+        .pictureUrl(user.getPictureUrl())
+        .fullName(user.getFullName())
+        .givenName(user.getGivenName())
+        .familyName(user.getFamilyName())
+        .emailVerified(user.getEmailVerified())
+        .locale(user.getLocale())
+        .hostedDomain(user.getHostedDomain())
+        .admin(user.getAdmin())
+        .build();
+  }
+
+  /**
+   * Drop a user from the cache, so that the next request reads them from the database again. This
+   * is called whenever a user is saved; see {@link UserChangeListener}.
+   *
+   * @param email email address of the user
+   */
+  public void evictUser(String email) {
+    cachedUsers.values().removeIf(cached -> email.equals(cached.user().getEmail()));
+  }
+
   /**
    * This method returns the current user as a User object.
    *
@@ -110,7 +135,16 @@ public class CurrentUserServiceImpl extends CurrentUserService {
     Authentication authentication = securityContext.getAuthentication();
 
     if (authentication instanceof OAuth2AuthenticationToken) {
-      return getOAuth2AuthenticatedUser(securityContext, authentication);
+      RequestAttributes request = RequestContextHolder.getRequestAttributes();
+      if (request == null) {
+        return getOAuth2AuthenticatedUser(securityContext, authentication);
+      }
+      if (request.getAttribute(REQUEST_USER, RequestAttributes.SCOPE_REQUEST) instanceof User u) {
+        return u;
+      }
+      User u = getOAuth2AuthenticatedUser(securityContext, authentication);
+      request.setAttribute(REQUEST_USER, u, RequestAttributes.SCOPE_REQUEST);
+      return u;
     }
     return null;
   }
@@ -0,0 +1,31 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.User;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+/**
+ * This JPA entity listener drops a user from {@link CurrentUserServiceImpl}'s cache whenever the
+ * user is saved or deleted through the {@link edu.ucsb.cs156.example.repositories.UserRepository},
+ * so that a change such as a new admin flag is seen on the user's next request.
+ */
+@Component
+public class UserChangeListener {
+  @Lazy @Autowired private CurrentUserServiceImpl currentUserService;
+
+  /**
+   * Evict a user that has just been stored, changed or deleted.
+   *
+   * @param user the user
+   */
+  @PostPersist
+  @PostUpdate
+  @PostRemove
+  void userChanged(User user) {
+    currentUserService.evictUser(user.getEmail());
+  }
+}
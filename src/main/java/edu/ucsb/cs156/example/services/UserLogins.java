@@ -0,0 +1,111 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.User;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+
+/**
+ * This service records users as they log in with OAuth2.
+ *
+ * <p>A login is one statement: it stores the user if no user has their email yet, grants them admin
+ * if their email is one of app.admin.emails, and returns the stored user, admin flag included.
+ * Since users.email is unique and the statement is an upsert (INSERT ... ON CONFLICT on Postgres,
+ * MERGE on H2), concurrent first logins with one email cannot create two users.
+ */
+@Slf4j
+@Service
+public class UserLogins {
+  private static final String COLUMNS =
+      "email, google_sub, picture_url, full_name, given_name, family_name, email_verified, locale,"
+          + " hosted_domain, admin";
+
+  static final String POSTGRES_UPSERT =
+      "INSERT INTO users ("
+          + COLUMNS
+          + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)"
+          + " ON CONFLICT (email) DO UPDATE SET admin = users.admin OR EXCLUDED.admin"
+          + " RETURNING id, "
+          + COLUMNS;
+
+  static final String MERGE_UPSERT =
+      "SELECT id, "
+          + COLUMNS
+          + " FROM FINAL TABLE (MERGE INTO users u"
+          + " USING (VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)) AS v ("
+          + COLUMNS
+          + ") ON u.email = v.email"
+          + " WHEN MATCHED THEN UPDATE SET admin = u.admin OR v.admin"
+          + " WHEN NOT MATCHED THEN INSERT ("
+          + COLUMNS
+          + ") VALUES (v.email, v.google_sub, v.picture_url, v.full_name, v.given_name,"
+          + " v.family_name, v.email_verified, v.locale, v.hosted_domain, v.admin))";
+
+  private static final RowMapper<User> USER =
+      (rs, rowNum) ->
+          User.builder()
+              .id(rs.getLong("id"))
+              .email(rs.getString("email"))
+              .googleSub(rs.getString("google_sub"))
+              .pictureUrl(rs.getString("picture_url"))
+              .fullName(rs.getString("full_name"))
+              .givenName(rs.getString("given_name"))
+              .familyName(rs.getString("family_name"))
+              .emailVerified(rs.getBoolean("email_verified"))
+              .locale(rs.getString("locale"))
+              .hostedDomain(rs.getString("hosted_domain"))
+              .admin(rs.getBoolean("admin"))
+              .build();
+
+  @Autowired private JdbcTemplate jdbcTemplate;
+
+  @Autowired private AdminRoles adminRoles;
+
+  private volatile String upsert;
+
+  /**
+   * Record a login: store the user if they are new, and grant them admin if their email is one of
+   * app.admin.emails. A user who already exists is otherwise left as stored.
+   *
+   * @param attributes the OAuth2 user's attributes, e.g. email, sub and name
+   * @return the stored user
+   */
+  public User login(Map<String, Object> attributes) {
+    String email = (String) attributes.get("email");
+    Object[] values = {
+      email,
+      attributes.get("sub"),
+      attributes.get("picture"),
+      attributes.get("name"),
+      attributes.get("given_name"),
+      attributes.get("family_name"),
+      Boolean.TRUE.equals(attributes.get("email_verified")),
+      attributes.get("locale"),
+      attributes.get("hd"),
+      adminRoles.isConfiguredAdmin(email)
+    };
+    try {
+      return jdbcTemplate.queryForObject(upsert(), USER, values);
+    } catch (DuplicateKeyException e) {
+      // only possible with MERGE, if another login inserted the user after it looked: it is there
+      // now, so the second attempt updates it
+      log.info("Concurrent first logins of {}; retrying", email);
+      return jdbcTemplate.queryForObject(upsert(), USER, values);
+    }
+  }
+
+  private String upsert() {
+    if (upsert == null) {
+      String database =
+          jdbcTemplate.execute(
+              (ConnectionCallback<String>) c -> c.getMetaData().getDatabaseProductName());
+      upsert = "PostgreSQL".equals(database) ? POSTGRES_UPSERT : MERGE_UPSERT;
+    }
+    return upsert;
+  }
+}
@@ -0,0 +1,222 @@
+package edu.ucsb.cs156.example.services.imports;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.jobs.ImportJob;
+import edu.ucsb.cs156.example.services.jobs.JobContext;
+import edu.ucsb.cs156.example.services.jobs.JobOptions;
+import edu.ucsb.cs156.example.services.jobs.JobService;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.StatementCreatorUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * This service bulk imports CSV or NDJSON files into the tables listed in {@link ImportTable}, as
+ * jobs.
+ *
+ * <p>The file is read one record at a time and each record is validated as it is read. Valid rows
+ * are inserted with JDBC batches of app.imports.batchSize rows, committing every
+ * app.imports.chunkSize rows, so neither the file nor the rows need to fit in memory and a large
+ * import does not hold one long transaction. If a chunk fails, for instance because a row breaks a
+ * constraint, its rows are retried one by one so that only the offending rows are rejected.
+ * Progress and rejected rows are reported in the job log.
+ */
+@Slf4j
+@Service
+public class BulkImporter {
+  @Autowired private JdbcTemplate jdbcTemplate;
+
+  @Autowired private PlatformTransactionManager transactionManager;
+
+  @Autowired private JobService jobService;
+
+  @Autowired private ObjectMapper mapper;
+
+  @Value("${app.imports.batchSize:500}")
+  private int batchSize;
+
+  @Value("${app.imports.chunkSize:5000}")
+  private int chunkSize;
+
+  @Value("${app.imports.maxRejectedLogged:100}")
+  private int maxRejectedLogged;
+
+  /** What an import did. */
+  public record ImportResult(long imported, long rejected) {}
+
+  /**
+   * Copy an uploaded file to a temporary file and launch a job on this node that imports it. The
+   * temporary file is deleted when the job ends.
+   *
+   * @param table the table to import into
+   * @param format the file's format
+   * @param upload the file
+   * @return the job
+   * @throws IOException if the file cannot be copied
+   */
+  public Job launch(ImportTable table, ImportFormat format, InputStream upload) throws IOException {
+    return launch(table, format, upload, JobOptions.DEFAULTS);
+  }
+
+  /**
+   * Copy an uploaded file to a temporary file and launch a job on this node that imports it, with
+   * options such as an idempotency key. If the job is not launched, because the queue is full or
+   * one was already launched with the same key, the temporary file is deleted at once.
+   *
+   * @param table the table to import into
+   * @param format the file's format
+   * @param upload the file
+   * @param options the options for the job
+   * @return the job
+   * @throws IOException if the file cannot be copied
+   */
+  public Job launch(ImportTable table, ImportFormat format, InputStream upload, JobOptions options)
+      throws IOException {
+    Path file = Files.createTempFile("import-" + table.getName() + "-", ".tmp");
+    Files.copy(upload, file, StandardCopyOption.REPLACE_EXISTING);
+    Job job =
+        jobService.runAsJob(
+            ImportJob.builder().importer(this).table(table).format(format).file(file).build(),
+            options);
+    if ("rejected".equals(job.getStatus()) || job.getDuplicate()) {
+      Files.deleteIfExists(file);
+    }
+    return job;
+  }
+
+  /**
+   * Import a file, logging progress and rejected rows to the job's log.
+   *
+   * @param ctx the job's context
+   * @param table the table to import into
+   * @param format the file's format
+   * @param file the file
+   * @return how many rows were imported and rejected
+   * @throws IOException if the file cannot be read
+   * @throws IllegalArgumentException if the file names fields the table does not have
+   */
+  public ImportResult importFile(JobContext ctx, ImportTable table, ImportFormat format, Path file)
+      throws IOException {
+    Progress progress = new Progress(ctx);
+    try (ImportRecords records =
+        format.open(Files.newBufferedReader(file, StandardCharsets.UTF_8), mapper)) {
+      if (records instanceof CsvImportRecords csv) {
+        table.checkFields(csv.getHeader());
+      }
+      ctx.log(
+          "Importing %s into %s in batches of %d rows, committing every %d rows"
+              .formatted(format, table.getName(), batchSize, chunkSize));
+      List<Object[]> rows = new ArrayList<>(chunkSize);
+      List<Long> lines = new ArrayList<>(chunkSize);
+      while (true) {
+        Map<String, String> record;
+        try {
+          record = records.next();
+          if (record == null) {
+            break;
+          }
+          rows.add(table.parse(record));
+          lines.add(records.getLineNumber());
+        } catch (IllegalArgumentException e) {
+          progress.reject(records.getLineNumber(), e.getMessage());
+        }
+        if (rows.size() >= chunkSize) {
+          insertChunk(table, rows, lines, progress);
+          progress.report(records.getLineNumber());
+          ctx.checkCancelled();
+        }
+      }
+      insertChunk(table, rows, lines, progress);
+    }
+    long rowsRead = progress.imported + progress.rejected;
+    ctx.progress(rowsRead, rowsRead);
+    if (progress.rejected > maxRejectedLogged) {
+      ctx.log(
+          "%d more rejected rows were not logged".formatted(progress.rejected - maxRejectedLogged));
+    }
+    ctx.log(
+        "Imported %d rows into %s; rejected %d"
+            .formatted(progress.imported, table.getName(), progress.rejected));
+    return new ImportResult(progress.imported, progress.rejected);
+  }
+
+  private void insertChunk(
+      ImportTable table, List<Object[]> rows, List<Long> lines, Progress progress) {
+    if (rows.isEmpty()) {
+      return;
+    }
+    TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+    try {
+      transaction.executeWithoutResult(
+          status ->
+              jdbcTemplate.batchUpdate(
+                  table.getInsertSql(), rows, batchSize, (ps, row) -> bind(table, ps, row)));
+      progress.imported += rows.size();
+    } catch (DataAccessException e) {
+      // the chunk was rolled back; find the rows that broke it
+      for (int i = 0; i < rows.size(); i++) {
+        Object[] row = rows.get(i);
+        try {
+          transaction.executeWithoutResult(
+              status -> jdbcTemplate.update(table.getInsertSql(), ps -> bind(table, ps, row)));
+          progress.imported++;
+        } catch (DataAccessException rowError) {
+          progress.reject(
+              lines.get(i), NestedExceptionUtils.getMostSpecificCause(rowError).getMessage());
+        }
+      }
+    }
+    rows.clear();
+    lines.clear();
+  }
+
+  private static void bind(ImportTable table, PreparedStatement ps, Object[] row)
+      throws SQLException {
+    List<ImportColumn> columns = table.getColumns();
+    for (int i = 0; i < row.length; i++) {
+      StatementCreatorUtils.setParameterValue(ps, i + 1, columns.get(i).type().sqlType(), row[i]);
+    }
+  }
+
+  /** Counts for one import, logging rejected rows up to app.imports.maxRejectedLogged. */
+  private class Progress {
+    private final JobContext ctx;
+    private long imported;
+    private long rejected;
+
+    Progress(JobContext ctx) {
+      this.ctx = ctx;
+    }
+
+    void reject(long line, String reason) {
+      rejected++;
+      if (rejected <= maxRejectedLogged) {
+        ctx.log("Rejected line %d: %s".formatted(line, reason));
+      }
+    }
+
+    void report(long line) {
+      // the number of rows in the file is not known until it has all been read
+      ctx.progress(imported + rejected, 0);
+      ctx.log("Read %d lines: %d rows imported, %d rejected".formatted(line, imported, rejected));
+    }
+  }
+}
@@ -0,0 +1,116 @@
+package edu.ucsb.cs156.example.services.imports;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads CSV records one at a time. Fields may be quoted with double quotes, in which case they can
+ * hold commas, line breaks and doubled quotes. The first record names the fields; an empty field is
+ * read as a missing value.
+ */
+class CsvImportRecords implements ImportRecords {
+  private final BufferedReader reader;
+  private final List<String> header;
+  private long lineNumber;
+  private long nextLineNumber = 1;
+
+  CsvImportRecords(BufferedReader reader) throws IOException {
+    this.reader = reader;
+    List<String> fields = readRecord();
+    if (fields == null) {
+      throw new IllegalArgumentException("CSV file is empty; its first line must name the fields");
+    }
+    if (new HashSet<>(fields).size() < fields.size()) {
+      throw new IllegalArgumentException("CSV header names a field twice: " + fields);
+    }
+    this.header = fields.stream().map(String::trim).toList();
+  }
+
+  List<String> getHeader() {
+    return header;
+  }
+
+  @Override
+  public Map<String, String> next() throws IOException {
+    List<String> fields;
+    do {
+      fields = readRecord();
+    } while (fields != null && fields.size() == 1 && fields.get(0).isEmpty());
+    if (fields == null) {
+      return null;
+    }
+    if (fields.size() != header.size()) {
+      throw new IllegalArgumentException(
+          "expected %d fields but found %d".formatted(header.size(), fields.size()));
+    }
+    Map<String, String> record = new LinkedHashMap<>();
+    for (int i = 0; i < fields.size(); i++) {
+      record.put(header.get(i), fields.get(i).isEmpty() ? null : fields.get(i));
+    }
+    return record;
+  }
+
+  @Override
+  public long getLineNumber() {
+    return lineNumber;
+  }
+
+  /** Read one record, which may span lines if a quoted field holds a line break. */
+  private List<String> readRecord() throws IOException {
+    String line = reader.readLine();
+    if (line == null) {
+      return null;
+    }
+    lineNumber = nextLineNumber++;
+    List<String> fields = new ArrayList<>();
+    StringBuilder field = new StringBuilder();
+    boolean quoted = false;
+    int i = 0;
+    while (true) {
+      if (i == line.length()) {
+        if (!quoted) {
+          break;
+        }
+        // a line break inside a quoted field
+        line = reader.readLine();
+        if (line == null) {
+          throw new IllegalArgumentException("unterminated quoted field");
+        }
+        nextLineNumber++;
+        field.append('\n');
+        i = 0;
+        continue;
+      }
+      char c = line.charAt(i++);
+      if (quoted) {
+        if (c != '"') {
+          field.append(c);
+        } else if (i < line.length() && line.charAt(i) == '"') {
+          field.append('"');
+          i++;
+        } else {
+          quoted = false;
+        }
+      } else if (c == '"' && field.isEmpty()) {
+        quoted = true;
+      } else if (c == ',') {
+        fields.add(field.toString());
+        field.setLength(0);
+      } else {
+        field.append(c);
+      }
+    }
+    fields.add(field.toString());
+    return fields;
+  }
+
+  @Override
+  public void close() throws IOException {
+    reader.close();
+  }
+}
@@ -0,0 +1,90 @@
+package edu.ucsb.cs156.example.services.imports;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+
+/**
+ * A column that rows can be imported into.
+ *
+ * @param field the entity's field name, which is what imported files call the column
+ * @param column the database column
+ * @param type how values are parsed
+ * @param required whether every row needs a value
+ */
+public record ImportColumn(String field, String column, Type type, boolean required) {
+
+  /** The types of value an imported column can hold. */
+  public enum Type {
+    STRING(Types.VARCHAR),
+    LONG(Types.BIGINT),
+    INT(Types.INTEGER),
+    DOUBLE(Types.DOUBLE),
+    // missing values are stored as false, since the entities use primitive booleans
+    BOOLEAN(Types.BOOLEAN),
+    // ISO local date-time, e.g. 2024-01-08T08:00:00
+    DATETIME(Types.TIMESTAMP);
+
+    private final int sqlType;
+
+    Type(int sqlType) {
+      this.sqlType = sqlType;
+    }
+
+    public int sqlType() {
+      return sqlType;
+    }
+  }
+
+  static ImportColumn string(String field, String column) {
+    return new ImportColumn(field, column, Type.STRING, false);
+  }
+
+  static ImportColumn required(String field, String column, Type type) {
+    return new ImportColumn(field, column, type, true);
+  }
+
+  static ImportColumn optional(String field, String column, Type type) {
+    return new ImportColumn(field, column, type, false);
+  }
+
+  /**
+   * Parse a value for this column.
+   *
+   * @param value the value as it appeared in the file, or null if it was missing
+   * @return the value to bind to the insert
+   * @throws IllegalArgumentException if the value is missing but required, or cannot be parsed
+   */
+  public Object parse(String value) {
+    if (value == null || value.isEmpty()) {
+      if (required) {
+        throw new IllegalArgumentException(field + " is required");
+      }
+      return type == Type.BOOLEAN ? Boolean.FALSE : null;
+    }
+    try {
+      return switch (type) {
+        case STRING -> value;
+        case LONG -> Long.parseLong(value.trim());
+        case INT -> Integer.parseInt(value.trim());
+        case DOUBLE -> Double.parseDouble(value.trim());
+        case BOOLEAN -> parseBoolean(value.trim());
+        case DATETIME -> Timestamp.valueOf(LocalDateTime.parse(value.trim()));
+      };
+    } catch (NumberFormatException | DateTimeParseException e) {
+      throw new IllegalArgumentException(
+          "%s is not a valid %s: %s".formatted(field, type.name().toLowerCase(), value));
+    }
+  }
+
+  private Boolean parseBoolean(String value) {
+    if (value.equalsIgnoreCase("true")) {
+      return Boolean.TRUE;
+    }
+    if (value.equalsIgnoreCase("false")) {
+      return Boolean.FALSE;
+    }
+    throw new IllegalArgumentException("%s is not a valid boolean: %s".formatted(field, value));
+  }
+}
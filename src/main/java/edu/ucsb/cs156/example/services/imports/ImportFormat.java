@@ -0,0 +1,28 @@
+package edu.ucsb.cs156.example.services.imports;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.BufferedReader;
+import java.io.IOException;
+
+/** The file formats that can be bulk imported. */
+public enum ImportFormat {
+  /** RFC 4180 CSV whose first line names the fields. */
+  CSV,
+  /** One JSON object per line, as in the entities' JSON. */
+  NDJSON;
+
+  /**
+   * Open a file in this format.
+   *
+   * @param reader the file
+   * @param mapper the mapper used to parse JSON
+   * @return its records
+   * @throws IOException if the file cannot be read
+   */
+  public ImportRecords open(BufferedReader reader, ObjectMapper mapper) throws IOException {
+    return switch (this) {
+      case CSV -> new CsvImportRecords(reader);
+      case NDJSON -> new NdjsonImportRecords(reader, mapper);
+    };
+  }
+}
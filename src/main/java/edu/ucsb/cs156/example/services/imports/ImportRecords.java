@@ -0,0 +1,26 @@
+package edu.ucsb.cs156.example.services.imports;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * The records of an uploaded file, read one at a time so that files of any size can be imported.
+ */
+public interface ImportRecords extends Closeable {
+  /**
+   * Read the next record.
+   *
+   * @return its values by field, or null at the end of the file
+   * @throws IOException if the file cannot be read
+   * @throws IllegalArgumentException if the record is malformed
+   */
+  Map<String, String> next() throws IOException;
+
+  /**
+   * This method returns the line the last record read started on, for reporting rejected rows.
+   *
+   * @return the line number, counting from 1
+   */
+  long getLineNumber();
+}
@@ -0,0 +1,178 @@
+package edu.ucsb.cs156.example.services.imports;
+
+import static edu.ucsb.cs156.example.services.imports.ImportColumn.optional;
+import static edu.ucsb.cs156.example.services.imports.ImportColumn.required;
+import static edu.ucsb.cs156.example.services.imports.ImportColumn.string;
+
+import edu.ucsb.cs156.example.errors.InvalidRequestException;
+import edu.ucsb.cs156.example.services.imports.ImportColumn.Type;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * The tables that rows can be bulk imported into, each named after its entity's /api path. Files
+ * name their columns after the entity's fields, as in the entity's JSON; for tables with a
+ * generated id, an id column or field is ignored so that files exported from GET .../all can be
+ * imported again.
+ */
+@Getter
+public enum ImportTable {
+  ARTICLES(
+      "articles",
+      "articles",
+      true,
+      string("title", "title"),
+      string("url", "url"),
+      string("explanation", "explanation"),
+      string("email", "email"),
+      optional("dateAdded", "date_added", Type.DATETIME)),
+  HELP_REQUEST(
+      "helprequest",
+      "helprequest",
+      true,
+      string("requesterEmail", "requester_email"),
+      string("teamId", "team_id"),
+      string("tableOrBreakoutRoom", "table_or_breakout_room"),
+      optional("requestTime", "request_time", Type.DATETIME),
+      string("explanation", "explanation"),
+      optional("solved", "solved", Type.BOOLEAN)),
+  MENU_ITEM_REVIEW(
+      "menuitemreview",
+      "menuitemreview",
+      true,
+      required("itemId", "item_id", Type.LONG),
+      string("reviewerEmail", "reviewer_email"),
+      required("stars", "stars", Type.INT),
+      optional("dateReviewed", "date_reviewed", Type.DATETIME),
+      string("comments", "comments")),
+  RECOMMENDATION_REQUESTS(
+      "recommendationrequests",
+      "recommendationrequest",
+      true,
+      string("requesterEmail", "requester_email"),
+      string("professorEmail", "professor_email"),
+      string("explanation", "explanation"),
+      optional("dateRequested", "date_requested", Type.DATETIME),
+      optional("dateNeeded", "date_needed", Type.DATETIME),
+      optional("done", "done", Type.BOOLEAN)),
+  RESTAURANTS(
+      "restaurants",
+      "restaurants",
+      true,
+      string("name", "name"),
+      string("description", "description")),
+  UCSB_DATES(
+      "ucsbdates",
+      "ucsbdates",
+      true,
+      string("quarterYYYYQ", "quarteryyyyq"),
+      string("name", "name"),
+      optional("localDateTime", "local_date_time", Type.DATETIME)),
+  UCSB_DINING_COMMONS(
+      "ucsbdiningcommons",
+      "ucsbdiningcommons",
+      false,
+      required("code", "code", Type.STRING),
+      string("name", "name"),
+      optional("hasSackMeal", "has_sack_meal", Type.BOOLEAN),
+      optional("hasTakeOutMeal", "has_take_out_meal", Type.BOOLEAN),
+      optional("hasDiningCam", "has_dining_cam", Type.BOOLEAN),
+      optional("latitude", "latitude", Type.DOUBLE),
+      optional("longitude", "longitude", Type.DOUBLE)),
+  UCSB_DINING_COMMONS_MENU_ITEM(
+      "ucsbdiningcommonsmenuitem",
+      "ucsbdining_commons_menu_item",
+      true,
+      string("diningCommonsCode", "dining_commons_code"),
+      string("name", "name"),
+      string("station", "station")),
+  UCSB_ORGANIZATION(
+      "ucsborganization",
+      "ucsborganization",
+      false,
+      required("orgCode", "org_code", Type.STRING),
+      string("orgTranslationShort", "org_translation_short"),
+      string("orgTranslation", "org_translation"),
+      optional("inactive", "inactive", Type.BOOLEAN));
+
+  private static final Map<String, ImportTable> BY_NAME =
+      Arrays.stream(values()).collect(Collectors.toMap(ImportTable::getName, t -> t));
+
+  private final String name;
+  private final String tableName;
+
+  @Getter(AccessLevel.NONE)
+  private final boolean generatedId;
+
+  private final List<ImportColumn> columns;
+  // one row, with a parameter for each column
+  private final String insertSql;
+
+  ImportTable(String name, String tableName, boolean generatedId, ImportColumn... columns) {
+    this.name = name;
+    this.tableName = tableName;
+    this.generatedId = generatedId;
+    this.columns = List.of(columns);
+    this.insertSql =
+        "INSERT INTO %s (%s) VALUES (%s)"
+            .formatted(
+                tableName,
+                this.columns.stream().map(ImportColumn::column).collect(Collectors.joining(", ")),
+                this.columns.stream().map(c -> "?").collect(Collectors.joining(", ")));
+  }
+
+  /**
+   * This method returns the table with the given name.
+   *
+   * @param name the name, e.g. ucsbdates
+   * @return the table
+   * @throws InvalidRequestException if no table can be imported under that name
+   */
+  public static ImportTable byName(String name) {
+    ImportTable table = BY_NAME.get(name);
+    if (table == null) {
+      throw new InvalidRequestException(
+          "Cannot import into %s; valid tables are %s".formatted(name, BY_NAME.keySet()));
+    }
+    return table;
+  }
+
+  /**
+   * Check that a file's fields are all columns of this table.
+   *
+   * @param fields the fields
+   * @throws IllegalArgumentException naming the first field that is not
+   */
+  public void checkFields(Iterable<String> fields) {
+    for (String field : fields) {
+      if (!isIgnored(field) && columns.stream().noneMatch(c -> c.field().equals(field))) {
+        throw new IllegalArgumentException("%s has no field %s".formatted(name, field));
+      }
+    }
+  }
+
+  private boolean isIgnored(String field) {
+    return generatedId && "id".equals(field);
+  }
+
+  /**
+   * Parse one row into the parameters of the insert statement.
+   *
+   * @param row the row's values by field; missing fields may be absent or null
+   * @return the parameters of the insert statement, in column order
+   * @throws IllegalArgumentException if the row has an unknown field or an invalid value
+   */
+  public Object[] parse(Map<String, String> row) {
+    checkFields(row.keySet());
+    Object[] values = new Object[columns.size()];
+    for (int i = 0; i < values.length; i++) {
+      ImportColumn column = columns.get(i);
+      values[i] = column.parse(row.get(column.field()));
+    }
+    return values;
+  }
+}
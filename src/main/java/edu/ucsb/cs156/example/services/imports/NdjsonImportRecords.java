@@ -0,0 +1,64 @@
+package edu.ucsb.cs156.example.services.imports;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reads newline-delimited JSON: one object per line, whose fields hold strings, numbers, booleans
+ * or null. Blank lines are skipped.
+ */
+class NdjsonImportRecords implements ImportRecords {
+  private final BufferedReader reader;
+  private final ObjectMapper mapper;
+  private long lineNumber;
+
+  NdjsonImportRecords(BufferedReader reader, ObjectMapper mapper) {
+    this.reader = reader;
+    this.mapper = mapper;
+  }
+
+  @Override
+  public Map<String, String> next() throws IOException {
+    String line;
+    do {
+      line = reader.readLine();
+      if (line == null) {
+        return null;
+      }
+      lineNumber++;
+    } while (line.isBlank());
+    JsonNode node;
+    try {
+      node = mapper.readTree(line);
+    } catch (JsonProcessingException e) {
+      throw new IllegalArgumentException("invalid JSON: " + e.getOriginalMessage());
+    }
+    if (!node.isObject()) {
+      throw new IllegalArgumentException("expected a JSON object");
+    }
+    Map<String, String> record = new LinkedHashMap<>();
+    for (Map.Entry<String, JsonNode> field : node.properties()) {
+      JsonNode value = field.getValue();
+      if (value.isContainerNode()) {
+        throw new IllegalArgumentException(field.getKey() + " must be a single value");
+      }
+      record.put(field.getKey(), value.isNull() ? null : value.asText());
+    }
+    return record;
+  }
+
+  @Override
+  public long getLineNumber() {
+    return lineNumber;
+  }
+
+  @Override
+  public void close() throws IOException {
+    reader.close();
+  }
+}
@@ -0,0 +1,22 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import lombok.Getter;
+
+/**
+ * Thrown by {@link JobContext#checkCancelled()} once a job has been cancelled or has run past its
+ * timeout. Jobs should let it propagate; JobService records the job as "cancelled" or "timed_out".
+ */
+public class JobCancelledException extends RuntimeException {
+  /** The status the job ends in: "cancelled" or "timed_out". */
+  @Getter private final String status;
+
+  /**
+   * Constructor for the exception
+   *
+   * @param status the status the job ends in: "cancelled" or "timed_out"
+   */
+  public JobCancelledException(String status) {
+    super("Job " + status.replace('_', ' '));
+    this.status = status;
+  }
+}
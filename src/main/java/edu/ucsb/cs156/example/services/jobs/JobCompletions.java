@@ -0,0 +1,150 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.JobProgress;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.async.DeferredResult;
+
+/**
+ * This service lets clients wait for a job to end with one request, instead of polling it.
+ *
+ * <p>A waiting request holds no thread: it is parked as a DeferredResult and answered with the
+ * job's status and progress as soon as the job ends, or with whatever they are when the wait times
+ * out. Jobs that end on this node notify their waiters directly from JobService. Waiters for jobs
+ * running on other nodes are checked once per app.jobs.wait.pollIntervalMs, with one query for all
+ * of them no matter how many there are.
+ */
+@Slf4j
+@Service
+public class JobCompletions {
+  @Autowired private JobsRepository jobsRepository;
+
+  @Autowired @Lazy private JobLogWriter jobLogWriter;
+
+  @Value("${app.jobs.wait.maxTimeoutMs:60000}")
+  private long maxTimeoutMs;
+
+  private final Map<Long, List<DeferredResult<JobProgress>>> waiters = new ConcurrentHashMap<>();
+
+  /**
+   * Wait for a job to end.
+   *
+   * @param jobId id of the job
+   * @param timeoutMs how long to wait, at most app.jobs.wait.maxTimeoutMs
+   * @return the result, set to the job's progress once it has ended or the wait has timed out
+   * @throws EntityNotFoundException if there is no such job
+   */
+  public DeferredResult<JobProgress> await(long jobId, long timeoutMs) {
+    DeferredResult<JobProgress> result =
+        new DeferredResult<>(Math.max(1, Math.min(timeoutMs, maxTimeoutMs)));
+    // register before reading the status so that the job cannot end unnoticed in between
+    waiters.computeIfAbsent(jobId, id -> new CopyOnWriteArrayList<>()).add(result);
+    result.onCompletion(() -> remove(jobId, result));
+    result.onTimeout(
+        () -> {
+          try {
+            result.setResult(progressOf(jobId));
+          } catch (Exception e) {
+            result.setErrorResult(e);
+          }
+        });
+    JobProgress progress;
+    try {
+      progress = progressOf(jobId);
+    } catch (EntityNotFoundException e) {
+      remove(jobId, result);
+      throw e;
+    }
+    if (isEnded(progress)) {
+      remove(jobId, result);
+      result.setResult(progress);
+    }
+    return result;
+  }
+
+  private JobProgress progressOf(long jobId) {
+    return jobsRepository
+        .findProgressById(jobId)
+        .orElseThrow(() -> new EntityNotFoundException(Job.class, jobId));
+  }
+
+  private static boolean isEnded(JobProgress progress) {
+    return JobRetention.FINISHED_STATUSES.contains(progress.getStatus());
+  }
+
+  private void remove(long jobId, DeferredResult<JobProgress> result) {
+    waiters.computeIfPresent(
+        jobId,
+        (id, list) -> {
+          list.remove(result);
+          return list.isEmpty() ? null : list;
+        });
+  }
+
+  /**
+   * Answer everyone waiting for a job whose status has just changed, if it has ended. Failures are
+   * only logged, since the job's waiters are checked again by {@link #pollRemoteJobs}.
+   *
+   * @param jobId id of the job
+   */
+  public void statusChanged(long jobId) {
+    if (!waiters.containsKey(jobId)) {
+      return;
+    }
+    try {
+      jobsRepository.findProgressById(jobId).filter(JobCompletions::isEnded).ifPresent(this::end);
+    } catch (Exception e) {
+      log.warn("Failed to notify waiters for job {}", jobId, e);
+    }
+  }
+
+  private void end(JobProgress progress) {
+    List<DeferredResult<JobProgress>> ended = waiters.remove(progress.getId());
+    if (ended != null) {
+      ended.forEach(result -> result.setResult(progress));
+    }
+  }
+
+  /**
+   * Answer the waiters of jobs that have ended without this node noticing, e.g. on another node.
+   */
+  @Scheduled(fixedDelayString = "${app.jobs.wait.pollIntervalMs:1000}")
+  public void pollRemoteJobs() {
+    Set<Long> jobIds =
+        waiters.keySet().stream()
+            .filter(id -> !jobLogWriter.isOpen(id))
+            .collect(Collectors.toSet());
+    if (jobIds.isEmpty()) {
+      return;
+    }
+    try {
+      jobsRepository
+          .findProgressByIdInAndStatusIn(jobIds, JobRetention.FINISHED_STATUSES)
+          .forEach(this::end);
+    } catch (Exception e) {
+      log.warn("Failed to poll the status of {} awaited jobs", jobIds.size(), e);
+    }
+  }
+
+  /**
+   * This method returns the number of requests waiting for jobs to end, across all jobs.
+   *
+   * @return the number of waiting requests
+   */
+  public int getWaiting() {
+    return waiters.values().stream().mapToInt(List::size).sum();
+  }
+}
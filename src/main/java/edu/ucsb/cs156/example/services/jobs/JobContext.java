@@ -1,20 +1,220 @@
 package edu.ucsb.cs156.example.services.jobs;
 
 import edu.ucsb.cs156.example.entities.Job;
-import edu.ucsb.cs156.example.repositories.JobsRepository;
-import lombok.AllArgsConstructor;
+import edu.ucsb.cs156.example.entities.JobLogLine;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 
-@AllArgsConstructor
 @Slf4j
 public class JobContext {
-  private JobsRepository jobsRepository;
-  private Job job;
+  private JobLogBuffer logBuffer;
+  private JobProgressTracker progressTracker;
+  @Getter private Job job;
+  private final AtomicLong nextSeq = new AtomicLong();
+
+  // set for the context of a subtask started by fanOut, which logs through the job's own context
+  private JobContext parent;
+  private String logPrefix;
+
+  // how many subtasks of one fanOut may run at once; see app.jobs.subtasks.parallelism
+  @Setter(AccessLevel.PACKAGE)
+  private int subtaskParallelism = Runtime.getRuntime().availableProcessors();
+
+  // set when the job is cancelled or times out: "cancelled" or "timed_out"
+  @Getter private volatile String stopReason;
+  private Thread runner;
+  // read by JobService's scheduler thread through isPastDeadline; start sets hasDeadline last
+  private volatile boolean hasDeadline;
+  private volatile long deadlineNanos;
+
+  public JobContext(JobLogBuffer logBuffer, Job job) {
+    this(logBuffer, null, job);
+  }
+
+  public JobContext(JobLogBuffer logBuffer, JobProgressTracker progressTracker, Job job) {
+    this.logBuffer = logBuffer;
+    this.progressTracker = progressTracker;
+    this.job = job;
+  }
+
+  private JobContext(JobContext parent, String name) {
+    this.parent = parent;
+    this.job = parent.job;
+    this.logPrefix = "[%s] ".formatted(name);
+    this.subtaskParallelism = parent.subtaskParallelism;
+  }
+
+  JobContext forSubtask(String name) {
+    return new JobContext(this, name);
+  }
 
   public void log(String message) {
+    if (parent != null) {
+      parent.log(logPrefix + message);
+      return;
+    }
     log.info("Job %s: %s".formatted(job.getId(), message));
-    String previousLog = job.getLog() == null ? "" : (job.getLog() + "\n");
-    job.setLog(previousLog + message);
-    if (jobsRepository != null) jobsRepository.save(job);
+    JobLogLine line =
+        JobLogLine.builder()
+            .jobId(job.getId())
+            .seq(nextSeq.getAndIncrement())
+            .loggedAt(ZonedDateTime.now())
+            .message(message)
+            .build();
+    if (logBuffer != null) logBuffer.append(line);
+  }
+
+  /**
+   * Called by JobService before a re-queued job runs again, so that its lines follow those logged
+   * by earlier attempts.
+   *
+   * @param seq seq of the last line already logged
+   */
+  void continueLogAfter(long seq) {
+    nextSeq.set(seq + 1);
+    if (logBuffer != null) logBuffer.continueAfter(seq);
+  }
+
+  /**
+   * Report how far along the job is. This is cheap enough to call once per item processed: only the
+   * latest values are kept, and they are written to the job at most once per
+   * app.jobs.progress.updateIntervalMs. Clients read them with GET /api/jobs/progress.
+   *
+   * @param done the items done so far
+   * @param total the items to do in all, or 0 if that is not known
+   */
+  public void progress(long done, long total) {
+    if (parent != null) {
+      parent.progress(done, total);
+    } else if (progressTracker != null) {
+      progressTracker.update(done, total);
+    }
+  }
+
+  /**
+   * Process items in parallel, one subtask per item, and wait for them all. Up to
+   * app.jobs.subtasks.parallelism subtasks run at once, each on a virtual thread.
+   *
+   * <p>Each subtask gets a context of its own, whose log lines go to the job's log prefixed with
+   * the item, e.g. "[ortega] ". If a subtask throws, the others are interrupted and its exception
+   * is thrown from here once they have all stopped. Cancelling the job or reaching its timeout
+   * stops every subtask, as long as they call checkCancelled or sleep.
+   *
+   * @param items the items; each item's toString names its subtask
+   * @param subtask the work to do for each item
+   * @return the result of each subtask, in the order of the items
+   * @throws Exception the exception thrown by the first subtask to fail
+   * @throws JobCancelledException if the job is cancelled or times out
+   */
+  public <T, R> List<R> fanOut(Collection<T> items, JobSubtask<T, R> subtask) throws Exception {
+    return fanOut(items, subtaskParallelism, subtask);
+  }
+
+  /**
+   * Process items in parallel as {@link #fanOut(Collection, JobSubtask)} does, with at most
+   * maxParallelism subtasks running at once.
+   *
+   * @param items the items; each item's toString names its subtask
+   * @param maxParallelism the most subtasks to run at once; app.jobs.subtasks.parallelism still
+   *     applies
+   * @param subtask the work to do for each item
+   * @return the result of each subtask, in the order of the items
+   * @throws Exception the exception thrown by the first subtask to fail
+   * @throws JobCancelledException if the job is cancelled or times out
+   */
+  public <T, R> List<R> fanOut(Collection<T> items, int maxParallelism, JobSubtask<T, R> subtask)
+      throws Exception {
+    checkCancelled();
+    return JobFanOut.run(
+        this, new ArrayList<>(items), Math.min(maxParallelism, subtaskParallelism), subtask);
+  }
+
+  /**
+   * Jobs should call this regularly, e.g. once per item processed. It throws once the job has been
+   * cancelled or has run past its timeout.
+   *
+   * @throws JobCancelledException if the job should stop
+   */
+  public void checkCancelled() {
+    if (parent != null) {
+      parent.checkCancelled();
+      return;
+    }
+    if (stopReason == null && isPastDeadline(System.nanoTime())) {
+      stopReason = "timed_out";
+    }
+    if (stopReason != null) {
+      throw new JobCancelledException(stopReason);
+    }
+  }
+
+  /**
+   * Sleep, waking early if the job is cancelled.
+   *
+   * @param millis how long to sleep
+   * @throws InterruptedException if the thread is interrupted for some other reason
+   * @throws JobCancelledException if the job is cancelled or times out
+   */
+  public void sleep(long millis) throws InterruptedException {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      checkCancelled();
+      throw e;
+    }
+    checkCancelled();
+  }
+
+  /**
+   * Called by JobService on the job's own thread just before the job starts.
+   *
+   * @param timeoutMs the timeout in milliseconds, or null or 0 for no timeout
+   */
+  synchronized void start(Long timeoutMs) {
+    runner = Thread.currentThread();
+    if (timeoutMs != null && timeoutMs > 0) {
+      deadlineNanos = System.nanoTime() + timeoutMs * 1_000_000L;
+      hasDeadline = true;
+    }
+  }
+
+  /**
+   * Called by JobService on the job's own thread when the job has finished. After this the thread
+   * can no longer be interrupted by cancel, and any pending interrupt is cleared so that it cannot
+   * break the status and log writes that follow. The latest progress is then written, so that it is
+   * visible before the job's final status.
+   */
+  void finish() {
+    synchronized (this) {
+      runner = null;
+      Thread.interrupted();
+    }
+    if (progressTracker != null) progressTracker.flush();
+  }
+
+  boolean isPastDeadline(long now) {
+    return hasDeadline && now - deadlineNanos >= 0;
+  }
+
+  /**
+   * Ask the job to stop. The job sees this the next time it calls checkCancelled or sleep, and a
+   * job blocked in sleep or other interruptible calls is interrupted.
+   *
+   * @param reason the status the job should end in: "cancelled" or "timed_out"
+   */
+  public synchronized void cancel(String reason) {
+    if (stopReason == null) {
+      stopReason = reason;
+    }
+    if (runner != null) {
+      runner.interrupt();
+    }
   }
 }
@@ -0,0 +1,203 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.models.JobExecutorStats;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * This service runs jobs on a dedicated executor, separate from the threads that serve web
+ * requests.
+ *
+ * <p>At most app.jobs.executor.poolSize jobs run at once, and at most the limit configured for a
+ * job type in app.jobs.executor.typeLimits (e.g. <code>TestJob=1,ImportJob=2</code>) run at once
+ * for that type. Jobs that cannot start yet wait in a queue of at most
+ * app.jobs.executor.queueCapacity entries; submissions beyond that are rejected.
+ *
+ * <p>When app.jobs.executor.virtualThreads is true each job runs on its own virtual thread;
+ * otherwise jobs run on a fixed pool of poolSize platform threads.
+ */
+@Slf4j
+@Service
+public class JobExecutor {
+
+  @Value("${app.jobs.executor.virtualThreads:true}")
+  private boolean virtualThreads;
+
+  @Value("${app.jobs.executor.poolSize:4}")
+  private int poolSize;
+
+  @Value("${app.jobs.executor.queueCapacity:100}")
+  private int queueCapacity;
+
+  @Value("${app.jobs.executor.typeLimits:}")
+  private String typeLimitsProperty;
+
+  private ExecutorService executorService;
+  private Map<String, Integer> typeLimits = Map.of();
+
+  private final LinkedList<PendingJob> pending = new LinkedList<>();
+  private final Map<String, Integer> runningByType = new HashMap<>();
+  private int running;
+  private long rejected;
+
+  private record PendingJob(String jobType, Runnable task) {}
+
+  @PostConstruct
+  void init() {
+    typeLimits = parseTypeLimits(typeLimitsProperty);
+    ThreadFactory threadFactory =
+        virtualThreads
+            ? Thread.ofVirtual().name("job-", 0).factory()
+            : Thread.ofPlatform().name("job-", 0).daemon(true).factory();
+    executorService =
+        virtualThreads
+            ? Executors.newThreadPerTaskExecutor(threadFactory)
+            : Executors.newFixedThreadPool(poolSize, threadFactory);
+    log.info(
+        "JobExecutor started: virtualThreads={}, poolSize={}, queueCapacity={}, typeLimits={}",
+        virtualThreads,
+        poolSize,
+        queueCapacity,
+        typeLimits);
+  }
+
+  @PreDestroy
+  void shutdown() {
+    executorService.shutdownNow();
+  }
+
+  /**
+   * Parse a type limits property of the form <code>TypeA=2,TypeB=1</code>.
+   *
+   * @param property the property value; blank means no per-type limits
+   * @return map from job type to the maximum number of concurrently running jobs of that type
+   */
+  public static Map<String, Integer> parseTypeLimits(String property) {
+    Map<String, Integer> limits = new HashMap<>();
+    if (property == null || property.isBlank()) {
+      return Map.copyOf(limits);
+    }
+    for (String entry : property.split(",")) {
+      String[] parts = entry.split("=");
+      if (parts.length != 2) {
+        throw new IllegalArgumentException(
+            "Invalid entry in app.jobs.executor.typeLimits: " + entry);
+      }
+      limits.put(parts[0].trim(), Integer.parseInt(parts[1].trim()));
+    }
+    return Map.copyOf(limits);
+  }
+
+  /**
+   * Queue a job to run as soon as its type and the pool have capacity.
+   *
+   * @param jobType the job type, used for per-type limits
+   * @param task the work to run
+   * @return false if the queue is full and the job was rejected
+   */
+  public synchronized boolean submit(String jobType, Runnable task) {
+    if (pending.size() >= queueCapacity) {
+      rejected++;
+      return false;
+    }
+    pending.add(new PendingJob(jobType, task));
+    dispatch();
+    return true;
+  }
+
+  /**
+   * This method returns how many more jobs could start right now without waiting.
+   *
+   * @return the number of idle slots in the pool
+   */
+  public synchronized int availableSlots() {
+    return Math.max(0, poolSize - running - pending.size());
+  }
+
+  /**
+   * This method returns the job types that are at their concurrency limit, counting both running
+   * and waiting jobs. Jobs of these types should not be claimed from the queue.
+   *
+   * @return the saturated job types
+   */
+  public synchronized Set<String> saturatedTypes() {
+    Set<String> saturated = new HashSet<>();
+    typeLimits.forEach(
+        (jobType, limit) -> {
+          long waiting = pending.stream().filter(p -> p.jobType().equals(jobType)).count();
+          if (runningByType.getOrDefault(jobType, 0) + waiting >= limit) {
+            saturated.add(jobType);
+          }
+        });
+    return saturated;
+  }
+
+  private int limitFor(String jobType) {
+    return typeLimits.getOrDefault(jobType, poolSize);
+  }
+
+  /** Start as many pending jobs as capacity allows, oldest first, skipping saturated types. */
+  private synchronized void dispatch() {
+    Iterator<PendingJob> it = pending.iterator();
+    while (running < poolSize && it.hasNext()) {
+      PendingJob next = it.next();
+      int runningOfType = runningByType.getOrDefault(next.jobType(), 0);
+      if (runningOfType >= limitFor(next.jobType())) {
+        continue;
+      }
+      it.remove();
+      running++;
+      runningByType.put(next.jobType(), runningOfType + 1);
+      executorService.execute(() -> runAndRelease(next));
+    }
+  }
+
+  private void runAndRelease(PendingJob job) {
+    try {
+      job.task().run();
+    } catch (Exception e) {
+      log.error("Uncaught exception in job of type {}", job.jobType(), e);
+    } finally {
+      synchronized (this) {
+        running--;
+        runningByType.merge(job.jobType(), -1, Integer::sum);
+        dispatch();
+      }
+    }
+  }
+
+  /**
+   * This method returns a snapshot of the executor's current load.
+   *
+   * @return the executor statistics
+   */
+  public synchronized JobExecutorStats getStats() {
+    Map<String, Integer> queuedByType = new HashMap<>();
+    pending.forEach(p -> queuedByType.merge(p.jobType(), 1, Integer::sum));
+    Map<String, Integer> runningNow = new HashMap<>(runningByType);
+    runningNow.values().removeIf(count -> count == 0);
+    return JobExecutorStats.builder()
+        .virtualThreads(virtualThreads)
+        .poolSize(poolSize)
+        .queueCapacity(queueCapacity)
+        .typeLimits(typeLimits)
+        .running(running)
+        .queued(pending.size())
+        .rejected(rejected)
+        .runningByType(runningNow)
+        .queuedByType(queuedByType)
+        .build();
+  }
+}
@@ -0,0 +1,27 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import java.util.Map;
+
+/**
+ * A JobFactory rebuilds a job from the type and parameters stored on its row in the jobs table.
+ *
+ * <p>Jobs launched through {@link JobService#launch(String, Map)} are durable: any node can claim
+ * them from the queue, and they survive a restart of the node that accepted them. Each durable job
+ * type needs a factory registered as a Spring bean.
+ */
+public interface JobFactory {
+  /**
+   * This method returns the job type this factory builds, e.g. "TestJob".
+   *
+   * @return the job type
+   */
+  String getJobType();
+
+  /**
+   * Build the job from its stored parameters.
+   *
+   * @param params the parameters the job was launched with
+   * @return the job, ready to run
+   */
+  JobContextConsumer create(Map<String, String> params);
+}
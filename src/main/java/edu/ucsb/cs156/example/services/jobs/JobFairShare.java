@@ -0,0 +1,137 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.models.JobUserQueueStats;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository.QueueHead;
+import edu.ucsb.cs156.example.repositories.JobsRepository.UserJobCount;
+import jakarta.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * This service decides whose queued job runs next, so that one user who launches many jobs does not
+ * hold up everyone else.
+ *
+ * <p>Each user with queued jobs offers their next job: the one with the highest priority, oldest
+ * first. Among those, the job with the highest priority wins; ties go to the user with the lowest
+ * share, which is the number of jobs they have claimed or running divided by their weight. Weights
+ * are set per email with app.jobs.fairShare.weights, e.g. <code>admin@ucsb.edu=1,etl@ucsb.edu=4
+ * </code>; everyone else has weight 1.
+ */
+@Slf4j
+@Service
+public class JobFairShare {
+  private static final int DEFAULT_WEIGHT = 1;
+
+  @Autowired private JobsRepository jobsRepository;
+
+  @Value("${app.jobs.fairShare.weights:}")
+  private String weightsProperty;
+
+  private Map<String, Integer> weights = Map.of();
+
+  @PostConstruct
+  void init() {
+    weights = parseWeights(weightsProperty);
+    log.info("JobFairShare started: weights={}", weights);
+  }
+
+  /**
+   * Parse a weights property of the form <code>a@ucsb.edu=2,b@ucsb.edu=1</code>.
+   *
+   * @param property the property value; blank means every user has weight 1
+   * @return map from email to weight
+   */
+  public static Map<String, Integer> parseWeights(String property) {
+    Map<String, Integer> weights = new HashMap<>();
+    if (property == null || property.isBlank()) {
+      return Map.copyOf(weights);
+    }
+    for (String entry : property.split(",")) {
+      String[] parts = entry.split("=");
+      if (parts.length != 2 || Integer.parseInt(parts[1].trim()) < 1) {
+        throw new IllegalArgumentException("Invalid entry in app.jobs.fairShare.weights: " + entry);
+      }
+      weights.put(parts[0].trim(), Integer.parseInt(parts[1].trim()));
+    }
+    return Map.copyOf(weights);
+  }
+
+  /**
+   * This method returns the weight of a user.
+   *
+   * @param email the user's email, or null for jobs not launched by a user
+   * @return the user's weight
+   */
+  public int weightOf(String email) {
+    return email == null ? DEFAULT_WEIGHT : weights.getOrDefault(email, DEFAULT_WEIGHT);
+  }
+
+  /**
+   * Choose the queued job a node should claim next.
+   *
+   * @param nodeId id of the claiming node; jobs pinned to other nodes are skipped
+   * @param excludedTypes job types the node has no capacity for; must not be empty
+   * @return id of the job to claim, or empty if there is nothing to claim
+   */
+  public Optional<Long> pickNext(String nodeId, Collection<String> excludedTypes) {
+    List<QueueHead> heads = jobsRepository.findQueueHeads(nodeId, excludedTypes);
+    if (heads.size() <= 1) {
+      return heads.stream().findFirst().map(QueueHead::getId);
+    }
+    // keys may be null, for jobs not launched by a user
+    Map<Long, Long> running = new HashMap<>();
+    for (UserJobCount count : jobsRepository.countActiveJobsByUser()) {
+      if (!"queued".equals(count.getStatus())) {
+        running.merge(count.getCreatedById(), count.getJobs(), Long::sum);
+      }
+    }
+    Comparator<QueueHead> order =
+        Comparator.comparing((QueueHead head) -> head.getPriority(), Comparator.reverseOrder())
+            .thenComparingDouble(
+                head ->
+                    running.getOrDefault(head.getCreatedById(), 0L)
+                        / (double) weightOf(head.getEmail()))
+            .thenComparing(QueueHead::getId);
+    return heads.stream().min(order).map(QueueHead::getId);
+  }
+
+  /**
+   * This method returns, for each user with queued or running jobs, their weight and share.
+   *
+   * @return one entry per user, with the lowest share first
+   */
+  public List<JobUserQueueStats> getUserStats() {
+    Map<Long, JobUserQueueStats> byUser = new LinkedHashMap<>();
+    for (UserJobCount count : jobsRepository.countActiveJobsByUser()) {
+      JobUserQueueStats stats =
+          byUser.computeIfAbsent(
+              count.getCreatedById(),
+              id ->
+                  JobUserQueueStats.builder()
+                      .createdById(id)
+                      .email(count.getEmail())
+                      .weight(weightOf(count.getEmail()))
+                      .build());
+      if ("queued".equals(count.getStatus())) {
+        stats.setQueued(stats.getQueued() + count.getJobs());
+      } else {
+        stats.setRunning(stats.getRunning() + count.getJobs());
+      }
+    }
+    List<JobUserQueueStats> result = new ArrayList<>(byUser.values());
+    result.forEach(stats -> stats.setShare(stats.getRunning() / (double) stats.getWeight()));
+    result.sort(Comparator.comparingDouble(JobUserQueueStats::getShare));
+    return result;
+  }
+}
@@ -0,0 +1,54 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs the subtasks of one {@link JobContext#fanOut} on a pool of virtual threads of its own, so
+ * that no subtask outlives the call that started it.
+ *
+ * <p>The first subtask to fail stops the others, and its exception is thrown from fanOut. If the
+ * job is cancelled while it waits, the subtasks are interrupted and fanOut throws {@link
+ * JobCancelledException}.
+ */
+class JobFanOut {
+  private JobFanOut() {}
+
+  static <T, R> List<R> run(
+      JobContext ctx, List<T> items, int parallelism, JobSubtask<T, R> subtask) throws Exception {
+    if (items.isEmpty()) {
+      return List.of();
+    }
+    int threads = Math.max(1, Math.min(parallelism, items.size()));
+    String threadName = "job-%d-subtask-".formatted(ctx.getJob().getId());
+    // close() waits for every subtask to finish, including after shutdownNow
+    try (ExecutorService pool =
+        Executors.newFixedThreadPool(threads, Thread.ofVirtual().name(threadName, 0).factory())) {
+      CompletionService<R> completion = new ExecutorCompletionService<>(pool);
+      List<Future<R>> futures = new ArrayList<>(items.size());
+      for (T item : items) {
+        JobContext subtaskContext = ctx.forSubtask(String.valueOf(item));
+        futures.add(completion.submit(() -> subtask.apply(subtaskContext, item)));
+      }
+      try {
+        for (int i = 0; i < items.size(); i++) {
+          completion.take().get();
+        }
+      } catch (ExecutionException e) {
+        pool.shutdownNow();
+        throw e.getCause() instanceof Exception cause ? cause : e;
+      } catch (InterruptedException e) {
+        pool.shutdownNow();
+        ctx.checkCancelled();
+        throw e;
+      }
+      return futures.stream().map(Future::resultNow).toList();
+    }
+  }
+}
@@ -0,0 +1,166 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.entities.JobLogLine;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A bounded buffer of log lines for a single running job.
+ *
+ * <p>Lines are held in memory and written to the database in one JDBC batch when the buffer reaches
+ * maxLines, when the oldest pending line is older than the flush interval, or when the job changes
+ * status or ends. With maxLines of 1 every line is written as soon as it is logged. Lines stay in
+ * the buffer until their batch has been written, so a failed write is retried by the next flush
+ * rather than losing them.
+ *
+ * <p>Appending takes no lock, so the subtasks of a job can log at full speed from many threads.
+ * Each line is stored in the slot of a ring picked by its seq, and a flush takes the lines from the
+ * next seq to be written up to the first empty slot. The lines of a batch are therefore always
+ * consecutive and in seq order, even when the threads that took those seqs append them in a
+ * different order, and a line whose thread has taken its seq but not yet stored it holds back the
+ * lines after it until the next flush instead of being overtaken. Only flushes are serialized, by a
+ * ReentrantLock rather than synchronized so that a subtask's virtual thread waiting on the insert
+ * does not pin its carrier, and an appender waits only when it is a whole ring ahead of the last
+ * flush. Lines must therefore be appended with consecutive seqs, as JobContext assigns them.
+ */
+@Slf4j
+public class JobLogBuffer {
+
+  /** Why a buffer was flushed; recorded in the flush statistics. */
+  public enum FlushReason {
+    SIZE,
+    INTERVAL,
+    STATUS,
+    END
+  }
+
+  private final long jobId;
+  private final JobLogWriter writer;
+  private final int maxLines;
+  private final long flushIntervalNanos;
+
+  private final AtomicReferenceArray<JobLogLine> slots;
+  private final AtomicInteger pending = new AtomicInteger();
+  private final ReentrantLock flushLock = new ReentrantLock();
+  private volatile long oldestPendingNanos;
+  // seq of the first line not yet taken by a flush; only changed by flush and continueAfter
+  private volatile long nextFlushSeq;
+
+  /**
+   * Create a buffer for one job.
+   *
+   * @param jobId id of the job whose lines are buffered
+   * @param writer writer that owns this buffer, writes its lines and collects flush statistics
+   * @param maxLines number of pending lines that triggers a flush
+   * @param flushIntervalMs age in milliseconds of the oldest pending line that triggers a flush
+   */
+  public JobLogBuffer(long jobId, JobLogWriter writer, int maxLines, long flushIntervalMs) {
+    this.jobId = jobId;
+    this.writer = writer;
+    this.maxLines = Math.max(1, maxLines);
+    this.flushIntervalNanos = flushIntervalMs * 1_000_000L;
+    // room for a full batch, plus as many lines again appended while it is being written
+    this.slots = new AtomicReferenceArray<>(2 * this.maxLines);
+  }
+
+  public long getJobId() {
+    return jobId;
+  }
+
+  /**
+   * Start the buffer after lines that were logged before it was created, by an earlier attempt at
+   * the job. Call this before appending anything.
+   *
+   * @param seq seq of the last line already written
+   */
+  void continueAfter(long seq) {
+    nextFlushSeq = seq + 1;
+  }
+
+  /**
+   * Add a line to the buffer, flushing if the buffer is full or the oldest line is due. Safe to
+   * call from any number of threads at once.
+   *
+   * @param line the line to add
+   */
+  public void append(JobLogLine line) {
+    long seq = line.getSeq();
+    while (seq - nextFlushSeq >= slots.length()) {
+      // the ring is full: write out what is ready, and let the appenders of the lines before this
+      // one catch up
+      flush(FlushReason.SIZE);
+      Thread.yield();
+    }
+    slots.set(slotOf(seq), line);
+    long now = System.nanoTime();
+    int count = pending.incrementAndGet();
+    if (count == 1) {
+      oldestPendingNanos = now;
+    }
+    try {
+      if (count >= maxLines) {
+        flush(FlushReason.SIZE);
+      } else if (isDue(now)) {
+        flush(FlushReason.INTERVAL);
+      }
+    } catch (RuntimeException e) {
+      // the lines are still buffered, and the next flush writes them
+      log.warn("Failed to flush log buffer for job {}", jobId, e);
+    }
+  }
+
+  /**
+   * Whether the buffer holds lines that have waited at least the flush interval.
+   *
+   * @param now the current value of System.nanoTime()
+   * @return true if a flush is due
+   */
+  public boolean isDue(long now) {
+    return pending.get() > 0 && now - oldestPendingNanos >= flushIntervalNanos;
+  }
+
+  /**
+   * Write the pending lines to the database in a single batch, in seq order. If the write fails,
+   * the lines stay in the buffer for the next flush.
+   *
+   * @param reason why the flush is happening
+   */
+  public void flush(FlushReason reason) {
+    flushLock.lock();
+    try {
+      List<JobLogLine> batch = new ArrayList<>();
+      long seq = nextFlushSeq;
+      while (batch.size() < slots.length()) {
+        JobLogLine line = slots.get(slotOf(seq));
+        if (line == null) {
+          break;
+        }
+        batch.add(line);
+        seq++;
+      }
+      if (batch.isEmpty()) {
+        return;
+      }
+      long start = System.nanoTime();
+      writer.insert(batch);
+      // only now can appenders a whole ring ahead reuse the slots
+      for (long written = nextFlushSeq; written < seq; written++) {
+        slots.set(slotOf(written), null);
+      }
+      nextFlushSeq = seq;
+      pending.addAndGet(-batch.size());
+      writer.recordFlush(reason, batch.size(), System.nanoTime() - start);
+      writer.flushed(jobId, batch);
+    } finally {
+      flushLock.unlock();
+    }
+  }
+
+  private int slotOf(long seq) {
+    return (int) Math.floorMod(seq, (long) slots.length());
+  }
+}
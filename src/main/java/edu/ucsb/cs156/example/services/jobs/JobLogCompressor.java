@@ -0,0 +1,226 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.entities.JobLogLine;
+import edu.ucsb.cs156.example.repositories.JobLogLineRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * This service compresses the logs of jobs that have ended. A job's lines are gzipped into the
+ * jobs.log_gz column and deleted from job_log_lines in one transaction, so readers see either the
+ * lines or the compressed log. Lines logged after a job's log was compressed are added to its
+ * compressed log the next time it is compressed.
+ *
+ * <p>The compressed log keeps each line as a record of its seq and message, rather than as text, so
+ * that lines read back have the seqs they were streamed and searched with, even if a message
+ * contains a newline or an attempt's lines left a gap in the seqs.
+ *
+ * <p>The node that ran a job compresses its log as soon as the job ends. Every
+ * app.jobs.log.compressIntervalMs, up to {@link #SWEEP_BATCH_SIZE} other ended jobs that still have
+ * lines, such as jobs whose node went away or jobs from before logs were compressed, are compressed
+ * too. Set app.jobs.log.compress to false to keep the lines instead.
+ */
+@Slf4j
+@Service
+public class JobLogCompressor {
+  static final int SWEEP_BATCH_SIZE = 100;
+
+  @Autowired private JobsRepository jobsRepository;
+
+  @Autowired private JobLogLineRepository jobLogLineRepository;
+
+  @Autowired private PlatformTransactionManager transactionManager;
+
+  @Value("${app.jobs.log.compress:true}")
+  private boolean enabled;
+
+  /**
+   * Compress the log of a job that has ended, if it has any lines.
+   *
+   * @param jobId id of the job
+   * @return true if the log was compressed
+   */
+  public boolean compress(long jobId) {
+    if (!enabled) {
+      return false;
+    }
+    Boolean compressed =
+        new TransactionTemplate(transactionManager)
+            .execute(
+                status -> {
+                  List<JobLogLine> lines = jobLogLineRepository.findAllByJobIdOrderBySeqAsc(jobId);
+                  if (lines.isEmpty()) {
+                    return false;
+                  }
+                  // a job that logged again after its log was compressed, such as a requeued
+                  // job, keeps the lines compressed earlier
+                  List<JobLogLine> all = new ArrayList<>(readCompressedLines(jobId));
+                  all.addAll(lines);
+                  all.sort(Comparator.comparingLong(JobLogLine::getSeq));
+                  byte[] logGz = gzip(all);
+                  jobsRepository.storeCompressedLog(jobId, logGz);
+                  jobLogLineRepository.deleteAllByJobId(jobId);
+                  log.debug(
+                      "Compressed {} log lines of job {} to {} bytes",
+                      lines.size(),
+                      jobId,
+                      logGz.length);
+                  return true;
+                });
+    return Boolean.TRUE.equals(compressed);
+  }
+
+  /**
+   * Compress the log of a job that has just ended on this node. Failures are only logged, since the
+   * lines are still readable and {@link #compressEndedJobs} tries again later.
+   *
+   * @param jobId id of the job
+   */
+  public void jobEnded(long jobId) {
+    try {
+      compress(jobId);
+    } catch (Exception e) {
+      log.warn("Failed to compress log of job {}", jobId, e);
+    }
+  }
+
+  /** Compress the logs of jobs that ended without their log being compressed. */
+  @Scheduled(
+      initialDelayString = "${app.jobs.log.compressIntervalMs:60000}",
+      fixedDelayString = "${app.jobs.log.compressIntervalMs:60000}")
+  public void compressEndedJobs() {
+    if (!enabled) {
+      return;
+    }
+    for (Long jobId :
+        jobsRepository.findEndedIdsWithLogLines(
+            JobRetention.FINISHED_STATUSES, Limit.of(SWEEP_BATCH_SIZE))) {
+      jobEnded(jobId);
+    }
+  }
+
+  /**
+   * This method returns the compressed log of a job as lines, with the seqs they were written with.
+   *
+   * @param jobId id of the job
+   * @return the lines, or an empty list if the job's log has not been compressed
+   */
+  public List<JobLogLine> readCompressedLines(long jobId) {
+    return jobsRepository
+        .findCompressedLogById(jobId)
+        .map(logGz -> gunzip(jobId, logGz))
+        .orElseGet(List::of);
+  }
+
+  /**
+   * This method returns the seq of the last line of a job's compressed log, so that a job that runs
+   * again can carry on after it.
+   *
+   * @param jobId id of the job
+   * @return the seq, or empty if the job's log has not been compressed
+   */
+  public Optional<Long> lastCompressedSeq(long jobId) {
+    List<JobLogLine> lines = readCompressedLines(jobId);
+    return lines.isEmpty() ? Optional.empty() : Optional.of(lines.getLast().getSeq());
+  }
+
+  /**
+   * This method returns the full text of a compressed log, one line per log entry.
+   *
+   * @param logGz the compressed log
+   * @return the log text
+   */
+  public static String text(byte[] logGz) {
+    return gunzip(0, logGz).stream().map(JobLogLine::getMessage).collect(Collectors.joining("\n"));
+  }
+
+  /**
+   * Gzip log lines as a count of lines followed, for each line, by its seq and its message as UTF-8
+   * prefixed by its length (or by -1 if it has none).
+   *
+   * @param lines the log lines
+   * @return the compressed log
+   */
+  public static byte[] gzip(List<JobLogLine> lines) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(bytes))) {
+      out.writeInt(lines.size());
+      for (JobLogLine line : lines) {
+        out.writeLong(line.getSeq());
+        if (line.getMessage() == null) {
+          out.writeInt(-1);
+        } else {
+          byte[] message = line.getMessage().getBytes(StandardCharsets.UTF_8);
+          out.writeInt(message.length);
+          out.write(message);
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  static List<JobLogLine> gunzip(long jobId, byte[] logGz) {
+    try (DataInputStream in =
+        new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(logGz)))) {
+      int count = in.readInt();
+      List<JobLogLine> lines = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        long seq = in.readLong();
+        int length = in.readInt();
+        String message = null;
+        if (length >= 0) {
+          byte[] bytes = new byte[length];
+          in.readFully(bytes);
+          message = new String(bytes, StandardCharsets.UTF_8);
+        }
+        lines.add(JobLogLine.builder().jobId(jobId).seq(seq).message(message).build());
+      }
+      // reading to the end checks the gzip trailer
+      if (in.read() != -1) {
+        throw new IOException("Unexpected data after the last log line");
+      }
+      return lines;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Gzip the text of a log, e.g. to send it to a client that accepts gzip.
+   *
+   * @param text the log text
+   * @return the gzipped UTF-8 text
+   */
+  public static byte[] gzipText(String text) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+      out.write(text.getBytes(StandardCharsets.UTF_8));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return bytes.toByteArray();
+  }
+}
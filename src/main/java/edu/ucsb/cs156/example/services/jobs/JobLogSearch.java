@@ -0,0 +1,343 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.entities.JobLogLine;
+import edu.ucsb.cs156.example.errors.InvalidRequestException;
+import edu.ucsb.cs156.example.models.JobLogMatch;
+import edu.ucsb.cs156.example.models.JobLogSearchResult;
+import edu.ucsb.cs156.example.models.JobSummary;
+import edu.ucsb.cs156.example.repositories.JobLogLineRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * This service searches job logs through an inverted index, job_log_terms, which records each word
+ * that appears in each job's log.
+ *
+ * <p>The words of a running job's log are indexed as its lines are flushed, so only words the job
+ * has not logged before cost an insert. Those inserts run on a single indexing thread, not the
+ * job's, so they add nothing to the time a job spends logging; if that thread falls more than
+ * {@link #INDEX_QUEUE_CAPACITY} batches behind, the job is left to the sweep instead. Every
+ * app.jobs.logSearch.indexIntervalMs, up to {@link #SWEEP_BATCH_SIZE} ended jobs whose logs were
+ * not indexed that way, such as jobs from before logs were indexed or whose node went away, are
+ * indexed from their lines, compressed log or old log column.
+ *
+ * <p>A search for a term finds the jobs whose logs contain all of its words from the index alone,
+ * and reads the logs of only those jobs, newest first, to find the matching lines. A search by
+ * regex alone cannot use the index, so it reads the logs of the newest jobs that pass the other
+ * filters. Either way a search reads at most app.jobs.logSearch.maxJobs logs.
+ */
+@Slf4j
+@Service
+public class JobLogSearch {
+  static final int SWEEP_BATCH_SIZE = 100;
+
+  static final int INDEX_QUEUE_CAPACITY = 1000;
+
+  // longer words are indexed, and searched for, by their first MAX_TERM_LENGTH characters
+  static final int MAX_TERM_LENGTH = 64;
+
+  private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+  private static final String INSERT_TERM =
+      "INSERT INTO job_log_terms (job_id, term) SELECT ?, ?"
+          + " WHERE NOT EXISTS (SELECT 1 FROM job_log_terms WHERE term = ? AND job_id = ?)";
+
+  @Autowired private JobsRepository jobsRepository;
+
+  @Autowired private JobLogLineRepository jobLogLineRepository;
+
+  @Autowired private JobLogCompressor jobLogCompressor;
+
+  @Autowired private JdbcTemplate jdbcTemplate;
+
+  @Value("${app.jobs.logSearch.maxJobs:200}")
+  private int maxJobs;
+
+  @Value("${app.jobs.logSearch.maxTermsPerJob:10000}")
+  private int maxTermsPerJob;
+
+  // the terms already indexed for each job whose log is being written on this node
+  private final Map<Long, Set<String>> indexedTerms = new ConcurrentHashMap<>();
+
+  // jobs running on this node some of whose terms could not be indexed; left to indexEndedJobs
+  private final Set<Long> incomplete = ConcurrentHashMap.newKeySet();
+
+  // runs the inserts for running jobs, and their jobEnded, in the order they were handed over
+  private Executor indexer =
+      new ThreadPoolExecutor(
+          1,
+          1,
+          0L,
+          TimeUnit.MILLISECONDS,
+          new LinkedBlockingQueue<>(INDEX_QUEUE_CAPACITY),
+          Thread.ofPlatform().name("job-log-index").daemon(true).factory());
+
+  /**
+   * The terms a piece of text is indexed by: its words, i.e. runs of letters and digits, in lower
+   * case. Words of a single character are not indexed.
+   *
+   * @param text the text
+   * @return the distinct terms, in the order they first appear
+   */
+  static Set<String> termsOf(String text) {
+    Set<String> terms = new LinkedHashSet<>();
+    if (text == null) {
+      return terms;
+    }
+    for (String word : NON_WORD.split(text.toLowerCase(Locale.ROOT))) {
+      if (word.length() > 1) {
+        terms.add(word.length() > MAX_TERM_LENGTH ? word.substring(0, MAX_TERM_LENGTH) : word);
+      }
+    }
+    return terms;
+  }
+
+  /**
+   * Index the words of lines a running job has just written. Called by JobLogWriter after each
+   * flush; flushes of one job never overlap. The new terms are picked out on the caller's thread
+   * and inserted on the indexing thread. Failures are only logged, and the job's log is indexed
+   * again once it has ended.
+   *
+   * @param jobId id of the job
+   * @param lines the lines
+   */
+  void linesWritten(long jobId, List<JobLogLine> lines) {
+    Set<String> indexed = indexedTerms.computeIfAbsent(jobId, id -> new HashSet<>());
+    List<String> added = new ArrayList<>();
+    for (JobLogLine line : lines) {
+      for (String term : termsOf(line.getMessage())) {
+        if (indexed.size() >= maxTermsPerJob) {
+          break;
+        }
+        if (indexed.add(term)) {
+          added.add(term);
+        }
+      }
+    }
+    if (added.isEmpty()) {
+      return;
+    }
+    try {
+      indexer.execute(
+          () -> {
+            try {
+              insert(jobId, added);
+            } catch (Exception e) {
+              incomplete.add(jobId);
+              log.warn("Failed to index log lines of job {}", jobId, e);
+            }
+          });
+    } catch (RejectedExecutionException e) {
+      incomplete.add(jobId);
+      log.warn("Log indexing is behind; job {} is left to the sweep", jobId);
+    }
+  }
+
+  /**
+   * Stop tracking the terms of a job whose log has been closed on this node, and record that its
+   * log is indexed, once the inserts handed over before are done, unless some of them failed.
+   *
+   * @param jobId id of the job
+   */
+  void jobEnded(long jobId) {
+    indexedTerms.remove(jobId);
+    try {
+      indexer.execute(() -> markIndexed(jobId));
+    } catch (RejectedExecutionException e) {
+      incomplete.remove(jobId);
+      log.warn("Log indexing is behind; job {} is left to the sweep", jobId);
+    }
+  }
+
+  private void markIndexed(long jobId) {
+    if (incomplete.remove(jobId)) {
+      return;
+    }
+    try {
+      jobsRepository.markLogIndexed(jobId);
+    } catch (Exception e) {
+      log.warn("Failed to mark log of job {} as indexed", jobId, e);
+    }
+  }
+
+  /** Index the logs of jobs that ended without their log being indexed. */
+  @Scheduled(
+      initialDelayString = "${app.jobs.logSearch.indexIntervalMs:60000}",
+      fixedDelayString = "${app.jobs.logSearch.indexIntervalMs:60000}")
+  public void indexEndedJobs() {
+    for (Long jobId :
+        jobsRepository.findUnindexedEndedIds(
+            JobRetention.FINISHED_STATUSES, Limit.of(SWEEP_BATCH_SIZE))) {
+      try {
+        index(jobId);
+      } catch (Exception e) {
+        log.warn("Failed to index log of job {}", jobId, e);
+      }
+    }
+  }
+
+  /**
+   * Index the whole log of a job, wherever it is stored, and record that it is indexed.
+   *
+   * @param jobId id of the job
+   */
+  public void index(long jobId) {
+    Set<String> terms = new LinkedHashSet<>();
+    for (JobLogLine line : linesOf(jobId)) {
+      terms.addAll(termsOf(line.getMessage()));
+      if (terms.size() >= maxTermsPerJob) {
+        break;
+      }
+    }
+    insert(jobId, terms.stream().limit(maxTermsPerJob).toList());
+    jobsRepository.markLogIndexed(jobId);
+  }
+
+  private void insert(long jobId, Collection<String> terms) {
+    if (terms.isEmpty()) {
+      return;
+    }
+    jdbcTemplate.batchUpdate(
+        INSERT_TERM,
+        terms,
+        terms.size(),
+        (ps, term) -> {
+          ps.setLong(1, jobId);
+          ps.setString(2, term);
+          ps.setString(3, term);
+          ps.setLong(4, jobId);
+        });
+  }
+
+  /**
+   * The lines of a job's log, from job_log_lines while the job is running, from its compressed log
+   * once it has ended, or from the old log column for jobs run before job_log_lines existed.
+   *
+   * @param jobId id of the job
+   * @return the lines in order; only lines read from job_log_lines have loggedAt set
+   */
+  List<JobLogLine> linesOf(long jobId) {
+    List<JobLogLine> lines = jobLogLineRepository.findAllByJobIdOrderBySeqAsc(jobId);
+    if (lines.isEmpty()) {
+      lines = jobLogCompressor.readCompressedLines(jobId);
+    }
+    if (lines.isEmpty()) {
+      lines = new ArrayList<>();
+      String[] messages = jobsRepository.findLegacyLogById(jobId).orElse("").split("\n", -1);
+      for (int seq = 0; seq < messages.length; seq++) {
+        if (!messages[seq].isEmpty() || messages.length > 1) {
+          lines.add(JobLogLine.builder().jobId(jobId).seq(seq).message(messages[seq]).build());
+        }
+      }
+    }
+    return lines;
+  }
+
+  private static Pattern compile(String regex) {
+    try {
+      return Pattern.compile(regex);
+    } catch (PatternSyntaxException e) {
+      throw new InvalidRequestException(
+          "Invalid regex %s: %s".formatted(regex, e.getDescription()), e);
+    }
+  }
+
+  /**
+   * Find the lines of job logs that contain a term, match a regex, or both.
+   *
+   * @param term if not null, only lines containing this text, ignoring case; only jobs whose logs
+   *     contain each of its words, as whole words, are searched
+   * @param regex if not null, only lines in which this regular expression finds a match
+   * @param status if not null, only jobs with this status
+   * @param createdAfter if not null, only jobs created at or after this time
+   * @param createdBefore if not null, only jobs created before this time
+   * @param limit the most lines to return
+   * @return the matching lines, newest job first and in order within each job
+   * @throws InvalidRequestException if there is neither a term nor a regex, the term has no word of
+   *     two or more characters, or the regex is invalid
+   */
+  public JobLogSearchResult search(
+      String term,
+      String regex,
+      String status,
+      ZonedDateTime createdAfter,
+      ZonedDateTime createdBefore,
+      int limit) {
+    boolean hasTerm = term != null && !term.isBlank();
+    Pattern pattern = regex == null || regex.isEmpty() ? null : compile(regex);
+    if (!hasTerm && pattern == null) {
+      throw new InvalidRequestException("Search for a term, a regex or both");
+    }
+    List<JobSummary> jobs;
+    if (hasTerm) {
+      Set<String> terms = termsOf(term);
+      if (terms.isEmpty()) {
+        throw new InvalidRequestException(
+            "The term must contain a word of at least two letters or digits");
+      }
+      jobs =
+          jobsRepository.findSummariesWithLogTerms(
+              terms, terms.size(), status, createdAfter, createdBefore, Limit.of(maxJobs));
+    } else {
+      jobs =
+          jobsRepository.findSummaryPage(
+              Long.MAX_VALUE, status, null, createdAfter, createdBefore, Limit.of(maxJobs));
+    }
+
+    String text = hasTerm ? term.strip().toLowerCase(Locale.ROOT) : null;
+    List<JobLogMatch> matches = new ArrayList<>();
+    int jobsSearched = 0;
+    boolean truncated = jobs.size() == maxJobs;
+    search:
+    for (JobSummary job : jobs) {
+      jobsSearched++;
+      for (JobLogLine line : linesOf(job.getId())) {
+        String message = line.getMessage() == null ? "" : line.getMessage();
+        if ((text == null || message.toLowerCase(Locale.ROOT).contains(text))
+            && (pattern == null || pattern.matcher(message).find())) {
+          if (matches.size() == limit) {
+            truncated = true;
+            break search;
+          }
+          matches.add(
+              JobLogMatch.builder()
+                  .jobId(job.getId())
+                  .jobType(job.getJobType())
+                  .status(job.getStatus())
+                  .seq(line.getSeq())
+                  .loggedAt(line.getLoggedAt())
+                  .message(message)
+                  .build());
+        }
+      }
+    }
+    return JobLogSearchResult.builder()
+        .matches(matches)
+        .jobsSearched(jobsSearched)
+        .truncated(truncated)
+        .build();
+  }
+}
@@ -0,0 +1,327 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogLine;
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.repositories.JobLogLineRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * This service streams job log lines to clients as server-sent events.
+ *
+ * <p>Each line is sent as a "log" event whose id is the line's seq, so a client that reconnects
+ * with Last-Event-ID picks up where it left off. When the job ends an "end" event carrying the
+ * final status is sent and the stream is closed.
+ *
+ * <p>Lines from jobs running on this node are pushed as their log buffer is flushed, and sent to
+ * each client from a thread of its own; a client that falls app.jobs.logStream.maxQueuedLines
+ * behind is disconnected rather than holding up the job. For jobs that are queued or running on
+ * another node, new lines are read from the database once per poll interval, with one query per job
+ * no matter how many clients are watching it. Once a job has ended and its log has been compressed,
+ * the lines are read from the compressed log instead.
+ */
+@Slf4j
+@Service
+public class JobLogStreams {
+  private static final Set<String> ACTIVE_STATUSES =
+      Set.of("waiting", "queued", "claimed", "running");
+
+  @Autowired private JobsRepository jobsRepository;
+
+  @Autowired private JobLogLineRepository jobLogLineRepository;
+
+  @Autowired @Lazy private JobLogWriter jobLogWriter;
+
+  @Autowired private JobLogCompressor jobLogCompressor;
+
+  @Value("${app.jobs.logStream.timeoutMs:600000}")
+  private long timeoutMs;
+
+  @Value("${app.jobs.logStream.maxQueuedLines:10000}")
+  private int maxQueuedLines;
+
+  // sends published lines to the clients, so that jobs do not wait on slow ones
+  private Executor sender =
+      Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("job-log-stream-", 0).factory());
+
+  private final Map<Long, List<Subscriber>> subscribers = new ConcurrentHashMap<>();
+
+  /**
+   * Open a stream of a job's log lines.
+   *
+   * @param jobId id of the job
+   * @param afterSeq seq of the last line the client has already seen, or -1 for all lines
+   * @return the emitter for the stream
+   * @throws EntityNotFoundException if there is no such job
+   */
+  public SseEmitter subscribe(long jobId, long afterSeq) {
+    String status =
+        jobsRepository
+            .findStatusById(jobId)
+            .orElseThrow(() -> new EntityNotFoundException(Job.class, jobId));
+
+    SseEmitter emitter = createEmitter();
+    Subscriber subscriber = new Subscriber(jobId, emitter, afterSeq);
+    if (ACTIVE_STATUSES.contains(status)) {
+      // register before reading the backlog so that no flush falls between the two
+      subscribers.computeIfAbsent(jobId, id -> new CopyOnWriteArrayList<>()).add(subscriber);
+      emitter.onCompletion(() -> remove(jobId, subscriber));
+      emitter.onTimeout(() -> remove(jobId, subscriber));
+      emitter.onError(e -> remove(jobId, subscriber));
+    }
+    subscriber.catchUp(linesAfter(jobId, afterSeq, !ACTIVE_STATUSES.contains(status)));
+    if (!ACTIVE_STATUSES.contains(status)) {
+      subscriber.end(status);
+    }
+    return emitter;
+  }
+
+  private List<JobLogLine> linesAfter(long jobId, long afterSeq, boolean ended) {
+    List<JobLogLine> lines =
+        jobLogLineRepository.findAllByJobIdAndSeqGreaterThanOrderBySeqAsc(jobId, afterSeq);
+    if (ended && lines.isEmpty()) {
+      // subscribers skip the lines they have already been sent
+      return jobLogCompressor.readCompressedLines(jobId);
+    }
+    return lines;
+  }
+
+  SseEmitter createEmitter() {
+    return new SseEmitter(timeoutMs);
+  }
+
+  /**
+   * Send lines that have just been written to the database to everyone watching the job.
+   *
+   * @param jobId id of the job
+   * @param lines the lines, in seq order
+   */
+  public void publish(long jobId, List<JobLogLine> lines) {
+    List<Subscriber> watching = subscribers.get(jobId);
+    if (watching != null) {
+      watching.forEach(subscriber -> subscriber.send(lines));
+    }
+  }
+
+  /**
+   * Close every stream for a job that has ended.
+   *
+   * @param jobId id of the job
+   * @param status the job's final status
+   */
+  public void complete(long jobId, String status) {
+    List<Subscriber> watching = subscribers.remove(jobId);
+    if (watching != null) {
+      watching.forEach(subscriber -> subscriber.end(status));
+    }
+  }
+
+  /** Catch up streams of jobs that are not running on this node, and close those that ended. */
+  @Scheduled(fixedDelayString = "${app.jobs.logStream.pollIntervalMs:1000}")
+  public void pollRemoteJobs() {
+    for (Map.Entry<Long, List<Subscriber>> entry : subscribers.entrySet()) {
+      long jobId = entry.getKey();
+      if (jobLogWriter.isOpen(jobId)) {
+        continue;
+      }
+      try {
+        long afterSeq =
+            entry.getValue().stream().mapToLong(Subscriber::getLastSeq).min().orElse(-1L);
+        // read the status first: once it has ended, the lines may only be in the compressed log
+        String status = jobsRepository.findStatusById(jobId).orElse("deleted");
+        boolean ended = !ACTIVE_STATUSES.contains(status);
+        publish(jobId, linesAfter(jobId, afterSeq, ended));
+        if (ended) {
+          complete(jobId, status);
+        }
+      } catch (Exception e) {
+        log.warn("Failed to poll log lines for job {}", jobId, e);
+      }
+    }
+  }
+
+  /**
+   * This method returns the number of open streams, across all jobs.
+   *
+   * @return the number of open streams
+   */
+  public int getOpenStreams() {
+    return subscribers.values().stream().mapToInt(List::size).sum();
+  }
+
+  private void remove(long jobId, Subscriber subscriber) {
+    subscribers.computeIfPresent(
+        jobId,
+        (id, watching) -> {
+          watching.remove(subscriber);
+          return watching.isEmpty() ? null : watching;
+        });
+  }
+
+  /**
+   * One client's stream. Its backlog is sent by the thread that subscribed; lines published after
+   * that are queued and sent by a task on the sender executor, so the job that published them never
+   * waits for the client. Lines the client has already been sent are skipped, and a client that
+   * falls more than maxQueuedLines behind is dropped.
+   */
+  private class Subscriber {
+    private final long jobId;
+    private final SseEmitter emitter;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ArrayDeque<JobLogLine> queue = new ArrayDeque<>();
+    // highest seq sent, only written by the thread sending
+    private volatile long lastSeq;
+    // highest seq queued, guarded by lock
+    private long queuedSeq;
+    private boolean caughtUp;
+    private boolean draining;
+    private String endStatus;
+    private volatile boolean closed;
+
+    Subscriber(long jobId, SseEmitter emitter, long afterSeq) {
+      this.jobId = jobId;
+      this.emitter = emitter;
+      this.lastSeq = afterSeq;
+      this.queuedSeq = afterSeq;
+    }
+
+    long getLastSeq() {
+      lock.lock();
+      try {
+        return Math.max(lastSeq, queuedSeq);
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    void catchUp(List<JobLogLine> backlog) {
+      // nothing else sends until caughtUp is set
+      write(backlog);
+      lock.lock();
+      try {
+        caughtUp = true;
+        startDraining();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    void send(List<JobLogLine> lines) {
+      lock.lock();
+      try {
+        if (closed) {
+          return;
+        }
+        for (JobLogLine line : lines) {
+          if (line.getSeq() > queuedSeq) {
+            queue.add(line);
+            queuedSeq = line.getSeq();
+          }
+        }
+        if (queue.size() > maxQueuedLines) {
+          log.info("Dropping a log stream of job {}: the client fell behind", jobId);
+          closed = true;
+          queue.clear();
+          sender.execute(() -> emitter.completeWithError(new IOException("client fell behind")));
+          remove(jobId, this);
+          return;
+        }
+        startDraining();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    void end(String status) {
+      lock.lock();
+      try {
+        endStatus = status;
+        startDraining();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    // called holding lock
+    private void startDraining() {
+      if (caughtUp && !draining && (!queue.isEmpty() || endStatus != null)) {
+        draining = true;
+        sender.execute(this::drain);
+      }
+    }
+
+    private void drain() {
+      while (true) {
+        List<JobLogLine> lines;
+        String status;
+        lock.lock();
+        try {
+          lines = new ArrayList<>(queue);
+          queue.clear();
+          status = endStatus;
+          if (closed || (lines.isEmpty() && status == null)) {
+            draining = false;
+            return;
+          }
+        } finally {
+          lock.unlock();
+        }
+        write(lines);
+        if (lines.isEmpty()) {
+          finish(status);
+        }
+      }
+    }
+
+    private void finish(String status) {
+      closed = true;
+      try {
+        emitter.send(SseEmitter.event().name("end").data(status));
+        emitter.complete();
+      } catch (IOException | IllegalStateException e) {
+        emitter.completeWithError(e);
+      }
+    }
+
+    private void write(List<JobLogLine> lines) {
+      for (JobLogLine line : lines) {
+        if (closed) {
+          return;
+        }
+        if (line.getSeq() <= lastSeq) {
+          continue;
+        }
+        try {
+          emitter.send(
+              SseEmitter.event()
+                  .id(Long.toString(line.getSeq()))
+                  .name("log")
+                  .data(line.getMessage()));
+          lastSeq = line.getSeq();
+        } catch (IOException | IllegalStateException e) {
+          // the client has gone away; the emitter's error callback deregisters it
+          closed = true;
+          emitter.completeWithError(e);
+        }
+      }
+    }
+  }
+}
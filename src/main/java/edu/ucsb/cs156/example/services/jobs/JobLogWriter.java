@@ -0,0 +1,176 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogLine;
+import edu.ucsb.cs156.example.models.JobLogFlushStats;
+import edu.ucsb.cs156.example.services.jobs.JobLogBuffer.FlushReason;
+import java.sql.Types;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * This service hands out a {@link JobLogBuffer} to each running job and keeps statistics about how
+ * often, and how quickly, those buffers are flushed to the database.
+ *
+ * <p>When app.jobs.log.buffered is false every buffer holds a single line, so each log call is
+ * written immediately.
+ */
+@Slf4j
+@Service
+public class JobLogWriter {
+  static final String INSERT_LINE =
+      "INSERT INTO job_log_lines (job_id, seq, logged_at, message) VALUES (?, ?, ?, ?)";
+
+  @Autowired private JdbcTemplate jdbcTemplate;
+
+  @Autowired private JobLogStreams jobLogStreams;
+
+  @Autowired private JobMetrics jobMetrics;
+
+  @Autowired private JobLogSearch jobLogSearch;
+
+  @Value("${app.jobs.log.buffered:true}")
+  private boolean buffered;
+
+  @Value("${app.jobs.log.flushMaxLines:100}")
+  private int flushMaxLines;
+
+  @Value("${app.jobs.log.flushIntervalMs:1000}")
+  private long flushIntervalMs;
+
+  private final Map<Long, JobLogBuffer> openBuffers = new ConcurrentHashMap<>();
+
+  private final LongAdder linesFlushed = new LongAdder();
+  private final LongAdder totalFlushNanos = new LongAdder();
+  private final AtomicLong maxFlushNanos = new AtomicLong();
+  private final Map<FlushReason, LongAdder> flushesByReason = new EnumMap<>(FlushReason.class);
+
+  public JobLogWriter() {
+    for (FlushReason reason : FlushReason.values()) {
+      flushesByReason.put(reason, new LongAdder());
+    }
+  }
+
+  /**
+   * Create and register a log buffer for a job that is about to run.
+   *
+   * @param job the job
+   * @return the buffer that the job's JobContext should append to
+   */
+  public JobLogBuffer open(Job job) {
+    JobLogBuffer buffer =
+        new JobLogBuffer(
+            job.getId(), this, buffered ? flushMaxLines : 1, buffered ? flushIntervalMs : 0);
+    openBuffers.put(job.getId(), buffer);
+    return buffer;
+  }
+
+  /**
+   * Flush whatever is left in a job's buffer and stop tracking it.
+   *
+   * @param buffer the buffer returned by open
+   */
+  public void close(JobLogBuffer buffer) {
+    try {
+      buffer.flush(FlushReason.END);
+    } finally {
+      openBuffers.remove(buffer.getJobId());
+      jobLogSearch.jobEnded(buffer.getJobId());
+    }
+  }
+
+  /**
+   * Whether a job has an open buffer, i.e. is running on this node.
+   *
+   * @param jobId id of the job
+   * @return true if the job's buffer is open
+   */
+  public boolean isOpen(long jobId) {
+    return openBuffers.containsKey(jobId);
+  }
+
+  /** Flush buffers of jobs that have logged something but then gone quiet. */
+  @Scheduled(fixedDelayString = "${app.jobs.log.flushIntervalMs:1000}")
+  public void flushDueBuffers() {
+    long now = System.nanoTime();
+    for (JobLogBuffer buffer : openBuffers.values()) {
+      try {
+        if (buffer.isDue(now)) {
+          buffer.flush(FlushReason.INTERVAL);
+        }
+      } catch (Exception e) {
+        log.warn("Failed to flush log buffer for job {}", buffer.getJobId(), e);
+      }
+    }
+  }
+
+  /**
+   * Insert a batch of log lines with one JDBC batch. The lines' ids are left unset: nothing reads
+   * them back, and with IDENTITY ids a JPA saveAll would issue one insert per line.
+   *
+   * @param lines the lines to insert
+   */
+  void insert(List<JobLogLine> lines) {
+    jdbcTemplate.batchUpdate(
+        INSERT_LINE,
+        lines,
+        lines.size(),
+        (ps, line) -> {
+          ps.setLong(1, line.getJobId());
+          ps.setLong(2, line.getSeq());
+          ps.setObject(
+              3,
+              line.getLoggedAt() == null ? null : line.getLoggedAt().toOffsetDateTime(),
+              Types.TIMESTAMP_WITH_TIMEZONE);
+          ps.setString(4, line.getMessage());
+        });
+  }
+
+  void recordFlush(FlushReason reason, int lines, long nanos) {
+    flushesByReason.get(reason).increment();
+    linesFlushed.add(lines);
+    totalFlushNanos.add(nanos);
+    maxFlushNanos.accumulateAndGet(nanos, Math::max);
+  }
+
+  void flushed(long jobId, List<JobLogLine> lines) {
+    jobMetrics.recordLogWritten(lines);
+    jobLogStreams.publish(jobId, lines);
+    jobLogSearch.linesWritten(jobId, lines);
+  }
+
+  /**
+   * This method returns a snapshot of the flush statistics since startup.
+   *
+   * @return the flush statistics
+   */
+  public JobLogFlushStats getStats() {
+    long flushCount = flushesByReason.values().stream().mapToLong(LongAdder::sum).sum();
+    double totalMillis = totalFlushNanos.sum() / 1_000_000.0;
+    return JobLogFlushStats.builder()
+        .buffered(buffered)
+        .flushMaxLines(flushMaxLines)
+        .flushIntervalMs(flushIntervalMs)
+        .openBuffers(openBuffers.size())
+        .flushCount(flushCount)
+        .sizeFlushes(flushesByReason.get(FlushReason.SIZE).sum())
+        .intervalFlushes(flushesByReason.get(FlushReason.INTERVAL).sum())
+        .statusFlushes(flushesByReason.get(FlushReason.STATUS).sum())
+        .endFlushes(flushesByReason.get(FlushReason.END).sum())
+        .linesFlushed(linesFlushed.sum())
+        .totalFlushMillis(totalMillis)
+        .maxFlushMillis(maxFlushNanos.get() / 1_000_000.0)
+        .averageFlushMillis(flushCount == 0 ? 0.0 : totalMillis / flushCount)
+        .build();
+  }
+}
@@ -0,0 +1,123 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogLine;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * This service records Micrometer metrics for the job subsystem. They can be read at
+ * /actuator/metrics/{name}:
+ *
+ * <ul>
+ *   <li>jobs.queue.depth: jobs in the jobs table waiting to be claimed, by any node
+ *   <li>jobs.executor.running and jobs.executor.queued: jobs running, or accepted and waiting for a
+ *       thread, on this node
+ *   <li>jobs.queue.wait: time from a job being created to it starting to run, by type
+ *   <li>jobs.run: run time of each job, by type and final status; its count per status is the
+ *       number of jobs that completed, failed, were cancelled or timed out
+ *   <li>jobs.log.lines and jobs.log.bytes: log output written to job_log_lines
+ * </ul>
+ */
+@Service
+public class JobMetrics {
+  private static final Duration MAX_EXPECTED_DURATION = Duration.ofHours(1);
+
+  @Autowired private MeterRegistry meterRegistry;
+
+  @Autowired private JobExecutor jobExecutor;
+
+  @Autowired private JobsRepository jobsRepository;
+
+  private Counter logLines;
+  private Counter logBytes;
+
+  @PostConstruct
+  void registerMeters() {
+    Gauge.builder("jobs.queue.depth", jobsRepository, r -> r.countByStatus("queued"))
+        .description("Jobs waiting in the jobs table to be claimed")
+        .register(meterRegistry);
+    Gauge.builder("jobs.executor.running", jobExecutor, e -> e.getStats().getRunning())
+        .description("Jobs running on this node")
+        .register(meterRegistry);
+    Gauge.builder("jobs.executor.queued", jobExecutor, e -> e.getStats().getQueued())
+        .description("Jobs accepted by this node's executor and waiting for a thread")
+        .register(meterRegistry);
+    logLines =
+        Counter.builder("jobs.log.lines")
+            .description("Job log lines written to the database")
+            .register(meterRegistry);
+    logBytes =
+        Counter.builder("jobs.log.bytes")
+            .description("UTF-8 bytes of job log messages written to the database")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+  }
+
+  /**
+   * Record how long a job waited between being created and starting to run.
+   *
+   * @param job the job, which is about to run
+   */
+  public void recordQueueWait(Job job) {
+    if (job.getCreatedAt() == null) {
+      return;
+    }
+    Duration wait = Duration.between(job.getCreatedAt(), ZonedDateTime.now());
+    Timer.builder("jobs.queue.wait")
+        .description("Time from a job being created to it starting to run")
+        .tag("type", typeOf(job))
+        .publishPercentileHistogram()
+        .maximumExpectedValue(MAX_EXPECTED_DURATION)
+        .register(meterRegistry)
+        .record(wait.isNegative() ? Duration.ZERO : wait);
+  }
+
+  /**
+   * Record how long a job ran and how it ended.
+   *
+   * @param job the job, with its final status
+   * @param nanos how long it ran, in nanoseconds
+   */
+  public void recordRun(Job job, long nanos) {
+    Timer.builder("jobs.run")
+        .description("Run time of jobs")
+        .tag("type", typeOf(job))
+        .tag("status", job.getStatus())
+        .publishPercentileHistogram()
+        .maximumExpectedValue(MAX_EXPECTED_DURATION)
+        .register(meterRegistry)
+        .record(nanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Record log lines that have been written to the database.
+   *
+   * @param lines the lines
+   */
+  public void recordLogWritten(List<JobLogLine> lines) {
+    long bytes = 0;
+    for (JobLogLine line : lines) {
+      if (line.getMessage() != null) {
+        bytes += line.getMessage().getBytes(StandardCharsets.UTF_8).length;
+      }
+    }
+    logLines.increment(lines.size());
+    logBytes.increment(bytes);
+  }
+
+  private static String typeOf(Job job) {
+    return job.getJobType() != null ? job.getJobType() : "unknown";
+  }
+}
@@ -0,0 +1,31 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import lombok.Builder;
+import lombok.Value;
+
+/** Optional settings for a job being launched; anything left unset gets its default. */
+@Value
+@Builder
+public class JobOptions {
+  public static final JobOptions DEFAULTS = JobOptions.builder().build();
+
+  // how long the job may run, or null for app.jobs.defaultTimeoutMs
+  Long timeoutMs;
+
+  // jobs with a higher priority are claimed first; jobs of equal priority are shared fairly
+  // between the users who launched them
+  int priority;
+
+  // a durable job that can safely run again from the start is re-queued, rather than abandoned, if
+  // the node running it stops sending heartbeats; see JobRecovery
+  boolean idempotent;
+
+  // if set, launching another job with the same key returns the job launched with it instead, for
+  // as long as that job is kept; jobs rejected because the queue was full do not keep their key
+  String idempotencyKey;
+
+  // launching a durable job while one of the same type with the same params is waiting, queued or
+  // running returns that job instead; a best-effort check, so launches at the same instant may
+  // still both start
+  boolean coalesce;
+}
@@ -0,0 +1,323 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobDependency;
+import edu.ucsb.cs156.example.entities.JobPipeline;
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.errors.InvalidRequestException;
+import edu.ucsb.cs156.example.models.JobPipelineRequest;
+import edu.ucsb.cs156.example.models.JobPipelineStage;
+import edu.ucsb.cs156.example.models.JobPipelineStatus;
+import edu.ucsb.cs156.example.repositories.JobDependencyRepository;
+import edu.ucsb.cs156.example.repositories.JobPipelineRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import edu.ucsb.cs156.example.services.CurrentUserService;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * This service runs pipelines: groups of durable jobs, called stages, that may depend on each
+ * other.
+ *
+ * <p>Stages with dependencies are stored with status "waiting", which the queue never claims. Each
+ * time a stage ends, the waiting stages of its pipeline whose dependencies are now all complete are
+ * queued, so independent stages run in parallel on the executors of any node and a stage starts as
+ * soon as its inputs are done. Stages downstream of one that failed, was cancelled or timed out are
+ * marked "skipped". The same check also runs every app.jobs.queue.pollIntervalMs, so a pipeline
+ * still advances if the node that ran a stage went away before doing it.
+ */
+@Slf4j
+@Service
+public class JobPipelines {
+  private static final Set<String> ACTIVE_STATUSES =
+      Set.of("waiting", "queued", "claimed", "running");
+
+  @Autowired private JobsRepository jobsRepository;
+
+  @Autowired private JobPipelineRepository jobPipelineRepository;
+
+  @Autowired private JobDependencyRepository jobDependencyRepository;
+
+  @Autowired private CurrentUserService currentUserService;
+
+  @Autowired private JobQueueWorker jobQueueWorker;
+
+  @Lazy @Autowired private JobService jobService;
+
+  @Autowired private PlatformTransactionManager transactionManager;
+
+  /**
+   * Launch a pipeline. Its stages without dependencies are queued right away.
+   *
+   * @param request the pipeline's name, options and stages
+   * @return the pipeline, with every stage waiting or queued (or all rejected if the queue is full)
+   * @throws InvalidRequestException if the stages are invalid or their dependencies form a cycle
+   */
+  public JobPipelineStatus launch(JobPipelineRequest request) {
+    List<JobPipelineStage> stages = validate(request.getStages());
+    stages.forEach(stage -> jobQueueWorker.factoryFor(stage.getJobType()));
+    boolean rejected = jobService.queueIsFull();
+
+    // the worker must not see any stage until all of them and their dependencies are saved
+    JobPipeline pipeline =
+        new TransactionTemplate(transactionManager)
+            .execute(status -> save(request, stages, rejected));
+    log.info(
+        "Launched pipeline {} ({}) with {} stages",
+        pipeline.getId(),
+        pipeline.getName(),
+        stages.size());
+    if (!rejected) {
+      jobQueueWorker.poll();
+    }
+    return getStatus(pipeline.getId());
+  }
+
+  private JobPipeline save(
+      JobPipelineRequest request, List<JobPipelineStage> stages, boolean rejected) {
+    JobPipeline pipeline =
+        jobPipelineRepository.save(
+            JobPipeline.builder()
+                .name(request.getName())
+                .createdBy(currentUserService.getUser())
+                .build());
+    Map<String, Long> jobIds = new HashMap<>();
+    for (JobPipelineStage stage : stages) {
+      String status = rejected ? "rejected" : dependsOn(stage).isEmpty() ? "queued" : "waiting";
+      Job job =
+          Job.builder()
+              .createdBy(pipeline.getCreatedBy())
+              .jobType(stage.getJobType())
+              .timeoutMs(jobService.timeoutOrDefault(request.getTimeoutMs()))
+              .priority(request.getPriority())
+              .params(jobQueueWorker.writeParams(paramsOf(stage)))
+              .pipelineId(pipeline.getId())
+              .pipelineStage(stage.getName())
+              .status(status)
+              .build();
+      jobIds.put(stage.getName(), jobsRepository.save(job).getId());
+    }
+    List<JobDependency> dependencies = new ArrayList<>();
+    for (JobPipelineStage stage : stages) {
+      for (String upstream : dependsOn(stage)) {
+        dependencies.add(
+            JobDependency.builder()
+                .jobId(jobIds.get(stage.getName()))
+                .dependsOnJobId(jobIds.get(upstream))
+                .build());
+      }
+    }
+    jobDependencyRepository.saveAll(dependencies);
+    return pipeline;
+  }
+
+  /**
+   * Check the stages of a pipeline: every stage needs a unique name, and may only depend on other
+   * stages, without cycles.
+   *
+   * @param stages the stages
+   * @return the stages
+   * @throws InvalidRequestException if they are not a valid pipeline
+   */
+  static List<JobPipelineStage> validate(List<JobPipelineStage> stages) {
+    if (stages == null || stages.isEmpty()) {
+      throw new InvalidRequestException("A pipeline needs at least one stage");
+    }
+    Map<String, JobPipelineStage> byName = new LinkedHashMap<>();
+    for (JobPipelineStage stage : stages) {
+      if (stage.getName() == null || stage.getName().isBlank()) {
+        throw new InvalidRequestException("Every pipeline stage needs a name");
+      }
+      if (byName.put(stage.getName(), stage) != null) {
+        throw new InvalidRequestException("Duplicate pipeline stage " + stage.getName());
+      }
+    }
+    // Kahn's algorithm: whatever cannot be ordered is part of, or downstream of, a cycle
+    Map<String, Integer> unmet = new HashMap<>();
+    Map<String, List<String>> downstream = new HashMap<>();
+    for (JobPipelineStage stage : stages) {
+      for (String upstream : dependsOn(stage)) {
+        if (!byName.containsKey(upstream)) {
+          throw new InvalidRequestException(
+              "Stage %s depends on unknown stage %s".formatted(stage.getName(), upstream));
+        }
+        downstream.computeIfAbsent(upstream, name -> new ArrayList<>()).add(stage.getName());
+      }
+      unmet.put(stage.getName(), dependsOn(stage).size());
+    }
+    Deque<String> ready = new ArrayDeque<>();
+    unmet.forEach(
+        (name, count) -> {
+          if (count == 0) {
+            ready.add(name);
+          }
+        });
+    int ordered = 0;
+    while (!ready.isEmpty()) {
+      ordered++;
+      for (String next : downstream.getOrDefault(ready.poll(), List.of())) {
+        if (unmet.merge(next, -1, Integer::sum) == 0) {
+          ready.add(next);
+        }
+      }
+    }
+    if (ordered < stages.size()) {
+      throw new InvalidRequestException("Pipeline stage dependencies form a cycle");
+    }
+    return stages;
+  }
+
+  private static List<String> dependsOn(JobPipelineStage stage) {
+    return stage.getDependsOn() != null ? stage.getDependsOn() : List.of();
+  }
+
+  private static Map<String, String> paramsOf(JobPipelineStage stage) {
+    return stage.getParams() != null ? stage.getParams() : Map.of();
+  }
+
+  /**
+   * Skip the stages of a pipeline that can no longer run, and queue those that are ready.
+   *
+   * @param pipelineId id of the pipeline
+   * @return the number of stages queued
+   */
+  public int advance(long pipelineId) {
+    int skipped;
+    do {
+      // each round skips the next layer of stages downstream of a failure
+      skipped = jobsRepository.skipBlockedStages(pipelineId);
+    } while (skipped > 0);
+    int queued = jobsRepository.queueReadyStages(pipelineId);
+    if (queued > 0) {
+      jobQueueWorker.poll();
+    }
+    return queued;
+  }
+
+  /**
+   * Advance the pipeline of a job that has just ended. Failures are only logged, since {@link
+   * #advanceWaitingPipelines} tries again shortly.
+   *
+   * @param job the job, with its final status
+   */
+  public void stageEnded(Job job) {
+    if (job.getPipelineId() == null) {
+      return;
+    }
+    try {
+      advance(job.getPipelineId());
+    } catch (Exception e) {
+      log.warn("Failed to advance pipeline {} after job {}", job.getPipelineId(), job.getId(), e);
+    }
+  }
+
+  /** Advance every pipeline with waiting stages, in case a stage ended without advancing it. */
+  @Scheduled(fixedDelayString = "${app.jobs.queue.pollIntervalMs:1000}")
+  public void advanceWaitingPipelines() {
+    for (Long pipelineId : jobsRepository.findWaitingPipelineIds()) {
+      try {
+        advance(pipelineId);
+      } catch (Exception e) {
+        log.warn("Failed to advance pipeline {}", pipelineId, e);
+      }
+    }
+  }
+
+  /**
+   * Cancel every stage of a pipeline that has not ended yet.
+   *
+   * @param pipelineId id of the pipeline
+   * @return a message describing what happened
+   */
+  public String cancel(long pipelineId) {
+    int cancelled = 0;
+    for (Job job : jobsRepository.findAllByPipelineIdOrderByIdAsc(pipelineId)) {
+      if (ACTIVE_STATUSES.contains(job.getStatus())) {
+        jobService.cancel(job.getId());
+        cancelled++;
+      }
+    }
+    return "Cancelled %d stages of pipeline %d".formatted(cancelled, pipelineId);
+  }
+
+  /**
+   * This method returns a pipeline with the status of each of its stages.
+   *
+   * @param pipelineId id of the pipeline
+   * @return the pipeline
+   * @throws EntityNotFoundException if there is no such pipeline
+   */
+  public JobPipelineStatus getStatus(long pipelineId) {
+    JobPipeline pipeline =
+        jobPipelineRepository
+            .findById(pipelineId)
+            .orElseThrow(() -> new EntityNotFoundException(JobPipeline.class, pipelineId));
+    List<Job> jobs = jobsRepository.findAllByPipelineIdOrderByIdAsc(pipelineId);
+    Map<Long, String> stageNames = new HashMap<>();
+    jobs.forEach(job -> stageNames.put(job.getId(), job.getPipelineStage()));
+    Map<Long, List<String>> dependsOn = new HashMap<>();
+    for (JobDependency dependency : jobDependencyRepository.findAllByJobIdIn(stageNames.keySet())) {
+      dependsOn
+          .computeIfAbsent(dependency.getJobId(), id -> new ArrayList<>())
+          .add(stageNames.get(dependency.getDependsOnJobId()));
+    }
+    List<JobPipelineStage> stages =
+        jobs.stream()
+            .map(
+                job ->
+                    JobPipelineStage.builder()
+                        .name(job.getPipelineStage())
+                        .jobType(job.getJobType())
+                        .params(jobQueueWorker.readParams(job.getParams()))
+                        .dependsOn(dependsOn.getOrDefault(job.getId(), List.of()))
+                        .jobId(job.getId())
+                        .status(job.getStatus())
+                        .build())
+            .toList();
+    return JobPipelineStatus.builder()
+        .id(pipeline.getId())
+        .name(pipeline.getName())
+        .createdAt(pipeline.getCreatedAt())
+        .status(pipelineStatus(jobs.stream().map(Job::getStatus).toList()))
+        .stages(stages)
+        .build();
+  }
+
+  /**
+   * Derive the status of a pipeline from the statuses of its stages. While any stage may still run
+   * the pipeline is "queued" if none has started yet and "running" otherwise. Once none can, it is
+   * "complete" if every stage completed, "rejected" if it was rejected when launched, "cancelled"
+   * if a stage was cancelled, and otherwise "error".
+   *
+   * @param stageStatuses statuses of the stages
+   * @return the pipeline's status
+   */
+  public static String pipelineStatus(Collection<String> stageStatuses) {
+    if (stageStatuses.stream().anyMatch(ACTIVE_STATUSES::contains)) {
+      boolean started =
+          stageStatuses.stream().anyMatch(s -> !"waiting".equals(s) && !"queued".equals(s));
+      return started ? "running" : "queued";
+    }
+    if (stageStatuses.stream().allMatch("complete"::equals)) {
+      return "complete";
+    }
+    if (stageStatuses.contains("rejected")) {
+      return "rejected";
+    }
+    return stageStatuses.contains("cancelled") ? "cancelled" : "error";
+  }
+}
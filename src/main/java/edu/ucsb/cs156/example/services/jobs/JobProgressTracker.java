@@ -0,0 +1,90 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.time.ZonedDateTime;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Holds the latest progress reported by one running job and writes it to the job's row at most once
+ * per update interval, so that jobs can report progress for every item they process.
+ *
+ * <p>Each write also records the job's throughput: the items done per second since the previous
+ * write. Progress is informational, so a failed write is logged and does not fail the job.
+ *
+ * <p>Subtasks on virtual threads report progress concurrently, so updates are serialized with a
+ * ReentrantLock rather than synchronized, which would pin a carrier thread during the write.
+ */
+@Slf4j
+public class JobProgressTracker {
+  private final long jobId;
+  private final JobsRepository jobsRepository;
+  private final long updateIntervalNanos;
+  private final ReentrantLock lock = new ReentrantLock();
+
+  private long done;
+  private Long total;
+  private boolean pending;
+
+  private long writtenDone;
+  private long writtenAtNanos;
+  private Double itemsPerSecond;
+
+  /**
+   * Create a tracker for one job.
+   *
+   * @param jobId id of the job
+   * @param jobsRepository repository the progress is written to
+   * @param updateIntervalMs the least time in milliseconds between two writes
+   */
+  public JobProgressTracker(long jobId, JobsRepository jobsRepository, long updateIntervalMs) {
+    this.jobId = jobId;
+    this.jobsRepository = jobsRepository;
+    this.updateIntervalNanos = updateIntervalMs * 1_000_000L;
+    this.writtenAtNanos = System.nanoTime();
+  }
+
+  /**
+   * Record the job's progress, writing it if the last write is at least the update interval old.
+   *
+   * @param done the items done so far
+   * @param total the items to do in all, or 0 or less if that is not known
+   */
+  public void update(long done, long total) {
+    lock.lock();
+    try {
+      this.done = done;
+      this.total = total > 0 ? total : null;
+      pending = true;
+      if (System.nanoTime() - writtenAtNanos >= updateIntervalNanos) {
+        flush();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Write the latest progress if it has not been written yet. */
+  public void flush() {
+    lock.lock();
+    try {
+      if (!pending) {
+        return;
+      }
+      long now = System.nanoTime();
+      if (now > writtenAtNanos && done >= writtenDone) {
+        itemsPerSecond = (done - writtenDone) * 1e9 / (now - writtenAtNanos);
+      }
+      pending = false;
+      writtenDone = done;
+      writtenAtNanos = now;
+      try {
+        jobsRepository.updateProgress(jobId, done, total, itemsPerSecond, ZonedDateTime.now());
+      } catch (Exception e) {
+        log.warn("Failed to record progress of job {}", jobId, e);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+}
@@ -0,0 +1,61 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.time.ZonedDateTime;
+import java.util.Optional;
+import java.util.Set;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * This service claims queued jobs from the jobs table.
+ *
+ * <p>The candidate row is selected with FOR UPDATE SKIP LOCKED (supported by both Postgres and H2),
+ * so nodes polling at the same time lock different rows instead of waiting on each other. The claim
+ * itself is a conditional update on status, so a row can only ever be claimed once.
+ *
+ * <p>With app.jobs.queue.fairShare (the default) the candidate is chosen by {@link JobFairShare}
+ * instead. That read takes no locks, so two nodes may pick the same job; the loser of the
+ * conditional update picks again.
+ */
+@Service
+public class JobQueue {
+  private static final int MAX_CLAIM_ATTEMPTS = 3;
+
+  @Autowired private JobsRepository jobsRepository;
+
+  @Autowired private JobFairShare jobFairShare;
+
+  @Value("${app.jobs.queue.fairShare:true}")
+  private boolean fairShare;
+
+  /**
+   * Claim the next queued job this node may run: the fairest one, or the oldest one with the
+   * highest priority when fair share is off.
+   *
+   * @param nodeId id of the claiming node; jobs pinned to other nodes are skipped
+   * @param excludedTypes job types this node has no capacity for right now
+   * @return the claimed job, with status "claimed", or empty if there is nothing to claim
+   */
+  @Transactional
+  public Optional<Job> claimNext(String nodeId, Set<String> excludedTypes) {
+    // NOT IN () is not valid SQL, so always exclude at least the empty type
+    Set<String> excluded = excludedTypes.isEmpty() ? Set.of("") : excludedTypes;
+    for (int attempt = 0; attempt < MAX_CLAIM_ATTEMPTS; attempt++) {
+      Optional<Long> id =
+          fairShare
+              ? jobFairShare.pickNext(nodeId, excluded)
+              : jobsRepository.findNextClaimableId(nodeId, excluded);
+      if (id.isEmpty()) {
+        return Optional.empty();
+      }
+      if (jobsRepository.claim(id.get(), nodeId, ZonedDateTime.now()) == 1) {
+        return jobsRepository.findById(id.get());
+      }
+    }
+    return Optional.empty();
+  }
+}
@@ -0,0 +1,248 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.errors.InvalidRequestException;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import jakarta.annotation.PostConstruct;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.ZonedDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * This service moves jobs from the queue in the jobs table onto this node's {@link JobExecutor}.
+ *
+ * <p>Every node runs a worker. It polls every app.jobs.queue.pollIntervalMs, and also immediately
+ * when a job is enqueued on this node, and claims as many jobs as the executor has idle slots for.
+ *
+ * <p>Durable jobs (launched with a job type and parameters) can be claimed by any node; the job is
+ * rebuilt by the {@link JobFactory} for its type. Jobs launched with an arbitrary {@link
+ * JobContextConsumer} only exist in memory on the node that accepted them, so they are pinned to
+ * that node.
+ */
+@Slf4j
+@Service
+public class JobQueueWorker {
+  @Autowired private JobQueue jobQueue;
+
+  @Autowired private JobExecutor jobExecutor;
+
+  @Autowired private JobsRepository jobsRepository;
+
+  @Autowired private ObjectMapper mapper;
+
+  @Lazy @Autowired private JobService jobService;
+
+  @Lazy @Autowired private JobRecovery jobRecovery;
+
+  @Autowired(required = false)
+  private List<JobFactory> jobFactories = List.of();
+
+  @Value("${app.jobs.nodeId:}")
+  private String configuredNodeId;
+
+  private String nodeId;
+  private final Map<String, JobFactory> factoriesByType = new HashMap<>();
+  private final Map<Long, JobContextConsumer> localJobs = new ConcurrentHashMap<>();
+
+  private final ReentrantLock pollLock = new ReentrantLock();
+  private final AtomicBoolean pollRequested = new AtomicBoolean();
+  private volatile boolean ready;
+
+  @PostConstruct
+  void init() {
+    nodeId = configuredNodeId.isBlank() ? defaultNodeId() : configuredNodeId;
+    jobFactories.forEach(f -> factoriesByType.put(f.getJobType(), f));
+    log.info("JobQueueWorker node {} can rebuild job types {}", nodeId, factoriesByType.keySet());
+  }
+
+  private static String defaultNodeId() {
+    try {
+      return InetAddress.getLocalHost().getHostName();
+    } catch (UnknownHostException e) {
+      return "node-" + UUID.randomUUID();
+    }
+  }
+
+  public String getNodeId() {
+    return nodeId;
+  }
+
+  /**
+   * Whether startup recovery has finished, so that the jobs recorded under this node's id are its
+   * own.
+   *
+   * @return true once this node is claiming jobs
+   */
+  public boolean isReady() {
+    return ready;
+  }
+
+  /**
+   * This method returns the factory for a durable job type.
+   *
+   * @param jobType the job type
+   * @return the factory
+   * @throws InvalidRequestException if no factory is registered for the type
+   */
+  public JobFactory factoryFor(String jobType) {
+    JobFactory factory = factoriesByType.get(jobType);
+    if (factory == null) {
+      throw new InvalidRequestException("No JobFactory registered for job type " + jobType);
+    }
+    return factory;
+  }
+
+  /**
+   * Serialize job parameters for storage in the jobs table.
+   *
+   * @param params the parameters
+   * @return the parameters as JSON
+   */
+  public String writeParams(Map<String, String> params) {
+    try {
+      return mapper.writeValueAsString(params);
+    } catch (Exception e) {
+      throw new IllegalArgumentException("Job parameters cannot be stored", e);
+    }
+  }
+
+  /**
+   * Deserialize job parameters stored in the jobs table.
+   *
+   * @param params the parameters as JSON
+   * @return the parameters
+   */
+  public Map<String, String> readParams(String params) {
+    try {
+      return mapper.readValue(params, new TypeReference<Map<String, String>>() {});
+    } catch (Exception e) {
+      throw new InvalidRequestException("Job parameters cannot be read", e);
+    }
+  }
+
+  /**
+   * Remember the consumer for a job pinned to this node, then poll so it starts right away if there
+   * is capacity.
+   *
+   * @param job the job, already saved with status "queued" and this node's id
+   * @param jobFunction the work to do
+   */
+  public void enqueueLocal(Job job, JobContextConsumer jobFunction) {
+    localJobs.put(job.getId(), jobFunction);
+    poll();
+  }
+
+  /**
+   * Drop the consumer for a pinned job that will never run, e.g. because it was cancelled while
+   * queued.
+   *
+   * @param jobId id of the job
+   */
+  public void forget(long jobId) {
+    localJobs.remove(jobId);
+  }
+
+  /** Claim queued jobs until the executor is full or the queue has nothing for this node. */
+  @Scheduled(fixedDelayString = "${app.jobs.queue.pollIntervalMs:1000}")
+  public void poll() {
+    if (!ready) {
+      return;
+    }
+    if (!pollLock.tryLock()) {
+      // another thread is polling; make sure it goes round once more
+      pollRequested.set(true);
+      return;
+    }
+    try {
+      do {
+        pollRequested.set(false);
+        while (jobExecutor.availableSlots() > 0) {
+          Optional<Job> claimed = jobQueue.claimNext(nodeId, jobExecutor.saturatedTypes());
+          if (claimed.isEmpty()) {
+            break;
+          }
+          dispatch(claimed.get());
+        }
+      } while (pollRequested.get());
+    } catch (Exception e) {
+      log.error("Polling the job queue failed", e);
+    } finally {
+      pollLock.unlock();
+    }
+  }
+
+  void dispatch(Job job) {
+    JobContextConsumer jobFunction = localJobs.remove(job.getId());
+    if (jobFunction == null) {
+      try {
+        jobFunction = factoryFor(job.getJobType()).create(readParams(job.getParams()));
+      } catch (Exception e) {
+        log.error("Cannot rebuild job {} of type {}", job.getId(), job.getJobType(), e);
+        // fail it the way runJob fails any job, so that waiters, pipelines and the log hear of it
+        String message =
+            "Cannot rebuild job of type %s: %s".formatted(job.getJobType(), e.getMessage());
+        jobService.runJob(
+            job,
+            ctx -> {
+              throw new IllegalStateException(message);
+            });
+        return;
+      }
+    }
+    JobContextConsumer consumer = jobFunction;
+    if (!jobExecutor.submit(job.getJobType(), () -> jobService.runJob(job, consumer))) {
+      // only possible if something else filled the executor since availableSlots was checked
+      if (job.getParams() == null) {
+        localJobs.put(job.getId(), consumer);
+      } else {
+        job.setNodeId(null);
+      }
+      job.setStatus("queued");
+      jobsRepository.save(job);
+    }
+  }
+
+  /**
+   * When this node starts, anything the jobs table still records as owned by it belongs to a
+   * previous run of the node, so there is no need to wait for its heartbeats to go stale. Claimed
+   * and running jobs are recovered by {@link JobRecovery}; in-memory jobs that were still queued
+   * can no longer run and are abandoned.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void recoverOwnJobs() {
+    ZonedDateTime startedAt = ZonedDateTime.now();
+    List<Job> leftovers =
+        jobsRepository.findAllByNodeIdAndStatusIn(nodeId, List.of("queued", "claimed", "running"));
+    for (Job job : leftovers) {
+      String status;
+      if ("queued".equals(job.getStatus())) {
+        job.setStatus("abandoned");
+        jobsRepository.save(job);
+        status = job.getStatus();
+      } else {
+        status = jobRecovery.recover(job.getId(), startedAt);
+      }
+      log.warn("Recovered job {} left by a previous run: now {}", job.getId(), status);
+    }
+    ready = true;
+    poll();
+  }
+}
@@ -0,0 +1,130 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.ZonedDateTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * This service recovers jobs whose node died while they were claimed or running.
+ *
+ * <p>Every app.jobs.heartbeat.intervalMs each node refreshes the heartbeat of all the jobs it has
+ * claimed, with one update. On the same schedule, every node looks for claimed or running jobs
+ * whose heartbeat is older than app.jobs.heartbeat.staleAfterMs. Durable jobs that never started,
+ * and durable jobs launched as idempotent, go back on the queue (a running job at most
+ * app.jobs.heartbeat.maxRequeues times); any other stale job is marked "abandoned". Each of these
+ * is a conditional update, so nodes sweeping at the same time cannot both recover a job, and a job
+ * whose heartbeat arrives in the meantime is left alone.
+ *
+ * <p>Heartbeats are sent from a thread of their own rather than from the scheduler shared by the
+ * other {@code @Scheduled} job services, so a long sweep there (e.g. retention or log compression)
+ * cannot hold them back long enough for a busy node's jobs to look stale.
+ *
+ * <p>staleAfterMs should be several heartbeat intervals: a node that is only slow, not dead, keeps
+ * running a job that has been recovered. Recovery bumps the job's version, so when that node gets
+ * round to saving the job's status the save fails and the recovered status stands.
+ */
+@Slf4j
+@Service
+public class JobRecovery {
+  static final int SWEEP_BATCH_SIZE = 100;
+
+  @Autowired private JobsRepository jobsRepository;
+
+  @Lazy @Autowired private JobQueueWorker jobQueueWorker;
+
+  @Lazy @Autowired private JobPipelines jobPipelines;
+
+  @Autowired private JobLogCompressor jobLogCompressor;
+
+  @Autowired private JobCompletions jobCompletions;
+
+  @Value("${app.jobs.heartbeat.intervalMs:10000}")
+  private long intervalMs;
+
+  @Value("${app.jobs.heartbeat.staleAfterMs:60000}")
+  private long staleAfterMs;
+
+  @Value("${app.jobs.heartbeat.maxRequeues:3}")
+  private int maxRequeues;
+
+  private ScheduledExecutorService heartbeats;
+
+  @PostConstruct
+  void startHeartbeats() {
+    heartbeats =
+        Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("job-heartbeat").daemon(true).factory());
+    heartbeats.scheduleWithFixedDelay(
+        () -> {
+          // an exception would cancel the schedule
+          try {
+            beat();
+          } catch (Exception e) {
+            log.warn("Failed to send job heartbeats", e);
+          }
+        },
+        intervalMs,
+        intervalMs,
+        TimeUnit.MILLISECONDS);
+  }
+
+  @PreDestroy
+  void stopHeartbeats() {
+    heartbeats.shutdownNow();
+  }
+
+  /** Refresh the heartbeat of every job this node has claimed, once startup recovery is done. */
+  public void beat() {
+    // until then, jobs recorded under this node's id belong to a previous run of it
+    if (jobQueueWorker.isReady()) {
+      jobsRepository.heartbeat(jobQueueWorker.getNodeId(), ZonedDateTime.now());
+    }
+  }
+
+  /** Recover claimed or running jobs whose node has stopped sending heartbeats. */
+  @Scheduled(fixedDelayString = "${app.jobs.heartbeat.intervalMs:10000}")
+  public void recoverStaleJobs() {
+    ZonedDateTime staleBefore = ZonedDateTime.now().minusNanos(staleAfterMs * 1_000_000L);
+    for (Long jobId : jobsRepository.findStaleIds(staleBefore, Limit.of(SWEEP_BATCH_SIZE))) {
+      try {
+        recover(jobId, staleBefore);
+      } catch (Exception e) {
+        log.warn("Failed to recover stale job {}", jobId, e);
+      }
+    }
+  }
+
+  /**
+   * Re-queue or abandon a claimed or running job, if it has not sent a heartbeat since a cutoff.
+   *
+   * @param jobId id of the job
+   * @param staleBefore the job is only recovered if its last heartbeat is older than this
+   * @return "queued" or "abandoned", or null if the job was not stale
+   */
+  public String recover(long jobId, ZonedDateTime staleBefore) {
+    if (jobsRepository.requeueStale(jobId, staleBefore, maxRequeues) == 1) {
+      log.warn("Job {} was re-queued: its node stopped sending heartbeats", jobId);
+      jobQueueWorker.poll();
+      return "queued";
+    }
+    if (jobsRepository.abandonStale(jobId, staleBefore) == 1) {
+      log.warn("Job {} was abandoned: its node stopped sending heartbeats", jobId);
+      jobsRepository.findById(jobId).ifPresent(jobPipelines::stageEnded);
+      jobLogCompressor.jobEnded(jobId);
+      jobCompletions.statusChanged(jobId);
+      return "abandoned";
+    }
+    return null;
+  }
+}
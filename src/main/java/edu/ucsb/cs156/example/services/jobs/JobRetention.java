@@ -0,0 +1,116 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.errors.InvalidRequestException;
+import edu.ucsb.cs156.example.repositories.JobDependencyRepository;
+import edu.ucsb.cs156.example.repositories.JobLogLineRepository;
+import edu.ucsb.cs156.example.repositories.JobLogTermRepository;
+import edu.ucsb.cs156.example.repositories.JobPipelineRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * This service removes one batch of old, finished jobs and their log lines, optionally copying them
+ * to the archive tables first, or a single finished job that an admin deletes. A pipeline whose
+ * last stages are removed is removed with them. Each batch is its own transaction and uses
+ * set-based statements, so no job is ever loaded as an entity.
+ */
+@Service
+public class JobRetention {
+  /** Statuses of jobs that will never run again. */
+  public static final Set<String> FINISHED_STATUSES =
+      Set.of("complete", "error", "cancelled", "timed_out", "rejected", "skipped", "abandoned");
+
+  @Autowired private JobsRepository jobsRepository;
+
+  @Autowired private JobLogLineRepository jobLogLineRepository;
+
+  @Autowired private JobDependencyRepository jobDependencyRepository;
+
+  @Autowired private JobLogTermRepository jobLogTermRepository;
+
+  @Autowired private JobPipelineRepository jobPipelineRepository;
+
+  /**
+   * The outcome of one batch.
+   *
+   * @param jobs number of jobs removed
+   * @param logLines number of log lines removed
+   */
+  public record PurgedBatch(int jobs, int logLines) {}
+
+  /**
+   * Remove up to batchSize finished jobs last updated before the cutoff, and the pipelines left
+   * with no jobs.
+   *
+   * @param cutoff only jobs last updated before this time
+   * @param batchSize the most jobs to remove
+   * @param archive whether to copy the jobs and lines to the archive tables before removing them
+   * @return how many jobs and log lines were removed
+   */
+  @Transactional
+  public PurgedBatch purgeBatch(ZonedDateTime cutoff, int batchSize, boolean archive) {
+    List<Long> ids = jobsRepository.findExpiredIds(FINISHED_STATUSES, cutoff, batchSize);
+    if (ids.isEmpty()) {
+      return new PurgedBatch(0, 0);
+    }
+    if (archive) {
+      jobsRepository.archiveAllByIdIn(ids);
+      jobLogLineRepository.archiveAllByJobIdIn(ids);
+    }
+    int logLines = jobLogLineRepository.deleteAllByJobIdIn(ids);
+    jobDependencyRepository.deleteAllByJobIdIn(ids);
+    jobLogTermRepository.deleteAllByJobIdIn(ids);
+    List<Long> pipelineIds = jobsRepository.findPipelineIdsByIdIn(ids);
+    int jobs = jobsRepository.deleteAllByIdIn(ids);
+    if (!pipelineIds.isEmpty()) {
+      jobPipelineRepository.deleteAllWithoutJobsByIdIn(pipelineIds);
+    }
+    return new PurgedBatch(jobs, logLines);
+  }
+
+  /**
+   * Remove one finished job and its log, and its pipeline if it was the pipeline's last stage.
+   *
+   * @param id id of the job
+   * @return false if there is no such job
+   * @throws InvalidRequestException if the job has not finished, or if a stage that has not
+   *     finished depends on it
+   */
+  @Transactional
+  public boolean deleteJob(long id) {
+    Optional<String> status = jobsRepository.findStatusById(id);
+    if (status.isEmpty()) {
+      return false;
+    }
+    if (!FINISHED_STATUSES.contains(status.get())) {
+      throw new InvalidRequestException(
+          "Job %d cannot be deleted while it is %s".formatted(id, status.get()));
+    }
+    List<Long> dependentIds =
+        jobDependencyRepository.findUnfinishedDependentIds(id, FINISHED_STATUSES);
+    if (!dependentIds.isEmpty()) {
+      throw new InvalidRequestException(
+          "Job %d cannot be deleted while jobs %s depend on it".formatted(id, dependentIds));
+    }
+    List<Long> ids = List.of(id);
+    jobLogLineRepository.deleteAllByJobIdIn(ids);
+    jobDependencyRepository.deleteAllByJobIdIn(ids);
+    jobLogTermRepository.deleteAllByJobIdIn(ids);
+    List<Long> pipelineIds = jobsRepository.findPipelineIdsByIdIn(ids);
+    if (jobsRepository.deleteFinishedById(id, FINISHED_STATUSES) == 0) {
+      // it was run again since its status was read; this rolls back the deletes above
+      throw new InvalidRequestException(
+          "Job %d cannot be deleted while it is running again".formatted(id));
+    }
+    if (!pipelineIds.isEmpty()) {
+      jobPipelineRepository.deleteAllWithoutJobsByIdIn(pipelineIds);
+    }
+    return true;
+  }
+}
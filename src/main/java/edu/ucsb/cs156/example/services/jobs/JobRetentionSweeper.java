@@ -0,0 +1,113 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.models.JobRetentionStats;
+import edu.ucsb.cs156.example.services.jobs.JobRetention.PurgedBatch;
+import java.time.ZonedDateTime;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * This service periodically removes finished jobs older than app.jobs.retention.days, in batches of
+ * app.jobs.retention.batchSize, archiving them first when app.jobs.retention.archive is true.
+ *
+ * <p>A run stops after app.jobs.retention.maxBatchesPerRun batches so that a large backlog is
+ * worked off over several runs instead of holding the database for one long stretch.
+ */
+@Slf4j
+@Service
+public class JobRetentionSweeper {
+  @Autowired private JobRetention jobRetention;
+
+  @Value("${app.jobs.retention.days:0}")
+  private int retentionDays;
+
+  @Value("${app.jobs.retention.archive:false}")
+  private boolean archive;
+
+  @Value("${app.jobs.retention.batchSize:500}")
+  private int batchSize;
+
+  @Value("${app.jobs.retention.maxBatchesPerRun:100}")
+  private int maxBatchesPerRun;
+
+  private ZonedDateTime lastRunAt;
+  private long lastRunJobs;
+  private long lastRunLogLines;
+  private long lastRunMillis;
+  private long totalJobs;
+  private long totalLogLines;
+  private long totalBatches;
+  private long lastBatchNanos;
+  private long maxBatchNanos;
+
+  /** Remove expired job history; does nothing when retention is not configured. */
+  @Scheduled(cron = "${app.jobs.retention.cron:0 30 3 * * *}")
+  public synchronized void sweep() {
+    if (retentionDays <= 0) {
+      return;
+    }
+    ZonedDateTime now = ZonedDateTime.now();
+    ZonedDateTime cutoff = now.minusDays(retentionDays);
+    long runStart = System.nanoTime();
+    long jobs = 0;
+    long logLines = 0;
+    for (int i = 0; i < maxBatchesPerRun; i++) {
+      long batchStart = System.nanoTime();
+      PurgedBatch batch = jobRetention.purgeBatch(cutoff, batchSize, archive);
+      long nanos = System.nanoTime() - batchStart;
+      if (batch.jobs() == 0) {
+        break;
+      }
+      jobs += batch.jobs();
+      logLines += batch.logLines();
+      totalBatches++;
+      lastBatchNanos = nanos;
+      maxBatchNanos = Math.max(maxBatchNanos, nanos);
+      log.info(
+          "{} {} jobs and {} log lines older than {} in {} ms",
+          archive ? "Archived" : "Deleted",
+          batch.jobs(),
+          batch.logLines(),
+          cutoff,
+          nanos / 1_000_000);
+      if (batch.jobs() < batchSize) {
+        break;
+      }
+    }
+    lastRunAt = now;
+    lastRunJobs = jobs;
+    lastRunLogLines = logLines;
+    lastRunMillis = (System.nanoTime() - runStart) / 1_000_000;
+    totalJobs += jobs;
+    totalLogLines += logLines;
+    if (jobs > 0) {
+      log.info("Job retention run removed {} jobs and {} log lines", jobs, logLines);
+    }
+  }
+
+  /**
+   * This method returns the retention settings and what the sweep has removed since startup.
+   *
+   * @return the retention statistics
+   */
+  public synchronized JobRetentionStats getStats() {
+    return JobRetentionStats.builder()
+        .retentionDays(retentionDays)
+        .archive(archive)
+        .batchSize(batchSize)
+        .maxBatchesPerRun(maxBatchesPerRun)
+        .lastRunAt(lastRunAt)
+        .lastRunJobs(lastRunJobs)
+        .lastRunLogLines(lastRunLogLines)
+        .lastRunMillis(lastRunMillis)
+        .totalJobs(totalJobs)
+        .totalLogLines(totalLogLines)
+        .totalBatches(totalBatches)
+        .lastBatchMillis(lastBatchNanos / 1_000_000.0)
+        .maxBatchMillis(maxBatchNanos / 1_000_000.0)
+        .build();
+  }
+}
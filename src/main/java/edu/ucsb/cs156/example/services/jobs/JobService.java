@@ -1,53 +1,467 @@
 package edu.ucsb.cs156.example.services.jobs;
 
 import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogLine;
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.JobProgress;
+import edu.ucsb.cs156.example.repositories.JobLogLineRepository;
 import edu.ucsb.cs156.example.repositories.JobsRepository;
 import edu.ucsb.cs156.example.services.CurrentUserService;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+@Slf4j
 @Service
 public class JobService {
+  private static final Set<String> ACTIVE_STATUSES =
+      Set.of("waiting", "queued", "claimed", "running");
+
   @Autowired private JobsRepository jobsRepository;
 
+  @Autowired private JobLogLineRepository jobLogLineRepository;
+
   @Autowired private CurrentUserService currentUserService;
 
-  @Lazy @Autowired private JobService self;
+  @Autowired private JobLogWriter jobLogWriter;
+
+  @Autowired private JobLogStreams jobLogStreams;
+
+  @Autowired private JobMetrics jobMetrics;
+
+  @Autowired private JobLogCompressor jobLogCompressor;
+
+  @Autowired private JobCompletions jobCompletions;
+
+  @Autowired private JobQueueWorker jobQueueWorker;
+
+  @Lazy @Autowired private JobPipelines jobPipelines;
+
+  @Value("${app.jobs.queue.maxQueued:1000}")
+  private long maxQueued;
+
+  @Value("${app.jobs.defaultTimeoutMs:0}")
+  private long defaultTimeoutMs;
 
+  @Value("${app.jobs.progress.updateIntervalMs:1000}")
+  private long progressUpdateIntervalMs;
+
+  @Value("${app.jobs.subtasks.parallelism:0}")
+  private int subtaskParallelism;
+
+  private final Map<Long, JobContext> runningJobs = new ConcurrentHashMap<>();
+
+  /**
+   * Run a job that exists only in this JVM. The job is queued in the jobs table but pinned to this
+   * node, since no other node can rebuild it.
+   *
+   * @param jobFunction the work to do
+   * @return the job, with status "queued" (or "rejected" if the queue is full)
+   */
   public Job runAsJob(JobContextConsumer jobFunction) {
-    Job job = Job.builder().createdBy(currentUserService.getUser()).status("running").build();
+    return runAsJob(jobFunction, JobOptions.DEFAULTS);
+  }
 
-    jobsRepository.save(job);
-    self.runJobAsync(job, jobFunction);
+  /**
+   * Run a job that exists only in this JVM, with options such as a timeout or priority.
+   *
+   * @param jobFunction the work to do
+   * @param options the options for the job
+   * @return the job, with status "queued" (or "rejected" if the queue is full), or the job already
+   *     launched with the same idempotency key
+   */
+  public Job runAsJob(JobContextConsumer jobFunction, JobOptions options) {
+    Optional<Job> launched = findLaunched(options, null);
+    if (launched.isPresent()) {
+      return launched.get();
+    }
+    boolean rejected = queueIsFull();
+    Job job =
+        Job.builder()
+            .createdBy(currentUserService.getUser())
+            .jobType(jobTypeOf(jobFunction))
+            .timeoutMs(timeoutOrDefault(options.getTimeoutMs()))
+            .priority(options.getPriority())
+            .nodeId(jobQueueWorker.getNodeId())
+            .idempotencyKey(rejected ? null : options.getIdempotencyKey())
+            .status(rejected ? "rejected" : "queued")
+            .build();
+
+    Optional<Job> duplicate = saveUnlessLaunched(job, options);
+    if (duplicate.isPresent()) {
+      return duplicate.get();
+    }
+    if ("queued".equals(job.getStatus())) {
+      runJobAsync(job, jobFunction);
+    }
 
     return job;
   }
 
-  @Async
+  /**
+   * Launch a durable job. Its type and parameters are stored in the jobs table so that any node can
+   * claim it, including after a restart of this one.
+   *
+   * @param jobType the job type; a {@link JobFactory} must be registered for it
+   * @param params the parameters passed to the factory
+   * @return the job, with status "queued" (or "rejected" if the queue is full)
+   * @throws IllegalArgumentException if there is no factory for the job type
+   */
+  public Job launch(String jobType, Map<String, String> params) {
+    return launch(jobType, params, JobOptions.DEFAULTS);
+  }
+
+  /**
+   * Launch a durable job with options such as a timeout or priority.
+   *
+   * @param jobType the job type; a {@link JobFactory} must be registered for it
+   * @param params the parameters passed to the factory
+   * @param options the options for the job
+   * @return the job, with status "queued" (or "rejected" if the queue is full), or the job already
+   *     launched with the same idempotency key or, when coalescing, the same type and params
+   * @throws IllegalArgumentException if there is no factory for the job type
+   */
+  public Job launch(String jobType, Map<String, String> params, JobOptions options) {
+    jobQueueWorker.factoryFor(jobType);
+    String coalesceKey =
+        options.getCoalesce()
+            ? coalesceKey(jobType, jobQueueWorker.writeParams(new TreeMap<>(params)))
+            : null;
+    Optional<Job> launched = findLaunched(options, coalesceKey);
+    if (launched.isPresent()) {
+      return launched.get();
+    }
+    boolean rejected = queueIsFull();
+    Job job =
+        Job.builder()
+            .createdBy(currentUserService.getUser())
+            .jobType(jobType)
+            .timeoutMs(timeoutOrDefault(options.getTimeoutMs()))
+            .priority(options.getPriority())
+            .idempotent(options.getIdempotent())
+            .params(jobQueueWorker.writeParams(params))
+            .idempotencyKey(rejected ? null : options.getIdempotencyKey())
+            .coalesceKey(coalesceKey)
+            .status(rejected ? "rejected" : "queued")
+            .build();
+
+    Optional<Job> duplicate = saveUnlessLaunched(job, options);
+    if (duplicate.isPresent()) {
+      return duplicate.get();
+    }
+    if ("queued".equals(job.getStatus())) {
+      jobQueueWorker.poll();
+    }
+
+    return job;
+  }
+
+  /**
+   * Look for a job that has already been launched with the same idempotency key or, for a job to be
+   * coalesced, for a job of the same type and params that has not ended.
+   *
+   * @param options the options of the job being launched
+   * @param coalesceKey the coalesce key of the job being launched, or null
+   * @return the job, marked as a duplicate, or empty if the job should be launched
+   */
+  private Optional<Job> findLaunched(JobOptions options, String coalesceKey) {
+    Optional<Job> launched = Optional.empty();
+    if (options.getIdempotencyKey() != null) {
+      launched = jobsRepository.findByIdempotencyKey(options.getIdempotencyKey());
+    }
+    if (launched.isEmpty() && coalesceKey != null) {
+      launched =
+          jobsRepository.findFirstByCoalesceKeyAndStatusInOrderByIdAsc(
+              coalesceKey, ACTIVE_STATUSES);
+    }
+    launched.ifPresent(job -> job.setDuplicate(true));
+    return launched;
+  }
+
+  /**
+   * Save a new job. If another launch with the same idempotency key, or a coalesced launch with the
+   * same coalesce key, saved its job first, a unique index stops this one being saved and that job
+   * is returned instead. The coalesce key is only unique among jobs that have not ended.
+   *
+   * @param job the new job
+   * @param options the options it was launched with
+   * @return the job launched with the same key, or empty if the new job was saved
+   */
+  private Optional<Job> saveUnlessLaunched(Job job, JobOptions options) {
+    try {
+      jobsRepository.save(job);
+      return Optional.empty();
+    } catch (DataIntegrityViolationException e) {
+      if (job.getIdempotencyKey() == null && job.getCoalesceKey() == null) {
+        throw e;
+      }
+      return Optional.of(findLaunched(options, job.getCoalesceKey()).orElseThrow(() -> e));
+    }
+  }
+
+  /**
+   * The coalesce key of a durable job: a hash of its type and params, so that it can be indexed
+   * however long the params are.
+   *
+   * @param jobType the job type
+   * @param params the params as JSON, with their names in order
+   * @return the key, as 64 hex digits
+   */
+  static String coalesceKey(String jobType, String params) {
+    try {
+      MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+      return HexFormat.of()
+          .formatHex(sha256.digest((jobType + "\n" + params).getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  Long timeoutOrDefault(Long timeoutMs) {
+    if (timeoutMs != null) {
+      return timeoutMs;
+    }
+    return defaultTimeoutMs > 0 ? defaultTimeoutMs : null;
+  }
+
+  boolean queueIsFull() {
+    return jobsRepository.countByStatus("queued") >= maxQueued;
+  }
+
+  /**
+   * The job type is the simple class name of the consumer, e.g. "TestJob". Lambdas get the name of
+   * the class they were declared in.
+   *
+   * @param jobFunction the job
+   * @return the job type used for per-type concurrency limits
+   */
+  public static String jobTypeOf(JobContextConsumer jobFunction) {
+    String name = jobFunction.getClass().getSimpleName();
+    int lambdaMarker = name.indexOf("$$");
+    return lambdaMarker >= 0 ? name.substring(0, lambdaMarker) : name;
+  }
+
+  /**
+   * Hand a job pinned to this node to the queue worker, which starts it as soon as there is
+   * capacity.
+   *
+   * @param job the job, already saved with status "queued"
+   * @param jobFunction the work to do
+   */
   public void runJobAsync(Job job, JobContextConsumer jobFunction) {
-    JobContext context = new JobContext(jobsRepository, job);
+    jobQueueWorker.enqueueLocal(job, jobFunction);
+  }
 
+  /**
+   * Run a job on the current thread, recording its status and log.
+   *
+   * @param job the job
+   * @param jobFunction the work to do
+   */
+  public void runJob(Job job, JobContextConsumer jobFunction) {
+    JobLogBuffer logBuffer = jobLogWriter.open(job);
+    JobProgressTracker progressTracker =
+        new JobProgressTracker(job.getId(), jobsRepository, progressUpdateIntervalMs);
+    JobContext context = new JobContext(logBuffer, progressTracker, job);
+    if (subtaskParallelism > 0) {
+      context.setSubtaskParallelism(subtaskParallelism);
+    }
+    runningJobs.put(job.getId(), context);
+    jobMetrics.recordQueueWait(job);
+    long start = System.nanoTime();
+
+    if (job.getRequeues() > 0) {
+      // the lines logged by earlier attempts are kept, so carry on after them, including any
+      // that have been compressed
+      jobLogLineRepository
+          .findMaxSeqByJobId(job.getId())
+          .or(() -> jobLogCompressor.lastCompressedSeq(job.getId()))
+          .ifPresent(context::continueLogAfter);
+    }
+
+    // set if another node changed the job's status while it was here; see updateStatus
+    boolean lost = false;
     try {
+      if (!updateStatus(job, logBuffer, "running")) {
+        lost = true;
+        return;
+      }
+      if (job.getRequeues() > 0) {
+        context.log(
+            "Attempt %d: the node running the previous attempt stopped responding"
+                .formatted(job.getRequeues() + 1));
+      }
+      context.start(job.getTimeoutMs());
       jobFunction.accept(context);
+      context.finish();
+      lost = !updateStatus(job, logBuffer, "complete");
     } catch (Exception e) {
-      job.setStatus("error");
-      context.log(e.getMessage());
+      context.finish();
+      String stopReason = context.getStopReason();
+      if (stopReason == null) {
+        context.log(e.getMessage());
+        lost = !updateStatus(job, logBuffer, "error");
+      } else {
+        context.log(
+            "timed_out".equals(stopReason)
+                ? "Job timed out after %d ms".formatted(job.getTimeoutMs())
+                : "Job cancelled");
+        lost = !updateStatus(job, logBuffer, stopReason);
+      }
+    } finally {
+      runningJobs.remove(job.getId());
+      jobLogWriter.close(logBuffer);
+      jobLogStreams.complete(job.getId(), job.getStatus());
+      jobCompletions.statusChanged(job.getId());
+      // whoever changed the status has already dealt with the job's end
+      if (!lost) {
+        jobMetrics.recordRun(job, System.nanoTime() - start);
+        jobPipelines.stageEnded(job);
+        jobLogCompressor.jobEnded(job.getId());
+      }
+    }
+  }
+
+  /**
+   * Cancel a job. A queued job is cancelled immediately. A claimed or running job is flagged, and
+   * the node running it stops it; if that is this node, it is stopped right away.
+   *
+   * @param jobId id of the job
+   * @return a message describing what happened
+   */
+  public String cancel(long jobId) {
+    if (jobsRepository.cancelQueued(jobId) == 1) {
+      jobQueueWorker.forget(jobId);
+      jobCompletions.statusChanged(jobId);
+      return "Job %d cancelled".formatted(jobId);
+    }
+    if (jobsRepository.requestCancel(jobId) == 1) {
+      JobContext context = runningJobs.get(jobId);
+      if (context != null) {
+        context.cancel("cancelled");
+      }
+      return "Cancellation of job %d requested".formatted(jobId);
+    }
+    return "Job %d is not queued or running".formatted(jobId);
+  }
+
+  /**
+   * Stop jobs on this node that have run past their timeout or have been flagged for cancellation
+   * by another node. Jobs that call checkCancelled notice timeouts on their own; this also reaches
+   * jobs that are blocked.
+   */
+  @Scheduled(fixedDelayString = "${app.jobs.queue.pollIntervalMs:1000}")
+  public void enforceCancellationsAndTimeouts() {
+    if (runningJobs.isEmpty()) {
       return;
     }
+    long now = System.nanoTime();
+    runningJobs.values().stream()
+        .filter(context -> context.isPastDeadline(now))
+        .forEach(context -> context.cancel("timed_out"));
+    for (Long jobId : jobsRepository.findCancelRequestedIds(runningJobs.keySet())) {
+      JobContext context = runningJobs.get(jobId);
+      if (context != null) {
+        context.cancel("cancelled");
+      }
+    }
+  }
 
-    job.setStatus("complete");
-    jobsRepository.save(job);
+  /**
+   * Save a new status for a job that is running here. The save is checked against the job's
+   * version, so if the job's status has been changed elsewhere since it was claimed, e.g. because
+   * JobRecovery re-queued or abandoned it after missed heartbeats, nothing is overwritten: the job
+   * takes the status from the database instead.
+   *
+   * @param job the job
+   * @param logBuffer the job's log buffer, flushed first
+   * @param status the new status
+   * @return true if the status was saved, false if the job's status had been changed elsewhere
+   */
+  private boolean updateStatus(Job job, JobLogBuffer logBuffer, String status) {
+    // log lines written before a status change must be visible before the change itself
+    logBuffer.flush(JobLogBuffer.FlushReason.STATUS);
+    job.setStatus(status);
+    try {
+      // save merges into a copy, so carry its version over to the job for the next save
+      job.setVersion(jobsRepository.save(job).getVersion());
+      return true;
+    } catch (OptimisticLockingFailureException e) {
+      job.setStatus(jobsRepository.findStatusById(job.getId()).orElse(status));
+      log.warn(
+          "Job {} was changed elsewhere while it ran on this node; leaving its status as {}",
+          job.getId(),
+          job.getStatus());
+      return false;
+    }
   }
 
+  /**
+   * Reassembles the log for a job from its log lines, or once it has ended, decompresses the log
+   * they were compressed into. Jobs that were run before log lines were stored separately keep
+   * their log in the jobs.log column, so that is used as a fallback.
+   *
+   * @param jobId id of the job
+   * @return the full log text, one line per log entry
+   */
   public String getJobLogs(Long jobId) {
+    List<JobLogLine> lines = jobLogLineRepository.findAllByJobIdOrderBySeqAsc(jobId);
+    if (!lines.isEmpty()) {
+      return lines.stream().map(JobLogLine::getMessage).collect(Collectors.joining("\n"));
+    }
+
     Job job =
         jobsRepository
             .findById(jobId)
             .orElseThrow(() -> new IllegalArgumentException("Job not found"));
 
+    if (job.getLogGz() != null) {
+      return JobLogCompressor.text(job.getLogGz());
+    }
     String log = job.getLog();
     return log != null ? log : "";
   }
+
+  /**
+   * This method returns the progress of a job, as last recorded through JobContext.progress.
+   *
+   * @param jobId id of the job
+   * @return the job's status and progress
+   * @throws EntityNotFoundException if there is no such job
+   */
+  public JobProgress getProgress(long jobId) {
+    return jobsRepository
+        .findProgressById(jobId)
+        .orElseThrow(() -> new EntityNotFoundException(Job.class, jobId));
+  }
+
+  /**
+   * This method returns the compressed log of a job that has ended.
+   *
+   * @param jobId id of the job
+   * @return the gzipped log text, or empty if the job's log is not compressed
+   * @throws EntityNotFoundException if there is no such job
+   */
+  public Optional<byte[]> getCompressedJobLog(long jobId) {
+    if (jobsRepository.findStatusById(jobId).isEmpty()) {
+      throw new EntityNotFoundException(Job.class, jobId);
+    }
+    return jobsRepository.findCompressedLogById(jobId);
+  }
 }
@@ -0,0 +1,12 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+/**
+ * One piece of work in a fan-out started with {@link JobContext#fanOut}.
+ *
+ * @param <T> the type of the items being processed
+ * @param <R> the type of each subtask's result
+ */
+@FunctionalInterface
+public interface JobSubtask<T, R> {
+  R apply(JobContext c, T item) throws Exception;
+}
@@ -0,0 +1,143 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.RecurringJob;
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.errors.InvalidRequestException;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import edu.ucsb.cs156.example.repositories.RecurringJobRepository;
+import java.time.ZonedDateTime;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.support.CronExpression;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * This service launches recurring jobs: durable jobs defined in the recurring_jobs table and
+ * launched on a cron schedule.
+ *
+ * <p>Every node checks for due recurring jobs each app.jobs.recurring.pollIntervalMs. To take a
+ * run, a node moves the job's next run time on with an update that only matches if the next run
+ * time is still the one it read, and launches the run in the same transaction. Whichever node's
+ * update lands first takes the run; the others update nothing and move on. Should that node die
+ * before it commits, the transaction rolls back and another node takes the run on its next check,
+ * so each run is launched exactly once however many nodes are up. A run missed while no node was up
+ * is launched once, late, rather than once per missed occurrence.
+ */
+@Slf4j
+@Service
+public class RecurringJobs {
+  @Autowired private RecurringJobRepository recurringJobRepository;
+
+  @Autowired private JobsRepository jobsRepository;
+
+  @Autowired private JobQueueWorker jobQueueWorker;
+
+  @Lazy @Autowired private JobService jobService;
+
+  @Autowired private PlatformTransactionManager transactionManager;
+
+  /**
+   * Check and save a recurring job, scheduling its next run if it is enabled.
+   *
+   * @param recurringJob the recurring job
+   * @return the saved recurring job
+   * @throws InvalidRequestException if its cron expression, job type or params are invalid
+   */
+  public RecurringJob save(RecurringJob recurringJob) {
+    CronExpression cron = parseCron(recurringJob.getCron());
+    jobQueueWorker.factoryFor(recurringJob.getJobType());
+    if (recurringJob.getParams() == null || recurringJob.getParams().isBlank()) {
+      recurringJob.setParams("{}");
+    }
+    jobQueueWorker.readParams(recurringJob.getParams());
+    recurringJob.setNextRunAt(recurringJob.getEnabled() ? cron.next(ZonedDateTime.now()) : null);
+    return recurringJobRepository.save(recurringJob);
+  }
+
+  /**
+   * Parse a cron expression in Spring's six field syntax (second, minute, hour, day of month,
+   * month, day of week).
+   *
+   * @param cron the expression
+   * @return the parsed expression
+   * @throws InvalidRequestException if it is not a valid expression
+   */
+  static CronExpression parseCron(String cron) {
+    if (cron == null || !CronExpression.isValidExpression(cron)) {
+      throw new InvalidRequestException("Invalid cron expression " + cron);
+    }
+    return CronExpression.parse(cron);
+  }
+
+  /** Launch every recurring job that is due and not already taken by another node. */
+  @Scheduled(fixedDelayString = "${app.jobs.recurring.pollIntervalMs:5000}")
+  public void launchDue() {
+    ZonedDateTime now = ZonedDateTime.now();
+    for (RecurringJob recurringJob :
+        recurringJobRepository.findAllByEnabledTrueAndNextRunAtLessThanEqualOrderByNextRunAtAsc(
+            now)) {
+      try {
+        launchRun(recurringJob, now);
+      } catch (Exception e) {
+        log.warn("Failed to launch recurring job {}", recurringJob.getId(), e);
+      }
+    }
+  }
+
+  /**
+   * Take the due run of a recurring job and launch it.
+   *
+   * @param recurringJob the recurring job, as read when it was found due
+   * @param now the current time
+   * @return the job launched, or null if another node took the run
+   */
+  public Job launchRun(RecurringJob recurringJob, ZonedDateTime now) {
+    ZonedDateTime next = parseCron(recurringJob.getCron()).next(now);
+    Job job =
+        new TransactionTemplate(transactionManager)
+            .execute(status -> takeAndLaunch(recurringJob.getId(), recurringJob, next));
+    if (job == null) {
+      return null;
+    }
+    log.info(
+        "Launched job {} for recurring job {} ({})",
+        job.getId(),
+        recurringJob.getId(),
+        recurringJob.getName());
+    if ("queued".equals(job.getStatus())) {
+      jobQueueWorker.poll();
+    }
+    return job;
+  }
+
+  private Job takeAndLaunch(long id, RecurringJob due, ZonedDateTime next) {
+    int taken =
+        recurringJobRepository.takeRun(id, due.getNextRunAt(), next, jobQueueWorker.getNodeId());
+    if (taken == 0) {
+      return null;
+    }
+    // re-read under the row lock the update holds, in case it was edited since it was found due
+    RecurringJob recurringJob =
+        recurringJobRepository
+            .findById(id)
+            .orElseThrow(() -> new EntityNotFoundException(RecurringJob.class, id));
+    Job job =
+        Job.builder()
+            .createdBy(recurringJob.getCreatedBy())
+            .jobType(recurringJob.getJobType())
+            .timeoutMs(jobService.timeoutOrDefault(recurringJob.getTimeoutMs()))
+            .priority(recurringJob.getPriority())
+            .params(recurringJob.getParams())
+            .recurringJobId(id)
+            .status(jobService.queueIsFull() ? "rejected" : "queued")
+            .build();
+    jobsRepository.save(job);
+    recurringJobRepository.recordLastJob(id, job.getId());
+    return job;
+  }
+}
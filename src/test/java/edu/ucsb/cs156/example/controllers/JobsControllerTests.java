@@ -3,53 +3,144 @@ package edu.ucsb.cs156.example.controllers;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.awaitility.Awaitility.await;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeast;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.Job;
-import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.entities.JobLogLine;
+import edu.ucsb.cs156.example.entities.JobPipeline;
+import edu.ucsb.cs156.example.errors.InvalidRequestException;
+import edu.ucsb.cs156.example.jobs.TestJobFactory;
+import edu.ucsb.cs156.example.models.JobLogMatch;
+import edu.ucsb.cs156.example.models.JobLogSearchResult;
+import edu.ucsb.cs156.example.models.JobProgress;
+import edu.ucsb.cs156.example.models.JobSummary;
+import edu.ucsb.cs156.example.models.JobSummaryPage;
+import edu.ucsb.cs156.example.repositories.JobDependencyRepository;
+import edu.ucsb.cs156.example.repositories.JobLogLineRepository;
+import edu.ucsb.cs156.example.repositories.JobLogTermRepository;
+import edu.ucsb.cs156.example.repositories.JobPipelineRepository;
 import edu.ucsb.cs156.example.repositories.JobsRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository.QueueHead;
+import edu.ucsb.cs156.example.repositories.JobsRepository.UserJobCount;
 import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.imports.BulkImporter;
+import edu.ucsb.cs156.example.services.imports.ImportFormat;
+import edu.ucsb.cs156.example.services.imports.ImportTable;
+import edu.ucsb.cs156.example.services.jobs.JobCompletions;
+import edu.ucsb.cs156.example.services.jobs.JobExecutor;
+import edu.ucsb.cs156.example.services.jobs.JobFairShare;
+import edu.ucsb.cs156.example.services.jobs.JobLogCompressor;
+import edu.ucsb.cs156.example.services.jobs.JobLogSearch;
+import edu.ucsb.cs156.example.services.jobs.JobLogStreams;
+import edu.ucsb.cs156.example.services.jobs.JobLogWriter;
+import edu.ucsb.cs156.example.services.jobs.JobMetrics;
+import edu.ucsb.cs156.example.services.jobs.JobOptions;
+import edu.ucsb.cs156.example.services.jobs.JobPipelines;
+import edu.ucsb.cs156.example.services.jobs.JobQueue;
+import edu.ucsb.cs156.example.services.jobs.JobQueueWorker;
+import edu.ucsb.cs156.example.services.jobs.JobRetention;
+import edu.ucsb.cs156.example.services.jobs.JobRetentionSweeper;
 import edu.ucsb.cs156.example.services.jobs.JobService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.ServletException;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.AutoConfigureDataJpa;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MvcResult;
 
 @Slf4j
 @WebMvcTest(controllers = JobsController.class)
-@Import(JobService.class)
+@Import({
+  JobService.class,
+  JobCompletions.class,
+  JobLogWriter.class,
+  JobLogCompressor.class,
+  JobLogStreams.class,
+  JobMetrics.class,
+  SimpleMeterRegistry.class,
+  JobExecutor.class,
+  JobFairShare.class,
+  JobPipelines.class,
+  JobQueue.class,
+  JobQueueWorker.class,
+  JobRetention.class,
+  JobRetentionSweeper.class,
+  TestJobFactory.class
+})
 @AutoConfigureDataJpa
 public class JobsControllerTests extends ControllerTestCase {
 
   @MockitoBean JobsRepository jobsRepository;
 
+  @MockitoBean JobLogLineRepository jobLogLineRepository;
+
+  @MockitoBean JobDependencyRepository jobDependencyRepository;
+
+  @MockitoBean JobLogTermRepository jobLogTermRepository;
+
+  @MockitoBean JdbcTemplate jdbcTemplate;
+
+  @MockitoBean JobLogSearch jobLogSearch;
+
+  @MockitoBean JobPipelineRepository jobPipelineRepository;
+
   @MockitoBean UserRepository userRepository;
 
+  @MockitoBean BulkImporter bulkImporter;
+
   @Autowired JobService jobService;
 
+  @Autowired JobCompletions jobCompletions;
+
   @Autowired ObjectMapper objectMapper;
 
   @WithMockUser(roles = {"ADMIN"})
@@ -58,13 +149,12 @@ public class JobsControllerTests extends ControllerTestCase {
 
     // arrange
 
-    Job job1 = Job.builder().log("this is job 1").build();
-    Job job2 = Job.builder().log("this is job 2").build();
+    JobSummary job1 = JobSummary.builder().id(1L).status("complete").build();
+    JobSummary job2 = JobSummary.builder().id(2L).status("running").build();
 
-    ArrayList<Job> expectedJobs = new ArrayList<>();
-    expectedJobs.addAll(Arrays.asList(job1, job2));
+    List<JobSummary> expectedJobs = List.of(job1, job2);
 
-    when(jobsRepository.findAll()).thenReturn(expectedJobs);
+    when(jobsRepository.findAllSummaries()).thenReturn(expectedJobs);
 
     // act
     MvcResult response =
@@ -72,12 +162,154 @@ public class JobsControllerTests extends ControllerTestCase {
 
     // assert
 
-    verify(jobsRepository, atLeastOnce()).findAll();
+    verify(jobsRepository, atLeastOnce()).findAllSummaries();
+    verify(jobsRepository, never()).findAll();
     String expectedJson = mapper.writeValueAsString(expectedJobs);
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
   }
 
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_get_first_page_of_jobs() throws Exception {
+
+    // arrange
+
+    List<JobSummary> page =
+        List.of(JobSummary.builder().id(9L).build(), JobSummary.builder().id(7L).build());
+    when(jobsRepository.findSummaryPage(Long.MAX_VALUE, null, null, null, null, Limit.of(2)))
+        .thenReturn(page);
+
+    // act
+    MvcResult response =
+        mockMvc.perform(get("/api/jobs/page?size=2")).andExpect(status().isOk()).andReturn();
+
+    // assert
+
+    String expectedJson =
+        mapper.writeValueAsString(JobSummaryPage.builder().jobs(page).nextBeforeId(7L).build());
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_get_filtered_last_page_of_jobs() throws Exception {
+
+    // arrange
+
+    List<JobSummary> page = List.of(JobSummary.builder().id(3L).build());
+    when(jobsRepository.findSummaryPage(
+            eq(7L),
+            eq("complete"),
+            eq(4L),
+            eq(ZonedDateTime.parse("2026-01-01T00:00:00Z")),
+            eq(ZonedDateTime.parse("2026-02-01T00:00:00Z")),
+            eq(Limit.of(500))))
+        .thenReturn(page);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                get("/api/jobs/page")
+                    .param("beforeId", "7")
+                    .param("status", "complete")
+                    .param("createdById", "4")
+                    .param("createdAfter", "2026-01-01T00:00:00Z")
+                    .param("createdBefore", "2026-02-01T00:00:00Z")
+                    .param("size", "10000"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+
+    String expectedJson =
+        mapper.writeValueAsString(JobSummaryPage.builder().jobs(page).nextBeforeId(null).build());
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_search_job_logs_with_filters() throws Exception {
+    // arrange
+    JobLogSearchResult result =
+        JobLogSearchResult.builder()
+            .matches(
+                List.of(
+                    JobLogMatch.builder()
+                        .jobId(3L)
+                        .jobType("ImportJob")
+                        .status("error")
+                        .seq(12L)
+                        .message("Line 12 rejected: bad date")
+                        .build()))
+            .jobsSearched(1)
+            .build();
+    when(jobLogSearch.search(
+            "rejected",
+            "Line \\d+",
+            "error",
+            ZonedDateTime.parse("2026-01-01T00:00:00Z"),
+            ZonedDateTime.parse("2026-02-01T00:00:00Z"),
+            1000))
+        .thenReturn(result);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                get("/api/jobs/logs/search")
+                    .param("term", "rejected")
+                    .param("regex", "Line \\d+")
+                    .param("status", "error")
+                    .param("createdAfter", "2026-01-01T00:00:00Z")
+                    .param("createdBefore", "2026-02-01T00:00:00Z")
+                    .param("limit", "5000"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    assertEquals(mapper.writeValueAsString(result), response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void a_log_search_without_a_term_or_regex_is_a_bad_request() throws Exception {
+    when(jobLogSearch.search(null, null, null, null, null, 100))
+        .thenThrow(new InvalidRequestException("Search for a term, a regex or both"));
+
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/jobs/logs/search"))
+            .andExpect(status().isBadRequest())
+            .andReturn();
+
+    assertEquals("InvalidRequestException", responseToJson(response).get("type"));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void a_log_search_with_an_invalid_regex_is_a_bad_request() throws Exception {
+    when(jobLogSearch.search(null, "(", null, null, null, 100)).thenCallRealMethod();
+
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/jobs/logs/search").param("regex", "("))
+            .andExpect(status().isBadRequest())
+            .andReturn();
+
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("InvalidRequestException", json.get("type"));
+    assertEquals("Invalid regex (: Unclosed group", json.get("message"));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void regular_users_cannot_search_job_logs() throws Exception {
+    mockMvc.perform(get("/api/jobs/logs/search?term=x")).andExpect(status().isForbidden());
+    verify(jobLogSearch, never()).search(any(), any(), any(), any(), any(), anyInt());
+  }
+
   @WithMockUser(roles = {"ADMIN"})
   @Test
   public void api_getJobLogById__admin_logged_in__returns_job_by_id() throws Exception {
@@ -127,7 +359,7 @@ public class JobsControllerTests extends ControllerTestCase {
   @Test
   public void admin_can_delete_all_jobs() throws Exception {
 
-    doNothing().when(jobsRepository).deleteAll();
+    doNothing().when(jobsRepository).deleteAllInBatch();
 
     // act
     MvcResult response =
@@ -138,7 +370,10 @@ public class JobsControllerTests extends ControllerTestCase {
 
     // assert
 
-    verify(jobsRepository, times(1)).deleteAll();
+    verify(jobLogLineRepository, times(1)).deleteAllInBatch();
+    verify(jobLogTermRepository, times(1)).deleteAllInBatch();
+    verify(jobsRepository, times(1)).deleteAllInBatch();
+    verify(jobsRepository, never()).deleteAll();
     String expectedJson = mapper.writeValueAsString(Map.of("message", "All jobs deleted"));
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
@@ -177,14 +412,24 @@ public class JobsControllerTests extends ControllerTestCase {
         .andExpect(content().string(""));
   }
 
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void test_getJobLogs_of_a_missing_job_is_not_a_bad_request() throws Exception {
+    when(jobsRepository.findById(3L)).thenReturn(Optional.empty());
+
+    ServletException e =
+        assertThrows(ServletException.class, () -> mockMvc.perform(get("/api/jobs/logs/{id}", 3L)));
+    assertEquals("Job not found", e.getCause().getMessage());
+  }
+
   @WithMockUser(roles = {"ADMIN"})
   @Test
   public void admin_can_delete_specific_job() throws Exception {
 
     // arrange
 
-    when(jobsRepository.existsById(eq(1L))).thenReturn(true);
-    doNothing().when(jobsRepository).deleteById(eq(1L));
+    when(jobsRepository.findStatusById(1L)).thenReturn(Optional.of("complete"));
+    when(jobsRepository.deleteFinishedById(1L, JobRetention.FINISHED_STATUSES)).thenReturn(1);
 
     // act
     MvcResult response =
@@ -195,7 +440,10 @@ public class JobsControllerTests extends ControllerTestCase {
 
     // assert
 
-    verify(jobsRepository, times(1)).deleteById(eq(1L));
+    verify(jobLogLineRepository, times(1)).deleteAllByJobIdIn(List.of(1L));
+    verify(jobLogTermRepository, times(1)).deleteAllByJobIdIn(List.of(1L));
+    verify(jobDependencyRepository, times(1)).deleteAllByJobIdIn(List.of(1L));
+    verify(jobsRepository, times(1)).deleteFinishedById(1L, JobRetention.FINISHED_STATUSES);
     String expectedJson = mapper.writeValueAsString(Map.of("message", "Job with id 1 deleted"));
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
@@ -207,7 +455,7 @@ public class JobsControllerTests extends ControllerTestCase {
 
     // arrange
 
-    when(jobsRepository.existsById(eq(2L))).thenReturn(false);
+    when(jobsRepository.findStatusById(2L)).thenReturn(Optional.empty());
 
     // act
     MvcResult response =
@@ -218,7 +466,7 @@ public class JobsControllerTests extends ControllerTestCase {
 
     // assert
 
-    verify(jobsRepository, times(1)).existsById(eq(2L));
+    verify(jobsRepository, times(1)).findStatusById(2L);
     String expectedJson = mapper.writeValueAsString(Map.of("message", "Job with id 2 not found"));
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
@@ -226,33 +474,54 @@ public class JobsControllerTests extends ControllerTestCase {
 
   @WithMockUser(roles = {"ADMIN"})
   @Test
-  public void admin_can_launch_test_job() throws Exception {
+  public void deleting_a_job_that_has_not_finished_is_a_bad_request() throws Exception {
+    when(jobsRepository.findStatusById(3L)).thenReturn(Optional.of("running"));
 
-    // arrange
+    MvcResult response =
+        mockMvc
+            .perform(delete("/api/jobs?id=3").with(csrf()))
+            .andExpect(status().isBadRequest())
+            .andReturn();
 
-    User user = currentUserService.getUser();
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("InvalidRequestException", json.get("type"));
+    assertEquals("Job 3 cannot be deleted while it is running", json.get("message"));
+    verify(jobsRepository, never()).deleteFinishedById(anyLong(), any());
+    verify(jobLogLineRepository, never()).deleteAllByJobIdIn(any());
+  }
 
-    Job jobStarted =
-        Job.builder()
-            .id(0L)
-            .createdBy(user)
-            .createdAt(null)
-            .updatedAt(null)
-            .status("running")
-            .log("Hello World! from test job!")
-            .build();
+  /**
+   * Make the mocked jobs repository behave like a queue holding the first job that is saved, so
+   * that the queue worker claims and runs it exactly once.
+   */
+  private void queueFirstSavedJob() {
+    AtomicReference<Job> queued = new AtomicReference<>();
+    AtomicBoolean claimed = new AtomicBoolean();
+    when(jobsRepository.save(any(Job.class)))
+        .thenAnswer(
+            invocation -> {
+              queued.compareAndSet(null, invocation.getArgument(0));
+              return invocation.getArgument(0);
+            });
+    QueueHead head = mock(QueueHead.class);
+    when(head.getId()).thenReturn(0L);
+    when(jobsRepository.findQueueHeads(any(), any()))
+        .thenAnswer(
+            invocation ->
+                queued.get() != null && claimed.compareAndSet(false, true)
+                    ? List.of(head)
+                    : List.of());
+    when(jobsRepository.claim(eq(0L), any(), any())).thenReturn(1);
+    when(jobsRepository.findById(eq(0L))).thenAnswer(invocation -> Optional.of(queued.get()));
+  }
 
-    Job jobCompleted =
-        Job.builder()
-            .id(0L)
-            .createdBy(user)
-            .createdAt(null)
-            .updatedAt(null)
-            .status("complete")
-            .log("Hello World! from test job!\nGoodbye from test job!")
-            .build();
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_launch_test_job() throws Exception {
+
+    // arrange
 
-    when(jobsRepository.save(any(Job.class))).thenReturn(jobStarted).thenReturn(jobCompleted);
+    queueFirstSavedJob();
 
     // act
     MvcResult response =
@@ -265,14 +534,21 @@ public class JobsControllerTests extends ControllerTestCase {
     String responseString = response.getResponse().getContentAsString();
     Job jobReturned = objectMapper.readValue(responseString, Job.class);
 
-    assertEquals("running", jobReturned.getStatus());
+    assertEquals("TestJob", jobReturned.getJobType());
+    assertEquals(
+        Map.of("fail", "false", "sleepMs", "2000"),
+        mapper.readValue(jobReturned.getParams(), Map.class));
 
-    await()
-        .atMost(1, SECONDS)
-        .untilAsserted(() -> verify(jobsRepository, times(2)).save(eq(jobStarted)));
+    await().atMost(10, SECONDS).untilAsserted(() -> assertEquals(2, savedLogLines().size()));
+    List<JobLogLine> lines = savedLogLines();
+    assertEquals("Hello World! from test job!", lines.get(0).getMessage());
+    assertEquals("Goodbye from test job!", lines.get(1).getMessage());
+
+    ArgumentCaptor<Job> saved = ArgumentCaptor.forClass(Job.class);
     await()
         .atMost(10, SECONDS)
-        .untilAsserted(() -> verify(jobsRepository, times(4)).save(eq(jobCompleted)));
+        .untilAsserted(() -> verify(jobsRepository, times(3)).save(saved.capture()));
+    assertEquals("complete", saved.getAllValues().get(2).getStatus());
   }
 
   @WithMockUser(roles = {"ADMIN"})
@@ -281,29 +557,7 @@ public class JobsControllerTests extends ControllerTestCase {
 
     // arrange
 
-    User user = currentUserService.getUser();
-
-    Job jobStarted =
-        Job.builder()
-            .id(0L)
-            .createdBy(user)
-            .createdAt(null)
-            .updatedAt(null)
-            .status("running")
-            .log("Hello World! from test job!")
-            .build();
-
-    Job jobFailed =
-        Job.builder()
-            .id(0L)
-            .createdBy(user)
-            .createdAt(null)
-            .updatedAt(null)
-            .status("error")
-            .log("Hello World! from test job!\nFail!")
-            .build();
-
-    when(jobsRepository.save(any(Job.class))).thenReturn(jobStarted).thenReturn(jobFailed);
+    queueFirstSavedJob();
 
     // act
     MvcResult response =
@@ -315,14 +569,659 @@ public class JobsControllerTests extends ControllerTestCase {
     String responseString = response.getResponse().getContentAsString();
     Job jobReturned = objectMapper.readValue(responseString, Job.class);
 
+    assertEquals("TestJob", jobReturned.getJobType());
+
+    await().atMost(10, SECONDS).untilAsserted(() -> assertEquals(2, savedLogLines().size()));
+    List<JobLogLine> lines = savedLogLines();
+    assertEquals("Hello World! from test job!", lines.get(0).getMessage());
+    assertEquals("Fail!", lines.get(1).getMessage());
+
+    ArgumentCaptor<Job> saved = ArgumentCaptor.forClass(Job.class);
+    await()
+        .atMost(10, SECONDS)
+        .untilAsserted(() -> verify(jobsRepository, times(3)).save(saved.capture()));
+    assertEquals("error", saved.getAllValues().get(2).getStatus());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void launching_a_job_when_the_queue_is_full_rejects_it() throws Exception {
+
+    // arrange
+
+    when(jobsRepository.countByStatus("queued")).thenReturn(1000L);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(post("/api/jobs/launch/testjob?fail=false&sleepMs=0").with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    Job jobReturned =
+        objectMapper.readValue(response.getResponse().getContentAsString(), Job.class);
+    assertEquals("rejected", jobReturned.getStatus());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void launching_a_test_job_again_with_the_same_idempotency_key_returns_the_first()
+      throws Exception {
+
+    // arrange
+
+    Job launched =
+        Job.builder().id(3L).jobType("TestJob").status("running").idempotencyKey("k1").build();
+    when(jobsRepository.findByIdempotencyKey("k1")).thenReturn(Optional.of(launched));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/jobs/launch/testjob?fail=false&sleepMs=0")
+                    .header("Idempotency-Key", "k1")
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    Job jobReturned =
+        objectMapper.readValue(response.getResponse().getContentAsString(), Job.class);
+    assertEquals(3L, jobReturned.getId());
     assertEquals("running", jobReturned.getStatus());
+    assertTrue(jobReturned.getDuplicate());
+    verify(jobsRepository, never()).save(any());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void launching_a_test_job_to_coalesce_returns_one_with_the_same_params_in_flight()
+      throws Exception {
+
+    // arrange
+
+    Job launched = Job.builder().id(3L).jobType("TestJob").status("queued").build();
+    when(jobsRepository.findFirstByCoalesceKeyAndStatusInOrderByIdAsc(any(), any()))
+        .thenReturn(Optional.of(launched));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/jobs/launch/testjob?fail=false&sleepMs=0&coalesce=true").with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    Job jobReturned =
+        objectMapper.readValue(response.getResponse().getContentAsString(), Job.class);
+    assertEquals(3L, jobReturned.getId());
+    assertTrue(jobReturned.getDuplicate());
+    verify(jobsRepository, never()).save(any());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_launch_test_job_that_times_out() throws Exception {
+
+    // arrange
 
+    queueFirstSavedJob();
+
+    // act
+    mockMvc
+        .perform(
+            post("/api/jobs/launch/testjob?fail=false&sleepMs=60000&timeoutMs=50").with(csrf()))
+        .andExpect(status().isOk());
+
+    // assert
+    ArgumentCaptor<Job> saved = ArgumentCaptor.forClass(Job.class);
+    await()
+        .atMost(10, SECONDS)
+        .untilAsserted(() -> verify(jobsRepository, times(3)).save(saved.capture()));
+    assertEquals(50L, saved.getAllValues().get(0).getTimeoutMs());
+    assertEquals("timed_out", saved.getAllValues().get(2).getStatus());
     await()
-        .atMost(1, SECONDS)
-        .untilAsserted(() -> verify(jobsRepository, times(2)).save(eq(jobStarted)));
+        .atMost(10, SECONDS)
+        .untilAsserted(
+            () ->
+                assertEquals(
+                    "Job timed out after 50 ms",
+                    savedLogLines().get(savedLogLines().size() - 1).getMessage()));
+  }
 
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_get_job_progress_without_its_log() throws Exception {
+    // arrange
+    JobProgress progress =
+        JobProgress.builder().id(4L).status("running").done(50L).total(200L).build();
+    when(jobsRepository.findProgressById(4L)).thenReturn(Optional.of(progress));
+
+    // act
+    MvcResult response =
+        mockMvc.perform(get("/api/jobs/progress?id=4")).andExpect(status().isOk()).andReturn();
+
+    // assert
+    assertEquals(mapper.writeValueAsString(progress), response.getResponse().getContentAsString());
+    verify(jobsRepository, never()).findById(any());
+    verify(jobLogLineRepository, never()).findAllByJobIdOrderBySeqAsc(any(Long.class));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void progress_of_missing_job_returns_not_found() throws Exception {
+    mockMvc.perform(get("/api/jobs/progress?id=4")).andExpect(status().isNotFound());
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void regular_user_cannot_get_job_progress() throws Exception {
+    mockMvc.perform(get("/api/jobs/progress?id=4")).andExpect(status().isForbidden());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_cancel_queued_job() throws Exception {
+
+    // arrange
+
+    when(jobsRepository.cancelQueued(4L)).thenReturn(1);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(post("/api/jobs/cancel?id=4").with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    assertEquals(
+        mapper.writeValueAsString(Map.of("message", "Job 4 cancelled")),
+        response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void test_getJobLogs_admin_can_get_log_from_log_lines() throws Exception {
+    // Arrange
+    Long jobId = 3L;
+    when(jobLogLineRepository.findAllByJobIdOrderBySeqAsc(jobId))
+        .thenReturn(
+            List.of(
+                JobLogLine.builder().jobId(jobId).seq(0).message("first").build(),
+                JobLogLine.builder().jobId(jobId).seq(1).message("second").build()));
+
+    // Act & Assert
+    mockMvc
+        .perform(get("/api/jobs/logs/{id}", jobId))
+        .andExpect(status().isOk())
+        .andExpect(content().string("first\nsecond"));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void waiting_for_an_ended_job_answers_at_once() throws Exception {
+    // arrange
+    JobProgress progress = JobProgress.builder().id(4L).status("complete").done(2L).build();
+    when(jobsRepository.findProgressById(4L)).thenReturn(Optional.of(progress));
+
+    // act
+    MvcResult started =
+        mockMvc.perform(get("/api/jobs/wait?id=4")).andExpect(request().asyncStarted()).andReturn();
+    MvcResult response =
+        mockMvc.perform(asyncDispatch(started)).andExpect(status().isOk()).andReturn();
+
+    // assert
+    assertEquals(mapper.writeValueAsString(progress), response.getResponse().getContentAsString());
+    verify(jobsRepository, never()).findById(any());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void waiting_for_a_running_job_answers_when_it_ends() throws Exception {
+    // arrange
+    JobProgress running = JobProgress.builder().id(4L).status("running").build();
+    JobProgress ended = JobProgress.builder().id(4L).status("error").build();
+    // stubbed once, since the scheduled pollers call the repository while the test runs
+    when(jobsRepository.findProgressById(4L)).thenReturn(Optional.of(running), Optional.of(ended));
+    MvcResult started =
+        mockMvc
+            .perform(get("/api/jobs/wait?id=4&timeoutMs=10000"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+    assertEquals(1, jobCompletions.getWaiting());
+
+    // act
+    jobCompletions.statusChanged(4L);
+
+    // assert
+    MvcResult response =
+        mockMvc.perform(asyncDispatch(started)).andExpect(status().isOk()).andReturn();
+    assertEquals(mapper.writeValueAsString(ended), response.getResponse().getContentAsString());
+    assertEquals(0, jobCompletions.getWaiting());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void waiting_for_a_missing_job_returns_not_found() throws Exception {
+    mockMvc.perform(get("/api/jobs/wait?id=4")).andExpect(status().isNotFound());
+    assertEquals(0, jobCompletions.getWaiting());
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void regular_user_cannot_wait_for_a_job() throws Exception {
+    mockMvc.perform(get("/api/jobs/wait?id=4")).andExpect(status().isForbidden());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_stream_log_of_finished_job_from_last_event_id() throws Exception {
+    // arrange
+    when(jobsRepository.findStatusById(3L)).thenReturn(Optional.of("complete"));
+    when(jobLogLineRepository.findAllByJobIdAndSeqGreaterThanOrderBySeqAsc(3L, 0L))
+        .thenReturn(List.of(JobLogLine.builder().jobId(3L).seq(1).message("second").build()));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/jobs/logs/3/stream").header("Last-Event-ID", "0"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+    // assert: events are sent by the sender executor, off the request thread
     await()
         .atMost(10, SECONDS)
-        .untilAsserted(() -> verify(jobsRepository, times(3)).save(eq(jobFailed)));
+        .untilAsserted(
+            () ->
+                assertEquals(
+                    "id:1\nevent:log\ndata:second\n\nevent:end\ndata:complete\n\n",
+                    response.getResponse().getContentAsString()));
+  }
+
+  private static String gunzip(byte[] bytes) throws Exception {
+    try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+      return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_download_compressed_log_as_gzip_or_plain_text() throws Exception {
+    // arrange
+    byte[] logGz =
+        JobLogCompressor.gzip(
+            List.of(
+                JobLogLine.builder().jobId(3L).seq(0).message("first").build(),
+                JobLogLine.builder().jobId(3L).seq(1).message("second").build()));
+    when(jobsRepository.findStatusById(3L)).thenReturn(Optional.of("complete"));
+    when(jobsRepository.findCompressedLogById(3L)).thenReturn(Optional.of(logGz));
+
+    // act & assert
+    MvcResult gzipped =
+        mockMvc
+            .perform(get("/api/jobs/logs/3/download").header("Accept-Encoding", "gzip, deflate"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("Content-Encoding", "gzip"))
+            .andExpect(header().string("Vary", "Accept-Encoding"))
+            .andExpect(header().string("Content-Disposition", "attachment; filename=\"job-3.log\""))
+            .andReturn();
+    assertEquals("first\nsecond", gunzip(gzipped.getResponse().getContentAsByteArray()));
+
+    mockMvc
+        .perform(get("/api/jobs/logs/3/download"))
+        .andExpect(status().isOk())
+        .andExpect(header().doesNotExist("Content-Encoding"))
+        .andExpect(content().string("first\nsecond"));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void download_of_uncompressed_log_returns_its_lines() throws Exception {
+    // arrange
+    when(jobsRepository.findStatusById(3L)).thenReturn(Optional.of("running"));
+    when(jobLogLineRepository.findAllByJobIdOrderBySeqAsc(3L))
+        .thenReturn(List.of(JobLogLine.builder().jobId(3L).seq(0).message("first").build()));
+
+    // act & assert
+    mockMvc
+        .perform(get("/api/jobs/logs/3/download").header("Accept-Encoding", "gzip"))
+        .andExpect(status().isOk())
+        .andExpect(header().doesNotExist("Content-Encoding"))
+        .andExpect(content().string("first"));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void download_of_missing_job_returns_not_found() throws Exception {
+    mockMvc.perform(get("/api/jobs/logs/3/download")).andExpect(status().isNotFound());
+  }
+
+  @Test
+  public void acceptsGzip_honours_q_values() {
+    assertTrue(JobsController.acceptsGzip("gzip"));
+    assertTrue(JobsController.acceptsGzip("deflate, GZIP;q=0.5"));
+    assertTrue(JobsController.acceptsGzip("*"));
+    assertFalse(JobsController.acceptsGzip(null));
+    assertFalse(JobsController.acceptsGzip("identity"));
+    assertFalse(JobsController.acceptsGzip("gzip;q=0"));
+    assertFalse(JobsController.acceptsGzip("br, gzip; q=0.0"));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_stream_whole_log_of_finished_job() throws Exception {
+    // arrange
+    when(jobsRepository.findStatusById(3L)).thenReturn(Optional.of("complete"));
+    when(jobLogLineRepository.findAllByJobIdAndSeqGreaterThanOrderBySeqAsc(3L, -1L))
+        .thenReturn(List.of(JobLogLine.builder().jobId(3L).seq(0).message("first").build()));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/jobs/logs/3/stream"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+    // assert: events are sent by the sender executor, off the request thread
+    await()
+        .atMost(10, SECONDS)
+        .untilAsserted(
+            () ->
+                assertEquals(
+                    "id:0\nevent:log\ndata:first\n\nevent:end\ndata:complete\n\n",
+                    response.getResponse().getContentAsString()));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void streaming_log_of_missing_job_returns_not_found() throws Exception {
+    // act
+    mockMvc.perform(get("/api/jobs/logs/3/stream?after=5")).andExpect(status().isNotFound());
+
+    // assert
+    verify(jobsRepository, times(1)).findStatusById(3L);
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_get_log_flush_stats() throws Exception {
+    // act
+    MvcResult response =
+        mockMvc.perform(get("/api/jobs/stats/logflush")).andExpect(status().isOk()).andReturn();
+
+    // assert
+    Map<String, Object> json = responseToJson(response);
+    assertEquals(true, json.get("buffered"));
+    assertEquals(100, json.get("flushMaxLines"));
+    assertEquals(1000, json.get("flushIntervalMs"));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_get_executor_stats() throws Exception {
+    // act
+    MvcResult response =
+        mockMvc.perform(get("/api/jobs/stats/executor")).andExpect(status().isOk()).andReturn();
+
+    // assert
+    Map<String, Object> json = responseToJson(response);
+    assertEquals(true, json.get("virtualThreads"));
+    assertEquals(4, json.get("poolSize"));
+    assertEquals(100, json.get("queueCapacity"));
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_get_retention_stats() throws Exception {
+    // act
+    MvcResult response =
+        mockMvc.perform(get("/api/jobs/stats/retention")).andExpect(status().isOk()).andReturn();
+
+    // assert
+    Map<String, Object> json = responseToJson(response);
+    assertEquals(0, json.get("retentionDays"));
+    assertEquals(false, json.get("archive"));
+    assertEquals(500, json.get("batchSize"));
+    assertEquals(0, json.get("totalJobs"));
+  }
+
+  private UserJobCount userJobCount(Long createdById, String email, String status, long jobs) {
+    UserJobCount count = mock(UserJobCount.class);
+    when(count.getCreatedById()).thenReturn(createdById);
+    when(count.getEmail()).thenReturn(email);
+    when(count.getStatus()).thenReturn(status);
+    when(count.getJobs()).thenReturn(jobs);
+    return count;
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_get_user_queue_stats() throws Exception {
+    // arrange
+    List<UserJobCount> counts =
+        List.of(
+            userJobCount(1L, "a@ucsb.edu", "queued", 40),
+            userJobCount(1L, "a@ucsb.edu", "running", 4),
+            userJobCount(2L, "b@ucsb.edu", "claimed", 1));
+    when(jobsRepository.countActiveJobsByUser()).thenReturn(counts);
+
+    // act
+    MvcResult response =
+        mockMvc.perform(get("/api/jobs/stats/users")).andExpect(status().isOk()).andReturn();
+
+    // assert
+    String expectedJson =
+        "[{\"createdById\":2,\"email\":\"b@ucsb.edu\",\"weight\":1,\"queued\":0,\"running\":1,\"share\":1.0},"
+            + "{\"createdById\":1,\"email\":\"a@ucsb.edu\",\"weight\":1,\"queued\":40,\"running\":4,\"share\":4.0}]";
+    assertEquals(expectedJson, response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void regular_user_cannot_get_user_queue_stats() throws Exception {
+    mockMvc.perform(get("/api/jobs/stats/users")).andExpect(status().isForbidden());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_launch_a_pipeline_and_get_its_status() throws Exception {
+    // arrange
+    JobPipeline pipeline = JobPipeline.builder().id(9L).name("nightly").build();
+    Job stage =
+        Job.builder()
+            .id(4L)
+            .jobType("TestJob")
+            .params("{}")
+            .pipelineId(9L)
+            .pipelineStage("only")
+            .status("queued")
+            .build();
+    when(jobPipelineRepository.save(any())).thenReturn(pipeline);
+    when(jobPipelineRepository.findById(9L)).thenReturn(Optional.of(pipeline));
+    when(jobsRepository.save(any())).thenReturn(stage);
+    when(jobsRepository.findAllByPipelineIdOrderByIdAsc(9L)).thenReturn(List.of(stage));
+
+    // act
+    MvcResult launched =
+        mockMvc
+            .perform(
+                post("/api/jobs/pipelines")
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(
+                        "{\"name\":\"nightly\",\"stages\":[{\"name\":\"only\",\"jobType\":\"TestJob\"}]}"))
+            .andExpect(status().isOk())
+            .andReturn();
+    MvcResult got =
+        mockMvc.perform(get("/api/jobs/pipelines?id=9")).andExpect(status().isOk()).andReturn();
+
+    // assert
+    Map<String, Object> json = responseToJson(launched);
+    assertEquals(9, json.get("id"));
+    assertEquals("queued", json.get("status"));
+    assertEquals(
+        launched.getResponse().getContentAsString(), got.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void launching_a_pipeline_with_a_cycle_is_a_bad_request() throws Exception {
+    // arrange
+    String body =
+        "{\"name\":\"loop\",\"stages\":["
+            + "{\"name\":\"a\",\"jobType\":\"TestJob\",\"dependsOn\":[\"b\"]},"
+            + "{\"name\":\"b\",\"jobType\":\"TestJob\",\"dependsOn\":[\"a\"]}]}";
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/jobs/pipelines")
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(body))
+            .andExpect(status().isBadRequest())
+            .andReturn();
+
+    // assert
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("Pipeline stage dependencies form a cycle", json.get("message"));
+    verify(jobPipelineRepository, never()).save(any());
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void regular_user_cannot_launch_a_pipeline() throws Exception {
+    mockMvc
+        .perform(
+            post("/api/jobs/pipelines")
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"stages\":[]}"))
+        .andExpect(status().isForbidden());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_gets_404_for_missing_pipeline() throws Exception {
+    mockMvc.perform(get("/api/jobs/pipelines?id=9")).andExpect(status().isNotFound());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_cancel_a_pipeline() throws Exception {
+    // arrange
+    when(jobsRepository.findAllByPipelineIdOrderByIdAsc(9L))
+        .thenReturn(
+            List.of(
+                Job.builder().id(1L).status("complete").build(),
+                Job.builder().id(2L).status("waiting").build()));
+    when(jobsRepository.cancelQueued(2L)).thenReturn(1);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(post("/api/jobs/pipelines/cancel?id=9").with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    assertEquals("Cancelled 1 stages of pipeline 9", responseToJson(response).get("message"));
+    verify(jobsRepository, never()).cancelQueued(1L);
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<JobLogLine> savedLogLines() {
+    ArgumentCaptor<Collection<JobLogLine>> captor = ArgumentCaptor.forClass(Collection.class);
+    verify(jdbcTemplate, atLeast(0))
+        .batchUpdate(
+            anyString(),
+            captor.capture(),
+            anyInt(),
+            any(ParameterizedPreparedStatementSetter.class));
+    List<JobLogLine> lines = new ArrayList<>();
+    captor.getAllValues().forEach(lines::addAll);
+    return lines;
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void regular_users_cannot_launch_imports() throws Exception {
+    mockMvc
+        .perform(
+            multipart("/api/jobs/launch/import?table=ucsbdates")
+                .file(new MockMultipartFile("file", "x".getBytes()))
+                .with(csrf()))
+        .andExpect(status().isForbidden());
+    verify(bulkImporter, never()).launch(any(), any(), any(), any());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void admin_can_launch_an_import_of_an_uploaded_file() throws Exception {
+    // arrange
+    Job job = Job.builder().id(4L).status("queued").build();
+    when(bulkImporter.launch(
+            eq(ImportTable.UCSB_DATES), eq(ImportFormat.NDJSON), any(), eq(JobOptions.DEFAULTS)))
+        .thenReturn(job);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                multipart("/api/jobs/launch/import?table=ucsbdates&format=NDJSON")
+                    .file(new MockMultipartFile("file", "dates.ndjson", null, "{}".getBytes()))
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    assertEquals(objectMapper.writeValueAsString(job), response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void an_import_is_launched_with_the_idempotency_key_header() throws Exception {
+    // arrange
+    Job job = Job.builder().id(4L).status("queued").idempotencyKey("upload-1").build();
+    when(bulkImporter.launch(
+            eq(ImportTable.UCSB_DATES),
+            eq(ImportFormat.CSV),
+            any(),
+            eq(JobOptions.builder().idempotencyKey("upload-1").build())))
+        .thenReturn(job);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                multipart("/api/jobs/launch/import?table=ucsbdates")
+                    .file(new MockMultipartFile("file", "x".getBytes()))
+                    .header("Idempotency-Key", "upload-1")
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    assertEquals(objectMapper.writeValueAsString(job), response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN"})
+  @Test
+  public void import_into_an_unknown_table_is_a_bad_request() throws Exception {
+    MvcResult response =
+        mockMvc
+            .perform(
+                multipart("/api/jobs/launch/import?table=users")
+                    .file(new MockMultipartFile("file", "x".getBytes()))
+                    .with(csrf()))
+            .andExpect(status().isBadRequest())
+            .andReturn();
+
+    assertEquals("InvalidRequestException", responseToJson(response).get("type"));
+    verify(bulkImporter, never()).launch(any(), any(), any(), any());
   }
 }
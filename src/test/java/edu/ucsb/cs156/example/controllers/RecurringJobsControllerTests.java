@@ -0,0 +1,274 @@
+package edu.ucsb.cs156.example.controllers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.entities.RecurringJob;
+import edu.ucsb.cs156.example.errors.InvalidRequestException;
+import edu.ucsb.cs156.example.models.JobSummary;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import edu.ucsb.cs156.example.repositories.RecurringJobRepository;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.jobs.RecurringJobs;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MvcResult;
+
+@WebMvcTest(controllers = RecurringJobsController.class)
+@Import(TestConfig.class)
+public class RecurringJobsControllerTests extends ControllerTestCase {
+
+  @MockitoBean RecurringJobRepository recurringJobRepository;
+
+  @MockitoBean JobsRepository jobsRepository;
+
+  @MockitoBean RecurringJobs recurringJobs;
+
+  @MockitoBean UserRepository userRepository;
+
+  private static RecurringJob nightly() {
+    return RecurringJob.builder()
+        .id(7L)
+        .name("nightly")
+        .cron("0 0 2 * * *")
+        .jobType("TestJob")
+        .params("{}")
+        .enabled(true)
+        .build();
+  }
+
+  @Test
+  public void logged_out_users_cannot_get_all() throws Exception {
+    mockMvc.perform(get("/api/recurringjobs/all")).andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void regular_users_cannot_get_all() throws Exception {
+    mockMvc.perform(get("/api/recurringjobs/all")).andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void regular_users_cannot_post() throws Exception {
+    mockMvc
+        .perform(
+            post("/api/recurringjobs/post?name=x&cron=0 0 2 * * *&jobType=TestJob").with(csrf()))
+        .andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_can_get_all_recurring_jobs() throws Exception {
+    // arrange
+    List<RecurringJob> expected = List.of(nightly());
+    when(recurringJobRepository.findAll()).thenReturn(expected);
+
+    // act
+    MvcResult response =
+        mockMvc.perform(get("/api/recurringjobs/all")).andExpect(status().isOk()).andReturn();
+
+    // assert
+    assertEquals(mapper.writeValueAsString(expected), response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_can_get_a_recurring_job_by_id() throws Exception {
+    // arrange
+    RecurringJob existing = nightly();
+    when(recurringJobRepository.findById(eq(7L))).thenReturn(Optional.of(existing));
+
+    // act
+    MvcResult response =
+        mockMvc.perform(get("/api/recurringjobs?id=7")).andExpect(status().isOk()).andReturn();
+
+    // assert
+    assertEquals(mapper.writeValueAsString(existing), response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_gets_not_found_for_missing_recurring_job() throws Exception {
+    // arrange
+    when(recurringJobRepository.findById(eq(7L))).thenReturn(Optional.empty());
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/recurringjobs?id=7"))
+            .andExpect(status().isNotFound())
+            .andReturn();
+
+    // assert
+    Map<String, Object> json = responseToJson(response);
+    assertEquals("RecurringJob with id 7 not found", json.get("message"));
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_can_post_a_recurring_job_which_runs_as_them() throws Exception {
+    // arrange
+    when(recurringJobs.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+    // act
+    mockMvc
+        .perform(
+            post("/api/recurringjobs/post")
+                .param("name", "nightly")
+                .param("cron", "0 0 2 * * *")
+                .param("jobType", "TestJob")
+                .param("params", "{\"sleepMs\":\"100\"}")
+                .param("priority", "3")
+                .with(csrf()))
+        .andExpect(status().isOk());
+
+    // assert
+    ArgumentCaptor<RecurringJob> saved = ArgumentCaptor.forClass(RecurringJob.class);
+    verify(recurringJobs).save(saved.capture());
+    assertEquals("0 0 2 * * *", saved.getValue().getCron());
+    assertEquals("{\"sleepMs\":\"100\"}", saved.getValue().getParams());
+    assertEquals(3, saved.getValue().getPriority());
+    assertEquals(true, saved.getValue().getEnabled());
+    assertEquals("user@example.org", saved.getValue().getCreatedBy().getEmail());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void posting_an_invalid_recurring_job_is_a_bad_request() throws Exception {
+    // arrange
+    when(recurringJobs.save(any()))
+        .thenThrow(new InvalidRequestException("Invalid cron expression every day"));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/recurringjobs/post")
+                    .param("name", "nightly")
+                    .param("cron", "every day")
+                    .param("jobType", "TestJob")
+                    .with(csrf()))
+            .andExpect(status().isBadRequest())
+            .andReturn();
+
+    // assert
+    assertEquals("Invalid cron expression every day", responseToJson(response).get("message"));
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_can_edit_a_recurring_job() throws Exception {
+    // arrange
+    RecurringJob existing = nightly();
+    when(recurringJobRepository.findById(eq(7L))).thenReturn(Optional.of(existing));
+    when(recurringJobs.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+    RecurringJob incoming = nightly();
+    incoming.setCron("0 0 3 * * *");
+    incoming.setEnabled(false);
+
+    // act
+    mockMvc
+        .perform(
+            put("/api/recurringjobs?id=7")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(incoming))
+                .with(csrf()))
+        .andExpect(status().isOk());
+
+    // assert
+    verify(recurringJobs).save(existing);
+    assertEquals("0 0 3 * * *", existing.getCron());
+    assertEquals(false, existing.getEnabled());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_can_delete_a_recurring_job() throws Exception {
+    // arrange
+    when(recurringJobRepository.findById(eq(7L))).thenReturn(Optional.of(nightly()));
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(delete("/api/recurringjobs?id=7").with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    verify(recurringJobRepository, times(1)).delete(any());
+    assertEquals("RecurringJob with id 7 deleted", responseToJson(response).get("message"));
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void editing_or_deleting_a_missing_recurring_job_is_not_found() throws Exception {
+    // arrange
+    when(recurringJobRepository.findById(eq(7L))).thenReturn(Optional.empty());
+
+    // act
+    mockMvc
+        .perform(
+            put("/api/recurringjobs?id=7")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(nightly()))
+                .with(csrf()))
+        .andExpect(status().isNotFound());
+    mockMvc
+        .perform(delete("/api/recurringjobs?id=7").with(csrf()))
+        .andExpect(status().isNotFound());
+
+    // assert
+    verify(recurringJobs, never()).save(any());
+    verify(recurringJobRepository, never()).delete(any());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void admin_can_get_the_runs_of_a_recurring_job() throws Exception {
+    // arrange
+    List<JobSummary> runs =
+        List.of(new JobSummary(12L, null, null, null, "TestJob", "complete", null, null));
+    when(recurringJobRepository.existsById(7L)).thenReturn(true);
+    when(jobsRepository.findRunsOfRecurringJob(7L, Limit.of(500))).thenReturn(runs);
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/recurringjobs/history?id=7&size=10000"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    assertEquals(mapper.writeValueAsString(runs), response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void runs_of_a_missing_recurring_job_are_not_found() throws Exception {
+    mockMvc.perform(get("/api/recurringjobs/history?id=7")).andExpect(status().isNotFound());
+    verify(jobsRepository, never()).findRunsOfRecurringJob(eq(7L), any());
+  }
+}
@@ -0,0 +1,776 @@
+package edu.ucsb.cs156.example.integration;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobDependency;
+import edu.ucsb.cs156.example.entities.JobLogLine;
+import edu.ucsb.cs156.example.entities.JobPipeline;
+import edu.ucsb.cs156.example.entities.RecurringJob;
+import edu.ucsb.cs156.example.errors.InvalidRequestException;
+import edu.ucsb.cs156.example.models.JobLogMatch;
+import edu.ucsb.cs156.example.models.JobLogSearchResult;
+import edu.ucsb.cs156.example.models.JobPipelineStage;
+import edu.ucsb.cs156.example.models.JobPipelineStatus;
+import edu.ucsb.cs156.example.models.JobProgress;
+import edu.ucsb.cs156.example.models.JobSummary;
+import edu.ucsb.cs156.example.models.JobSummaryPage;
+import edu.ucsb.cs156.example.repositories.JobDependencyRepository;
+import edu.ucsb.cs156.example.repositories.JobLogLineRepository;
+import edu.ucsb.cs156.example.repositories.JobPipelineRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository.QueueHead;
+import edu.ucsb.cs156.example.repositories.JobsRepository.UserJobCount;
+import edu.ucsb.cs156.example.repositories.RecurringJobRepository;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.jobs.JobLogCompressor;
+import edu.ucsb.cs156.example.services.jobs.JobLogSearch;
+import edu.ucsb.cs156.example.services.jobs.JobPipelines;
+import edu.ucsb.cs156.example.services.jobs.JobRecovery;
+import edu.ucsb.cs156.example.services.jobs.JobRetention;
+import edu.ucsb.cs156.example.services.jobs.JobRetention.PurgedBatch;
+import edu.ucsb.cs156.example.services.jobs.JobService;
+import edu.ucsb.cs156.example.services.jobs.RecurringJobs;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureMockMvc
+@ActiveProfiles("integration")
+@Import(TestConfig.class)
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+public class JobsIT {
+  @Autowired JobsRepository jobsRepository;
+
+  @Autowired JobService jobService;
+
+  @Autowired JobLogLineRepository jobLogLineRepository;
+
+  @Autowired JobPipelineRepository jobPipelineRepository;
+
+  @Autowired JobDependencyRepository jobDependencyRepository;
+
+  @Autowired JobRetention jobRetention;
+
+  @Autowired JobPipelines jobPipelines;
+
+  @Autowired JobRecovery jobRecovery;
+
+  @Autowired JobLogCompressor jobLogCompressor;
+
+  @Autowired JobLogSearch jobLogSearch;
+
+  @Autowired RecurringJobRepository recurringJobRepository;
+
+  @Autowired RecurringJobs recurringJobs;
+
+  @Autowired JdbcTemplate jdbcTemplate;
+
+  @Autowired public MockMvc mockMvc;
+
+  @Autowired public ObjectMapper mapper;
+
+  @MockBean UserRepository userRepository;
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void a_launched_test_job_is_claimed_from_the_queue_and_completes() throws Exception {
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(post("/api/jobs/launch/testjob?fail=false&sleepMs=100").with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    Job job = mapper.readValue(response.getResponse().getContentAsString(), Job.class);
+    await()
+        .atMost(10, SECONDS)
+        .untilAsserted(
+            () -> assertEquals("complete", jobsRepository.findById(job.getId()).get().getStatus()));
+    assertEquals(
+        "Hello World! from test job!\nGoodbye from test job!", jobService.getJobLogs(job.getId()));
+    MvcResult progress =
+        mockMvc
+            .perform(get("/api/jobs/progress?id=" + job.getId()))
+            .andExpect(status().isOk())
+            .andReturn();
+    JobProgress reported =
+        mapper.readValue(progress.getResponse().getContentAsString(), JobProgress.class);
+    assertEquals("complete", reported.getStatus());
+    assertEquals(2L, reported.getDone());
+    assertEquals(2L, reported.getTotal());
+    assertNotNull(reported.getUpdatedAt());
+    mockMvc
+        .perform(get("/actuator/metrics/jobs.run?tag=type:TestJob&tag=status:complete"))
+        .andExpect(status().isOk());
+  }
+
+  @WithMockUser(roles = {"USER"})
+  @Test
+  public void job_metrics_are_only_readable_by_admins() throws Exception {
+    mockMvc.perform(get("/actuator/metrics")).andExpect(status().isForbidden());
+    mockMvc.perform(get("/actuator/metrics/jobs.queue.depth")).andExpect(status().isForbidden());
+    mockMvc.perform(get("/actuator/health")).andExpect(status().isOk());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void waiting_for_a_job_answers_as_soon_as_it_ends() throws Exception {
+    // arrange
+    MvcResult launched =
+        mockMvc
+            .perform(post("/api/jobs/launch/testjob?fail=true&sleepMs=500").with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+    Job job = mapper.readValue(launched.getResponse().getContentAsString(), Job.class);
+
+    // act
+    MvcResult waiting =
+        mockMvc
+            .perform(get("/api/jobs/wait?id={id}&timeoutMs=10000", job.getId()))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+    MvcResult response =
+        mockMvc.perform(asyncDispatch(waiting)).andExpect(status().isOk()).andReturn();
+
+    // assert
+    JobProgress ended =
+        mapper.readValue(response.getResponse().getContentAsString(), JobProgress.class);
+    assertEquals("error", ended.getStatus());
+    assertEquals("error", jobsRepository.findStatusById(job.getId()).get());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void launching_twice_with_one_idempotency_key_or_to_coalesce_starts_one_job()
+      throws Exception {
+    // act
+    List<Job> keyed = new ArrayList<>();
+    List<Job> coalesced = new ArrayList<>();
+    for (int i = 0; i < 2; i++) {
+      MvcResult response =
+          mockMvc
+              .perform(
+                  post("/api/jobs/launch/testjob?fail=false&sleepMs=0")
+                      .header("Idempotency-Key", "it-key")
+                      .with(csrf()))
+              .andExpect(status().isOk())
+              .andReturn();
+      keyed.add(mapper.readValue(response.getResponse().getContentAsString(), Job.class));
+      response =
+          mockMvc
+              .perform(
+                  post("/api/jobs/launch/testjob?fail=false&sleepMs=2000&coalesce=true")
+                      .with(csrf()))
+              .andExpect(status().isOk())
+              .andReturn();
+      coalesced.add(mapper.readValue(response.getResponse().getContentAsString(), Job.class));
+    }
+
+    // assert
+    assertEquals(keyed.get(0).getId(), keyed.get(1).getId());
+    assertFalse(keyed.get(0).getDuplicate());
+    assertTrue(keyed.get(1).getDuplicate());
+    assertEquals(coalesced.get(0).getId(), coalesced.get(1).getId());
+    assertTrue(coalesced.get(1).getDuplicate());
+    assertThrows(
+        DataIntegrityViolationException.class,
+        () ->
+            jobsRepository.save(
+                Job.builder()
+                    .jobType("TestJob")
+                    .status("queued")
+                    .idempotencyKey("it-key")
+                    .build()));
+    String coalesceKey = jobsRepository.findById(coalesced.get(0).getId()).get().getCoalesceKey();
+    assertThrows(
+        DataIntegrityViolationException.class,
+        () ->
+            jobsRepository.save(
+                Job.builder()
+                    .jobType("TestJob")
+                    .status("queued")
+                    .coalesceKey(coalesceKey)
+                    .build()));
+    jobsRepository.save(
+        Job.builder().jobType("TestJob").status("complete").coalesceKey(coalesceKey).build());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void the_log_of_an_ended_job_is_compressed_and_can_be_downloaded() throws Exception {
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(post("/api/jobs/launch/testjob?fail=false&sleepMs=0").with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    Job job = mapper.readValue(response.getResponse().getContentAsString(), Job.class);
+    await()
+        .atMost(10, SECONDS)
+        .untilAsserted(
+            () -> assertTrue(jobsRepository.findCompressedLogById(job.getId()).isPresent()));
+    assertEquals(List.of(), jobLogLineRepository.findAllByJobIdOrderBySeqAsc(job.getId()));
+    String text = "Hello World! from test job!\nGoodbye from test job!";
+    assertEquals(text, jobService.getJobLogs(job.getId()));
+    mockMvc
+        .perform(get("/api/jobs/logs/{id}/download", job.getId()).header("Accept-Encoding", "gzip"))
+        .andExpect(status().isOk())
+        .andExpect(header().string("Content-Encoding", "gzip"));
+    mockMvc
+        .perform(get("/api/jobs/logs/{id}/download", job.getId()))
+        .andExpect(status().isOk())
+        .andExpect(content().string(text));
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void job_logs_can_be_searched_wherever_they_are_stored() throws Exception {
+    // arrange: a job whose log is indexed as it runs, then compressed
+    MvcResult launched =
+        mockMvc
+            .perform(post("/api/jobs/launch/testjob?fail=true&sleepMs=0").with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+    Job failed = mapper.readValue(launched.getResponse().getContentAsString(), Job.class);
+    await()
+        .atMost(10, SECONDS)
+        .untilAsserted(
+            () -> {
+              assertTrue(jobsRepository.findCompressedLogById(failed.getId()).isPresent());
+              // indexing runs on a thread of its own
+              assertTrue(jobsRepository.findById(failed.getId()).orElseThrow().getLogIndexed());
+            });
+    // and one from before job_log_lines, indexed by the sweep
+    Job legacy =
+        jobsRepository.save(
+            Job.builder()
+                .jobType("TestJob")
+                .status("error")
+                .log("Hello World! from an old job!\nFail! (old)")
+                .build());
+    jobLogSearch.indexEndedJobs();
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/jobs/logs/search").param("term", "FAIL").param("status", "error"))
+            .andExpect(status().isOk())
+            .andReturn();
+    MvcResult byRegex =
+        mockMvc
+            .perform(get("/api/jobs/logs/search").param("regex", "\\(old\\)$"))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    JobLogSearchResult result =
+        mapper.readValue(response.getResponse().getContentAsString(), JobLogSearchResult.class);
+    assertEquals(
+        List.of(legacy.getId(), failed.getId()),
+        result.getMatches().stream().map(JobLogMatch::getJobId).toList());
+    assertEquals(
+        List.of("Fail! (old)", "Fail!"),
+        result.getMatches().stream().map(JobLogMatch::getMessage).toList());
+    assertEquals(2, result.getJobsSearched());
+    JobLogSearchResult regexResult =
+        mapper.readValue(byRegex.getResponse().getContentAsString(), JobLogSearchResult.class);
+    assertEquals(1, regexResult.getMatches().size());
+    assertEquals(legacy.getId(), regexResult.getMatches().get(0).getJobId());
+    assertEquals(
+        0,
+        mapper
+            .readValue(
+                mockMvc
+                    .perform(get("/api/jobs/logs/search?term=goodbye"))
+                    .andReturn()
+                    .getResponse()
+                    .getContentAsString(),
+                JobLogSearchResult.class)
+            .getJobsSearched());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void jobs_can_be_paged_by_status_without_their_logs() throws Exception {
+    // arrange
+    ZonedDateTime start = ZonedDateTime.now().minusMinutes(1);
+    for (int i = 0; i < 5; i++) {
+      jobsRepository.save(
+          Job.builder().jobType("TestJob").status(i == 2 ? "error" : "complete").log("x").build());
+    }
+
+    // act
+    JobSummaryPage first = page("/api/jobs/page?status=complete&size=3");
+    JobSummaryPage second =
+        page(
+            "/api/jobs/page?status=complete&size=3&beforeId=%d&createdAfter=%s"
+                .formatted(first.getNextBeforeId(), start.toOffsetDateTime()));
+
+    // assert
+    assertEquals(3, first.getJobs().size());
+    assertEquals(1, second.getJobs().size());
+    assertNull(second.getNextBeforeId());
+    assertTrue(first.getJobs().get(0).getId() > first.getJobs().get(1).getId());
+    assertNotNull(first.getJobs().get(0).getCreatedAt());
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void pipeline_stages_run_once_their_dependencies_complete() throws Exception {
+    // arrange
+    // the log lines, with their timestamps, are only kept until each stage ends if not compressed
+    ReflectionTestUtils.setField(jobLogCompressor, "enabled", false);
+    String body =
+        "{\"name\":\"diamond\",\"stages\":["
+            + "{\"name\":\"aggregate\",\"jobType\":\"TestJob\",\"dependsOn\":[\"left\",\"right\"]},"
+            + "{\"name\":\"left\",\"jobType\":\"TestJob\",\"params\":{\"sleepMs\":\"200\"},\"dependsOn\":[\"import\"]},"
+            + "{\"name\":\"right\",\"jobType\":\"TestJob\",\"dependsOn\":[\"import\"]},"
+            + "{\"name\":\"import\",\"jobType\":\"TestJob\"}]}";
+
+    // act
+    JobPipelineStatus launched = launchPipeline(body);
+
+    // assert
+    assertEquals(4, launched.getStages().size());
+    await()
+        .atMost(10, SECONDS)
+        .untilAsserted(
+            () -> assertEquals("complete", jobPipelines.getStatus(launched.getId()).getStatus()));
+    Map<String, List<JobLogLine>> logs = logsOf(pipeline(launched.getId()));
+    // left sleeps between its two lines, so aggregate must not start until it has finished
+    assertFalse(
+        logs.get("aggregate").get(0).getLoggedAt().isBefore(logs.get("left").get(1).getLoggedAt()));
+    assertTrue(
+        logs.get("right").get(0).getLoggedAt().isBefore(logs.get("left").get(1).getLoggedAt()));
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void pipeline_stages_after_a_failure_are_skipped() throws Exception {
+    // arrange
+    String body =
+        "{\"name\":\"broken\",\"stages\":["
+            + "{\"name\":\"import\",\"jobType\":\"TestJob\",\"params\":{\"fail\":\"true\"}},"
+            + "{\"name\":\"validate\",\"jobType\":\"TestJob\",\"dependsOn\":[\"import\"]},"
+            + "{\"name\":\"aggregate\",\"jobType\":\"TestJob\",\"dependsOn\":[\"validate\"]},"
+            + "{\"name\":\"other\",\"jobType\":\"TestJob\"}]}";
+
+    // act
+    JobPipelineStatus launched = launchPipeline(body);
+
+    // assert
+    await()
+        .atMost(10, SECONDS)
+        .untilAsserted(
+            () -> assertEquals("error", jobPipelines.getStatus(launched.getId()).getStatus()));
+    assertEquals(
+        List.of("error", "skipped", "skipped", "complete"),
+        pipeline(launched.getId()).getStages().stream().map(JobPipelineStage::getStatus).toList());
+  }
+
+  private JobPipelineStatus launchPipeline(String body) throws Exception {
+    MvcResult response =
+        mockMvc
+            .perform(
+                post("/api/jobs/pipelines")
+                    .with(csrf())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(body))
+            .andExpect(status().isOk())
+            .andReturn();
+    return mapper.readValue(response.getResponse().getContentAsString(), JobPipelineStatus.class);
+  }
+
+  private JobPipelineStatus pipeline(long id) throws Exception {
+    MvcResult response =
+        mockMvc.perform(get("/api/jobs/pipelines?id=" + id)).andExpect(status().isOk()).andReturn();
+    return mapper.readValue(response.getResponse().getContentAsString(), JobPipelineStatus.class);
+  }
+
+  private Map<String, List<JobLogLine>> logsOf(JobPipelineStatus pipeline) {
+    Map<String, List<JobLogLine>> logs = new HashMap<>();
+    for (JobPipelineStage stage : pipeline.getStages()) {
+      logs.put(stage.getName(), jobLogLineRepository.findAllByJobIdOrderBySeqAsc(stage.getJobId()));
+    }
+    return logs;
+  }
+
+  @Test
+  public void fair_share_offers_each_users_next_job_and_counts_their_active_jobs() {
+    // arrange
+    jdbcTemplate.update(
+        "INSERT INTO users (id, email, admin, email_verified) VALUES (901, 'a@ucsb.edu', true, true)");
+    jdbcTemplate.update(
+        "INSERT INTO users (id, email, admin, email_verified) VALUES (902, 'b@ucsb.edu', false, true)");
+    long a1 = queuedJob(901, 0);
+    long a2 = queuedJob(901, 3);
+    queuedJob(901, 3);
+    long b1 = queuedJob(902, 0);
+    jdbcTemplate.update(
+        "INSERT INTO jobs (created_by_id, job_type, status, node_id, priority)"
+            + " VALUES (901, 'Elsewhere', 'running', 'elsewhere', 0)");
+
+    // act
+    List<QueueHead> heads = jobsRepository.findQueueHeads("elsewhere", Set.of(""));
+    List<UserJobCount> counts = jobsRepository.countActiveJobsByUser();
+
+    // assert
+    assertEquals(Set.of(a2, b1), heads.stream().map(QueueHead::getId).collect(Collectors.toSet()));
+    assertEquals(
+        "a@ucsb.edu", heads.stream().filter(h -> h.getId() == a2).findFirst().get().getEmail());
+    assertTrue(jobsRepository.findQueueHeads("elsewhere", Set.of("Elsewhere")).isEmpty());
+    assertEquals(
+        Set.of("901 queued 3", "901 running 1", "902 queued 1"),
+        counts.stream()
+            .map(c -> c.getCreatedById() + " " + c.getStatus() + " " + c.getJobs())
+            .collect(Collectors.toSet()));
+    assertEquals(a2, jobsRepository.findNextClaimableId("elsewhere", Set.of("")).get().longValue());
+    assertTrue(a1 < a2);
+  }
+
+  /**
+   * Save a queued job that only the node "elsewhere" may claim, so this node's worker leaves it.
+   */
+  private long queuedJob(long createdById, int priority) {
+    jdbcTemplate.update(
+        "INSERT INTO jobs (created_by_id, job_type, status, node_id, priority)"
+            + " VALUES (?, 'Elsewhere', 'queued', 'elsewhere', ?)",
+        createdById,
+        priority);
+    return jdbcTemplate.queryForObject("SELECT MAX(id) FROM jobs", Long.class);
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void a_due_recurring_job_is_launched_once_however_many_nodes_try() throws Exception {
+    // arrange
+    RecurringJob nightly =
+        recurringJobRepository.save(
+            RecurringJob.builder()
+                .name("nightly")
+                .cron("0 0 2 * * *")
+                .jobType("TestJob")
+                .params("{}")
+                .enabled(true)
+                .nextRunAt(ZonedDateTime.now().minusMinutes(1))
+                .build());
+    RecurringJob stale = recurringJobRepository.findById(nightly.getId()).get();
+
+    // act: two nodes that both found it due, besides this node's own scheduled check
+    CompletableFuture<Job> first =
+        CompletableFuture.supplyAsync(() -> recurringJobs.launchRun(stale, ZonedDateTime.now()));
+    CompletableFuture<Job> second =
+        CompletableFuture.supplyAsync(() -> recurringJobs.launchRun(stale, ZonedDateTime.now()));
+    first.join();
+    second.join();
+
+    // assert
+    await()
+        .atMost(10, SECONDS)
+        .untilAsserted(
+            () ->
+                assertEquals(
+                    List.of("complete"),
+                    jobsRepository.findRunsOfRecurringJob(nightly.getId(), Limit.of(10)).stream()
+                        .map(JobSummary::getStatus)
+                        .toList()));
+    MvcResult response =
+        mockMvc
+            .perform(get("/api/recurringjobs/history?id=" + nightly.getId()))
+            .andExpect(status().isOk())
+            .andReturn();
+    List<JobSummary> runs =
+        mapper.readValue(
+            response.getResponse().getContentAsString(), new TypeReference<List<JobSummary>>() {});
+    RecurringJob after = recurringJobRepository.findById(nightly.getId()).get();
+    assertEquals(1, runs.size());
+    assertEquals(after.getLastJobId(), runs.get(0).getId());
+    assertTrue(after.getNextRunAt().isAfter(ZonedDateTime.now()));
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void an_uploaded_csv_is_imported_and_bad_rows_are_reported() throws Exception {
+    // arrange
+    StringBuilder csv = new StringBuilder("quarterYYYYQ,name,localDateTime\n");
+    for (int i = 0; i < 1200; i++) {
+      csv.append("20241,\"day, %d\",2024-01-08T08:00:00\n".formatted(i));
+    }
+    csv.append("20241,bad date,next tuesday\n");
+
+    // act
+    MvcResult response =
+        mockMvc
+            .perform(
+                multipart("/api/jobs/launch/import?table=ucsbdates")
+                    .file(
+                        new MockMultipartFile(
+                            "file", "dates.csv", "text/csv", csv.toString().getBytes()))
+                    .with(csrf()))
+            .andExpect(status().isOk())
+            .andReturn();
+
+    // assert
+    Job job = mapper.readValue(response.getResponse().getContentAsString(), Job.class);
+    await()
+        .atMost(10, SECONDS)
+        .untilAsserted(
+            () -> assertEquals("complete", jobsRepository.findById(job.getId()).get().getStatus()));
+    assertEquals(
+        1200, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM ucsbdates", Integer.class));
+    assertEquals(
+        "day, 1199",
+        jdbcTemplate.queryForObject(
+            "SELECT name FROM ucsbdates ORDER BY id DESC LIMIT 1", String.class));
+    String log = jobService.getJobLogs(job.getId());
+    assertTrue(
+        log.contains("Rejected line 1202: localDateTime is not a valid datetime: next tuesday"));
+    assertTrue(log.endsWith("Imported 1200 rows into ucsbdates; rejected 1"));
+  }
+
+  @Test
+  public void jobs_of_a_node_that_stopped_sending_heartbeats_are_requeued_or_abandoned() {
+    // arrange
+    Job idempotent = jobsRepository.save(orphan().idempotent(true).build());
+    Job other = jobsRepository.save(orphan().build());
+    Job alive = jobsRepository.save(orphan().nodeId("busy-node").build());
+    jdbcTemplate.update(
+        "UPDATE jobs SET heartbeat_at = ? WHERE id IN (?, ?)",
+        Timestamp.from(ZonedDateTime.now().minusHours(1).toInstant()),
+        idempotent.getId(),
+        other.getId());
+    jobsRepository.heartbeat("busy-node", ZonedDateTime.now());
+
+    // act
+    jobRecovery.recoverStaleJobs();
+
+    // assert
+    await()
+        .atMost(10, SECONDS)
+        .untilAsserted(
+            () ->
+                assertEquals(
+                    "complete", jobsRepository.findById(idempotent.getId()).get().getStatus()));
+    assertEquals(1, jobsRepository.findById(idempotent.getId()).get().getRequeues());
+    assertTrue(
+        jobService
+            .getJobLogs(idempotent.getId())
+            .startsWith("Attempt 2: the node running the previous attempt stopped responding"));
+    assertEquals("abandoned", jobsRepository.findById(other.getId()).get().getStatus());
+    assertEquals("running", jobsRepository.findById(alive.getId()).get().getStatus());
+  }
+
+  private Job.JobBuilder orphan() {
+    return Job.builder()
+        .jobType("TestJob")
+        .params("{\"fail\":\"false\",\"sleepMs\":\"0\"}")
+        .status("running")
+        .nodeId("dead-node");
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void a_job_recovered_while_it_ran_keeps_its_recovered_status() throws Exception {
+    // arrange
+    CountDownLatch running = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Job job =
+        jobService.runAsJob(
+            ctx -> {
+              running.countDown();
+              release.await();
+              ctx.log("finished after all");
+            });
+    assertTrue(running.await(10, SECONDS));
+
+    // act
+    assertEquals(1, jobsRepository.abandonStale(job.getId(), ZonedDateTime.now().plusMinutes(1)));
+    release.countDown();
+
+    // assert
+    await()
+        .atMost(10, SECONDS)
+        .untilAsserted(
+            () -> assertEquals("finished after all", jobService.getJobLogs(job.getId())));
+    await()
+        .during(1, SECONDS)
+        .atMost(5, SECONDS)
+        .until(() -> "abandoned".equals(jobsRepository.findById(job.getId()).get().getStatus()));
+  }
+
+  @WithMockUser(roles = {"ADMIN", "USER"})
+  @Test
+  public void lines_logged_by_many_subtasks_are_read_back_in_order_without_gaps() {
+    // arrange
+    ReflectionTestUtils.setField(jobService, "subtaskParallelism", 8);
+    List<Integer> subtasks = IntStream.range(0, 8).boxed().toList();
+
+    // act
+    Job job =
+        jobService.runAsJob(
+            ctx ->
+                ctx.fanOut(
+                    subtasks,
+                    (c, n) -> {
+                      for (int i = 0; i < 250; i++) {
+                        c.log("line " + i);
+                      }
+                      return null;
+                    }));
+
+    // assert: every read sees, for each subtask, its first lines in order and nothing missing
+    AtomicInteger reads = new AtomicInteger();
+    await()
+        .atMost(30, SECONDS)
+        .pollInterval(Duration.ofMillis(10))
+        .until(
+            () -> {
+              reads.incrementAndGet();
+              String status = jobsRepository.findById(job.getId()).get().getStatus();
+              Map<String, Integer> next = new HashMap<>();
+              String log = jobService.getJobLogs(job.getId());
+              for (String line : log.isEmpty() ? List.<String>of() : List.of(log.split("\\n"))) {
+                String subtask = line.substring(0, line.indexOf(']') + 1);
+                int expected = next.getOrDefault(subtask, 0);
+                assertEquals(subtask + " line " + expected, line);
+                next.put(subtask, expected + 1);
+              }
+              return "complete".equals(status)
+                  && next.size() == 8
+                  && next.values().stream().allMatch(count -> count == 250);
+            });
+    assertTrue(reads.get() > 1);
+  }
+
+  @Test
+  public void retention_archives_and_deletes_only_finished_jobs() {
+    // arrange
+    Job done = jobsRepository.save(Job.builder().status("complete").build());
+    Job running = jobsRepository.save(Job.builder().status("running").build());
+    jobLogLineRepository.saveAll(
+        List.of(
+            JobLogLine.builder().jobId(done.getId()).seq(0).message("a").build(),
+            JobLogLine.builder().jobId(done.getId()).seq(1).message("b").build(),
+            JobLogLine.builder().jobId(running.getId()).seq(0).message("c").build()));
+
+    // act
+    PurgedBatch batch = jobRetention.purgeBatch(ZonedDateTime.now().plusDays(1), 10, true);
+
+    // assert
+    assertEquals(new PurgedBatch(1, 2), batch);
+    assertFalse(jobsRepository.existsById(done.getId()));
+    assertTrue(jobsRepository.existsById(running.getId()));
+    assertEquals(
+        1,
+        jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM jobs_archive WHERE id = ?", Integer.class, done.getId()));
+    assertEquals(
+        2,
+        jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM job_log_lines_archive WHERE job_id = ?",
+            Integer.class,
+            done.getId()));
+    assertEquals(1, jobLogLineRepository.findAllByJobIdOrderBySeqAsc(running.getId()).size());
+  }
+
+  @Test
+  public void retention_deletes_pipelines_once_all_their_stages_are_deleted() {
+    // arrange
+    JobPipeline finished = jobPipelineRepository.save(JobPipeline.builder().name("done").build());
+    JobPipeline partly = jobPipelineRepository.save(JobPipeline.builder().name("partly").build());
+    jobsRepository.save(Job.builder().status("complete").pipelineId(finished.getId()).build());
+    jobsRepository.save(Job.builder().status("complete").pipelineId(partly.getId()).build());
+    jobsRepository.save(Job.builder().status("running").pipelineId(partly.getId()).build());
+
+    // act
+    jobRetention.purgeBatch(ZonedDateTime.now().plusDays(1), 10, false);
+
+    // assert
+    assertFalse(jobPipelineRepository.existsById(finished.getId()));
+    assertTrue(jobPipelineRepository.existsById(partly.getId()));
+  }
+
+  @Test
+  public void only_finished_jobs_that_no_unfinished_job_depends_on_can_be_deleted() {
+    // arrange
+    Job running = jobsRepository.save(Job.builder().status("running").build());
+    Job done = jobsRepository.save(Job.builder().status("complete").build());
+    Job waiting = jobsRepository.save(Job.builder().status("waiting").build());
+    jobDependencyRepository.save(
+        JobDependency.builder().jobId(waiting.getId()).dependsOnJobId(done.getId()).build());
+    jobLogLineRepository.save(JobLogLine.builder().jobId(done.getId()).seq(0).message("a").build());
+
+    // act and assert
+    assertThrows(InvalidRequestException.class, () -> jobRetention.deleteJob(running.getId()));
+    assertThrows(InvalidRequestException.class, () -> jobRetention.deleteJob(done.getId()));
+    assertTrue(jobsRepository.existsById(done.getId()));
+    assertEquals(1, jobLogLineRepository.findAllByJobIdOrderBySeqAsc(done.getId()).size());
+
+    jdbcTemplate.update("UPDATE jobs SET status = 'skipped' WHERE id = ?", waiting.getId());
+    assertTrue(jobRetention.deleteJob(done.getId()));
+    assertFalse(jobsRepository.existsById(done.getId()));
+    assertEquals(List.of(), jobLogLineRepository.findAllByJobIdOrderBySeqAsc(done.getId()));
+    assertEquals(List.of(), jobDependencyRepository.findAllByJobIdIn(List.of(waiting.getId())));
+    assertFalse(jobRetention.deleteJob(done.getId()));
+  }
+
+  private JobSummaryPage page(String url) throws Exception {
+    MvcResult response = mockMvc.perform(get(url)).andExpect(status().isOk()).andReturn();
+    return mapper.readValue(response.getResponse().getContentAsString(), JobSummaryPage.class);
+  }
+}
@@ -0,0 +1,110 @@
+package edu.ucsb.cs156.example.integration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.verify;
+
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.CurrentUserServiceImpl;
+import edu.ucsb.cs156.example.services.UserLogins;
+import edu.ucsb.cs156.example.testconfig.TestConfig;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("integration")
+@Import(TestConfig.class)
+@DirtiesContext(classMode = ClassMode.BEFORE_EACH_TEST_METHOD)
+public class UserLoginsIT {
+  @Autowired UserLogins userLogins;
+
+  @Autowired UserRepository userRepository;
+
+  @Autowired JdbcTemplate jdbcTemplate;
+
+  @MockitoSpyBean CurrentUserServiceImpl currentUserService;
+
+  @Test
+  public void a_first_login_stores_the_user_and_later_logins_return_it() {
+    User first =
+        userLogins.login(
+            Map.of(
+                "email", "cgaucho@ucsb.edu",
+                "sub", "123",
+                "name", "Chris Gaucho",
+                "email_verified", true,
+                "hd", "ucsb.edu"));
+    User again =
+        userLogins.login(Map.of("email", "cgaucho@ucsb.edu", "sub", "123", "name", "Renamed"));
+
+    assertEquals(first, again);
+    assertEquals("Chris Gaucho", again.getFullName());
+    assertTrue(again.getEmailVerified());
+    assertNull(again.getPictureUrl());
+    assertFalse(again.getAdmin());
+    assertEquals(first, userRepository.findByEmail("cgaucho@ucsb.edu").orElseThrow());
+  }
+
+  @Test
+  public void a_login_grants_admin_to_configured_emails_and_keeps_admins_granted_in_the_db() {
+    jdbcTemplate.update(
+        "INSERT INTO users (email, email_verified, admin) VALUES ('dbadmin@ucsb.edu', TRUE, TRUE)");
+    jdbcTemplate.update(
+        "INSERT INTO users (email, email_verified, admin)"
+            + " VALUES ('admingaucho@ucsb.edu', TRUE, FALSE)");
+
+    assertTrue(userLogins.login(Map.of("email", "dbadmin@ucsb.edu")).getAdmin());
+    assertTrue(userLogins.login(Map.of("email", "admingaucho@ucsb.edu")).getAdmin());
+    assertTrue(userRepository.findByEmail("admingaucho@ucsb.edu").orElseThrow().getAdmin());
+  }
+
+  @Test
+  public void saving_a_user_evicts_them_from_the_current_user_cache() {
+    User user = userLogins.login(Map.of("email", "cgaucho@ucsb.edu", "sub", "123"));
+    user.setAdmin(true);
+
+    userRepository.save(user);
+
+    verify(currentUserService).evictUser("cgaucho@ucsb.edu");
+  }
+
+  @Test
+  public void concurrent_first_logins_store_one_user() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    List<Callable<User>> logins = new ArrayList<>();
+    for (int i = 0; i < 16; i++) {
+      logins.add(() -> userLogins.login(Map.of("email", "burst@ucsb.edu", "sub", "456")));
+    }
+    List<Long> ids = new ArrayList<>();
+    for (Future<User> login : executor.invokeAll(logins)) {
+      ids.add(login.get().getId());
+    }
+    executor.shutdown();
+
+    assertEquals(1, ids.stream().distinct().count());
+    assertEquals(
+        1,
+        jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM users WHERE email = 'burst@ucsb.edu'", Integer.class));
+  }
+}
@@ -0,0 +1,19 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class AdminRolesTests {
+
+  @Test
+  void configured_emails_are_admins() {
+    AdminRoles adminRoles = new AdminRoles();
+    adminRoles.setAdminEmails(List.of("phtcon@ucsb.edu", "phtcon@ucsb.edu"));
+
+    assertTrue(adminRoles.isConfiguredAdmin("phtcon@ucsb.edu"));
+    assertFalse(adminRoles.isConfiguredAdmin("cgaucho@ucsb.edu"));
+  }
+}
@@ -0,0 +1,151 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+public class CurrentUserServiceImplTests {
+
+  @Mock private UserRepository userRepository;
+
+  @Mock private GrantedAuthoritiesService grantedAuthoritiesService;
+
+  @InjectMocks private CurrentUserServiceImpl currentUserService;
+
+  private final User stored = User.builder().id(7L).email("cgaucho@ucsb.edu").build();
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    ReflectionTestUtils.setField(currentUserService, "cacheTtlMs", 60_000L);
+    when(userRepository.findByEmail("cgaucho@ucsb.edu")).thenReturn(Optional.of(stored));
+  }
+
+  @AfterEach
+  public void cleanup() {
+    SecurityContextHolder.clearContext();
+    RequestContextHolder.resetRequestAttributes();
+  }
+
+  private static void logIn(String sub, String email) {
+    Map<String, Object> attributes =
+        sub == null
+            ? Map.of("email", email, "email_verified", true)
+            : Map.of("sub", sub, "email", email, "email_verified", true);
+    DefaultOAuth2User principal =
+        new DefaultOAuth2User(
+            List.of(new SimpleGrantedAuthority("ROLE_USER")), attributes, "email");
+    SecurityContextHolder.getContext()
+        .setAuthentication(
+            new OAuth2AuthenticationToken(principal, principal.getAuthorities(), "google"));
+  }
+
+  private static void newRequest() {
+    RequestContextHolder.setRequestAttributes(
+        new ServletRequestAttributes(new MockHttpServletRequest()));
+  }
+
+  @Test
+  void getUser_without_an_oauth_login_returns_null() {
+    assertNull(currentUserService.getUser());
+  }
+
+  @Test
+  void getUser_reads_the_user_once_per_request() {
+    ReflectionTestUtils.setField(currentUserService, "cacheTtlMs", 0L);
+    logIn("123", "cgaucho@ucsb.edu");
+
+    newRequest();
+    assertSame(stored, currentUserService.getUser());
+    assertSame(stored, currentUserService.getUser());
+    verify(userRepository, times(1)).findByEmail("cgaucho@ucsb.edu");
+
+    newRequest();
+    assertSame(stored, currentUserService.getUser());
+    verify(userRepository, times(2)).findByEmail("cgaucho@ucsb.edu");
+  }
+
+  @Test
+  void getUser_keeps_the_user_across_requests_until_evicted() {
+    logIn("123", "cgaucho@ucsb.edu");
+
+    newRequest();
+    currentUserService.getUser();
+    newRequest();
+    assertEquals(stored, currentUserService.getUser());
+    // outside of any request, e.g. in a job, only the cache applies
+    RequestContextHolder.resetRequestAttributes();
+    assertEquals(stored, currentUserService.getUser());
+    verify(userRepository, times(1)).findByEmail("cgaucho@ucsb.edu");
+
+    currentUserService.evictUser("someone-else@ucsb.edu");
+    currentUserService.getUser();
+    verify(userRepository, times(1)).findByEmail("cgaucho@ucsb.edu");
+
+    currentUserService.evictUser("cgaucho@ucsb.edu");
+    currentUserService.getUser();
+    verify(userRepository, times(2)).findByEmail("cgaucho@ucsb.edu");
+  }
+
+  @Test
+  void getUser_hands_out_copies_of_the_cached_user() {
+    logIn("123", "cgaucho@ucsb.edu");
+
+    currentUserService.getUser();
+    currentUserService.getUser().setAdmin(true);
+    User cached = currentUserService.getUser();
+    cached.setFullName("Changed");
+
+    assertNotSame(cached, currentUserService.getUser());
+    assertEquals(stored, currentUserService.getUser());
+    assertFalse(currentUserService.getUser().getAdmin());
+    verify(userRepository, times(1)).findByEmail("cgaucho@ucsb.edu");
+  }
+
+  @Test
+  void getUser_reads_the_user_again_once_the_cache_entry_has_expired() throws Exception {
+    ReflectionTestUtils.setField(currentUserService, "cacheTtlMs", 1L);
+    logIn(null, "cgaucho@ucsb.edu");
+
+    currentUserService.getUser();
+    Thread.sleep(5);
+    currentUserService.getUser();
+
+    verify(userRepository, times(2)).findByEmail("cgaucho@ucsb.edu");
+  }
+
+  @Test
+  void getUser_of_a_user_who_is_no_longer_stored_returns_null() {
+    logIn("456", "gone@ucsb.edu");
+    when(userRepository.findByEmail("gone@ucsb.edu")).thenReturn(Optional.empty());
+
+    assertNull(currentUserService.getUser());
+    assertNull(currentUserService.getUser());
+    verify(userRepository, times(2)).findByEmail("gone@ucsb.edu");
+  }
+}
@@ -2,11 +2,16 @@ package edu.ucsb.cs156.example.services;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogLine;
+import edu.ucsb.cs156.example.repositories.JobLogLineRepository;
 import edu.ucsb.cs156.example.repositories.JobsRepository;
 import edu.ucsb.cs156.example.services.jobs.JobService;
+import java.util.List;
 import java.util.Optional;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -18,6 +23,8 @@ public class JobLogsServiceTests {
 
   @Mock private JobsRepository jobRepository;
 
+  @Mock private JobLogLineRepository jobLogLineRepository;
+
   @InjectMocks private JobService jobService;
 
   @BeforeEach
@@ -64,4 +71,22 @@ public class JobLogsServiceTests {
     // Act & Assert
     assertThrows(IllegalArgumentException.class, () -> jobService.getJobLogs(jobId));
   }
+
+  @Test
+  void test_getJobLogs_from_log_lines() {
+    // Arrange
+    Long jobId = 4L;
+    List<JobLogLine> lines =
+        List.of(
+            JobLogLine.builder().jobId(jobId).seq(0).message("line one").build(),
+            JobLogLine.builder().jobId(jobId).seq(1).message("line two").build());
+    when(jobLogLineRepository.findAllByJobIdOrderBySeqAsc(jobId)).thenReturn(lines);
+
+    // Act
+    String result = jobService.getJobLogs(jobId);
+
+    // Assert
+    assertEquals("line one\nline two", result);
+    verify(jobRepository, never()).findById(jobId);
+  }
 }
@@ -0,0 +1,29 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.mockito.Mockito.verify;
+
+import edu.ucsb.cs156.example.entities.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+public class UserChangeListenerTests {
+
+  @Mock private CurrentUserServiceImpl currentUserService;
+
+  @InjectMocks private UserChangeListener userChangeListener;
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+  }
+
+  @Test
+  void a_changed_user_is_evicted_from_the_current_user_cache() {
+    userChangeListener.userChanged(User.builder().email("cgaucho@ucsb.edu").admin(true).build());
+
+    verify(currentUserService).evictUser("cgaucho@ucsb.edu");
+  }
+}
@@ -0,0 +1,159 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.entities.User;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+public class UserLoginsTests {
+
+  @Mock private JdbcTemplate jdbcTemplate;
+
+  @Mock private AdminRoles adminRoles;
+
+  @InjectMocks private UserLogins userLogins;
+
+  private final User stored = User.builder().id(7L).email("phtcon@ucsb.edu").admin(true).build();
+
+  private static final Map<String, Object> ATTRIBUTES =
+      Map.of(
+          "email", "phtcon@ucsb.edu",
+          "sub", "123",
+          "name", "Phill Conrad",
+          "email_verified", true,
+          "hd", "ucsb.edu");
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    when(adminRoles.isConfiguredAdmin("phtcon@ucsb.edu")).thenReturn(true);
+  }
+
+  private void database(String productName) throws Exception {
+    DatabaseMetaData metaData = mock(DatabaseMetaData.class);
+    when(metaData.getDatabaseProductName()).thenReturn(productName);
+    Connection connection = mock(Connection.class);
+    when(connection.getMetaData()).thenReturn(metaData);
+    when(jdbcTemplate.execute(any(ConnectionCallback.class)))
+        .thenAnswer(
+            invocation ->
+                invocation.<ConnectionCallback<?>>getArgument(0).doInConnection(connection));
+  }
+
+  @SuppressWarnings("unchecked")
+  private void upsertReturns(String sql, Object... values) {
+    when(jdbcTemplate.queryForObject(eq(sql), any(RowMapper.class), eq(values))).thenReturn(stored);
+  }
+
+  private static Object[] values(String email, boolean admin) {
+    return new Object[] {
+      email, "123", null, "Phill Conrad", null, null, true, null, "ucsb.edu", admin
+    };
+  }
+
+  @Test
+  void login_on_postgres_upserts_with_on_conflict_and_grants_configured_admins() throws Exception {
+    database("PostgreSQL");
+    upsertReturns(UserLogins.POSTGRES_UPSERT, values("phtcon@ucsb.edu", true));
+
+    assertSame(stored, userLogins.login(ATTRIBUTES));
+    assertSame(stored, userLogins.login(ATTRIBUTES));
+
+    // the database is only looked up once
+    verify(jdbcTemplate, times(1)).execute(any(ConnectionCallback.class));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void login_maps_the_returned_row_to_a_user() throws Exception {
+    database("PostgreSQL");
+    userLogins.login(ATTRIBUTES);
+    ArgumentCaptor<RowMapper<User>> mapper = ArgumentCaptor.forClass(RowMapper.class);
+    verify(jdbcTemplate).queryForObject(any(String.class), mapper.capture(), any(Object[].class));
+    ResultSet rs = mock(ResultSet.class);
+    when(rs.getLong("id")).thenReturn(7L);
+    when(rs.getString("email")).thenReturn("phtcon@ucsb.edu");
+    when(rs.getString("google_sub")).thenReturn("123");
+    when(rs.getString("picture_url")).thenReturn("https://example.org/p.jpg");
+    when(rs.getString("full_name")).thenReturn("Phill Conrad");
+    when(rs.getString("given_name")).thenReturn("Phill");
+    when(rs.getString("family_name")).thenReturn("Conrad");
+    when(rs.getBoolean("email_verified")).thenReturn(true);
+    when(rs.getString("locale")).thenReturn("en");
+    when(rs.getString("hosted_domain")).thenReturn("ucsb.edu");
+    when(rs.getBoolean("admin")).thenReturn(true);
+
+    assertEquals(
+        User.builder()
+            .id(7L)
+            .email("phtcon@ucsb.edu")
+            .googleSub("123")
+            .pictureUrl("https://example.org/p.jpg")
+            .fullName("Phill Conrad")
+            .givenName("Phill")
+            .familyName("Conrad")
+            .emailVerified(true)
+            .locale("en")
+            .hostedDomain("ucsb.edu")
+            .admin(true)
+            .build(),
+        mapper.getValue().mapRow(rs, 0));
+  }
+
+  @Test
+  void login_on_h2_upserts_with_merge() throws Exception {
+    database("H2");
+    Map<String, Object> attributes =
+        Map.of("email", "cgaucho@ucsb.edu", "sub", "123", "name", "Phill Conrad", "hd", "ucsb.edu");
+    Object[] values = values("cgaucho@ucsb.edu", false);
+    // without email_verified, the user is stored as not verified
+    values[6] = false;
+    upsertReturns(UserLogins.MERGE_UPSERT, values);
+
+    assertSame(stored, userLogins.login(attributes));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void login_retries_once_when_a_concurrent_first_login_inserted_the_user() throws Exception {
+    database("H2");
+    when(jdbcTemplate.queryForObject(
+            eq(UserLogins.MERGE_UPSERT), any(RowMapper.class), eq(values("phtcon@ucsb.edu", true))))
+        .thenThrow(new DuplicateKeyException("users_email_idx"))
+        .thenReturn(stored);
+
+    assertSame(stored, userLogins.login(ATTRIBUTES));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void login_gives_up_after_the_retry() throws Exception {
+    database("H2");
+    when(jdbcTemplate.queryForObject(
+            eq(UserLogins.MERGE_UPSERT), any(RowMapper.class), any(Object[].class)))
+        .thenThrow(new DuplicateKeyException("users_email_idx"));
+
+    assertThrows(DuplicateKeyException.class, () -> userLogins.login(ATTRIBUTES));
+  }
+}
@@ -0,0 +1,204 @@
+package edu.ucsb.cs156.example.services.imports;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.jobs.ImportJob;
+import edu.ucsb.cs156.example.services.imports.BulkImporter.ImportResult;
+import edu.ucsb.cs156.example.services.jobs.JobContext;
+import edu.ucsb.cs156.example.services.jobs.JobOptions;
+import edu.ucsb.cs156.example.services.jobs.JobService;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+public class BulkImporterTests {
+
+  @Mock private JdbcTemplate jdbcTemplate;
+
+  @Mock private PlatformTransactionManager transactionManager;
+
+  @Mock private JobService jobService;
+
+  @Mock private JobContext ctx;
+
+  @InjectMocks private BulkImporter bulkImporter;
+
+  @TempDir Path dir;
+
+  private final List<Integer> chunkSizes = new ArrayList<>();
+
+  private final PreparedStatement insert = mock(PreparedStatement.class);
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    ReflectionTestUtils.setField(bulkImporter, "mapper", new ObjectMapper());
+    ReflectionTestUtils.setField(bulkImporter, "batchSize", 2);
+    ReflectionTestUtils.setField(bulkImporter, "chunkSize", 3);
+    ReflectionTestUtils.setField(bulkImporter, "maxRejectedLogged", 1);
+    when(jdbcTemplate.batchUpdate(anyString(), any(Collection.class), anyInt(), any()))
+        .thenAnswer(
+            invocation -> {
+              Collection<Object[]> rows = invocation.getArgument(1);
+              ParameterizedPreparedStatementSetter<Object[]> setter = invocation.getArgument(3);
+              chunkSizes.add(rows.size());
+              for (Object[] row : rows) {
+                setter.setValues(insert, row);
+              }
+              return new int[0][];
+            });
+  }
+
+  private Path file(String content) throws Exception {
+    return Files.writeString(dir.resolve("upload"), content);
+  }
+
+  @Test
+  void importFile_commits_valid_rows_in_chunks_and_logs_rejected_ones() throws Exception {
+    Path file = file("name,description\na,1\nb,2\nc,3\n\"unterminated,4\n");
+
+    ImportResult result =
+        bulkImporter.importFile(ctx, ImportTable.RESTAURANTS, ImportFormat.CSV, file);
+
+    assertEquals(new ImportResult(3, 1), result);
+    assertEquals(List.of(3), chunkSizes);
+    verify(jdbcTemplate)
+        .batchUpdate(
+            eq("INSERT INTO restaurants (name, description) VALUES (?, ?)"),
+            any(Collection.class),
+            eq(2),
+            any());
+    verify(transactionManager, times(1)).commit(any());
+    verify(insert).setString(1, "a");
+    verify(insert).setString(2, "1");
+    verify(ctx).log("Read 4 lines: 3 rows imported, 0 rejected");
+    verify(ctx).log("Rejected line 5: unterminated quoted field");
+    verify(ctx).log("Imported 3 rows into restaurants; rejected 1");
+    verify(ctx, times(1)).checkCancelled();
+  }
+
+  @Test
+  void importFile_retries_a_failed_chunk_row_by_row() throws Exception {
+    when(jdbcTemplate.batchUpdate(anyString(), any(Collection.class), anyInt(), any()))
+        .thenThrow(new DataIntegrityViolationException("duplicate"));
+    PreparedStatement ps = mock(PreparedStatement.class);
+    when(jdbcTemplate.update(anyString(), any(PreparedStatementSetter.class)))
+        .thenAnswer(
+            invocation -> {
+              invocation.<PreparedStatementSetter>getArgument(1).setValues(ps);
+              return 1;
+            })
+        .thenThrow(new DataIntegrityViolationException("duplicate key ortega"))
+        .thenThrow(new DataIntegrityViolationException("duplicate key ortega"));
+    Path file =
+        file(
+            "{\"code\":\"ortega\"}\n{\"code\":\"ortega\"}\n{\"code\":\"ortega\"}\n{\"name\":\"x\"}\n");
+
+    ImportResult result =
+        bulkImporter.importFile(ctx, ImportTable.UCSB_DINING_COMMONS, ImportFormat.NDJSON, file);
+
+    assertEquals(new ImportResult(1, 3), result);
+    verify(ps).setString(1, "ortega");
+    verify(ctx).log("Rejected line 2: duplicate key ortega");
+    verify(ctx, never()).log("Rejected line 3: duplicate key ortega");
+    verify(ctx).log("2 more rejected rows were not logged");
+  }
+
+  @Test
+  void importFile_fails_before_inserting_if_the_header_names_an_unknown_field() throws Exception {
+    Path file = file("name,cuisine\na,b\n");
+
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> bulkImporter.importFile(ctx, ImportTable.RESTAURANTS, ImportFormat.CSV, file));
+    verify(jdbcTemplate, never()).batchUpdate(anyString(), any(Collection.class), anyInt(), any());
+  }
+
+  @Test
+  void launch_runs_an_import_job_and_deletes_the_upload_if_it_is_rejected() throws Exception {
+    when(jobService.runAsJob(any(), any())).thenReturn(Job.builder().status("rejected").build());
+
+    bulkImporter.launch(
+        ImportTable.RESTAURANTS,
+        ImportFormat.CSV,
+        new ByteArrayInputStream("name\na\n".getBytes(StandardCharsets.UTF_8)));
+
+    ArgumentCaptor<ImportJob> job = ArgumentCaptor.forClass(ImportJob.class);
+    verify(jobService).runAsJob(job.capture(), eq(JobOptions.DEFAULTS));
+    Path upload = (Path) ReflectionTestUtils.getField(job.getValue(), "file");
+    assertFalse(Files.exists(upload));
+  }
+
+  @Test
+  void launch_deletes_the_upload_of_an_import_already_launched_with_the_same_key()
+      throws Exception {
+    JobOptions options = JobOptions.builder().idempotencyKey("upload-1").build();
+    when(jobService.runAsJob(any(), eq(options)))
+        .thenReturn(Job.builder().id(3L).status("running").duplicate(true).build());
+
+    Job launched =
+        bulkImporter.launch(
+            ImportTable.RESTAURANTS,
+            ImportFormat.CSV,
+            new ByteArrayInputStream("name\na\n".getBytes(StandardCharsets.UTF_8)),
+            options);
+
+    assertEquals(3L, launched.getId());
+    ArgumentCaptor<ImportJob> job = ArgumentCaptor.forClass(ImportJob.class);
+    verify(jobService).runAsJob(job.capture(), eq(options));
+    Path upload = (Path) ReflectionTestUtils.getField(job.getValue(), "file");
+    assertFalse(Files.exists(upload));
+  }
+
+  @Test
+  void launch_leaves_the_upload_to_the_import_job_which_deletes_it_once_done() throws Exception {
+    when(jobService.runAsJob(any(), any())).thenReturn(Job.builder().status("queued").build());
+
+    bulkImporter.launch(
+        ImportTable.RESTAURANTS,
+        ImportFormat.CSV,
+        new ByteArrayInputStream("name\na\n".getBytes(StandardCharsets.UTF_8)));
+
+    ArgumentCaptor<ImportJob> job = ArgumentCaptor.forClass(ImportJob.class);
+    verify(jobService).runAsJob(job.capture(), eq(JobOptions.DEFAULTS));
+    Path upload = (Path) ReflectionTestUtils.getField(job.getValue(), "file");
+    assertTrue(Files.exists(upload));
+
+    job.getValue().accept(ctx);
+
+    assertEquals(List.of(1), chunkSizes);
+    assertFalse(Files.exists(upload));
+  }
+}
@@ -0,0 +1,93 @@
+package edu.ucsb.cs156.example.services.imports;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+public class ImportRecordsTests {
+
+  private static ImportRecords open(ImportFormat format, String content) throws Exception {
+    return format.open(new BufferedReader(new StringReader(content)), new ObjectMapper());
+  }
+
+  @Test
+  void csv_reads_quoted_fields_across_lines() throws Exception {
+    ImportRecords records =
+        open(
+            ImportFormat.CSV,
+            "name,description\n"
+                + "Taco Bell,\"Tacos, burritos\"\r\n"
+                + "\n"
+                + "\"Joe's \"\"Diner\"\"\",\"line one\nline two\"\n"
+                + "Empty,\n");
+
+    assertEquals(Map.of("name", "Taco Bell", "description", "Tacos, burritos"), records.next());
+    assertEquals(2, records.getLineNumber());
+    assertEquals(
+        Map.of("name", "Joe's \"Diner\"", "description", "line one\nline two"), records.next());
+    assertEquals(4, records.getLineNumber());
+    Map<String, String> empty = new HashMap<>();
+    empty.put("name", "Empty");
+    empty.put("description", null);
+    assertEquals(empty, records.next());
+    assertEquals(6, records.getLineNumber());
+    assertNull(records.next());
+  }
+
+  @Test
+  void csv_keeps_quotes_inside_unquoted_fields() throws Exception {
+    ImportRecords records = open(ImportFormat.CSV, "name,description\nBig 5\" TV,a \"b\"\n");
+
+    assertEquals(Map.of("name", "Big 5\" TV", "description", "a \"b\""), records.next());
+  }
+
+  @Test
+  void csv_rejects_records_with_the_wrong_number_of_fields_and_reads_on() throws Exception {
+    ImportRecords records = open(ImportFormat.CSV, "name,description\na\nb,c\n");
+
+    IllegalArgumentException e = assertThrows(IllegalArgumentException.class, records::next);
+    assertEquals("expected 2 fields but found 1", e.getMessage());
+    assertEquals(Map.of("name", "b", "description", "c"), records.next());
+  }
+
+  @Test
+  void csv_needs_a_header_naming_each_field_once() throws Exception {
+    assertThrows(IllegalArgumentException.class, () -> open(ImportFormat.CSV, ""));
+    assertThrows(IllegalArgumentException.class, () -> open(ImportFormat.CSV, "name,name\n"));
+    assertEquals(
+        List.of("name", "description"),
+        ((CsvImportRecords) open(ImportFormat.CSV, "name, description\n")).getHeader());
+  }
+
+  @Test
+  void ndjson_reads_one_object_per_line() throws Exception {
+    ImportRecords records =
+        open(
+            ImportFormat.NDJSON,
+            "{\"itemId\":7,\"stars\":5,\"comments\":null,\"solved\":true}\n\n[1]\n{\"a\":{}}\n{bad\n");
+
+    Map<String, String> first = new HashMap<>();
+    first.put("itemId", "7");
+    first.put("stars", "5");
+    first.put("comments", null);
+    first.put("solved", "true");
+    assertEquals(first, records.next());
+    assertEquals(
+        "expected a JSON object",
+        assertThrows(IllegalArgumentException.class, records::next).getMessage());
+    assertEquals(3, records.getLineNumber());
+    assertEquals(
+        "a must be a single value",
+        assertThrows(IllegalArgumentException.class, records::next).getMessage());
+    assertThrows(IllegalArgumentException.class, records::next);
+    assertNull(records.next());
+  }
+}
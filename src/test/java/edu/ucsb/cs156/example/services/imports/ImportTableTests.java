@@ -0,0 +1,98 @@
+package edu.ucsb.cs156.example.services.imports;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+public class ImportTableTests {
+
+  @Test
+  void byName_uses_the_api_path_names() {
+    assertEquals(ImportTable.UCSB_DATES, ImportTable.byName("ucsbdates"));
+    IllegalArgumentException e =
+        assertThrows(IllegalArgumentException.class, () -> ImportTable.byName("users"));
+    assertEquals(true, e.getMessage().startsWith("Cannot import into users; valid tables are"));
+  }
+
+  @Test
+  void insert_sql_lists_every_column() {
+    assertEquals(
+        "INSERT INTO ucsbdates (quarteryyyyq, name, local_date_time) VALUES (?, ?, ?)",
+        ImportTable.UCSB_DATES.getInsertSql());
+  }
+
+  @Test
+  void parse_converts_values_by_column_type() {
+    Object[] values =
+        ImportTable.UCSB_DINING_COMMONS.parse(
+            Map.of("code", "ortega", "hasSackMeal", "TRUE", "latitude", "34.41"));
+
+    assertArrayEquals(new Object[] {"ortega", null, true, false, false, 34.41, null}, values);
+    assertArrayEquals(
+        new Object[] {"20221", "M", Timestamp.valueOf(LocalDateTime.of(2022, 1, 3, 0, 0))},
+        ImportTable.UCSB_DATES.parse(
+            Map.of(
+                "id",
+                "9",
+                "quarterYYYYQ",
+                "20221",
+                "name",
+                "M",
+                "localDateTime",
+                "2022-01-03T00:00")));
+    assertArrayEquals(
+        new Object[] {7L, null, 5, null, null},
+        ImportTable.MENU_ITEM_REVIEW.parse(Map.of("itemId", "7", "stars", " 5", "comments", "")));
+    assertArrayEquals(
+        new Object[] {null, null, null, null, null, false},
+        ImportTable.HELP_REQUEST.parse(Map.of("solved", "False")));
+  }
+
+  @Test
+  void parse_rejects_unknown_fields_and_invalid_values() {
+    assertEquals(
+        "ucsbdiningcommons has no field id",
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> ImportTable.UCSB_DINING_COMMONS.parse(Map.of("id", "1", "code", "x")))
+            .getMessage());
+    assertEquals(
+        "stars is required",
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> ImportTable.MENU_ITEM_REVIEW.parse(Map.of("itemId", "1")))
+            .getMessage());
+    assertEquals(
+        "stars is not a valid int: five",
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> ImportTable.MENU_ITEM_REVIEW.parse(Map.of("itemId", "1", "stars", "five")))
+            .getMessage());
+    assertEquals(
+        "solved is not a valid boolean: yes",
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> ImportTable.HELP_REQUEST.parse(Map.of("solved", "yes")))
+            .getMessage());
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> ImportTable.UCSB_DATES.parse(Map.of("localDateTime", "Jan 3")));
+  }
+
+  @Test
+  void checkFields_names_the_first_unknown_field() {
+    ImportTable.RESTAURANTS.checkFields(List.of("id", "name"));
+    assertEquals(
+        "restaurants has no field cuisine",
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> ImportTable.RESTAURANTS.checkFields(List.of("name", "cuisine")))
+            .getMessage());
+  }
+}
@@ -0,0 +1,186 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.JobProgress;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.async.DeferredResult;
+
+public class JobCompletionsTests {
+
+  @Mock private JobsRepository jobsRepository;
+
+  @Mock private JobLogWriter jobLogWriter;
+
+  @InjectMocks private JobCompletions jobCompletions;
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    ReflectionTestUtils.setField(jobCompletions, "maxTimeoutMs", 60_000L);
+  }
+
+  private static JobProgress progress(long id, String status) {
+    return JobProgress.builder().id(id).status(status).build();
+  }
+
+  @Test
+  void await_of_an_ended_job_answers_at_once() {
+    when(jobsRepository.findProgressById(1L)).thenReturn(Optional.of(progress(1L, "complete")));
+
+    DeferredResult<JobProgress> result = jobCompletions.await(1L, 5_000);
+
+    assertEquals(progress(1L, "complete"), result.getResult());
+    assertEquals(0, jobCompletions.getWaiting());
+  }
+
+  @Test
+  void await_of_a_missing_job_throws_and_leaves_no_waiter() {
+    assertThrows(EntityNotFoundException.class, () -> jobCompletions.await(1L, 5_000));
+    assertEquals(0, jobCompletions.getWaiting());
+  }
+
+  @Test
+  void await_answers_with_the_current_progress_when_it_times_out() {
+    when(jobsRepository.findProgressById(1L)).thenReturn(Optional.of(progress(1L, "running")));
+    DeferredResult<JobProgress> result = jobCompletions.await(1L, 5_000);
+    DeferredResult<JobProgress> failed = jobCompletions.await(1L, 5_000);
+
+    timeOut(result);
+    IllegalStateException failure = new IllegalStateException("db down");
+    when(jobsRepository.findProgressById(1L)).thenThrow(failure);
+    timeOut(failed);
+
+    assertEquals(progress(1L, "running"), result.getResult());
+    assertEquals(failure, failed.getResult());
+  }
+
+  private static void timeOut(DeferredResult<?> result) {
+    ((Runnable) ReflectionTestUtils.getField(result, "timeoutCallback")).run();
+  }
+
+  @Test
+  void await_of_a_job_deleted_while_others_wait_keeps_their_waiters() {
+    when(jobsRepository.findProgressById(1L)).thenReturn(Optional.of(progress(1L, "running")));
+    jobCompletions.await(1L, 5_000);
+    when(jobsRepository.findProgressById(1L)).thenReturn(Optional.empty());
+
+    assertThrows(EntityNotFoundException.class, () -> jobCompletions.await(1L, 5_000));
+    assertEquals(1, jobCompletions.getWaiting());
+  }
+
+  @Test
+  void await_caps_the_timeout() {
+    when(jobsRepository.findProgressById(1L)).thenReturn(Optional.of(progress(1L, "queued")));
+
+    assertEquals(
+        60_000L, ReflectionTestUtils.getField(jobCompletions.await(1L, 3_600_000), "timeoutValue"));
+    assertEquals(1L, ReflectionTestUtils.getField(jobCompletions.await(1L, -5), "timeoutValue"));
+  }
+
+  @Test
+  void statusChanged_answers_every_waiter_once_the_job_has_ended() {
+    when(jobsRepository.findProgressById(1L)).thenReturn(Optional.of(progress(1L, "running")));
+    DeferredResult<JobProgress> first = jobCompletions.await(1L, 5_000);
+    DeferredResult<JobProgress> second = jobCompletions.await(1L, 5_000);
+
+    jobCompletions.statusChanged(1L);
+    assertFalse(first.hasResult());
+
+    when(jobsRepository.findProgressById(1L)).thenReturn(Optional.of(progress(1L, "error")));
+    jobCompletions.statusChanged(1L);
+
+    assertEquals("error", ((JobProgress) first.getResult()).getStatus());
+    assertEquals("error", ((JobProgress) second.getResult()).getStatus());
+    assertEquals(0, jobCompletions.getWaiting());
+  }
+
+  @Test
+  void statusChanged_of_a_job_nobody_waits_for_reads_nothing() {
+    jobCompletions.statusChanged(1L);
+
+    verify(jobsRepository, never()).findProgressById(1L);
+  }
+
+  @Test
+  void statusChanged_survives_failures() {
+    when(jobsRepository.findProgressById(1L)).thenReturn(Optional.of(progress(1L, "running")));
+    DeferredResult<JobProgress> result = jobCompletions.await(1L, 5_000);
+    when(jobsRepository.findProgressById(1L)).thenThrow(new IllegalStateException("db down"));
+
+    jobCompletions.statusChanged(1L);
+
+    assertFalse(result.hasResult());
+    assertEquals(1, jobCompletions.getWaiting());
+  }
+
+  @Test
+  void pollRemoteJobs_checks_jobs_not_running_here_with_one_query() {
+    when(jobsRepository.findProgressById(1L)).thenReturn(Optional.of(progress(1L, "running")));
+    when(jobsRepository.findProgressById(2L)).thenReturn(Optional.of(progress(2L, "running")));
+    when(jobsRepository.findProgressById(3L)).thenReturn(Optional.of(progress(3L, "queued")));
+    DeferredResult<JobProgress> local = jobCompletions.await(1L, 5_000);
+    DeferredResult<JobProgress> remote = jobCompletions.await(2L, 5_000);
+    DeferredResult<JobProgress> queued = jobCompletions.await(3L, 5_000);
+    when(jobLogWriter.isOpen(1L)).thenReturn(true);
+    when(jobsRepository.findProgressByIdInAndStatusIn(
+            Set.of(2L, 3L), JobRetention.FINISHED_STATUSES))
+        .thenReturn(List.of(progress(2L, "complete")));
+
+    jobCompletions.pollRemoteJobs();
+
+    assertFalse(local.hasResult());
+    assertEquals("complete", ((JobProgress) remote.getResult()).getStatus());
+    assertFalse(queued.hasResult());
+    assertEquals(2, jobCompletions.getWaiting());
+  }
+
+  @Test
+  void pollRemoteJobs_without_waiters_reads_nothing() {
+    jobCompletions.pollRemoteJobs();
+
+    verify(jobsRepository, never()).findProgressByIdInAndStatusIn(any(), any());
+    assertEquals(0, jobCompletions.getWaiting());
+  }
+
+  @Test
+  void pollRemoteJobs_skips_jobs_answered_meanwhile_and_survives_failures() {
+    when(jobsRepository.findProgressById(2L)).thenReturn(Optional.of(progress(2L, "running")));
+    DeferredResult<JobProgress> result = jobCompletions.await(2L, 5_000);
+    when(jobsRepository.findProgressById(2L)).thenReturn(Optional.of(progress(2L, "error")));
+    when(jobsRepository.findProgressByIdInAndStatusIn(Set.of(2L), JobRetention.FINISHED_STATUSES))
+        .thenAnswer(
+            invocation -> {
+              jobCompletions.statusChanged(2L);
+              return List.of(progress(2L, "complete"));
+            });
+
+    jobCompletions.pollRemoteJobs();
+    assertEquals("error", ((JobProgress) result.getResult()).getStatus());
+
+    when(jobsRepository.findProgressById(3L)).thenReturn(Optional.of(progress(3L, "running")));
+    DeferredResult<JobProgress> waiting = jobCompletions.await(3L, 5_000);
+    when(jobsRepository.findProgressByIdInAndStatusIn(any(), any()))
+        .thenThrow(new IllegalStateException("db down"));
+
+    jobCompletions.pollRemoteJobs();
+    assertFalse(waiting.hasResult());
+    assertEquals(1, jobCompletions.getWaiting());
+  }
+}
@@ -1,13 +1,27 @@
 package edu.ucsb.cs156.example.services.jobs;
 
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.awaitility.Awaitility.await;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogLine;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 
 public class JobContextTests {
   @Test
-  public void when_jobs_repository_is_null_does_not_save() throws Exception {
+  public void when_log_buffer_is_null_does_not_save() throws Exception {
 
     // arrange
 
@@ -15,9 +29,126 @@ public class JobContextTests {
     JobContext ctx = new JobContext(null, job1);
 
     // act
+    ctx.continueLogAfter(4);
     ctx.log("This is a log message");
 
     // assert
-    assertEquals("This is a log message", job1.getLog());
+    assertNull(job1.getLog());
+  }
+
+  @Test
+  public void log_appends_lines_with_increasing_seq_and_does_not_rewrite_job() throws Exception {
+
+    // arrange
+
+    JobLogBuffer logBuffer = mock(JobLogBuffer.class);
+    Job job1 = Job.builder().id(7L).build();
+    JobContext ctx = new JobContext(logBuffer, job1);
+
+    // act
+    ctx.log("first");
+    ctx.log("second");
+
+    // assert
+    ArgumentCaptor<JobLogLine> captor = ArgumentCaptor.forClass(JobLogLine.class);
+    verify(logBuffer, times(2)).append(captor.capture());
+    List<JobLogLine> lines = captor.getAllValues();
+    assertEquals(7L, lines.get(0).getJobId());
+    assertEquals(0L, lines.get(0).getSeq());
+    assertEquals("first", lines.get(0).getMessage());
+    assertEquals(1L, lines.get(1).getSeq());
+    assertEquals("second", lines.get(1).getMessage());
+    assertNull(job1.getLog());
+  }
+
+  @Test
+  public void checkCancelled_does_nothing_until_cancelled() {
+    JobContext ctx = new JobContext(null, Job.builder().build());
+    ctx.checkCancelled();
+
+    ctx.cancel("cancelled");
+    ctx.cancel("timed_out");
+
+    JobCancelledException e = assertThrows(JobCancelledException.class, ctx::checkCancelled);
+    assertEquals("cancelled", e.getStatus());
+    assertEquals("Job cancelled", e.getMessage());
+  }
+
+  @Test
+  public void checkCancelled_throws_timed_out_after_deadline() {
+    JobContext ctx = new JobContext(null, Job.builder().build());
+    ctx.start(1L);
+
+    await().atMost(1, SECONDS).until(() -> ctx.isPastDeadline(System.nanoTime()));
+
+    JobCancelledException e = assertThrows(JobCancelledException.class, ctx::checkCancelled);
+    assertEquals("timed_out", e.getStatus());
+    assertEquals("Job timed out", e.getMessage());
+    ctx.finish();
+  }
+
+  @Test
+  public void no_timeout_means_no_deadline() {
+    JobContext ctx = new JobContext(null, Job.builder().build());
+    ctx.start(0L);
+
+    assertFalse(ctx.isPastDeadline(Long.MAX_VALUE));
+    ctx.finish();
+  }
+
+  @Test
+  public void cancel_interrupts_sleep() throws Exception {
+    JobContext ctx = new JobContext(null, Job.builder().build());
+    AtomicReference<Throwable> thrown = new AtomicReference<>();
+    CountDownLatch started = new CountDownLatch(1);
+    Thread t =
+        new Thread(
+            () -> {
+              ctx.start(null);
+              started.countDown();
+              try {
+                ctx.sleep(60_000);
+              } catch (Throwable e) {
+                thrown.set(e);
+              } finally {
+                ctx.finish();
+              }
+            });
+    t.start();
+    started.await();
+
+    ctx.cancel("cancelled");
+    t.join(5_000);
+
+    assertFalse(t.isAlive());
+    assertTrue(thrown.get() instanceof JobCancelledException);
+  }
+
+  @Test
+  public void sleep_rethrows_interrupt_when_not_cancelled() {
+    JobContext ctx = new JobContext(null, Job.builder().build());
+    Thread.currentThread().interrupt();
+
+    assertThrows(InterruptedException.class, () -> ctx.sleep(60_000));
+  }
+
+  @Test
+  public void progress_is_passed_to_the_tracker_and_flushed_when_the_job_finishes() {
+    JobProgressTracker progressTracker = mock(JobProgressTracker.class);
+    JobContext ctx = new JobContext(null, progressTracker, Job.builder().build());
+
+    ctx.progress(3, 4);
+    ctx.finish();
+
+    verify(progressTracker).update(3, 4);
+    verify(progressTracker).flush();
+  }
+
+  @Test
+  public void progress_without_a_tracker_does_nothing() {
+    JobContext ctx = new JobContext(null, Job.builder().build());
+
+    ctx.progress(3, 4);
+    ctx.finish();
   }
 }
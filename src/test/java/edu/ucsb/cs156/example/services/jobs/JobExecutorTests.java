@@ -0,0 +1,132 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.ucsb.cs156.example.models.JobExecutorStats;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+@ExtendWith(SpringExtension.class)
+@Import(JobExecutor.class)
+@TestPropertySource(
+    properties = {
+      "app.jobs.executor.virtualThreads=false",
+      "app.jobs.executor.poolSize=2",
+      "app.jobs.executor.queueCapacity=2",
+      "app.jobs.executor.typeLimits=Slow=1"
+    })
+@DirtiesContext(classMode = ClassMode.AFTER_EACH_TEST_METHOD)
+public class JobExecutorTests {
+
+  @Autowired JobExecutor jobExecutor;
+
+  private Runnable blockOn(CountDownLatch latch) {
+    return () -> {
+      try {
+        latch.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    };
+  }
+
+  @Test
+  public void per_type_limit_keeps_second_job_of_type_queued_while_other_types_run()
+      throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch otherRan = new CountDownLatch(1);
+
+    assertTrue(jobExecutor.submit("Slow", blockOn(release)));
+    assertTrue(jobExecutor.submit("Slow", blockOn(release)));
+    assertTrue(jobExecutor.submit("Fast", otherRan::countDown));
+
+    assertTrue(otherRan.await(5, SECONDS));
+    await()
+        .atMost(5, SECONDS)
+        .untilAsserted(
+            () -> {
+              JobExecutorStats stats = jobExecutor.getStats();
+              assertEquals(1, stats.getRunning());
+              assertEquals(1, stats.getQueued());
+              assertEquals(Map.of("Slow", 1), stats.getRunningByType());
+              assertEquals(Map.of("Slow", 1), stats.getQueuedByType());
+            });
+    assertEquals(Set.of("Slow"), jobExecutor.saturatedTypes());
+
+    release.countDown();
+    await().atMost(5, SECONDS).until(() -> jobExecutor.getStats().getRunning() == 0);
+    assertEquals(0, jobExecutor.getStats().getQueued());
+  }
+
+  @Test
+  public void rejects_when_queue_is_full() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+
+    // two run (pool size 2), two wait (queue capacity 2), the fifth is rejected
+    for (int i = 0; i < 4; i++) {
+      assertTrue(jobExecutor.submit("Other", blockOn(release)));
+    }
+    await().atMost(5, SECONDS).until(() -> jobExecutor.getStats().getRunning() == 2);
+    assertFalse(jobExecutor.submit("Other", blockOn(release)));
+
+    JobExecutorStats stats = jobExecutor.getStats();
+    assertEquals(2, stats.getQueued());
+    assertEquals(1, stats.getRejected());
+    assertEquals(2, stats.getPoolSize());
+    assertEquals(2, stats.getQueueCapacity());
+    assertFalse(stats.getVirtualThreads());
+    assertEquals(Map.of("Slow", 1), stats.getTypeLimits());
+    release.countDown();
+  }
+
+  @Test
+  public void a_failing_task_releases_its_slot() throws Exception {
+    AtomicInteger ran = new AtomicInteger();
+
+    jobExecutor.submit(
+        "Slow",
+        () -> {
+          throw new RuntimeException("boom");
+        });
+    jobExecutor.submit("Slow", ran::incrementAndGet);
+
+    await().atMost(5, SECONDS).until(() -> ran.get() == 1);
+  }
+
+  @Test
+  public void parseTypeLimits_parses_entries() {
+    assertEquals(Map.of(), JobExecutor.parseTypeLimits(""));
+    assertEquals(Map.of(), JobExecutor.parseTypeLimits(null));
+    assertEquals(Map.of("A", 2, "B", 1), JobExecutor.parseTypeLimits(" A = 2, B=1"));
+    assertThrows(IllegalArgumentException.class, () -> JobExecutor.parseTypeLimits("A"));
+  }
+
+  @Test
+  public void availableSlots_and_saturatedTypes_reflect_load() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    assertEquals(2, jobExecutor.availableSlots());
+    assertEquals(Set.of(), jobExecutor.saturatedTypes());
+
+    jobExecutor.submit("Slow", blockOn(release));
+    await().atMost(5, SECONDS).until(() -> jobExecutor.getStats().getRunning() == 1);
+
+    assertEquals(1, jobExecutor.availableSlots());
+    assertEquals(Set.of("Slow"), jobExecutor.saturatedTypes());
+    release.countDown();
+  }
+}
@@ -0,0 +1,161 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.models.JobUserQueueStats;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository.QueueHead;
+import edu.ucsb.cs156.example.repositories.JobsRepository.UserJobCount;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class JobFairShareTests {
+
+  @Mock private JobsRepository jobsRepository;
+
+  @InjectMocks private JobFairShare jobFairShare;
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    ReflectionTestUtils.setField(jobFairShare, "weightsProperty", "heavy@ucsb.edu=4");
+    jobFairShare.init();
+  }
+
+  private QueueHead head(long id, Long createdById, String email, int priority) {
+    QueueHead head = mock(QueueHead.class);
+    when(head.getId()).thenReturn(id);
+    when(head.getCreatedById()).thenReturn(createdById);
+    when(head.getEmail()).thenReturn(email);
+    when(head.getPriority()).thenReturn(priority);
+    return head;
+  }
+
+  private UserJobCount count(Long createdById, String email, String status, long jobs) {
+    UserJobCount count = mock(UserJobCount.class);
+    when(count.getCreatedById()).thenReturn(createdById);
+    when(count.getEmail()).thenReturn(email);
+    when(count.getStatus()).thenReturn(status);
+    when(count.getJobs()).thenReturn(jobs);
+    return count;
+  }
+
+  @Test
+  void parseWeights_reads_entries_and_rejects_bad_ones() {
+    assertEquals(Map.of(), JobFairShare.parseWeights(" "));
+    assertEquals(Map.of(), JobFairShare.parseWeights(null));
+    assertEquals(
+        Map.of("a@ucsb.edu", 2, "b@ucsb.edu", 1),
+        JobFairShare.parseWeights("a@ucsb.edu=2, b@ucsb.edu=1"));
+    assertThrows(IllegalArgumentException.class, () -> JobFairShare.parseWeights("a@ucsb.edu"));
+    assertThrows(IllegalArgumentException.class, () -> JobFairShare.parseWeights("a@ucsb.edu=0"));
+  }
+
+  @Test
+  void pickNext_returns_empty_when_nothing_is_queued() {
+    when(jobsRepository.findQueueHeads("n1", Set.of(""))).thenReturn(List.of());
+
+    assertTrue(jobFairShare.pickNext("n1", Set.of("")).isEmpty());
+  }
+
+  @Test
+  void pickNext_with_one_user_queued_skips_counting() {
+    QueueHead only = head(3L, 1L, "a@ucsb.edu", 0);
+    when(jobsRepository.findQueueHeads("n1", Set.of(""))).thenReturn(List.of(only));
+
+    assertEquals(Optional.of(3L), jobFairShare.pickNext("n1", Set.of("")));
+    verify(jobsRepository, never()).countActiveJobsByUser();
+  }
+
+  @Test
+  void pickNext_prefers_user_with_fewer_running_jobs_over_older_job() {
+    QueueHead bulk = head(1L, 1L, "bulk@ucsb.edu", 0);
+    QueueHead other = head(9L, 2L, "other@ucsb.edu", 0);
+    when(jobsRepository.findQueueHeads("n1", Set.of(""))).thenReturn(List.of(bulk, other));
+    List<UserJobCount> counts =
+        List.of(
+            count(1L, "bulk@ucsb.edu", "running", 3),
+            count(1L, "bulk@ucsb.edu", "queued", 100),
+            count(2L, "other@ucsb.edu", "claimed", 1));
+    when(jobsRepository.countActiveJobsByUser()).thenReturn(counts);
+
+    assertEquals(Optional.of(9L), jobFairShare.pickNext("n1", Set.of("")));
+  }
+
+  @Test
+  void pickNext_divides_running_jobs_by_weight() {
+    QueueHead heavy = head(5L, 1L, "heavy@ucsb.edu", 0);
+    QueueHead other = head(2L, 2L, "other@ucsb.edu", 0);
+    when(jobsRepository.findQueueHeads("n1", Set.of(""))).thenReturn(List.of(heavy, other));
+    List<UserJobCount> counts =
+        List.of(
+            count(1L, "heavy@ucsb.edu", "running", 3), count(2L, "other@ucsb.edu", "running", 1));
+    when(jobsRepository.countActiveJobsByUser()).thenReturn(counts);
+
+    assertEquals(Optional.of(5L), jobFairShare.pickNext("n1", Set.of("")));
+  }
+
+  @Test
+  void pickNext_runs_higher_priority_first_then_breaks_ties_by_age() {
+    QueueHead busyUrgent = head(8L, 1L, "a@ucsb.edu", 5);
+    QueueHead idle = head(2L, 2L, "b@ucsb.edu", 0);
+    QueueHead system = head(4L, null, null, 0);
+    when(jobsRepository.findQueueHeads("n1", Set.of("")))
+        .thenReturn(List.of(idle, system, busyUrgent));
+    List<UserJobCount> counts = List.of(count(1L, "a@ucsb.edu", "running", 10));
+    when(jobsRepository.countActiveJobsByUser()).thenReturn(counts);
+
+    assertEquals(Optional.of(8L), jobFairShare.pickNext("n1", Set.of("")));
+
+    when(busyUrgent.getPriority()).thenReturn(0);
+    assertEquals(Optional.of(2L), jobFairShare.pickNext("n1", Set.of("")));
+  }
+
+  @Test
+  void getUserStats_combines_statuses_per_user_lowest_share_first() {
+    List<UserJobCount> counts =
+        List.of(
+            count(1L, "a@ucsb.edu", "queued", 40),
+            count(1L, "a@ucsb.edu", "claimed", 1),
+            count(1L, "a@ucsb.edu", "running", 3),
+            count(2L, "heavy@ucsb.edu", "running", 2),
+            count(null, null, "queued", 1));
+    when(jobsRepository.countActiveJobsByUser()).thenReturn(counts);
+
+    List<JobUserQueueStats> stats = jobFairShare.getUserStats();
+
+    assertEquals(
+        List.of(
+            JobUserQueueStats.builder().weight(1).queued(1).build(),
+            JobUserQueueStats.builder()
+                .createdById(2L)
+                .email("heavy@ucsb.edu")
+                .weight(4)
+                .running(2)
+                .share(0.5)
+                .build(),
+            JobUserQueueStats.builder()
+                .createdById(1L)
+                .email("a@ucsb.edu")
+                .weight(1)
+                .queued(40)
+                .running(4)
+                .share(4.0)
+                .build()),
+        stats);
+  }
+}
@@ -0,0 +1,206 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogLine;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+public class JobFanOutTests {
+
+  private static List<Integer> upTo(int n) {
+    return IntStream.rangeClosed(1, n).boxed().toList();
+  }
+
+  @Test
+  public void fanOut_returns_results_in_item_order() throws Exception {
+    JobContext ctx = new JobContext(null, Job.builder().id(1L).build());
+
+    List<Integer> squares =
+        ctx.fanOut(
+            upTo(20),
+            (c, n) -> {
+              Thread.sleep(20 - n);
+              c.checkCancelled();
+              c.progress(n, 20);
+              return n * n;
+            });
+
+    assertEquals(upTo(20).stream().map(n -> n * n).toList(), squares);
+    assertEquals(List.of(), ctx.fanOut(List.of(), (c, n) -> n));
+  }
+
+  @Test
+  public void fanOut_runs_no_more_subtasks_at_once_than_allowed() throws Exception {
+    JobContext ctx = new JobContext(null, Job.builder().id(1L).build());
+    ctx.setSubtaskParallelism(3);
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    JobSubtask<Integer, Integer> subtask =
+        (c, n) -> {
+          maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+          Thread.sleep(10);
+          running.decrementAndGet();
+          return n;
+        };
+
+    ctx.fanOut(upTo(12), subtask);
+    assertEquals(3, maxRunning.get());
+
+    maxRunning.set(0);
+    ctx.fanOut(upTo(12), 2, subtask);
+    assertEquals(2, maxRunning.get());
+  }
+
+  @Test
+  public void subtask_log_lines_are_prefixed_with_their_item() throws Exception {
+    JobLogBuffer logBuffer = mock(JobLogBuffer.class);
+    JobContext ctx = new JobContext(logBuffer, Job.builder().id(1L).build());
+
+    ctx.fanOut(
+        List.of("ortega", "carrillo"),
+        (c, name) -> {
+          c.log("menu loaded");
+          return null;
+        });
+
+    ArgumentCaptor<JobLogLine> lines = ArgumentCaptor.forClass(JobLogLine.class);
+    verify(logBuffer, times(2)).append(lines.capture());
+    assertEquals(
+        new HashSet<>(List.of("[ortega] menu loaded", "[carrillo] menu loaded")),
+        new HashSet<>(lines.getAllValues().stream().map(JobLogLine::getMessage).toList()));
+    assertEquals(
+        new HashSet<>(List.of(0L, 1L)),
+        new HashSet<>(lines.getAllValues().stream().map(JobLogLine::getSeq).toList()));
+  }
+
+  @Test
+  public void first_failure_stops_the_other_subtasks_and_is_thrown() {
+    JobContext ctx = new JobContext(null, Job.builder().id(1L).build());
+    ctx.setSubtaskParallelism(4);
+    List<Integer> interrupted = Collections.synchronizedList(new ArrayList<>());
+    IllegalStateException failure = new IllegalStateException("bad item");
+
+    Exception thrown =
+        assertThrows(
+            IllegalStateException.class,
+            () ->
+                ctx.fanOut(
+                    upTo(4),
+                    (c, n) -> {
+                      if (n == 1) {
+                        throw failure;
+                      }
+                      try {
+                        Thread.sleep(60_000);
+                      } catch (InterruptedException e) {
+                        interrupted.add(n);
+                      }
+                      return n;
+                    }));
+
+    assertSame(failure, thrown);
+    // fanOut only returns once every subtask has stopped
+    assertEquals(3, interrupted.size());
+  }
+
+  @Test
+  public void errors_thrown_by_subtasks_are_wrapped() {
+    JobContext ctx = new JobContext(null, Job.builder().id(1L).build());
+    AssertionError failure = new AssertionError("bad item");
+
+    ExecutionException thrown =
+        assertThrows(
+            ExecutionException.class,
+            () ->
+                ctx.fanOut(
+                    upTo(1),
+                    (c, n) -> {
+                      throw failure;
+                    }));
+
+    assertSame(failure, thrown.getCause());
+  }
+
+  @Test
+  public void interrupting_a_job_that_is_not_cancelled_stops_its_subtasks() throws Exception {
+    JobContext ctx = new JobContext(null, Job.builder().id(1L).build());
+    CountDownLatch started = new CountDownLatch(1);
+    AtomicReference<Throwable> thrown = new AtomicReference<>();
+    Thread runner =
+        new Thread(
+            () -> {
+              try {
+                ctx.fanOut(
+                    upTo(1),
+                    (c, n) -> {
+                      started.countDown();
+                      Thread.sleep(60_000);
+                      return n;
+                    });
+              } catch (Throwable e) {
+                thrown.set(e);
+              }
+            });
+    runner.start();
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+
+    runner.interrupt();
+    runner.join(5_000);
+
+    assertFalse(runner.isAlive());
+    assertTrue(thrown.get() instanceof InterruptedException);
+  }
+
+  @Test
+  public void cancelling_the_job_stops_its_subtasks() throws Exception {
+    JobContext ctx = new JobContext(null, Job.builder().id(1L).build());
+    ctx.setSubtaskParallelism(2);
+    CountDownLatch started = new CountDownLatch(2);
+    AtomicReference<Throwable> thrown = new AtomicReference<>();
+    Thread runner =
+        new Thread(
+            () -> {
+              ctx.start(null);
+              try {
+                ctx.fanOut(
+                    upTo(2),
+                    (c, n) -> {
+                      started.countDown();
+                      c.sleep(60_000);
+                      return n;
+                    });
+              } catch (Throwable e) {
+                thrown.set(e);
+              } finally {
+                ctx.finish();
+              }
+            });
+    runner.start();
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+
+    ctx.cancel("cancelled");
+    runner.join(5_000);
+
+    assertFalse(runner.isAlive());
+    assertTrue(thrown.get() instanceof JobCancelledException);
+  }
+}
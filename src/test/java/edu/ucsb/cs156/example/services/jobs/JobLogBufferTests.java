@@ -0,0 +1,112 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import edu.ucsb.cs156.example.entities.JobLogLine;
+import edu.ucsb.cs156.example.services.jobs.JobLogBuffer.FlushReason;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+public class JobLogBufferTests {
+
+  private JobLogWriter writer;
+
+  @BeforeEach
+  public void setup() {
+    writer = mock(JobLogWriter.class);
+  }
+
+  private JobLogLine line(long seq) {
+    return JobLogLine.builder().jobId(1L).seq(seq).message("line " + seq).build();
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void flushes_when_buffer_reaches_max_lines() {
+    JobLogBuffer buffer = new JobLogBuffer(1L, writer, 3, 60_000);
+
+    buffer.append(line(0));
+    buffer.append(line(1));
+    verify(writer, never()).insert(any());
+
+    buffer.append(line(2));
+
+    ArgumentCaptor<List<JobLogLine>> captor = ArgumentCaptor.forClass(List.class);
+    verify(writer, times(1)).insert(captor.capture());
+    assertEquals(List.of(line(0), line(1), line(2)), captor.getValue());
+    verify(writer, times(1)).recordFlush(eq(FlushReason.SIZE), eq(3), anyLong());
+    verify(writer, times(1)).flushed(1L, List.of(line(0), line(1), line(2)));
+  }
+
+  @Test
+  public void flushes_on_append_when_oldest_line_is_due() throws Exception {
+    JobLogBuffer buffer = new JobLogBuffer(1L, writer, 100, 1);
+
+    buffer.append(line(0));
+    Thread.sleep(5);
+    buffer.append(line(1));
+
+    verify(writer, times(1)).recordFlush(eq(FlushReason.INTERVAL), eq(2), anyLong());
+  }
+
+  @Test
+  public void max_lines_of_one_writes_every_line_immediately() {
+    JobLogBuffer buffer = new JobLogBuffer(1L, writer, 0, 0);
+
+    buffer.append(line(0));
+    buffer.append(line(1));
+
+    verify(writer, times(2)).insert(any());
+  }
+
+  @Test
+  public void isDue_only_when_lines_are_pending_and_old_enough() {
+    JobLogBuffer buffer = new JobLogBuffer(1L, writer, 100, 1000);
+
+    assertFalse(buffer.isDue(System.nanoTime()));
+    buffer.append(line(0));
+    assertFalse(buffer.isDue(System.nanoTime()));
+    assertTrue(buffer.isDue(System.nanoTime() + 2_000_000_000L));
+  }
+
+  @Test
+  public void flush_of_empty_buffer_does_nothing() {
+    JobLogBuffer buffer = new JobLogBuffer(1L, writer, 100, 1000);
+
+    buffer.flush(FlushReason.END);
+
+    verify(writer, never()).insert(any());
+    verify(writer, never()).recordFlush(any(), eq(0), anyLong());
+    assertEquals(1L, buffer.getJobId());
+  }
+
+  @Test
+  public void lines_stay_buffered_until_a_flush_writes_them() {
+    JobLogBuffer buffer = new JobLogBuffer(1L, writer, 2, 60_000);
+    doThrow(new RuntimeException("db down")).doNothing().when(writer).insert(any());
+
+    buffer.append(line(0));
+    // the failed flush is only logged; the job carries on
+    buffer.append(line(1));
+    verify(writer, never()).flushed(anyLong(), any());
+
+    buffer.append(line(2));
+
+    verify(writer, times(2)).insert(any());
+    verify(writer).insert(List.of(line(0), line(1), line(2)));
+    verify(writer).flushed(1L, List.of(line(0), line(1), line(2)));
+    assertFalse(buffer.isDue(Long.MAX_VALUE));
+  }
+}
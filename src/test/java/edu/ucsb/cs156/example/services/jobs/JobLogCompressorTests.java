@@ -0,0 +1,171 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mockConstruction;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.entities.JobLogLine;
+import edu.ucsb.cs156.example.repositories.JobLogLineRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.GZIPOutputStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockedConstruction;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+public class JobLogCompressorTests {
+
+  @Mock private JobsRepository jobsRepository;
+
+  @Mock private JobLogLineRepository jobLogLineRepository;
+
+  @Mock private PlatformTransactionManager transactionManager;
+
+  @InjectMocks private JobLogCompressor jobLogCompressor;
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    ReflectionTestUtils.setField(jobLogCompressor, "enabled", true);
+  }
+
+  private static JobLogLine line(long seq, String message) {
+    return JobLogLine.builder().jobId(5L).seq(seq).message(message).build();
+  }
+
+  @Test
+  void compress_replaces_the_lines_with_the_gzipped_log() {
+    when(jobLogLineRepository.findAllByJobIdOrderBySeqAsc(5L))
+        .thenReturn(List.of(line(0, "Hello"), line(1, "Goodbye")));
+
+    assertTrue(jobLogCompressor.compress(5L));
+
+    ArgumentCaptor<byte[]> logGz = ArgumentCaptor.forClass(byte[].class);
+    verify(jobsRepository).storeCompressedLog(eq(5L), logGz.capture());
+    assertEquals(
+        List.of(line(0, "Hello"), line(1, "Goodbye")),
+        JobLogCompressor.gunzip(5L, logGz.getValue()));
+    verify(jobLogLineRepository).deleteAllByJobId(5L);
+    verify(transactionManager).commit(any());
+  }
+
+  @Test
+  void compress_adds_the_lines_to_a_log_compressed_earlier() {
+    when(jobsRepository.findCompressedLogById(5L))
+        .thenReturn(Optional.of(JobLogCompressor.gzip(List.of(line(0, "Hello"), line(1, "Bye")))));
+    when(jobLogLineRepository.findAllByJobIdOrderBySeqAsc(5L))
+        .thenReturn(List.of(line(2, "Hello again"), line(3, "Goodbye")));
+
+    assertTrue(jobLogCompressor.compress(5L));
+
+    ArgumentCaptor<byte[]> logGz = ArgumentCaptor.forClass(byte[].class);
+    verify(jobsRepository).storeCompressedLog(eq(5L), logGz.capture());
+    assertEquals(
+        List.of(line(0, "Hello"), line(1, "Bye"), line(2, "Hello again"), line(3, "Goodbye")),
+        JobLogCompressor.gunzip(5L, logGz.getValue()));
+  }
+
+  @Test
+  void lastCompressedSeq_is_the_seq_of_the_last_compressed_line() {
+    when(jobsRepository.findCompressedLogById(5L))
+        .thenReturn(Optional.of(JobLogCompressor.gzip(List.of(line(0, "Hello"), line(4, "Bye")))));
+
+    assertEquals(Optional.of(4L), jobLogCompressor.lastCompressedSeq(5L));
+    assertEquals(Optional.empty(), jobLogCompressor.lastCompressedSeq(6L));
+  }
+
+  @Test
+  void compress_does_nothing_without_lines_or_when_disabled() {
+    assertFalse(jobLogCompressor.compress(5L));
+
+    ReflectionTestUtils.setField(jobLogCompressor, "enabled", false);
+    assertFalse(jobLogCompressor.compress(6L));
+    jobLogCompressor.compressEndedJobs();
+
+    verify(jobsRepository, never()).storeCompressedLog(anyLong(), any());
+    verify(jobLogLineRepository, never()).findAllByJobIdOrderBySeqAsc(6L);
+    verify(jobsRepository, never()).findEndedIdsWithLogLines(any(), any());
+  }
+
+  @Test
+  void compressEndedJobs_keeps_going_after_a_failure() {
+    when(jobsRepository.findEndedIdsWithLogLines(
+            JobRetention.FINISHED_STATUSES, Limit.of(JobLogCompressor.SWEEP_BATCH_SIZE)))
+        .thenReturn(List.of(4L, 5L));
+    when(jobLogLineRepository.findAllByJobIdOrderBySeqAsc(4L))
+        .thenThrow(new IllegalStateException("db down"));
+    when(jobLogLineRepository.findAllByJobIdOrderBySeqAsc(5L)).thenReturn(List.of(line(0, "x")));
+
+    jobLogCompressor.compressEndedJobs();
+
+    verify(jobLogLineRepository).deleteAllByJobId(5L);
+  }
+
+  @Test
+  void readCompressedLines_returns_the_lines_with_the_seqs_they_were_written_with() {
+    List<JobLogLine> lines =
+        List.of(line(0, "Hello"), line(2, "two\nlines"), line(3, ""), line(4, null));
+    when(jobsRepository.findCompressedLogById(5L))
+        .thenReturn(Optional.of(JobLogCompressor.gzip(lines)));
+
+    assertEquals(lines, jobLogCompressor.readCompressedLines(5L));
+    assertEquals(List.of(), jobLogCompressor.readCompressedLines(6L));
+  }
+
+  @Test
+  void text_joins_the_messages_of_a_compressed_log() {
+    byte[] logGz = JobLogCompressor.gzip(List.of(line(0, "Hello"), line(2, "two\nlines")));
+
+    assertEquals("Hello\ntwo\nlines", JobLogCompressor.text(logGz));
+  }
+
+  @Test
+  void corrupt_logs_fail_with_an_unchecked_io_exception() {
+    byte[] logGz = JobLogCompressor.gzip(List.of(line(0, "Hello, Goodbye")));
+
+    assertThrows(
+        UncheckedIOException.class, () -> JobLogCompressor.gunzip(5L, "not gzip".getBytes()));
+    assertThrows(
+        UncheckedIOException.class,
+        () -> JobLogCompressor.gunzip(5L, Arrays.copyOf(logGz, logGz.length - 4)));
+    assertThrows(
+        UncheckedIOException.class,
+        () -> JobLogCompressor.gunzip(5L, JobLogCompressor.gzipText("\0\0\0\0extra")));
+  }
+
+  @Test
+  void gzip_failures_are_unchecked() {
+    try (MockedConstruction<GZIPOutputStream> streams =
+        mockConstruction(
+            GZIPOutputStream.class,
+            (stream, context) -> {
+              doThrow(new IOException("closed")).when(stream).write(any());
+              doThrow(new IOException("closed")).when(stream).write(any(), anyInt(), anyInt());
+            })) {
+      assertThrows(
+          UncheckedIOException.class, () -> JobLogCompressor.gzip(List.of(line(0, "Hello"))));
+      assertThrows(UncheckedIOException.class, () -> JobLogCompressor.gzipText("Hello"));
+    }
+  }
+}
@@ -0,0 +1,318 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.entities.JobLogLine;
+import edu.ucsb.cs156.example.errors.InvalidRequestException;
+import edu.ucsb.cs156.example.models.JobLogMatch;
+import edu.ucsb.cs156.example.models.JobLogSearchResult;
+import edu.ucsb.cs156.example.models.JobSummary;
+import edu.ucsb.cs156.example.repositories.JobLogLineRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.sql.PreparedStatement;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class JobLogSearchTests {
+
+  @Mock private JobsRepository jobsRepository;
+
+  @Mock private JobLogLineRepository jobLogLineRepository;
+
+  @Mock private JobLogCompressor jobLogCompressor;
+
+  @Mock private JdbcTemplate jdbcTemplate;
+
+  @InjectMocks private JobLogSearch jobLogSearch;
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    ReflectionTestUtils.setField(jobLogSearch, "maxJobs", 3);
+    ReflectionTestUtils.setField(jobLogSearch, "maxTermsPerJob", 100);
+    ReflectionTestUtils.setField(jobLogSearch, "indexer", (Executor) Runnable::run);
+  }
+
+  private static JobLogLine line(long jobId, long seq, String message) {
+    return JobLogLine.builder().jobId(jobId).seq(seq).message(message).build();
+  }
+
+  private static JobSummary job(long id) {
+    return JobSummary.builder().id(id).jobType("ImportJob").status("error").build();
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<Collection<String>> insertedTerms(int batches) {
+    ArgumentCaptor<Collection<String>> terms = ArgumentCaptor.forClass(Collection.class);
+    verify(jdbcTemplate, times(batches)).batchUpdate(anyString(), terms.capture(), anyInt(), any());
+    return terms.getAllValues();
+  }
+
+  @Test
+  void termsOf_splits_words_in_lower_case_and_skips_single_characters() {
+    assertEquals(
+        List.of("line", "12", "rejected", "bad", "date", "2026", "13"),
+        List.copyOf(JobLogSearch.termsOf("Line 12 rejected: bad date '2026-13-x' Line")));
+    assertEquals(Set.of("größe", "ünïcödé"), JobLogSearch.termsOf("Größe=ÜNÏCÖDÉ"));
+    assertEquals(
+        Set.of("a".repeat(JobLogSearch.MAX_TERM_LENGTH)), JobLogSearch.termsOf("a".repeat(100)));
+    assertTrue(JobLogSearch.termsOf(null).isEmpty());
+  }
+
+  @Test
+  void linesWritten_inserts_only_terms_the_job_has_not_logged_before() {
+    jobLogSearch.linesWritten(5L, List.of(line(5L, 0, "Importing dates"), line(5L, 1, "dates ok")));
+    jobLogSearch.linesWritten(5L, List.of(line(5L, 2, "Importing more dates")));
+    jobLogSearch.linesWritten(5L, List.of(line(5L, 3, "dates")));
+
+    List<Collection<String>> inserted = insertedTerms(2);
+    assertEquals(List.of("importing", "dates", "ok"), List.copyOf(inserted.get(0)));
+    assertEquals(List.of("more"), List.copyOf(inserted.get(1)));
+
+    jobLogSearch.jobEnded(5L);
+    verify(jobsRepository).markLogIndexed(5L);
+  }
+
+  @Test
+  void linesWritten_inserts_on_the_indexing_thread_and_jobEnded_waits_for_it() {
+    List<Runnable> handedOver = new ArrayList<>();
+    ReflectionTestUtils.setField(jobLogSearch, "indexer", (Executor) handedOver::add);
+
+    jobLogSearch.linesWritten(5L, List.of(line(5L, 0, "Importing dates")));
+    jobLogSearch.jobEnded(5L);
+    verify(jdbcTemplate, never()).batchUpdate(anyString(), any(Collection.class), anyInt(), any());
+    verify(jobsRepository, never()).markLogIndexed(anyLong());
+
+    handedOver.forEach(Runnable::run);
+    assertEquals(List.of("importing", "dates"), List.copyOf(insertedTerms(1).get(0)));
+    verify(jobsRepository).markLogIndexed(5L);
+  }
+
+  @Test
+  void a_job_whose_lines_the_indexing_thread_had_no_room_for_is_left_to_the_sweep() {
+    ReflectionTestUtils.setField(
+        jobLogSearch,
+        "indexer",
+        (Executor)
+            task -> {
+              throw new RejectedExecutionException("full");
+            });
+
+    jobLogSearch.linesWritten(5L, List.of(line(5L, 0, "hello")));
+    jobLogSearch.jobEnded(5L);
+    verify(jdbcTemplate, never()).batchUpdate(anyString(), any(Collection.class), anyInt(), any());
+
+    ReflectionTestUtils.setField(jobLogSearch, "indexer", (Executor) Runnable::run);
+    jobLogSearch.jobEnded(6L);
+    verify(jobsRepository, never()).markLogIndexed(5L);
+    verify(jobsRepository).markLogIndexed(6L);
+  }
+
+  @Test
+  void linesWritten_stops_at_the_most_terms_per_job() {
+    ReflectionTestUtils.setField(jobLogSearch, "maxTermsPerJob", 2);
+
+    jobLogSearch.linesWritten(5L, List.of(line(5L, 0, "one two three")));
+    jobLogSearch.linesWritten(5L, List.of(line(5L, 1, "four")));
+
+    assertEquals(List.of("one", "two"), List.copyOf(insertedTerms(1).get(0)));
+  }
+
+  @Test
+  void a_job_whose_lines_could_not_all_be_indexed_is_left_to_the_sweep() {
+    when(jdbcTemplate.batchUpdate(anyString(), any(Collection.class), anyInt(), any()))
+        .thenThrow(new IllegalStateException("db down"));
+
+    jobLogSearch.linesWritten(5L, List.of(line(5L, 0, "hello")));
+    jobLogSearch.jobEnded(5L);
+
+    verify(jobsRepository, never()).markLogIndexed(anyLong());
+
+    jobLogSearch.jobEnded(5L);
+    verify(jobsRepository).markLogIndexed(5L);
+  }
+
+  @Test
+  void indexEndedJobs_reads_lines_then_the_compressed_log_then_the_old_log_column() {
+    when(jobsRepository.findUnindexedEndedIds(
+            JobRetention.FINISHED_STATUSES, Limit.of(JobLogSearch.SWEEP_BATCH_SIZE)))
+        .thenReturn(List.of(1L, 2L, 3L, 4L));
+    when(jobLogLineRepository.findAllByJobIdOrderBySeqAsc(1L))
+        .thenReturn(List.of(line(1L, 0, "running one")));
+    when(jobLogCompressor.readCompressedLines(2L))
+        .thenReturn(List.of(line(2L, 0, "compressed two")));
+    when(jobsRepository.findLegacyLogById(3L)).thenReturn(Optional.of("old\n\nthree"));
+    when(jobsRepository.findLegacyLogById(4L)).thenThrow(new IllegalStateException("db down"));
+
+    jobLogSearch.indexEndedJobs();
+
+    List<Collection<String>> inserted = insertedTerms(3);
+    assertEquals(List.of("running", "one"), List.copyOf(inserted.get(0)));
+    assertEquals(List.of("compressed", "two"), List.copyOf(inserted.get(1)));
+    assertEquals(List.of("old", "three"), List.copyOf(inserted.get(2)));
+    verify(jobsRepository).markLogIndexed(1L);
+    verify(jobsRepository).markLogIndexed(2L);
+    verify(jobsRepository).markLogIndexed(3L);
+    verify(jobsRepository, never()).markLogIndexed(4L);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void index_stops_reading_lines_at_the_most_terms_per_job() throws Exception {
+    ReflectionTestUtils.setField(jobLogSearch, "maxTermsPerJob", 2);
+    when(jobLogLineRepository.findAllByJobIdOrderBySeqAsc(7L))
+        .thenReturn(List.of(line(7L, 0, "one two three"), line(7L, 1, "four")));
+
+    jobLogSearch.index(7L);
+
+    ArgumentCaptor<ParameterizedPreparedStatementSetter<String>> setter =
+        ArgumentCaptor.forClass(ParameterizedPreparedStatementSetter.class);
+    verify(jdbcTemplate)
+        .batchUpdate(anyString(), eq(List.of("one", "two")), eq(2), setter.capture());
+    PreparedStatement ps = mock(PreparedStatement.class);
+    setter.getValue().setValues(ps, "one");
+    verify(ps).setLong(1, 7L);
+    verify(ps).setString(2, "one");
+    verify(ps).setString(3, "one");
+    verify(ps).setLong(4, 7L);
+  }
+
+  @Test
+  void jobEnded_survives_failing_to_mark_the_log_indexed() {
+    when(jobsRepository.markLogIndexed(5L)).thenThrow(new IllegalStateException("db down"));
+
+    jobLogSearch.jobEnded(5L);
+
+    verify(jobsRepository).markLogIndexed(5L);
+  }
+
+  @Test
+  void index_of_a_job_without_a_log_only_marks_it() {
+    jobLogSearch.index(7L);
+
+    verify(jdbcTemplate, never()).batchUpdate(anyString(), any(Collection.class), anyInt(), any());
+    verify(jobsRepository).markLogIndexed(7L);
+  }
+
+  @Test
+  void search_for_a_term_reads_only_the_jobs_the_index_finds() {
+    ZonedDateTime after = ZonedDateTime.parse("2026-01-01T00:00:00Z");
+    when(jobsRepository.findSummariesWithLogTerms(
+            Set.of("bad", "date"), 2L, "error", after, null, Limit.of(3)))
+        .thenReturn(List.of(job(9L), job(4L)));
+    when(jobLogLineRepository.findAllByJobIdOrderBySeqAsc(9L))
+        .thenReturn(
+            List.of(
+                line(9L, 0, "Importing"),
+                line(9L, 1, "Line 2 rejected: BAD DATE x"),
+                line(9L, 2, "bad, date")));
+    when(jobLogCompressor.readCompressedLines(4L))
+        .thenReturn(List.of(line(4L, 0, "Line 7 rejected: bad date y")));
+
+    JobLogSearchResult result = jobLogSearch.search(" Bad Date ", null, "error", after, null, 10);
+
+    assertEquals(
+        List.of(
+            JobLogMatch.builder()
+                .jobId(9L)
+                .jobType("ImportJob")
+                .status("error")
+                .seq(1L)
+                .message("Line 2 rejected: BAD DATE x")
+                .build(),
+            JobLogMatch.builder()
+                .jobId(4L)
+                .jobType("ImportJob")
+                .status("error")
+                .seq(0L)
+                .message("Line 7 rejected: bad date y")
+                .build()),
+        result.getMatches());
+    assertEquals(2, result.getJobsSearched());
+    assertFalse(result.getTruncated());
+    verify(jobsRepository, never()).findSummaryPage(anyLong(), any(), any(), any(), any(), any());
+  }
+
+  @Test
+  void search_by_regex_alone_reads_the_newest_jobs() {
+    when(jobsRepository.findSummaryPage(Long.MAX_VALUE, null, null, null, null, Limit.of(3)))
+        .thenReturn(List.of(job(9L), job(8L), job(7L)));
+    when(jobLogLineRepository.findAllByJobIdOrderBySeqAsc(9L))
+        .thenReturn(
+            List.of(
+                line(9L, 0, "Line 2 rejected"), line(9L, 1, "Imported 3 rows"), line(9L, 2, null)));
+
+    JobLogSearchResult result = jobLogSearch.search(null, "^Line \\d+", null, null, null, 10);
+
+    assertEquals(1, result.getMatches().size());
+    assertEquals("Line 2 rejected", result.getMatches().get(0).getMessage());
+    assertEquals(3, result.getJobsSearched());
+    // as many jobs as app.jobs.logSearch.maxJobs were read, so there may be older matches
+    assertTrue(result.getTruncated());
+  }
+
+  @Test
+  void search_stops_at_the_limit() {
+    when(jobsRepository.findSummariesWithLogTerms(
+            Set.of("rejected"), 1L, null, null, null, Limit.of(3)))
+        .thenReturn(List.of(job(9L), job(8L)));
+    when(jobLogLineRepository.findAllByJobIdOrderBySeqAsc(9L))
+        .thenReturn(List.of(line(9L, 0, "rejected"), line(9L, 1, "rejected")));
+
+    JobLogSearchResult result = jobLogSearch.search("rejected", null, null, null, null, 2);
+
+    assertEquals(2, result.getMatches().size());
+    assertFalse(result.getTruncated());
+
+    result = jobLogSearch.search("rejected", null, null, null, null, 1);
+
+    assertEquals(1, result.getMatches().size());
+    assertEquals(1, result.getJobsSearched());
+    assertTrue(result.getTruncated());
+  }
+
+  @Test
+  void search_rejects_bad_queries() {
+    assertThrows(
+        IllegalArgumentException.class, () -> jobLogSearch.search(" ", "", null, null, null, 10));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> jobLogSearch.search("a -", null, null, null, null, 10));
+    InvalidRequestException badRegex =
+        assertThrows(
+            InvalidRequestException.class,
+            () -> jobLogSearch.search(null, "(", null, null, null, 10));
+    assertEquals("Invalid regex (: Unclosed group", badRegex.getMessage());
+    verify(jobsRepository, never())
+        .findSummariesWithLogTerms(any(), anyLong(), any(), any(), any(), any());
+  }
+}
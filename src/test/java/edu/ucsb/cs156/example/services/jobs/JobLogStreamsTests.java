@@ -0,0 +1,361 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.entities.JobLogLine;
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.repositories.JobLogLineRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+public class JobLogStreamsTests {
+
+  @Mock private JobsRepository jobsRepository;
+
+  @Mock private JobLogLineRepository jobLogLineRepository;
+
+  @Mock private JobLogWriter jobLogWriter;
+
+  @Mock private JobLogCompressor jobLogCompressor;
+
+  @Spy @InjectMocks private JobLogStreams jobLogStreams;
+
+  /** An emitter that records what would have been written to the client. */
+  private static class RecordingEmitter extends SseEmitter {
+    final List<String> events = new ArrayList<>();
+    boolean completed;
+    boolean failing;
+    Runnable completionCallback;
+    Runnable timeoutCallback;
+    Consumer<Throwable> errorCallback;
+
+    @Override
+    public void onCompletion(Runnable callback) {
+      completionCallback = callback;
+    }
+
+    @Override
+    public void onTimeout(Runnable callback) {
+      timeoutCallback = callback;
+    }
+
+    @Override
+    public void onError(Consumer<Throwable> callback) {
+      errorCallback = callback;
+    }
+
+    @Override
+    public void send(SseEventBuilder builder) throws IOException {
+      if (failing) {
+        throw new IOException("client went away");
+      }
+      StringBuilder event = new StringBuilder();
+      builder.build().forEach(part -> event.append(part.getData()));
+      events.add(event.toString().trim());
+    }
+
+    @Override
+    public void complete() {
+      completed = true;
+    }
+
+    @Override
+    public void completeWithError(Throwable ex) {
+      completed = true;
+    }
+  }
+
+  private RecordingEmitter emitter;
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    emitter = new RecordingEmitter();
+    doReturn(emitter).when(jobLogStreams).createEmitter();
+    // send on the publishing thread, so that the tests see what was sent right away
+    ReflectionTestUtils.setField(jobLogStreams, "sender", (Executor) Runnable::run);
+    ReflectionTestUtils.setField(jobLogStreams, "maxQueuedLines", 10_000);
+  }
+
+  private JobLogLine line(long seq) {
+    return JobLogLine.builder().jobId(5L).seq(seq).message("line " + seq).build();
+  }
+
+  @Test
+  public void subscribe_to_missing_job_throws() {
+    when(jobsRepository.findStatusById(5L)).thenReturn(Optional.empty());
+
+    assertThrows(EntityNotFoundException.class, () -> jobLogStreams.subscribe(5L, -1L));
+  }
+
+  @Test
+  public void subscribe_to_finished_job_sends_backlog_and_end() {
+    when(jobsRepository.findStatusById(5L)).thenReturn(Optional.of("complete"));
+    when(jobLogLineRepository.findAllByJobIdAndSeqGreaterThanOrderBySeqAsc(5L, 0L))
+        .thenReturn(List.of(line(1), line(2)));
+
+    jobLogStreams.subscribe(5L, 0L);
+
+    assertEquals(
+        List.of(
+            "id:1\nevent:log\ndata:line 1",
+            "id:2\nevent:log\ndata:line 2",
+            "event:end\ndata:complete"),
+        emitter.events);
+    assertTrue(emitter.completed);
+    assertEquals(0, jobLogStreams.getOpenStreams());
+  }
+
+  @Test
+  public void subscribe_to_job_whose_log_was_compressed_sends_lines_after_afterSeq() {
+    when(jobsRepository.findStatusById(5L)).thenReturn(Optional.of("error"));
+    when(jobLogCompressor.readCompressedLines(5L)).thenReturn(List.of(line(0), line(1), line(2)));
+
+    jobLogStreams.subscribe(5L, 0L);
+
+    assertEquals(
+        List.of(
+            "id:1\nevent:log\ndata:line 1",
+            "id:2\nevent:log\ndata:line 2",
+            "event:end\ndata:error"),
+        emitter.events);
+  }
+
+  @Test
+  public void poll_of_ended_job_reads_the_compressed_log_if_its_lines_are_gone() {
+    when(jobsRepository.findStatusById(5L))
+        .thenReturn(Optional.of("running"), Optional.of("complete"));
+    when(jobLogCompressor.readCompressedLines(5L)).thenReturn(List.of(line(0), line(1)));
+    jobLogStreams.subscribe(5L, 0L);
+
+    jobLogStreams.pollRemoteJobs();
+
+    assertEquals(
+        List.of("id:1\nevent:log\ndata:line 1", "event:end\ndata:complete"), emitter.events);
+  }
+
+  @Test
+  public void subscribe_to_running_job_sends_backlog_then_published_lines_once() {
+    when(jobsRepository.findStatusById(5L)).thenReturn(Optional.of("running"));
+    when(jobLogLineRepository.findAllByJobIdAndSeqGreaterThanOrderBySeqAsc(5L, -1L))
+        .thenReturn(List.of(line(0), line(1)));
+
+    jobLogStreams.subscribe(5L, -1L);
+    assertEquals(1, jobLogStreams.getOpenStreams());
+
+    jobLogStreams.publish(5L, List.of(line(1), line(2)));
+    jobLogStreams.publish(6L, List.of(line(3)));
+    jobLogStreams.complete(5L, "error");
+    jobLogStreams.complete(5L, "error");
+
+    assertEquals(
+        List.of(
+            "id:0\nevent:log\ndata:line 0",
+            "id:1\nevent:log\ndata:line 1",
+            "id:2\nevent:log\ndata:line 2",
+            "event:end\ndata:error"),
+        emitter.events);
+    assertTrue(emitter.completed);
+    assertEquals(0, jobLogStreams.getOpenStreams());
+  }
+
+  @Test
+  public void lines_published_while_reading_backlog_follow_it() {
+    when(jobsRepository.findStatusById(5L)).thenReturn(Optional.of("running"));
+    when(jobLogLineRepository.findAllByJobIdAndSeqGreaterThanOrderBySeqAsc(5L, -1L))
+        .thenAnswer(
+            invocation -> {
+              // the job flushes and then ends while the backlog query is running
+              jobLogStreams.publish(5L, List.of(line(1), line(2)));
+              jobLogStreams.complete(5L, "complete");
+              return List.of(line(0), line(1));
+            });
+
+    jobLogStreams.subscribe(5L, -1L);
+
+    assertEquals(
+        List.of(
+            "id:0\nevent:log\ndata:line 0",
+            "id:1\nevent:log\ndata:line 1",
+            "id:2\nevent:log\ndata:line 2",
+            "event:end\ndata:complete"),
+        emitter.events);
+    assertTrue(emitter.completed);
+  }
+
+  @Test
+  public void poll_reads_lines_of_jobs_running_elsewhere_and_ends_finished_ones() {
+    when(jobsRepository.findStatusById(5L))
+        .thenReturn(Optional.of("running"), Optional.of("running"), Optional.of("timed_out"));
+    when(jobLogLineRepository.findAllByJobIdAndSeqGreaterThanOrderBySeqAsc(5L, -1L))
+        .thenReturn(List.of(), List.of(line(0)));
+    when(jobLogLineRepository.findAllByJobIdAndSeqGreaterThanOrderBySeqAsc(5L, 0L))
+        .thenReturn(List.of(line(1)));
+    jobLogStreams.subscribe(5L, -1L);
+
+    jobLogStreams.pollRemoteJobs();
+    jobLogStreams.pollRemoteJobs();
+
+    assertEquals(
+        List.of(
+            "id:0\nevent:log\ndata:line 0",
+            "id:1\nevent:log\ndata:line 1",
+            "event:end\ndata:timed_out"),
+        emitter.events);
+    assertEquals(0, jobLogStreams.getOpenStreams());
+  }
+
+  @Test
+  public void poll_skips_jobs_running_on_this_node() {
+    when(jobsRepository.findStatusById(5L)).thenReturn(Optional.of("running"));
+    when(jobLogWriter.isOpen(5L)).thenReturn(true);
+    jobLogStreams.subscribe(5L, 3L);
+
+    jobLogStreams.pollRemoteJobs();
+
+    // only the backlog query made by subscribe
+    verify(jobLogLineRepository, times(1)).findAllByJobIdAndSeqGreaterThanOrderBySeqAsc(5L, 3L);
+    assertEquals(1, jobLogStreams.getOpenStreams());
+  }
+
+  @Test
+  public void poll_failure_keeps_stream_open() {
+    when(jobsRepository.findStatusById(5L))
+        .thenReturn(Optional.of("running"))
+        .thenThrow(new IllegalStateException("db down"));
+    jobLogStreams.subscribe(5L, -1L);
+
+    jobLogStreams.pollRemoteJobs();
+
+    assertEquals(1, jobLogStreams.getOpenStreams());
+  }
+
+  @Test
+  public void client_that_went_away_stops_receiving_lines() {
+    when(jobsRepository.findStatusById(5L)).thenReturn(Optional.of("running"));
+    jobLogStreams.subscribe(5L, -1L);
+    emitter.failing = true;
+
+    jobLogStreams.publish(5L, List.of(line(0), line(1)));
+    // until the error callback deregisters it, lines published to it are ignored
+    jobLogStreams.publish(5L, List.of(line(2)));
+    jobLogStreams.complete(5L, "complete");
+
+    assertTrue(emitter.completed);
+    assertEquals(List.of(), emitter.events);
+  }
+
+  @Test
+  public void client_that_went_away_before_the_end_event_is_completed() {
+    when(jobsRepository.findStatusById(5L)).thenReturn(Optional.of("complete"));
+    emitter.failing = true;
+
+    jobLogStreams.subscribe(5L, -1L);
+
+    assertTrue(emitter.completed);
+    assertEquals(List.of(), emitter.events);
+  }
+
+  @Test
+  public void streams_are_deregistered_when_they_complete_time_out_or_fail() {
+    when(jobsRepository.findStatusById(5L)).thenReturn(Optional.of("running"));
+    List<RecordingEmitter> emitters =
+        List.of(emitter, new RecordingEmitter(), new RecordingEmitter());
+    doReturn(emitters.get(0), emitters.get(1), emitters.get(2)).when(jobLogStreams).createEmitter();
+    for (int i = 0; i < 3; i++) {
+      jobLogStreams.subscribe(5L, -1L);
+    }
+    assertEquals(3, jobLogStreams.getOpenStreams());
+
+    emitters.get(0).completionCallback.run();
+    assertEquals(2, jobLogStreams.getOpenStreams());
+    emitters.get(1).timeoutCallback.run();
+    assertEquals(1, jobLogStreams.getOpenStreams());
+    emitters.get(2).errorCallback.accept(new IOException("client went away"));
+    assertEquals(0, jobLogStreams.getOpenStreams());
+  }
+
+  @Test
+  public void publish_does_not_wait_for_a_slow_client() throws Exception {
+    ReflectionTestUtils.setField(jobLogStreams, "sender", Executors.newSingleThreadExecutor());
+    CountDownLatch sending = new CountDownLatch(1);
+    CountDownLatch clientReads = new CountDownLatch(1);
+    RecordingEmitter slow =
+        new RecordingEmitter() {
+          @Override
+          public void send(SseEventBuilder builder) throws IOException {
+            sending.countDown();
+            try {
+              clientReads.await();
+            } catch (InterruptedException e) {
+              throw new IOException(e);
+            }
+            super.send(builder);
+          }
+        };
+    doReturn(slow).when(jobLogStreams).createEmitter();
+    when(jobsRepository.findStatusById(5L)).thenReturn(Optional.of("running"));
+    jobLogStreams.subscribe(5L, -1L);
+
+    jobLogStreams.publish(5L, List.of(line(0)));
+    assertTrue(sending.await(5, TimeUnit.SECONDS));
+    // the sender is stuck on line 0; the job carries on logging and ends
+    jobLogStreams.publish(5L, List.of(line(1), line(2)));
+    jobLogStreams.complete(5L, "complete");
+    clientReads.countDown();
+
+    for (int i = 0; i < 500 && !slow.completed; i++) {
+      Thread.sleep(10);
+    }
+    assertEquals(
+        List.of(
+            "id:0\nevent:log\ndata:line 0",
+            "id:1\nevent:log\ndata:line 1",
+            "id:2\nevent:log\ndata:line 2",
+            "event:end\ndata:complete"),
+        slow.events);
+  }
+
+  @Test
+  public void client_that_falls_behind_is_dropped() {
+    List<Runnable> stalled = new ArrayList<>();
+    ReflectionTestUtils.setField(jobLogStreams, "sender", (Executor) stalled::add);
+    ReflectionTestUtils.setField(jobLogStreams, "maxQueuedLines", 2);
+    when(jobsRepository.findStatusById(5L)).thenReturn(Optional.of("running"));
+    jobLogStreams.subscribe(5L, -1L);
+
+    jobLogStreams.publish(5L, List.of(line(0), line(1)));
+    // lines already queued are not counted twice
+    jobLogStreams.publish(5L, List.of(line(1)));
+    assertEquals(1, jobLogStreams.getOpenStreams());
+    jobLogStreams.publish(5L, List.of(line(2)));
+    assertEquals(0, jobLogStreams.getOpenStreams());
+    jobLogStreams.publish(5L, List.of(line(3)));
+
+    stalled.forEach(Runnable::run);
+    assertTrue(emitter.completed);
+    assertEquals(List.of(), emitter.events);
+  }
+}
@@ -0,0 +1,198 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogLine;
+import edu.ucsb.cs156.example.services.jobs.JobLogBuffer.FlushReason;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+/**
+ * Many threads logging through one job's context while others flush the buffer and read what has
+ * been written, as the periodic flush of JobLogWriter and clients of the log endpoints do. Every
+ * line must be written exactly once, and readers must only ever see lines in seq order without
+ * gaps.
+ */
+@Timeout(60)
+public class JobLogStressTests {
+  private static final int LOGGERS = 16;
+  private static final int LINES_PER_LOGGER = 500;
+  private static final int READERS = 4;
+
+  // stands in for job_log_lines, in the order the lines were saved
+  private final List<JobLogLine> saved = new CopyOnWriteArrayList<>();
+
+  // the batches handed on to JobLogStreams, in the order they were published
+  private final List<JobLogLine> published = new CopyOnWriteArrayList<>();
+
+  private JobLogWriter writer;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  public void setup() {
+    writer = mock(JobLogWriter.class);
+    doAnswer(
+            invocation -> {
+              saved.addAll((List<JobLogLine>) invocation.getArgument(0));
+              return null;
+            })
+        .when(writer)
+        .insert(any());
+    doAnswer(
+            invocation -> {
+              published.addAll((List<JobLogLine>) invocation.getArgument(1));
+              return null;
+            })
+        .when(writer)
+        .flushed(anyLong(), any());
+  }
+
+  private static void assertInSeqOrderFrom(long firstSeq, List<JobLogLine> lines) {
+    for (int i = 0; i < lines.size(); i++) {
+      assertEquals(firstSeq + i, lines.get(i).getSeq());
+    }
+  }
+
+  private static void assertEveryLineOnce(List<JobLogLine> lines) {
+    Set<String> messages = new HashSet<>();
+    lines.forEach(line -> messages.add(line.getMessage()));
+    assertEquals(LOGGERS * LINES_PER_LOGGER, messages.size());
+    for (int logger = 0; logger < LOGGERS; logger++) {
+      for (int i = 0; i < LINES_PER_LOGGER; i++) {
+        assertTrue(messages.contains("logger %d line %d".formatted(logger, i)));
+      }
+    }
+  }
+
+  /**
+   * Start the loggers and readers together, and wait for the loggers to finish. The readers flush
+   * the buffer and check what has been saved so far until then.
+   */
+  private void run(JobContext ctx, JobLogBuffer buffer, long firstSeq) throws Exception {
+    CountDownLatch start = new CountDownLatch(1);
+    AtomicBoolean logging = new AtomicBoolean(true);
+    List<Throwable> failures = new CopyOnWriteArrayList<>();
+    List<Thread> readers = new ArrayList<>();
+    for (int r = 0; r < READERS; r++) {
+      readers.add(
+          Thread.ofPlatform()
+              .start(
+                  () -> {
+                    try {
+                      start.await();
+                      while (logging.get()) {
+                        if (buffer.isDue(System.nanoTime())) {
+                          buffer.flush(FlushReason.INTERVAL);
+                        }
+                        assertInSeqOrderFrom(firstSeq, List.copyOf(saved));
+                        Thread.yield();
+                      }
+                    } catch (Throwable t) {
+                      failures.add(t);
+                    }
+                  }));
+    }
+    List<Thread> loggers = new ArrayList<>();
+    for (int l = 0; l < LOGGERS; l++) {
+      int logger = l;
+      loggers.add(
+          Thread.ofPlatform()
+              .start(
+                  () -> {
+                    try {
+                      start.await();
+                      for (int i = 0; i < LINES_PER_LOGGER; i++) {
+                        ctx.log("logger %d line %d".formatted(logger, i));
+                      }
+                    } catch (Throwable t) {
+                      failures.add(t);
+                    }
+                  }));
+    }
+    start.countDown();
+    for (Thread logger : loggers) {
+      logger.join();
+    }
+    logging.set(false);
+    for (Thread reader : readers) {
+      reader.join();
+    }
+    buffer.flush(FlushReason.END);
+    assertEquals(List.of(), failures);
+  }
+
+  @Test
+  public void concurrent_loggers_lose_no_lines_and_readers_see_them_in_order() throws Exception {
+    JobLogBuffer buffer = new JobLogBuffer(1L, writer, 7, 1);
+    JobContext ctx = new JobContext(buffer, Job.builder().id(1L).build());
+
+    run(ctx, buffer, 0);
+
+    assertEquals(LOGGERS * LINES_PER_LOGGER, saved.size());
+    assertInSeqOrderFrom(0, saved);
+    assertEveryLineOnce(saved);
+    assertEquals(saved, published);
+  }
+
+  @Test
+  public void unbuffered_logging_writes_every_line_on_its_own_in_order() throws Exception {
+    JobLogBuffer buffer = new JobLogBuffer(1L, writer, 1, 0);
+    JobContext ctx = new JobContext(buffer, Job.builder().id(1L).build());
+
+    run(ctx, buffer, 0);
+
+    assertInSeqOrderFrom(0, saved);
+    assertEveryLineOnce(saved);
+    assertEquals(saved, published);
+  }
+
+  @Test
+  public void a_requeued_job_carries_on_after_the_lines_of_earlier_attempts() throws Exception {
+    JobLogBuffer buffer = new JobLogBuffer(1L, writer, 100, 1000);
+    JobContext ctx = new JobContext(buffer, Job.builder().id(1L).build());
+    ctx.continueLogAfter(41);
+
+    run(ctx, buffer, 42);
+
+    assertInSeqOrderFrom(42, saved);
+    assertEveryLineOnce(saved);
+  }
+
+  @Test
+  public void subtasks_of_a_fan_out_lose_no_lines() throws Exception {
+    JobLogBuffer buffer = new JobLogBuffer(1L, writer, 50, 1);
+    JobContext ctx = new JobContext(buffer, Job.builder().id(1L).build());
+    ctx.setSubtaskParallelism(LOGGERS);
+
+    ctx.fanOut(
+        IntStream.range(0, LOGGERS).boxed().toList(),
+        (c, logger) -> {
+          for (int i = 0; i < LINES_PER_LOGGER; i++) {
+            c.log("line " + i);
+          }
+          return null;
+        });
+    buffer.flush(FlushReason.END);
+
+    assertInSeqOrderFrom(0, saved);
+    Set<String> messages = new HashSet<>();
+    saved.forEach(line -> messages.add(line.getMessage()));
+    assertEquals(LOGGERS * LINES_PER_LOGGER, messages.size());
+    assertTrue(messages.contains("[%d] line %d".formatted(LOGGERS - 1, LINES_PER_LOGGER - 1)));
+  }
+}
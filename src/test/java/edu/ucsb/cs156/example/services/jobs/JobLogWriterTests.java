@@ -0,0 +1,187 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogLine;
+import edu.ucsb.cs156.example.models.JobLogFlushStats;
+import edu.ucsb.cs156.example.services.jobs.JobLogBuffer.FlushReason;
+import java.sql.PreparedStatement;
+import java.sql.Types;
+import java.time.ZonedDateTime;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@ExtendWith(SpringExtension.class)
+@Import(JobLogWriter.class)
+@TestPropertySource(
+    properties = {
+      "app.jobs.log.buffered=true",
+      "app.jobs.log.flushMaxLines=2",
+      "app.jobs.log.flushIntervalMs=60000"
+    })
+@DirtiesContext(classMode = ClassMode.AFTER_EACH_TEST_METHOD)
+public class JobLogWriterTests {
+
+  @MockitoBean JdbcTemplate jdbcTemplate;
+
+  @MockitoBean JobLogStreams jobLogStreams;
+
+  @MockitoBean JobMetrics jobMetrics;
+
+  @MockitoBean JobLogSearch jobLogSearch;
+
+  @Autowired JobLogWriter jobLogWriter;
+
+  private JobLogLine line(long seq) {
+    return JobLogLine.builder().jobId(5L).seq(seq).message("line " + seq).build();
+  }
+
+  @SuppressWarnings("unchecked")
+  private void verifyInserts(int times) {
+    verify(jdbcTemplate, times(times))
+        .batchUpdate(
+            eq(JobLogWriter.INSERT_LINE),
+            anyList(),
+            anyInt(),
+            any(ParameterizedPreparedStatementSetter.class));
+  }
+
+  @Test
+  public void open_buffers_by_size_and_close_flushes_remaining_lines() {
+    JobLogBuffer buffer = jobLogWriter.open(Job.builder().id(5L).build());
+    assertEquals(1, jobLogWriter.getStats().getOpenBuffers());
+    assertTrue(jobLogWriter.isOpen(5L));
+
+    buffer.append(line(0));
+    buffer.append(line(1));
+    buffer.append(line(2));
+    jobLogWriter.close(buffer);
+
+    verifyInserts(2);
+    JobLogFlushStats stats = jobLogWriter.getStats();
+    assertEquals(0, stats.getOpenBuffers());
+    assertFalse(jobLogWriter.isOpen(5L));
+    assertEquals(2, stats.getFlushCount());
+    assertEquals(1, stats.getSizeFlushes());
+    assertEquals(1, stats.getEndFlushes());
+    assertEquals(3, stats.getLinesFlushed());
+    assertEquals(2, stats.getFlushMaxLines());
+    assertEquals(60000, stats.getFlushIntervalMs());
+    verify(jobMetrics, times(1)).recordLogWritten(List.of(line(0), line(1)));
+    verify(jobLogStreams, times(1)).publish(5L, List.of(line(2)));
+    InOrder order = inOrder(jobLogSearch);
+    order.verify(jobLogSearch).linesWritten(5L, List.of(line(0), line(1)));
+    order.verify(jobLogSearch).linesWritten(5L, List.of(line(2)));
+    order.verify(jobLogSearch).jobEnded(5L);
+  }
+
+  @Test
+  public void unbuffered_logs_write_each_line_as_it_is_logged() {
+    ReflectionTestUtils.setField(jobLogWriter, "buffered", false);
+    JobLogBuffer buffer = jobLogWriter.open(Job.builder().id(5L).build());
+
+    buffer.append(line(0));
+    buffer.append(line(1));
+
+    verifyInserts(2);
+    assertEquals(2, jobLogWriter.getStats().getSizeFlushes());
+  }
+
+  @Test
+  public void flushDueBuffers_only_flushes_buffers_that_are_due() {
+    JobLogBuffer buffer = jobLogWriter.open(Job.builder().id(5L).build());
+    buffer.append(line(0));
+
+    jobLogWriter.flushDueBuffers();
+
+    verifyInserts(0);
+    jobLogWriter.close(buffer);
+  }
+
+  @Test
+  public void flushDueBuffers_flushes_quiet_buffers_and_survives_failures() throws Exception {
+    ReflectionTestUtils.setField(jobLogWriter, "flushIntervalMs", 1L);
+    JobLogBuffer failing = jobLogWriter.open(Job.builder().id(6L).build());
+    JobLogBuffer quiet = jobLogWriter.open(Job.builder().id(7L).build());
+    when(jdbcTemplate.batchUpdate(
+            eq(JobLogWriter.INSERT_LINE),
+            argThat((List<JobLogLine> lines) -> lines.get(0).getJobId() == 6L),
+            anyInt(),
+            any(ParameterizedPreparedStatementSetter.class)))
+        .thenThrow(new RuntimeException("db down"));
+
+    failing.append(JobLogLine.builder().jobId(6L).seq(0).message("x").build());
+    quiet.append(JobLogLine.builder().jobId(7L).seq(0).message("y").build());
+    Thread.sleep(5);
+    jobLogWriter.flushDueBuffers();
+
+    verifyInserts(2);
+    assertEquals(1, jobLogWriter.getStats().getIntervalFlushes());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void insert_writes_the_lines_in_one_jdbc_batch() throws Exception {
+    ZonedDateTime loggedAt = ZonedDateTime.parse("2025-10-01T12:00:00-07:00");
+    List<JobLogLine> lines =
+        List.of(
+            JobLogLine.builder().jobId(5L).seq(0).loggedAt(loggedAt).message("a").build(), line(1));
+
+    jobLogWriter.insert(lines);
+
+    ArgumentCaptor<ParameterizedPreparedStatementSetter<JobLogLine>> setter =
+        ArgumentCaptor.forClass(ParameterizedPreparedStatementSetter.class);
+    verify(jdbcTemplate)
+        .batchUpdate(eq(JobLogWriter.INSERT_LINE), eq(lines), eq(2), setter.capture());
+    PreparedStatement ps = mock(PreparedStatement.class);
+    setter.getValue().setValues(ps, lines.get(0));
+    setter.getValue().setValues(ps, lines.get(1));
+    verify(ps, times(2)).setLong(1, 5L);
+    verify(ps).setLong(2, 0L);
+    verify(ps).setObject(3, loggedAt.toOffsetDateTime(), Types.TIMESTAMP_WITH_TIMEZONE);
+    verify(ps).setString(4, "a");
+    verify(ps).setObject(3, null, Types.TIMESTAMP_WITH_TIMEZONE);
+  }
+
+  @Test
+  public void recordFlush_tracks_latency() {
+    jobLogWriter.recordFlush(FlushReason.STATUS, 4, 3_000_000L);
+    jobLogWriter.recordFlush(FlushReason.INTERVAL, 2, 1_000_000L);
+
+    JobLogFlushStats stats = jobLogWriter.getStats();
+    assertEquals(2, stats.getFlushCount());
+    assertEquals(1, stats.getStatusFlushes());
+    assertEquals(1, stats.getIntervalFlushes());
+    assertEquals(6, stats.getLinesFlushed());
+    assertEquals(4.0, stats.getTotalFlushMillis(), 0.0001);
+    assertEquals(3.0, stats.getMaxFlushMillis(), 0.0001);
+    assertEquals(2.0, stats.getAverageFlushMillis(), 0.0001);
+    assertTrue(stats.getBuffered());
+  }
+}
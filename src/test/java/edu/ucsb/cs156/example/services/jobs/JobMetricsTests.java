@@ -0,0 +1,96 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogLine;
+import edu.ucsb.cs156.example.models.JobExecutorStats;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+
+public class JobMetricsTests {
+
+  @Spy private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  @Mock private JobExecutor jobExecutor;
+
+  @Mock private JobsRepository jobsRepository;
+
+  @InjectMocks private JobMetrics jobMetrics;
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    jobMetrics.registerMeters();
+  }
+
+  @Test
+  public void gauges_read_queue_depth_and_executor_load() {
+    when(jobsRepository.countByStatus("queued")).thenReturn(12L);
+    when(jobExecutor.getStats())
+        .thenReturn(JobExecutorStats.builder().running(3).queued(4).build());
+
+    assertEquals(12.0, meterRegistry.get("jobs.queue.depth").gauge().value());
+    assertEquals(3.0, meterRegistry.get("jobs.executor.running").gauge().value());
+    assertEquals(4.0, meterRegistry.get("jobs.executor.queued").gauge().value());
+  }
+
+  @Test
+  public void records_run_time_by_type_and_status() {
+    Job job = Job.builder().jobType("TestJob").status("complete").build();
+
+    jobMetrics.recordRun(job, 2_000_000_000L);
+    jobMetrics.recordRun(job, 4_000_000_000L);
+    jobMetrics.recordRun(Job.builder().status("error").build(), 1_000_000L);
+
+    Timer complete =
+        meterRegistry.get("jobs.run").tags("type", "TestJob", "status", "complete").timer();
+    assertEquals(2, complete.count());
+    assertEquals(6.0, complete.totalTime(TimeUnit.SECONDS));
+    assertEquals(
+        1,
+        meterRegistry.get("jobs.run").tags("type", "unknown", "status", "error").timer().count());
+  }
+
+  @Test
+  public void records_queue_wait_when_created_at_is_known() {
+    jobMetrics.recordQueueWait(Job.builder().jobType("TestJob").build());
+    assertNull(meterRegistry.find("jobs.queue.wait").timer());
+
+    jobMetrics.recordQueueWait(
+        Job.builder().jobType("TestJob").createdAt(ZonedDateTime.now().minusSeconds(5)).build());
+    jobMetrics.recordQueueWait(
+        Job.builder().jobType("TestJob").createdAt(ZonedDateTime.now().plusSeconds(5)).build());
+
+    Timer wait = meterRegistry.get("jobs.queue.wait").tag("type", "TestJob").timer();
+    assertEquals(2, wait.count());
+    assertTrue(wait.totalTime(TimeUnit.SECONDS) >= 5.0);
+    assertTrue(wait.totalTime(TimeUnit.SECONDS) < 6.0);
+  }
+
+  @Test
+  public void counts_log_lines_and_utf8_bytes() {
+    jobMetrics.recordLogWritten(
+        List.of(
+            JobLogLine.builder().message("abc").build(),
+            JobLogLine.builder().message("é").build(),
+            JobLogLine.builder().build()));
+
+    assertEquals(3.0, meterRegistry.get("jobs.log.lines").counter().count());
+    assertEquals(5.0, meterRegistry.get("jobs.log.bytes").counter().count());
+  }
+}
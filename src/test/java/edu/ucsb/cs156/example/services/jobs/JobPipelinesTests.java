@@ -0,0 +1,247 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobDependency;
+import edu.ucsb.cs156.example.entities.JobPipeline;
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.JobPipelineRequest;
+import edu.ucsb.cs156.example.models.JobPipelineStage;
+import edu.ucsb.cs156.example.models.JobPipelineStatus;
+import edu.ucsb.cs156.example.repositories.JobDependencyRepository;
+import edu.ucsb.cs156.example.repositories.JobPipelineRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import edu.ucsb.cs156.example.services.CurrentUserService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.PlatformTransactionManager;
+
+public class JobPipelinesTests {
+
+  @Mock private JobsRepository jobsRepository;
+
+  @Mock private JobPipelineRepository jobPipelineRepository;
+
+  @Mock private JobDependencyRepository jobDependencyRepository;
+
+  @Mock private CurrentUserService currentUserService;
+
+  @Mock private JobQueueWorker jobQueueWorker;
+
+  @Mock private JobService jobService;
+
+  @Mock private PlatformTransactionManager transactionManager;
+
+  @InjectMocks private JobPipelines jobPipelines;
+
+  private final List<Job> savedJobs = new ArrayList<>();
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    when(jobPipelineRepository.save(any()))
+        .thenAnswer(
+            invocation -> {
+              JobPipeline pipeline = invocation.getArgument(0);
+              pipeline.setId(7L);
+              return pipeline;
+            });
+    when(jobPipelineRepository.findById(7L))
+        .thenReturn(Optional.of(JobPipeline.builder().id(7L).name("nightly").build()));
+    when(jobsRepository.save(any()))
+        .thenAnswer(
+            invocation -> {
+              Job job = invocation.getArgument(0);
+              job.setId(100L + savedJobs.size());
+              savedJobs.add(job);
+              return job;
+            });
+    when(jobsRepository.findAllByPipelineIdOrderByIdAsc(7L)).thenReturn(savedJobs);
+    when(jobQueueWorker.writeParams(any())).thenReturn("{}");
+    when(jobQueueWorker.readParams("{}")).thenReturn(Map.of());
+  }
+
+  private static JobPipelineStage stage(String name, String... dependsOn) {
+    return JobPipelineStage.builder()
+        .name(name)
+        .jobType("TestJob")
+        .dependsOn(List.of(dependsOn))
+        .build();
+  }
+
+  private static JobPipelineRequest request(JobPipelineStage... stages) {
+    return JobPipelineRequest.builder().name("nightly").stages(List.of(stages)).build();
+  }
+
+  @Test
+  void validate_rejects_invalid_pipelines() {
+    assertThrows(IllegalArgumentException.class, () -> JobPipelines.validate(null));
+    assertThrows(IllegalArgumentException.class, () -> JobPipelines.validate(List.of()));
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            JobPipelines.validate(List.of(JobPipelineStage.builder().jobType("TestJob").build())));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> JobPipelines.validate(List.of(stage("a"), stage("a"))));
+    assertThrows(IllegalArgumentException.class, () -> JobPipelines.validate(List.of(stage(" "))));
+    IllegalArgumentException unknown =
+        assertThrows(
+            IllegalArgumentException.class, () -> JobPipelines.validate(List.of(stage("a", "b"))));
+    assertEquals("Stage a depends on unknown stage b", unknown.getMessage());
+    IllegalArgumentException cycle =
+        assertThrows(
+            IllegalArgumentException.class,
+            () ->
+                JobPipelines.validate(
+                    List.of(
+                        stage("root"), stage("a", "root", "c"), stage("b", "a"), stage("c", "b"))));
+    assertEquals("Pipeline stage dependencies form a cycle", cycle.getMessage());
+  }
+
+  @Test
+  void validate_accepts_a_diamond() {
+    List<JobPipelineStage> stages =
+        List.of(stage("d", "b", "c"), stage("b", "a"), stage("c", "a"), stage("a"));
+
+    assertEquals(stages, JobPipelines.validate(stages));
+  }
+
+  @Test
+  void launch_queues_the_roots_and_saves_other_stages_waiting_on_their_dependencies() {
+    when(jobService.timeoutOrDefault(null)).thenReturn(60_000L);
+    when(jobDependencyRepository.findAllByJobIdIn(any()))
+        .thenReturn(List.of(JobDependency.builder().jobId(101L).dependsOnJobId(100L).build()));
+
+    JobPipelineStatus status =
+        jobPipelines.launch(request(stage("import"), stage("validate", "import")));
+
+    assertEquals(2, savedJobs.size());
+    Job importJob = savedJobs.get(0);
+    assertEquals("import", importJob.getPipelineStage());
+    assertEquals(7L, importJob.getPipelineId());
+    assertEquals("queued", importJob.getStatus());
+    assertEquals("waiting", savedJobs.get(1).getStatus());
+    assertEquals(60_000L, importJob.getTimeoutMs());
+    ArgumentCaptor<List<JobDependency>> dependencies = ArgumentCaptor.forClass(List.class);
+    verify(jobDependencyRepository).saveAll(dependencies.capture());
+    assertEquals(
+        List.of(JobDependency.builder().jobId(101L).dependsOnJobId(100L).build()),
+        dependencies.getValue());
+    verify(transactionManager).commit(any());
+    verify(jobQueueWorker).poll();
+    assertEquals(7L, status.getId());
+    assertEquals(List.of("import"), status.getStages().get(1).getDependsOn());
+  }
+
+  @Test
+  void launch_of_a_stage_without_dependencies_stores_its_params() {
+    when(jobQueueWorker.writeParams(Map.of("a", "1"))).thenReturn("{\"a\":\"1\"}");
+
+    jobPipelines.launch(
+        request(
+            JobPipelineStage.builder()
+                .name("import")
+                .jobType("TestJob")
+                .params(Map.of("a", "1"))
+                .build()));
+
+    assertEquals("{\"a\":\"1\"}", savedJobs.get(0).getParams());
+    assertEquals("queued", savedJobs.get(0).getStatus());
+  }
+
+  @Test
+  void launch_of_unknown_job_type_saves_nothing() {
+    when(jobQueueWorker.factoryFor("TestJob")).thenThrow(new IllegalArgumentException("no"));
+
+    assertThrows(IllegalArgumentException.class, () -> jobPipelines.launch(request(stage("a"))));
+    verify(jobPipelineRepository, never()).save(any());
+  }
+
+  @Test
+  void launch_when_queue_is_full_rejects_every_stage() {
+    when(jobService.queueIsFull()).thenReturn(true);
+
+    JobPipelineStatus status = jobPipelines.launch(request(stage("a"), stage("b", "a")));
+
+    assertEquals("rejected", status.getStatus());
+    verify(jobQueueWorker, never()).poll();
+  }
+
+  @Test
+  void advance_skips_layer_by_layer_then_queues_ready_stages() {
+    when(jobsRepository.skipBlockedStages(7L)).thenReturn(1, 2, 0);
+    when(jobsRepository.queueReadyStages(7L)).thenReturn(1);
+
+    assertEquals(1, jobPipelines.advance(7L));
+    verify(jobsRepository, times(3)).skipBlockedStages(7L);
+    verify(jobQueueWorker).poll();
+  }
+
+  @Test
+  void stageEnded_ignores_jobs_outside_pipelines_and_survives_failures() {
+    jobPipelines.stageEnded(Job.builder().id(1L).build());
+    verify(jobsRepository, never()).queueReadyStages(any(Long.class));
+
+    when(jobsRepository.skipBlockedStages(7L)).thenThrow(new IllegalStateException("db down"));
+    jobPipelines.stageEnded(Job.builder().id(1L).pipelineId(7L).build());
+    verify(jobsRepository, never()).queueReadyStages(7L);
+
+    jobPipelines.stageEnded(Job.builder().id(2L).pipelineId(8L).build());
+    verify(jobsRepository).queueReadyStages(8L);
+  }
+
+  @Test
+  void advanceWaitingPipelines_keeps_going_after_a_failure() {
+    when(jobsRepository.findWaitingPipelineIds()).thenReturn(List.of(6L, 7L));
+    when(jobsRepository.skipBlockedStages(6L)).thenThrow(new IllegalStateException("db down"));
+
+    jobPipelines.advanceWaitingPipelines();
+
+    verify(jobsRepository).queueReadyStages(7L);
+  }
+
+  @Test
+  void cancel_cancels_stages_that_have_not_ended() {
+    savedJobs.add(Job.builder().id(1L).status("complete").build());
+    savedJobs.add(Job.builder().id(2L).status("running").build());
+    savedJobs.add(Job.builder().id(3L).status("waiting").build());
+
+    assertEquals("Cancelled 2 stages of pipeline 7", jobPipelines.cancel(7L));
+    verify(jobService).cancel(2L);
+    verify(jobService).cancel(3L);
+    verify(jobService, never()).cancel(1L);
+  }
+
+  @Test
+  void getStatus_of_missing_pipeline_throws() {
+    assertThrows(EntityNotFoundException.class, () -> jobPipelines.getStatus(8L));
+  }
+
+  @Test
+  void pipelineStatus_summarizes_stage_statuses() {
+    assertEquals("queued", JobPipelines.pipelineStatus(List.of("queued", "waiting")));
+    assertEquals("running", JobPipelines.pipelineStatus(List.of("complete", "waiting")));
+    assertEquals("running", JobPipelines.pipelineStatus(List.of("error", "running")));
+    assertEquals("complete", JobPipelines.pipelineStatus(List.of("complete", "complete")));
+    assertEquals("error", JobPipelines.pipelineStatus(List.of("complete", "error", "skipped")));
+    assertEquals("error", JobPipelines.pipelineStatus(List.of("timed_out", "skipped")));
+    assertEquals("cancelled", JobPipelines.pipelineStatus(List.of("cancelled", "skipped")));
+    assertEquals("rejected", JobPipelines.pipelineStatus(List.of("rejected", "rejected")));
+  }
+}
@@ -0,0 +1,86 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.util.HashSet;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class JobProgressTrackerTests {
+
+  private JobsRepository jobsRepository;
+
+  @BeforeEach
+  public void setup() {
+    jobsRepository = mock(JobsRepository.class);
+  }
+
+  @Test
+  public void updates_within_the_interval_are_held_until_flushed() {
+    JobProgressTracker tracker = new JobProgressTracker(1L, jobsRepository, 60_000);
+
+    tracker.update(1, 10);
+    tracker.update(2, 10);
+    verify(jobsRepository, never()).updateProgress(anyLong(), anyLong(), any(), any(), any());
+
+    tracker.flush();
+    tracker.flush();
+
+    verify(jobsRepository, times(1)).updateProgress(eq(1L), eq(2L), eq(10L), any(), any());
+  }
+
+  @Test
+  public void update_writes_once_the_interval_has_passed_with_the_rate_since_the_last_write()
+      throws Exception {
+    JobProgressTracker tracker = new JobProgressTracker(1L, jobsRepository, 1);
+    Thread.sleep(5);
+
+    tracker.update(500, 0);
+
+    ArgumentCaptor<Double> rate = ArgumentCaptor.forClass(Double.class);
+    verify(jobsRepository).updateProgress(eq(1L), eq(500L), isNull(), rate.capture(), any());
+    // 500 items in at least 5 ms is at most 100,000 items per second
+    assertTrue(rate.getValue() > 0 && rate.getValue() <= 100_000, "rate was " + rate.getValue());
+  }
+
+  @Test
+  public void the_rate_is_kept_when_progress_goes_back_or_the_clock_has_not_moved() {
+    JobProgressTracker tracker = new JobProgressTracker(1L, jobsRepository, 0);
+
+    tracker.update(5, 10);
+    tracker.update(3, 10);
+    ReflectionTestUtils.setField(tracker, "writtenAtNanos", Long.MAX_VALUE);
+    tracker.update(4, 10);
+    tracker.flush();
+
+    ArgumentCaptor<Double> rate = ArgumentCaptor.forClass(Double.class);
+    verify(jobsRepository, times(3))
+        .updateProgress(eq(1L), anyLong(), eq(10L), rate.capture(), any());
+    assertEquals(1, new HashSet<>(rate.getAllValues()).size());
+  }
+
+  @Test
+  public void a_failed_write_does_not_fail_the_job() {
+    when(jobsRepository.updateProgress(anyLong(), anyLong(), any(), any(), any()))
+        .thenThrow(new IllegalStateException("db down"));
+    JobProgressTracker tracker = new JobProgressTracker(1L, jobsRepository, 60_000);
+
+    tracker.update(1, 1);
+    tracker.flush();
+
+    verify(jobsRepository).updateProgress(eq(1L), eq(1L), eq(1L), any(), any());
+  }
+}
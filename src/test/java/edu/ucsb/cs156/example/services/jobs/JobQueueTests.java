@@ -0,0 +1,90 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.util.Optional;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class JobQueueTests {
+
+  @Mock private JobsRepository jobsRepository;
+
+  @Mock private JobFairShare jobFairShare;
+
+  @InjectMocks private JobQueue jobQueue;
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+  }
+
+  @Test
+  void claimNext_claims_and_loads_the_job() {
+    Job job = Job.builder().id(4L).status("claimed").build();
+    when(jobsRepository.findNextClaimableId("n1", Set.of("Slow"))).thenReturn(Optional.of(4L));
+    when(jobsRepository.claim(eq(4L), eq("n1"), any())).thenReturn(1);
+    when(jobsRepository.findById(4L)).thenReturn(Optional.of(job));
+
+    assertEquals(Optional.of(job), jobQueue.claimNext("n1", Set.of("Slow")));
+    verify(jobFairShare, never()).pickNext(any(), any());
+  }
+
+  @Test
+  void claimNext_excludes_empty_type_when_no_types_are_saturated() {
+    when(jobsRepository.findNextClaimableId("n1", Set.of(""))).thenReturn(Optional.empty());
+
+    assertTrue(jobQueue.claimNext("n1", Set.of()).isEmpty());
+    verify(jobsRepository, never()).claim(anyLong(), anyString(), any());
+  }
+
+  @Test
+  void claimNext_returns_empty_when_another_node_keeps_winning_the_claim() {
+    when(jobsRepository.findNextClaimableId("n1", Set.of(""))).thenReturn(Optional.of(4L));
+    when(jobsRepository.claim(eq(4L), eq("n1"), any())).thenReturn(0);
+
+    assertTrue(jobQueue.claimNext("n1", Set.of()).isEmpty());
+    verify(jobsRepository, times(3)).claim(eq(4L), eq("n1"), any());
+    verify(jobsRepository, never()).findById(4L);
+  }
+
+  @Test
+  void claimNext_with_fair_share_claims_the_fair_choice() {
+    ReflectionTestUtils.setField(jobQueue, "fairShare", true);
+    Job job = Job.builder().id(7L).status("claimed").build();
+    when(jobFairShare.pickNext("n1", Set.of(""))).thenReturn(Optional.of(7L));
+    when(jobsRepository.claim(eq(7L), eq("n1"), any())).thenReturn(1);
+    when(jobsRepository.findById(7L)).thenReturn(Optional.of(job));
+
+    assertEquals(Optional.of(job), jobQueue.claimNext("n1", Set.of()));
+    verify(jobsRepository, never()).findNextClaimableId(any(), any());
+  }
+
+  @Test
+  void claimNext_with_fair_share_picks_again_after_losing_a_claim() {
+    ReflectionTestUtils.setField(jobQueue, "fairShare", true);
+    Job job = Job.builder().id(8L).status("claimed").build();
+    when(jobFairShare.pickNext("n1", Set.of(""))).thenReturn(Optional.of(7L), Optional.of(8L));
+    when(jobsRepository.claim(eq(7L), eq("n1"), any())).thenReturn(0);
+    when(jobsRepository.claim(eq(8L), eq("n1"), any())).thenReturn(1);
+    when(jobsRepository.findById(8L)).thenReturn(Optional.of(job));
+
+    assertEquals(Optional.of(job), jobQueue.claimNext("n1", Set.of()));
+  }
+}
@@ -0,0 +1,223 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.jobs.TestJob;
+import edu.ucsb.cs156.example.jobs.TestJobFactory;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.MockedStatic;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@ExtendWith(SpringExtension.class)
+@Import({JobQueueWorker.class, TestJobFactory.class, ObjectMapper.class})
+@TestPropertySource(properties = {"app.jobs.nodeId=node-a"})
+public class JobQueueWorkerTests {
+
+  @MockitoBean JobQueue jobQueue;
+
+  @MockitoBean JobExecutor jobExecutor;
+
+  @MockitoBean JobsRepository jobsRepository;
+
+  @MockitoBean JobService jobService;
+
+  @MockitoBean JobRecovery jobRecovery;
+
+  @Autowired JobQueueWorker jobQueueWorker;
+
+  @BeforeEach
+  public void setup() {
+    when(jobExecutor.submit(anyString(), any()))
+        .thenAnswer(
+            invocation -> {
+              invocation.getArgument(1, Runnable.class).run();
+              return true;
+            });
+  }
+
+  @Test
+  public void node_id_comes_from_configuration() {
+    assertEquals("node-a", jobQueueWorker.getNodeId());
+  }
+
+  @Test
+  public void node_id_falls_back_to_a_random_one_without_a_host_name() {
+    JobQueueWorker fresh = new JobQueueWorker();
+    ReflectionTestUtils.setField(fresh, "configuredNodeId", "");
+
+    try (MockedStatic<InetAddress> inetAddress = mockStatic(InetAddress.class)) {
+      inetAddress.when(InetAddress::getLocalHost).thenThrow(new UnknownHostException("none"));
+      fresh.init();
+    }
+
+    assertTrue(fresh.getNodeId().startsWith("node-"));
+  }
+
+  @Test
+  public void writeParams_that_cannot_be_serialized_throws() throws Exception {
+    ObjectMapper mapper = mock(ObjectMapper.class);
+    when(mapper.writeValueAsString(any())).thenThrow(new JsonMappingException(null, "bad"));
+    JobQueueWorker fresh = new JobQueueWorker();
+    ReflectionTestUtils.setField(fresh, "mapper", mapper);
+
+    assertThrows(IllegalArgumentException.class, () -> fresh.writeParams(Map.of("a", "1")));
+  }
+
+  @Test
+  public void readParams_that_are_not_a_json_object_throws() {
+    assertEquals(Map.of("a", "1"), jobQueueWorker.readParams("{\"a\":\"1\"}"));
+    assertThrows(IllegalArgumentException.class, () -> jobQueueWorker.readParams("[1"));
+  }
+
+  @Test
+  public void factoryFor_unknown_type_throws() {
+    assertThrows(IllegalArgumentException.class, () -> jobQueueWorker.factoryFor("Nope"));
+  }
+
+  @Test
+  public void poll_does_nothing_before_startup_recovery() {
+    JobQueueWorker fresh = new JobQueueWorker();
+
+    fresh.poll();
+
+    verify(jobQueue, never()).claimNext(anyString(), any());
+  }
+
+  @Test
+  public void poll_claims_while_executor_has_capacity() {
+    Job durable = Job.builder().id(1L).jobType("TestJob").params("{\"sleepMs\":\"0\"}").build();
+    when(jobExecutor.availableSlots()).thenReturn(2, 1, 0);
+    when(jobExecutor.saturatedTypes()).thenReturn(Set.of());
+    when(jobQueue.claimNext("node-a", Set.of()))
+        .thenReturn(Optional.of(durable))
+        .thenReturn(Optional.empty());
+
+    jobQueueWorker.recoverOwnJobs();
+
+    verify(jobService, times(1)).runJob(eq(durable), any(TestJob.class));
+  }
+
+  @Test
+  public void dispatch_runs_the_local_consumer_for_pinned_jobs() {
+    Job pinned = Job.builder().id(2L).jobType("Lambda").nodeId("node-a").build();
+    JobContextConsumer consumer = ctx -> ctx.log("hi");
+    when(jobExecutor.availableSlots()).thenReturn(0);
+
+    jobQueueWorker.enqueueLocal(pinned, consumer);
+    jobQueueWorker.dispatch(pinned);
+
+    verify(jobService, times(1)).runJob(pinned, consumer);
+  }
+
+  @Test
+  public void dispatch_fails_the_job_through_runJob_when_it_cannot_be_rebuilt() throws Exception {
+    Job unknown = Job.builder().id(3L).jobType("Nope").params("{}").build();
+
+    jobQueueWorker.dispatch(unknown);
+
+    ArgumentCaptor<JobContextConsumer> consumer = ArgumentCaptor.forClass(JobContextConsumer.class);
+    verify(jobService, times(1)).runJob(eq(unknown), consumer.capture());
+    IllegalStateException e =
+        assertThrows(
+            IllegalStateException.class, () -> consumer.getValue().accept(mock(JobContext.class)));
+    assertEquals(
+        "Cannot rebuild job of type Nope: No JobFactory registered for job type Nope",
+        e.getMessage());
+    verify(jobExecutor, never()).submit(anyString(), any());
+  }
+
+  @Test
+  public void dispatch_requeues_job_if_executor_refuses_it() {
+    Job durable = Job.builder().id(4L).jobType("TestJob").params("{}").nodeId("node-a").build();
+    doReturn(false).when(jobExecutor).submit(anyString(), any());
+
+    jobQueueWorker.dispatch(durable);
+
+    assertEquals("queued", durable.getStatus());
+    assertNull(durable.getNodeId());
+    verify(jobsRepository, times(1)).save(durable);
+  }
+
+  @Test
+  public void dispatch_keeps_local_consumer_if_executor_refuses_pinned_job() {
+    Job pinned = Job.builder().id(5L).jobType("Lambda").nodeId("node-a").build();
+    JobContextConsumer consumer = ctx -> ctx.log("hi");
+    when(jobExecutor.availableSlots()).thenReturn(0);
+    doReturn(false).doReturn(true).when(jobExecutor).submit(anyString(), any());
+
+    jobQueueWorker.enqueueLocal(pinned, consumer);
+    jobQueueWorker.dispatch(pinned);
+    assertEquals("queued", pinned.getStatus());
+    assertEquals("node-a", pinned.getNodeId());
+
+    jobQueueWorker.dispatch(pinned);
+    verify(jobExecutor, times(2)).submit(eq("Lambda"), any());
+  }
+
+  @Test
+  public void recoverOwnJobs_recovers_started_jobs_and_abandons_queued_local_ones() {
+    Job claimed = Job.builder().id(6L).status("claimed").params("{}").nodeId("node-a").build();
+    Job queuedLocal = Job.builder().id(7L).status("queued").nodeId("node-a").build();
+    Job running = Job.builder().id(8L).status("running").nodeId("node-a").build();
+    when(jobsRepository.findAllByNodeIdAndStatusIn(
+            "node-a", List.of("queued", "claimed", "running")))
+        .thenReturn(List.of(claimed, queuedLocal, running));
+
+    jobQueueWorker.recoverOwnJobs();
+
+    verify(jobRecovery).recover(eq(6L), any());
+    verify(jobRecovery).recover(eq(8L), any());
+    verify(jobRecovery, never()).recover(eq(7L), any());
+    assertEquals("abandoned", queuedLocal.getStatus());
+    verify(jobsRepository, times(1)).save(queuedLocal);
+    assertTrue(jobQueueWorker.isReady());
+  }
+
+  @Test
+  public void poll_survives_claim_failures() {
+    when(jobExecutor.availableSlots()).thenReturn(1);
+    when(jobQueue.claimNext(anyString(), any())).thenThrow(new RuntimeException("db down"));
+
+    jobQueueWorker.recoverOwnJobs();
+
+    await().atMost(1, SECONDS).untilAsserted(() -> verify(jobQueue).claimNext(anyString(), any()));
+  }
+
+  @Test
+  public void writeParams_writes_json() {
+    assertEquals("{\"a\":\"b\"}", jobQueueWorker.writeParams(Map.of("a", "b")));
+  }
+}
@@ -0,0 +1,135 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class JobRecoveryTests {
+
+  @Mock private JobsRepository jobsRepository;
+
+  @Mock private JobQueueWorker jobQueueWorker;
+
+  @Mock private JobPipelines jobPipelines;
+
+  @Mock private JobLogCompressor jobLogCompressor;
+
+  @Mock private JobCompletions jobCompletions;
+
+  @InjectMocks private JobRecovery jobRecovery;
+
+  private final ZonedDateTime cutoff = ZonedDateTime.now();
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    ReflectionTestUtils.setField(jobRecovery, "staleAfterMs", 60_000L);
+    ReflectionTestUtils.setField(jobRecovery, "maxRequeues", 3);
+    when(jobQueueWorker.getNodeId()).thenReturn("node-a");
+  }
+
+  @Test
+  void beat_waits_for_startup_recovery() {
+    jobRecovery.beat();
+    verify(jobsRepository, never()).heartbeat(any(), any());
+
+    when(jobQueueWorker.isReady()).thenReturn(true);
+    jobRecovery.beat();
+    verify(jobsRepository).heartbeat(eq("node-a"), any());
+  }
+
+  @Test
+  void heartbeats_are_sent_while_a_slow_sweep_runs() throws Exception {
+    ReflectionTestUtils.setField(jobRecovery, "intervalMs", 10L);
+    when(jobQueueWorker.isReady()).thenReturn(true);
+    CountDownLatch beats = new CountDownLatch(3);
+    when(jobsRepository.heartbeat(eq("node-a"), any()))
+        .thenThrow(new IllegalStateException("db down"))
+        .thenAnswer(
+            invocation -> {
+              beats.countDown();
+              return 1;
+            });
+    // the sweep only finishes once heartbeats have kept going, past a failed one, while it ran
+    when(jobsRepository.findStaleIds(any(), any()))
+        .thenAnswer(
+            invocation -> {
+              assertTrue(beats.await(5, TimeUnit.SECONDS));
+              return List.of();
+            });
+
+    jobRecovery.startHeartbeats();
+    try {
+      jobRecovery.recoverStaleJobs();
+    } finally {
+      jobRecovery.stopHeartbeats();
+    }
+    assertEquals(0, beats.getCount());
+  }
+
+  @Test
+  void recover_requeues_when_it_can_and_polls() {
+    when(jobsRepository.requeueStale(5L, cutoff, 3)).thenReturn(1);
+
+    assertEquals("queued", jobRecovery.recover(5L, cutoff));
+    verify(jobQueueWorker).poll();
+    verify(jobsRepository, never()).abandonStale(anyLong(), any());
+  }
+
+  @Test
+  void recover_otherwise_abandons_and_ends_the_job() {
+    Job job = Job.builder().id(5L).pipelineId(7L).status("abandoned").build();
+    when(jobsRepository.abandonStale(5L, cutoff)).thenReturn(1);
+    when(jobsRepository.findById(5L)).thenReturn(Optional.of(job));
+
+    assertEquals("abandoned", jobRecovery.recover(5L, cutoff));
+    verify(jobPipelines).stageEnded(job);
+    verify(jobLogCompressor).jobEnded(5L);
+    verify(jobCompletions).statusChanged(5L);
+    verify(jobQueueWorker, never()).poll();
+  }
+
+  @Test
+  void recover_leaves_jobs_that_are_no_longer_stale() {
+    assertNull(jobRecovery.recover(5L, cutoff));
+    verify(jobLogCompressor, never()).jobEnded(anyLong());
+  }
+
+  @Test
+  void recoverStaleJobs_uses_the_stale_cutoff_and_keeps_going_after_a_failure() {
+    when(jobsRepository.findStaleIds(any(), eq(Limit.of(JobRecovery.SWEEP_BATCH_SIZE))))
+        .thenReturn(List.of(4L, 5L));
+    when(jobsRepository.requeueStale(eq(4L), any(), eq(3)))
+        .thenThrow(new IllegalStateException("db down"));
+    when(jobsRepository.requeueStale(eq(5L), any(), eq(3))).thenReturn(1);
+
+    jobRecovery.recoverStaleJobs();
+
+    ArgumentCaptor<ZonedDateTime> staleBefore = ArgumentCaptor.forClass(ZonedDateTime.class);
+    verify(jobsRepository).findStaleIds(staleBefore.capture(), any());
+    assertTrue(staleBefore.getValue().isBefore(ZonedDateTime.now().minusSeconds(59)));
+    verify(jobQueueWorker).poll();
+  }
+}
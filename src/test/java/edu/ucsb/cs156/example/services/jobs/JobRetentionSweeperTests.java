@@ -0,0 +1,106 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.models.JobRetentionStats;
+import edu.ucsb.cs156.example.services.jobs.JobRetention.PurgedBatch;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class JobRetentionSweeperTests {
+
+  @Mock private JobRetention jobRetention;
+
+  @InjectMocks private JobRetentionSweeper sweeper;
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    ReflectionTestUtils.setField(sweeper, "retentionDays", 30);
+    ReflectionTestUtils.setField(sweeper, "batchSize", 2);
+    ReflectionTestUtils.setField(sweeper, "maxBatchesPerRun", 3);
+  }
+
+  @Test
+  public void does_nothing_when_retention_is_off() {
+    ReflectionTestUtils.setField(sweeper, "retentionDays", 0);
+
+    sweeper.sweep();
+
+    verify(jobRetention, never()).purgeBatch(any(), anyInt(), anyBoolean());
+    assertNull(sweeper.getStats().getLastRunAt());
+  }
+
+  @Test
+  public void purges_batches_until_a_short_one() {
+    when(jobRetention.purgeBatch(any(), eq(2), eq(false)))
+        .thenReturn(new PurgedBatch(2, 10), new PurgedBatch(1, 3));
+
+    sweeper.sweep();
+
+    ArgumentCaptor<ZonedDateTime> cutoff = ArgumentCaptor.forClass(ZonedDateTime.class);
+    verify(jobRetention, times(2)).purgeBatch(cutoff.capture(), eq(2), eq(false));
+    assertEquals(30, Duration.between(cutoff.getValue(), ZonedDateTime.now()).toDays());
+    JobRetentionStats stats = sweeper.getStats();
+    assertNotNull(stats.getLastRunAt());
+    assertEquals(3, stats.getLastRunJobs());
+    assertEquals(13, stats.getLastRunLogLines());
+    assertEquals(2, stats.getTotalBatches());
+  }
+
+  @Test
+  public void stops_when_nothing_is_left() {
+    ReflectionTestUtils.setField(sweeper, "archive", true);
+    when(jobRetention.purgeBatch(any(), eq(2), eq(true)))
+        .thenReturn(new PurgedBatch(2, 0), new PurgedBatch(0, 0));
+
+    sweeper.sweep();
+
+    verify(jobRetention, times(2)).purgeBatch(any(), eq(2), eq(true));
+    assertEquals(2, sweeper.getStats().getTotalJobs());
+    assertEquals(1, sweeper.getStats().getTotalBatches());
+  }
+
+  @Test
+  public void a_run_with_nothing_expired_records_an_empty_run() {
+    when(jobRetention.purgeBatch(any(), eq(2), eq(false))).thenReturn(new PurgedBatch(0, 0));
+
+    sweeper.sweep();
+
+    JobRetentionStats stats = sweeper.getStats();
+    assertNotNull(stats.getLastRunAt());
+    assertEquals(0, stats.getLastRunJobs());
+    assertEquals(0, stats.getTotalBatches());
+  }
+
+  @Test
+  public void stops_after_max_batches_per_run() {
+    when(jobRetention.purgeBatch(any(), eq(2), eq(false))).thenReturn(new PurgedBatch(2, 1));
+
+    sweeper.sweep();
+    sweeper.sweep();
+
+    verify(jobRetention, times(6)).purgeBatch(any(), eq(2), eq(false));
+    JobRetentionStats stats = sweeper.getStats();
+    assertEquals(6, stats.getLastRunJobs());
+    assertEquals(12, stats.getTotalJobs());
+    assertEquals(6, stats.getTotalLogLines());
+  }
+}
@@ -0,0 +1,157 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.errors.InvalidRequestException;
+import edu.ucsb.cs156.example.repositories.JobDependencyRepository;
+import edu.ucsb.cs156.example.repositories.JobLogLineRepository;
+import edu.ucsb.cs156.example.repositories.JobLogTermRepository;
+import edu.ucsb.cs156.example.repositories.JobPipelineRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import edu.ucsb.cs156.example.services.jobs.JobRetention.PurgedBatch;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+public class JobRetentionTests {
+
+  @Mock private JobsRepository jobsRepository;
+
+  @Mock private JobLogLineRepository jobLogLineRepository;
+
+  @Mock private JobDependencyRepository jobDependencyRepository;
+
+  @Mock private JobLogTermRepository jobLogTermRepository;
+
+  @Mock private JobPipelineRepository jobPipelineRepository;
+
+  @InjectMocks private JobRetention jobRetention;
+
+  private final ZonedDateTime cutoff = ZonedDateTime.parse("2026-01-01T00:00:00Z");
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+  }
+
+  @Test
+  public void nothing_expired_does_nothing() {
+    when(jobsRepository.findExpiredIds(JobRetention.FINISHED_STATUSES, cutoff, 10))
+        .thenReturn(List.of());
+
+    assertEquals(new PurgedBatch(0, 0), jobRetention.purgeBatch(cutoff, 10, true));
+    verify(jobsRepository, never()).deleteAllByIdIn(any());
+    verify(jobLogLineRepository, never()).deleteAllByJobIdIn(any());
+  }
+
+  @Test
+  public void deletes_lines_then_jobs() {
+    when(jobsRepository.findExpiredIds(JobRetention.FINISHED_STATUSES, cutoff, 10))
+        .thenReturn(List.of(1L, 2L));
+    when(jobLogLineRepository.deleteAllByJobIdIn(List.of(1L, 2L))).thenReturn(7);
+    when(jobsRepository.deleteAllByIdIn(List.of(1L, 2L))).thenReturn(2);
+
+    assertEquals(new PurgedBatch(2, 7), jobRetention.purgeBatch(cutoff, 10, false));
+    verify(jobDependencyRepository).deleteAllByJobIdIn(List.of(1L, 2L));
+    verify(jobLogTermRepository).deleteAllByJobIdIn(List.of(1L, 2L));
+    verify(jobsRepository, never()).archiveAllByIdIn(any());
+    verify(jobLogLineRepository, never()).archiveAllByJobIdIn(any());
+    verify(jobPipelineRepository, never()).deleteAllWithoutJobsByIdIn(any());
+  }
+
+  @Test
+  public void deletes_pipelines_left_without_jobs_after_the_jobs() {
+    when(jobsRepository.findExpiredIds(JobRetention.FINISHED_STATUSES, cutoff, 10))
+        .thenReturn(List.of(1L, 2L));
+    when(jobsRepository.findPipelineIdsByIdIn(List.of(1L, 2L))).thenReturn(List.of(5L));
+    when(jobsRepository.deleteAllByIdIn(List.of(1L, 2L))).thenReturn(2);
+
+    assertEquals(new PurgedBatch(2, 0), jobRetention.purgeBatch(cutoff, 10, false));
+
+    InOrder order = inOrder(jobsRepository, jobPipelineRepository);
+    order.verify(jobsRepository).deleteAllByIdIn(List.of(1L, 2L));
+    order.verify(jobPipelineRepository).deleteAllWithoutJobsByIdIn(List.of(5L));
+  }
+
+  @Test
+  public void archives_before_deleting() {
+    when(jobsRepository.findExpiredIds(JobRetention.FINISHED_STATUSES, cutoff, 10))
+        .thenReturn(List.of(1L));
+    when(jobsRepository.deleteAllByIdIn(List.of(1L))).thenReturn(1);
+
+    assertEquals(new PurgedBatch(1, 0), jobRetention.purgeBatch(cutoff, 10, true));
+
+    InOrder order = inOrder(jobsRepository, jobLogLineRepository);
+    order.verify(jobsRepository).archiveAllByIdIn(List.of(1L));
+    order.verify(jobLogLineRepository).archiveAllByJobIdIn(List.of(1L));
+    order.verify(jobLogLineRepository).deleteAllByJobIdIn(List.of(1L));
+    order.verify(jobsRepository).deleteAllByIdIn(List.of(1L));
+  }
+
+  @Test
+  public void deleteJob_deletes_a_finished_job_and_its_pipeline_if_it_was_the_last_stage() {
+    when(jobsRepository.findStatusById(1L)).thenReturn(Optional.of("complete"));
+    when(jobsRepository.findPipelineIdsByIdIn(List.of(1L))).thenReturn(List.of(5L));
+    when(jobsRepository.deleteFinishedById(1L, JobRetention.FINISHED_STATUSES)).thenReturn(1);
+
+    assertTrue(jobRetention.deleteJob(1L));
+
+    InOrder order = inOrder(jobLogLineRepository, jobsRepository, jobPipelineRepository);
+    order.verify(jobLogLineRepository).deleteAllByJobIdIn(List.of(1L));
+    order.verify(jobsRepository).deleteFinishedById(1L, JobRetention.FINISHED_STATUSES);
+    order.verify(jobPipelineRepository).deleteAllWithoutJobsByIdIn(List.of(5L));
+    verify(jobDependencyRepository).deleteAllByJobIdIn(List.of(1L));
+    verify(jobLogTermRepository).deleteAllByJobIdIn(List.of(1L));
+  }
+
+  @Test
+  public void deleteJob_of_a_missing_job_deletes_nothing() {
+    when(jobsRepository.findStatusById(1L)).thenReturn(Optional.empty());
+
+    assertFalse(jobRetention.deleteJob(1L));
+
+    verify(jobLogLineRepository, never()).deleteAllByJobIdIn(any());
+    verify(jobsRepository, never()).deleteFinishedById(anyLong(), any());
+  }
+
+  @Test
+  public void deleteJob_refuses_a_job_that_unfinished_jobs_depend_on() {
+    when(jobsRepository.findStatusById(1L)).thenReturn(Optional.of("complete"));
+    when(jobDependencyRepository.findUnfinishedDependentIds(1L, JobRetention.FINISHED_STATUSES))
+        .thenReturn(List.of(2L, 3L));
+
+    InvalidRequestException e =
+        assertThrows(InvalidRequestException.class, () -> jobRetention.deleteJob(1L));
+
+    assertEquals("Job 1 cannot be deleted while jobs [2, 3] depend on it", e.getMessage());
+    verify(jobLogLineRepository, never()).deleteAllByJobIdIn(any());
+  }
+
+  @Test
+  public void deleteJob_fails_if_the_job_runs_again_before_it_is_deleted() {
+    when(jobsRepository.findStatusById(1L)).thenReturn(Optional.of("error"));
+    when(jobsRepository.findPipelineIdsByIdIn(List.of(1L))).thenReturn(List.of(5L));
+    when(jobsRepository.deleteFinishedById(1L, JobRetention.FINISHED_STATUSES)).thenReturn(0);
+
+    InvalidRequestException e =
+        assertThrows(InvalidRequestException.class, () -> jobRetention.deleteJob(1L));
+
+    assertEquals("Job 1 cannot be deleted while it is running again", e.getMessage());
+    verify(jobPipelineRepository, never()).deleteAllWithoutJobsByIdIn(any());
+  }
+}
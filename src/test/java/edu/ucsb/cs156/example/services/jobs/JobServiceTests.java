@@ -0,0 +1,646 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.JobLogLine;
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.jobs.TestJob;
+import edu.ucsb.cs156.example.models.JobProgress;
+import edu.ucsb.cs156.example.repositories.JobLogLineRepository;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import edu.ucsb.cs156.example.services.CurrentUserService;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockedStatic;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class JobServiceTests {
+
+  @Mock private JobsRepository jobsRepository;
+
+  @Mock private JobLogLineRepository jobLogLineRepository;
+
+  @Mock private CurrentUserService currentUserService;
+
+  @Mock private JobQueueWorker jobQueueWorker;
+
+  @Mock private JobLogWriter jobLogWriter;
+
+  @Mock private JobLogStreams jobLogStreams;
+
+  @Mock private JobMetrics jobMetrics;
+
+  @Mock private JobPipelines jobPipelines;
+
+  @Mock private JobLogCompressor jobLogCompressor;
+
+  @Mock private JobCompletions jobCompletions;
+
+  @InjectMocks private JobService jobService;
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    ReflectionTestUtils.setField(jobService, "maxQueued", 10L);
+    when(jobQueueWorker.getNodeId()).thenReturn("node-a");
+    when(jobsRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+  }
+
+  @Test
+  void runAsJob_pins_job_to_this_node_and_hands_it_to_the_worker() {
+    TestJob testJob = TestJob.builder().build();
+
+    Job job = jobService.runAsJob(testJob);
+
+    assertEquals("queued", job.getStatus());
+    assertEquals("TestJob", job.getJobType());
+    assertEquals("node-a", job.getNodeId());
+    verify(jobsRepository, times(1)).save(job);
+    verify(jobQueueWorker, times(1)).enqueueLocal(job, testJob);
+  }
+
+  @Test
+  void runAsJob_rejects_job_when_queue_is_full() {
+    when(jobsRepository.countByStatus("queued")).thenReturn(10L);
+
+    Job job = jobService.runAsJob(TestJob.builder().build());
+
+    assertEquals("rejected", job.getStatus());
+    verify(jobQueueWorker, never()).enqueueLocal(any(), any());
+  }
+
+  @Test
+  void launch_stores_type_and_params_and_polls() {
+    when(jobQueueWorker.writeParams(Map.of("fail", "true"))).thenReturn("{\"fail\":\"true\"}");
+
+    Job job = jobService.launch("TestJob", Map.of("fail", "true"));
+
+    assertEquals("queued", job.getStatus());
+    assertEquals("TestJob", job.getJobType());
+    assertEquals("{\"fail\":\"true\"}", job.getParams());
+    assertNull(job.getNodeId());
+    verify(jobQueueWorker, times(1)).factoryFor("TestJob");
+    verify(jobQueueWorker, times(1)).poll();
+  }
+
+  @Test
+  void launch_rejects_job_when_queue_is_full() {
+    when(jobsRepository.countByStatus("queued")).thenReturn(11L);
+
+    Job job = jobService.launch("TestJob", Map.of());
+
+    assertEquals("rejected", job.getStatus());
+    verify(jobQueueWorker, never()).poll();
+  }
+
+  @Test
+  void launch_of_unknown_type_throws() {
+    when(jobQueueWorker.factoryFor("Nope")).thenThrow(new IllegalArgumentException("no"));
+
+    assertThrows(IllegalArgumentException.class, () -> jobService.launch("Nope", Map.of()));
+    verify(jobsRepository, never()).save(any());
+  }
+
+  @Test
+  void launch_with_a_used_idempotency_key_returns_the_job_launched_with_it() {
+    Job launched = Job.builder().id(3L).status("complete").idempotencyKey("k1").build();
+    when(jobsRepository.findByIdempotencyKey("k1")).thenReturn(Optional.of(launched));
+    JobOptions options = JobOptions.builder().idempotencyKey("k1").build();
+
+    assertEquals(launched, jobService.launch("TestJob", Map.of(), options));
+    assertEquals(launched, jobService.runAsJob(TestJob.builder().build(), options));
+
+    assertTrue(launched.getDuplicate());
+    verify(jobsRepository, never()).save(any());
+    verify(jobQueueWorker, never()).poll();
+    verify(jobQueueWorker, never()).enqueueLocal(any(), any());
+  }
+
+  @Test
+  void launch_with_a_new_idempotency_key_stores_it() {
+    Job job =
+        jobService.launch("TestJob", Map.of(), JobOptions.builder().idempotencyKey("k1").build());
+
+    assertEquals("k1", job.getIdempotencyKey());
+    assertFalse(job.getDuplicate());
+    verify(jobQueueWorker).poll();
+  }
+
+  @Test
+  void launch_that_loses_a_race_for_its_idempotency_key_returns_the_winner() {
+    Job winner = Job.builder().id(3L).status("queued").idempotencyKey("k1").build();
+    when(jobsRepository.findByIdempotencyKey("k1"))
+        .thenReturn(Optional.empty(), Optional.of(winner));
+    when(jobsRepository.save(any()))
+        .thenThrow(new DataIntegrityViolationException("JOBS_IDEMPOTENCY_KEY_IDX"));
+
+    Job job =
+        jobService.launch("TestJob", Map.of(), JobOptions.builder().idempotencyKey("k1").build());
+
+    assertEquals(winner, job);
+    assertTrue(job.getDuplicate());
+    verify(jobQueueWorker, never()).poll();
+  }
+
+  @Test
+  void runAsJob_that_loses_a_race_for_its_idempotency_key_returns_the_winner() {
+    Job winner = Job.builder().id(3L).status("queued").idempotencyKey("k1").build();
+    when(jobsRepository.findByIdempotencyKey("k1"))
+        .thenReturn(Optional.empty(), Optional.of(winner));
+    when(jobsRepository.save(any()))
+        .thenThrow(new DataIntegrityViolationException("JOBS_IDEMPOTENCY_KEY_IDX"));
+
+    Job job =
+        jobService.runAsJob(
+            TestJob.builder().build(), JobOptions.builder().idempotencyKey("k1").build());
+
+    assertEquals(winner, job);
+    verify(jobQueueWorker, never()).enqueueLocal(any(), any());
+  }
+
+  @Test
+  void launch_rethrows_integrity_violations_that_are_not_about_its_key() {
+    when(jobsRepository.save(any())).thenThrow(new DataIntegrityViolationException("other"));
+
+    assertThrows(
+        DataIntegrityViolationException.class, () -> jobService.launch("TestJob", Map.of()));
+    assertThrows(
+        DataIntegrityViolationException.class,
+        () ->
+            jobService.launch(
+                "TestJob", Map.of(), JobOptions.builder().idempotencyKey("k1").build()));
+  }
+
+  @Test
+  void rejected_launch_does_not_keep_its_idempotency_key() {
+    when(jobsRepository.countByStatus("queued")).thenReturn(10L);
+
+    Job job =
+        jobService.launch("TestJob", Map.of(), JobOptions.builder().idempotencyKey("k1").build());
+
+    assertEquals("rejected", job.getStatus());
+    assertNull(job.getIdempotencyKey());
+  }
+
+  @Test
+  void coalesceKey_needs_sha_256() {
+    try (MockedStatic<MessageDigest> digests = mockStatic(MessageDigest.class)) {
+      digests
+          .when(() -> MessageDigest.getInstance("SHA-256"))
+          .thenThrow(new NoSuchAlgorithmException("SHA-256"));
+
+      assertThrows(IllegalStateException.class, () -> JobService.coalesceKey("TestJob", "{}"));
+    }
+  }
+
+  @Test
+  void coalesced_launch_returns_a_job_with_the_same_type_and_params_that_has_not_ended() {
+    when(jobQueueWorker.writeParams(any())).thenReturn("{\"a\":\"1\",\"b\":\"2\"}");
+    String key = JobService.coalesceKey("TestJob", "{\"a\":\"1\",\"b\":\"2\"}");
+    Job inFlight = Job.builder().id(3L).status("running").coalesceKey(key).build();
+    when(jobsRepository.findFirstByCoalesceKeyAndStatusInOrderByIdAsc(eq(key), any()))
+        .thenReturn(Optional.of(inFlight));
+
+    Job job =
+        jobService.launch(
+            "TestJob", Map.of("b", "2", "a", "1"), JobOptions.builder().coalesce(true).build());
+
+    assertEquals(inFlight, job);
+    assertTrue(job.getDuplicate());
+    verify(jobsRepository, never()).save(any());
+  }
+
+  @Test
+  void coalesced_launch_with_nothing_in_flight_stores_its_coalesce_key() {
+    when(jobQueueWorker.writeParams(any())).thenReturn("{}");
+
+    Job coalesced =
+        jobService.launch("TestJob", Map.of(), JobOptions.builder().coalesce(true).build());
+    Job plain = jobService.launch("TestJob", Map.of());
+
+    assertEquals(JobService.coalesceKey("TestJob", "{}"), coalesced.getCoalesceKey());
+    assertEquals(64, coalesced.getCoalesceKey().length());
+    assertNull(plain.getCoalesceKey());
+    assertFalse(coalesced.getDuplicate());
+  }
+
+  @Test
+  void coalesced_launch_that_loses_a_race_for_its_coalesce_key_returns_the_winner() {
+    when(jobQueueWorker.writeParams(any())).thenReturn("{}");
+    String key = JobService.coalesceKey("TestJob", "{}");
+    Job winner = Job.builder().id(3L).status("queued").coalesceKey(key).build();
+    when(jobsRepository.findFirstByCoalesceKeyAndStatusInOrderByIdAsc(eq(key), any()))
+        .thenReturn(Optional.empty(), Optional.of(winner));
+    when(jobsRepository.save(any()))
+        .thenThrow(new DataIntegrityViolationException("JOBS_ACTIVE_COALESCE_KEY_IDX"));
+
+    Job job = jobService.launch("TestJob", Map.of(), JobOptions.builder().coalesce(true).build());
+
+    assertEquals(winner, job);
+    assertTrue(job.getDuplicate());
+    verify(jobQueueWorker, never()).poll();
+  }
+
+  @Test
+  void coalesced_launch_rethrows_when_the_job_it_collided_with_has_already_ended() {
+    when(jobQueueWorker.writeParams(any())).thenReturn("{}");
+    when(jobsRepository.save(any()))
+        .thenThrow(new DataIntegrityViolationException("JOBS_ACTIVE_COALESCE_KEY_IDX"));
+
+    assertThrows(
+        DataIntegrityViolationException.class,
+        () -> jobService.launch("TestJob", Map.of(), JobOptions.builder().coalesce(true).build()));
+  }
+
+  @Test
+  void runJob_records_running_then_complete() throws Exception {
+    Job job = Job.builder().id(3L).status("claimed").build();
+    JobLogBuffer buffer = mock(JobLogBuffer.class);
+    when(jobLogWriter.open(job)).thenReturn(buffer);
+    List<String> statuses = new ArrayList<>();
+    when(jobsRepository.save(job))
+        .thenAnswer(
+            invocation -> {
+              statuses.add(job.getStatus());
+              return job;
+            });
+
+    jobService.runJob(job, ctx -> ctx.log("working"));
+
+    assertEquals(List.of("running", "complete"), statuses);
+    verify(buffer, times(2)).flush(JobLogBuffer.FlushReason.STATUS);
+    verify(jobLogWriter, times(1)).close(buffer);
+    verify(jobLogStreams, times(1)).complete(3L, "complete");
+    verify(jobMetrics, times(1)).recordQueueWait(job);
+    verify(jobMetrics, times(1)).recordRun(eq(job), anyLong());
+    verify(jobPipelines, times(1)).stageEnded(job);
+    verify(jobLogCompressor, times(1)).jobEnded(3L);
+    verify(jobCompletions, times(1)).statusChanged(3L);
+  }
+
+  @Test
+  void runJob_applies_the_configured_subtask_parallelism() {
+    ReflectionTestUtils.setField(jobService, "subtaskParallelism", 2);
+    Job job = Job.builder().id(3L).status("claimed").build();
+    when(jobLogWriter.open(job)).thenReturn(mock(JobLogBuffer.class));
+    List<Object> parallelism = new ArrayList<>();
+
+    jobService.runJob(
+        job, ctx -> parallelism.add(ReflectionTestUtils.getField(ctx, "subtaskParallelism")));
+
+    assertEquals(List.of(2), parallelism);
+  }
+
+  @Test
+  void runJob_logs_exception_message_and_records_error() throws Exception {
+    Job job = Job.builder().id(3L).status("claimed").build();
+    JobLogBuffer buffer = mock(JobLogBuffer.class);
+    when(jobLogWriter.open(job)).thenReturn(buffer);
+
+    jobService.runJob(
+        job,
+        ctx -> {
+          throw new Exception("broken");
+        });
+
+    assertEquals("error", job.getStatus());
+    ArgumentCaptor<JobLogLine> line = ArgumentCaptor.forClass(JobLogLine.class);
+    verify(buffer).append(line.capture());
+    assertEquals("broken", line.getValue().getMessage());
+    verify(jobLogWriter, times(1)).close(buffer);
+  }
+
+  @Test
+  void jobTypeOf_uses_declaring_class_for_lambdas() {
+    JobContextConsumer lambda = ctx -> ctx.log("hi");
+
+    assertEquals("JobServiceTests", JobService.jobTypeOf(lambda));
+    assertEquals("TestJob", JobService.jobTypeOf(TestJob.builder().build()));
+  }
+
+  @Test
+  void runAsJob_and_launch_use_default_timeout_unless_given() {
+    ReflectionTestUtils.setField(jobService, "defaultTimeoutMs", 500L);
+
+    assertEquals(500L, jobService.runAsJob(TestJob.builder().build()).getTimeoutMs());
+    JobOptions options = JobOptions.builder().timeoutMs(20L).build();
+    assertEquals(20L, jobService.runAsJob(TestJob.builder().build(), options).getTimeoutMs());
+    assertEquals(500L, jobService.launch("TestJob", Map.of()).getTimeoutMs());
+    assertEquals(20L, jobService.launch("TestJob", Map.of(), options).getTimeoutMs());
+  }
+
+  @Test
+  void runAsJob_and_launch_record_priority() {
+    JobOptions options = JobOptions.builder().priority(5).build();
+
+    assertEquals(5, jobService.runAsJob(TestJob.builder().build(), options).getPriority());
+    assertEquals(5, jobService.launch("TestJob", Map.of(), options).getPriority());
+    assertEquals(0, jobService.launch("TestJob", Map.of()).getPriority());
+  }
+
+  @Test
+  void no_default_timeout_leaves_timeout_unset() {
+    assertNull(jobService.runAsJob(TestJob.builder().build()).getTimeoutMs());
+  }
+
+  @Test
+  void runJob_records_timed_out_when_job_overruns() throws Exception {
+    Job job = Job.builder().id(3L).status("claimed").timeoutMs(10L).build();
+    JobLogBuffer buffer = mock(JobLogBuffer.class);
+    when(jobLogWriter.open(job)).thenReturn(buffer);
+
+    jobService.runJob(
+        job,
+        ctx -> {
+          while (true) {
+            ctx.checkCancelled();
+            Thread.sleep(1);
+          }
+        });
+
+    assertEquals("timed_out", job.getStatus());
+    ArgumentCaptor<JobLogLine> line = ArgumentCaptor.forClass(JobLogLine.class);
+    verify(buffer).append(line.capture());
+    assertEquals("Job timed out after 10 ms", line.getValue().getMessage());
+    assertFalse(Thread.currentThread().isInterrupted());
+  }
+
+  @Test
+  void cancel_of_running_job_stops_it() throws Exception {
+    Job job = Job.builder().id(3L).status("claimed").build();
+    JobLogBuffer buffer = mock(JobLogBuffer.class);
+    when(jobLogWriter.open(job)).thenReturn(buffer);
+    when(jobsRepository.requestCancel(3L)).thenReturn(1);
+    CountDownLatch started = new CountDownLatch(1);
+    Thread t =
+        new Thread(
+            () ->
+                jobService.runJob(
+                    job,
+                    ctx -> {
+                      started.countDown();
+                      ctx.sleep(60_000);
+                    }));
+    t.start();
+    started.await();
+
+    assertEquals("Cancellation of job 3 requested", jobService.cancel(3L));
+    t.join(5_000);
+
+    assertEquals("cancelled", job.getStatus());
+    ArgumentCaptor<JobLogLine> line = ArgumentCaptor.forClass(JobLogLine.class);
+    verify(buffer).append(line.capture());
+    assertEquals("Job cancelled", line.getValue().getMessage());
+  }
+
+  @Test
+  void cancel_of_queued_job_forgets_it() {
+    when(jobsRepository.cancelQueued(5L)).thenReturn(1);
+
+    assertEquals("Job 5 cancelled", jobService.cancel(5L));
+    verify(jobQueueWorker).forget(5L);
+    verify(jobCompletions).statusChanged(5L);
+    verify(jobsRepository, never()).requestCancel(5L);
+  }
+
+  @Test
+  void cancel_of_job_running_elsewhere_only_flags_it() {
+    when(jobsRepository.requestCancel(5L)).thenReturn(1);
+
+    assertEquals("Cancellation of job 5 requested", jobService.cancel(5L));
+    verify(jobQueueWorker, never()).forget(5L);
+  }
+
+  @Test
+  void cancel_of_finished_job_does_nothing() {
+    assertEquals("Job 5 is not queued or running", jobService.cancel(5L));
+  }
+
+  @Test
+  void enforce_does_nothing_without_running_jobs() {
+    jobService.enforceCancellationsAndTimeouts();
+
+    verify(jobsRepository, never()).findCancelRequestedIds(any());
+  }
+
+  @Test
+  void enforce_stops_jobs_cancelled_from_another_node_and_overrunning_jobs() throws Exception {
+    Job cancelled = Job.builder().id(3L).status("claimed").build();
+    Job overrunning = Job.builder().id(4L).status("claimed").timeoutMs(1L).build();
+    when(jobLogWriter.open(any())).thenReturn(mock(JobLogBuffer.class));
+    when(jobsRepository.findCancelRequestedIds(any())).thenReturn(List.of(3L, 99L));
+    CountDownLatch started = new CountDownLatch(2);
+    // a job that blocks without ever calling checkCancelled
+    JobContextConsumer blocking =
+        ctx -> {
+          started.countDown();
+          Thread.sleep(60_000);
+        };
+    Thread t1 = new Thread(() -> jobService.runJob(cancelled, blocking));
+    Thread t2 = new Thread(() -> jobService.runJob(overrunning, blocking));
+    t1.start();
+    t2.start();
+    started.await();
+    Thread.sleep(5);
+
+    jobService.enforceCancellationsAndTimeouts();
+    t1.join(5_000);
+    t2.join(5_000);
+
+    assertEquals("cancelled", cancelled.getStatus());
+    assertEquals("timed_out", overrunning.getStatus());
+  }
+
+  @Test
+  void getJobLogs_prefers_lines_then_the_compressed_log_then_the_old_column() {
+    when(jobLogLineRepository.findAllByJobIdOrderBySeqAsc(1L))
+        .thenReturn(
+            List.of(
+                JobLogLine.builder().seq(0).message("a").build(),
+                JobLogLine.builder().seq(1).message("b").build()));
+    Job compressed = Job.builder().id(2L).log("old").build();
+    ReflectionTestUtils.setField(
+        compressed,
+        "logGz",
+        JobLogCompressor.gzip(
+            List.of(
+                JobLogLine.builder().seq(0).message("c").build(),
+                JobLogLine.builder().seq(1).message("d").build())));
+    when(jobsRepository.findById(2L)).thenReturn(Optional.of(compressed));
+    when(jobsRepository.findById(3L))
+        .thenReturn(Optional.of(Job.builder().id(3L).log("old").build()));
+
+    assertEquals("a\nb", jobService.getJobLogs(1L));
+    assertEquals("c\nd", jobService.getJobLogs(2L));
+    assertEquals("old", jobService.getJobLogs(3L));
+  }
+
+  @Test
+  void getCompressedJobLog_of_missing_job_throws() {
+    assertThrows(EntityNotFoundException.class, () -> jobService.getCompressedJobLog(9L));
+
+    when(jobsRepository.findStatusById(9L)).thenReturn(Optional.of("running"));
+    assertTrue(jobService.getCompressedJobLog(9L).isEmpty());
+  }
+
+  @Test
+  void getProgress_returns_the_recorded_progress_or_throws_for_a_missing_job() {
+    JobProgress progress = JobProgress.builder().id(4L).status("running").done(5L).build();
+    when(jobsRepository.findProgressById(4L)).thenReturn(Optional.of(progress));
+
+    assertEquals(progress, jobService.getProgress(4L));
+    assertThrows(EntityNotFoundException.class, () -> jobService.getProgress(9L));
+  }
+
+  @Test
+  void runJob_writes_progress_reported_by_the_job_before_its_final_status() {
+    Job job = Job.builder().id(3L).status("claimed").build();
+    when(jobLogWriter.open(job)).thenReturn(mock(JobLogBuffer.class));
+
+    jobService.runJob(job, ctx -> ctx.progress(7, 9));
+
+    InOrder inOrder = inOrder(jobsRepository);
+    inOrder.verify(jobsRepository).updateProgress(eq(3L), eq(7L), eq(9L), any(), any());
+    inOrder.verify(jobsRepository).save(job);
+    assertEquals("complete", job.getStatus());
+  }
+
+  @Test
+  void runJob_of_a_requeued_job_logs_after_the_lines_of_earlier_attempts() {
+    Job job = Job.builder().id(3L).status("claimed").requeues(1).build();
+    JobLogBuffer buffer = mock(JobLogBuffer.class);
+    when(jobLogWriter.open(job)).thenReturn(buffer);
+    when(jobLogLineRepository.findMaxSeqByJobId(3L)).thenReturn(Optional.of(4L));
+
+    jobService.runJob(job, ctx -> ctx.log("working"));
+
+    ArgumentCaptor<JobLogLine> lines = ArgumentCaptor.forClass(JobLogLine.class);
+    verify(buffer, times(2)).append(lines.capture());
+    assertEquals(5L, lines.getAllValues().get(0).getSeq());
+    assertEquals(
+        "Attempt 2: the node running the previous attempt stopped responding",
+        lines.getAllValues().get(0).getMessage());
+    assertEquals(6L, lines.getAllValues().get(1).getSeq());
+  }
+
+  @Test
+  void runJob_of_a_requeued_job_logs_after_the_compressed_lines_of_earlier_attempts() {
+    Job job = Job.builder().id(3L).status("claimed").requeues(1).build();
+    JobLogBuffer buffer = mock(JobLogBuffer.class);
+    when(jobLogWriter.open(job)).thenReturn(buffer);
+    when(jobLogLineRepository.findMaxSeqByJobId(3L)).thenReturn(Optional.empty());
+    when(jobLogCompressor.lastCompressedSeq(3L)).thenReturn(Optional.of(7L));
+
+    jobService.runJob(job, ctx -> ctx.log("working"));
+
+    ArgumentCaptor<JobLogLine> lines = ArgumentCaptor.forClass(JobLogLine.class);
+    verify(buffer, times(2)).append(lines.capture());
+    assertEquals(8L, lines.getAllValues().get(0).getSeq());
+    assertEquals(9L, lines.getAllValues().get(1).getSeq());
+  }
+
+  @Test
+  void runJob_does_not_start_a_job_whose_status_was_changed_elsewhere() {
+    Job job = Job.builder().id(3L).status("claimed").build();
+    when(jobLogWriter.open(job)).thenReturn(mock(JobLogBuffer.class));
+    when(jobsRepository.save(job))
+        .thenThrow(new ObjectOptimisticLockingFailureException(Job.class, 3L));
+    when(jobsRepository.findStatusById(3L)).thenReturn(Optional.of("abandoned"));
+    List<String> ran = new ArrayList<>();
+
+    jobService.runJob(job, ctx -> ran.add("ran"));
+
+    assertEquals(List.of(), ran);
+    assertEquals("abandoned", job.getStatus());
+    verify(jobLogStreams).complete(3L, "abandoned");
+    verify(jobPipelines, never()).stageEnded(any());
+    verify(jobLogCompressor, never()).jobEnded(anyLong());
+  }
+
+  @Test
+  void runJob_keeps_the_status_of_a_job_requeued_elsewhere_while_it_ran() {
+    Job job = Job.builder().id(3L).status("claimed").build();
+    when(jobLogWriter.open(job)).thenReturn(mock(JobLogBuffer.class));
+    when(jobsRepository.save(job))
+        .thenAnswer(
+            invocation -> {
+              if ("complete".equals(job.getStatus())) {
+                throw new ObjectOptimisticLockingFailureException(Job.class, 3L);
+              }
+              return Job.builder().id(3L).status("running").version(2L).build();
+            });
+    when(jobsRepository.findStatusById(3L)).thenReturn(Optional.of("queued"));
+
+    jobService.runJob(job, ctx -> assertEquals(2L, ctx.getJob().getVersion()));
+
+    assertEquals("queued", job.getStatus());
+    verify(jobMetrics, never()).recordRun(any(), anyLong());
+    verify(jobPipelines, never()).stageEnded(any());
+    verify(jobLogCompressor, never()).jobEnded(anyLong());
+  }
+
+  @Test
+  void runJob_keeps_the_status_of_a_failed_or_timed_out_job_changed_elsewhere() {
+    Job failed = Job.builder().id(3L).status("claimed").build();
+    Job overran = Job.builder().id(4L).status("claimed").timeoutMs(1L).build();
+    when(jobLogWriter.open(any())).thenReturn(mock(JobLogBuffer.class));
+    when(jobsRepository.save(any()))
+        .thenAnswer(
+            invocation -> {
+              Job job = invocation.getArgument(0);
+              if (!"running".equals(job.getStatus())) {
+                throw new ObjectOptimisticLockingFailureException(Job.class, job.getId());
+              }
+              return job;
+            });
+    when(jobsRepository.findStatusById(anyLong())).thenReturn(Optional.of("cancelled"));
+
+    jobService.runJob(
+        failed,
+        ctx -> {
+          throw new Exception("broken");
+        });
+    jobService.runJob(
+        overran,
+        ctx -> {
+          while (true) {
+            ctx.checkCancelled();
+            Thread.sleep(1);
+          }
+        });
+
+    assertEquals("cancelled", failed.getStatus());
+    assertEquals("cancelled", overran.getStatus());
+    verify(jobMetrics, never()).recordRun(any(), anyLong());
+    verify(jobPipelines, never()).stageEnded(any());
+  }
+}
@@ -0,0 +1,158 @@
+package edu.ucsb.cs156.example.services.jobs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import edu.ucsb.cs156.example.entities.Job;
+import edu.ucsb.cs156.example.entities.RecurringJob;
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.repositories.JobsRepository;
+import edu.ucsb.cs156.example.repositories.RecurringJobRepository;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.PlatformTransactionManager;
+
+public class RecurringJobsTests {
+
+  @Mock private RecurringJobRepository recurringJobRepository;
+
+  @Mock private JobsRepository jobsRepository;
+
+  @Mock private JobQueueWorker jobQueueWorker;
+
+  @Mock private JobService jobService;
+
+  @Mock private PlatformTransactionManager transactionManager;
+
+  @InjectMocks private RecurringJobs recurringJobs;
+
+  private final ZonedDateTime due = ZonedDateTime.parse("2026-10-18T02:00:00-07:00");
+
+  private final RecurringJob nightly =
+      RecurringJob.builder()
+          .id(7L)
+          .name("nightly")
+          .cron("0 0 2 * * *")
+          .jobType("TestJob")
+          .params("{}")
+          .enabled(true)
+          .priority(2)
+          .nextRunAt(due)
+          .build();
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    when(jobQueueWorker.getNodeId()).thenReturn("node-a");
+    when(recurringJobRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+    when(recurringJobRepository.findById(7L)).thenReturn(Optional.of(nightly));
+    when(jobsRepository.save(any()))
+        .thenAnswer(
+            invocation -> {
+              Job job = invocation.getArgument(0);
+              job.setId(100L);
+              return job;
+            });
+  }
+
+  @Test
+  void parseCron_rejects_invalid_expressions() {
+    assertThrows(IllegalArgumentException.class, () -> RecurringJobs.parseCron(null));
+    IllegalArgumentException e =
+        assertThrows(IllegalArgumentException.class, () -> RecurringJobs.parseCron("0 2 * * *"));
+    assertEquals("Invalid cron expression 0 2 * * *", e.getMessage());
+  }
+
+  @Test
+  void save_schedules_the_next_run_only_when_enabled() {
+    RecurringJob saved = recurringJobs.save(nightly);
+    assertEquals(2, saved.getNextRunAt().getHour());
+    assertEquals(0, saved.getNextRunAt().getMinute());
+
+    nightly.setEnabled(false);
+    assertNull(recurringJobs.save(nightly).getNextRunAt());
+  }
+
+  @Test
+  void save_checks_job_type_and_params() {
+    when(jobQueueWorker.factoryFor("Nope")).thenThrow(new IllegalArgumentException("no"));
+    nightly.setJobType("Nope");
+
+    assertThrows(IllegalArgumentException.class, () -> recurringJobs.save(nightly));
+    verify(recurringJobRepository, never()).save(any());
+
+    nightly.setJobType("TestJob");
+    nightly.setParams(null);
+    assertEquals("{}", recurringJobs.save(nightly).getParams());
+    nightly.setParams(" ");
+    assertEquals("{}", recurringJobs.save(nightly).getParams());
+    verify(jobQueueWorker, times(2)).readParams("{}");
+  }
+
+  @Test
+  void launchRun_takes_the_run_and_launches_a_job_linked_to_it() {
+    when(recurringJobRepository.takeRun(7L, due, due.plusDays(1), "node-a")).thenReturn(1);
+
+    Job job = recurringJobs.launchRun(nightly, due.plusMinutes(5));
+
+    assertEquals("queued", job.getStatus());
+    assertEquals(7L, job.getRecurringJobId());
+    assertEquals("TestJob", job.getJobType());
+    assertEquals(2, job.getPriority());
+    verify(recurringJobRepository).recordLastJob(7L, 100L);
+    verify(transactionManager).commit(any());
+    verify(jobQueueWorker).poll();
+  }
+
+  @Test
+  void launchRun_does_nothing_when_another_node_took_the_run() {
+    assertNull(recurringJobs.launchRun(nightly, due));
+
+    verify(jobsRepository, never()).save(any());
+    verify(jobQueueWorker, never()).poll();
+  }
+
+  @Test
+  void launchRun_fails_when_the_recurring_job_is_deleted_after_its_run_is_taken() {
+    when(recurringJobRepository.takeRun(eq(7L), eq(due), any(), eq("node-a"))).thenReturn(1);
+    when(recurringJobRepository.findById(7L)).thenReturn(Optional.empty());
+
+    assertThrows(EntityNotFoundException.class, () -> recurringJobs.launchRun(nightly, due));
+    verify(jobsRepository, never()).save(any());
+  }
+
+  @Test
+  void launchRun_records_a_rejected_run_when_the_queue_is_full() {
+    when(recurringJobRepository.takeRun(eq(7L), eq(due), any(), eq("node-a"))).thenReturn(1);
+    when(jobService.queueIsFull()).thenReturn(true);
+
+    assertEquals("rejected", recurringJobs.launchRun(nightly, due).getStatus());
+    verify(jobQueueWorker, never()).poll();
+  }
+
+  @Test
+  void launchDue_keeps_going_after_a_failure() {
+    RecurringJob broken = RecurringJob.builder().id(6L).cron("nonsense").nextRunAt(due).build();
+    when(recurringJobRepository.findAllByEnabledTrueAndNextRunAtLessThanEqualOrderByNextRunAtAsc(
+            any()))
+        .thenReturn(List.of(broken, nightly));
+
+    recurringJobs.launchDue();
+
+    verify(recurringJobRepository, never()).takeRun(eq(6L), any(), any(), any());
+    verify(recurringJobRepository).takeRun(eq(7L), eq(due), any(), eq("node-a"));
+  }
+}